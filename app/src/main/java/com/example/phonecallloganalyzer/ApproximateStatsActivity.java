@@ -0,0 +1,251 @@
+package com.example.phonecallloganalyzer;
+
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.graphics.Color;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.view.View;
+import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.github.mikephil.charting.charts.BarChart;
+import com.github.mikephil.charting.components.XAxis;
+import com.github.mikephil.charting.data.BarData;
+import com.github.mikephil.charting.data.BarDataSet;
+import com.github.mikephil.charting.data.BarEntry;
+import com.github.mikephil.charting.formatter.IndexAxisValueFormatter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.DateFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Statistics for histories too large to hold per number, from an
+ * ApproximateAggregator: the state is a few MB however many records stream
+ * through. Every estimate is shown with its error bound.
+ *
+ * Starts on the device call log, read in one pass on its own CallLogSync so
+ * the main screen's watermark is left alone. A CDR export picked through the
+ * document picker replaces it: the file is memory-mapped and parsed in place
+ * by MappedCsvCallRecordSource, with progress shown as it goes.
+ */
+public class ApproximateStatsActivity extends AppCompatActivity {
+
+    private static final String TAG = "ApproximateStats";
+    private static final int TOP_CONTACTS = 10;
+    private static final int PROGRESS_ROWS = 100_000;
+    private static final String[] CSV_TYPES = {"text/csv", "text/comma-separated-values", "text/plain",
+            "application/csv", "application/octet-stream"};
+
+    // What one load produced; error is set instead of snapshot when a file couldn't be read
+    private static final class LoadResult {
+        final String source;
+        final ApproximateSnapshot snapshot;
+        final long skippedRows;
+        final String error;
+
+        LoadResult(String source, ApproximateSnapshot snapshot, long skippedRows, String error) {
+            this.source = source;
+            this.snapshot = snapshot;
+            this.skippedRows = skippedRows;
+            this.error = error;
+        }
+    }
+
+    private TextView sourceText, summaryText, distinctText, topByCallsText, topByDurationText, stateText;
+    private BarChart monthChart;
+    private ProgressBar progressBar;
+    private final CallLogFormatter formatter = new CallLogFormatter(); // Main thread only
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final LoadScheduler<LoadResult> loads = new LoadScheduler<>(executor, handler::post);
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), uri -> {
+                if (uri != null) importFile(uri);
+            });
+
+    public static Intent newIntent(Context context) {
+        return new Intent(context, ApproximateStatsActivity.class);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_approximate_stats);
+
+        sourceText = findViewById(R.id.approxSource);
+        summaryText = findViewById(R.id.approxSummary);
+        distinctText = findViewById(R.id.approxDistinct);
+        monthChart = findViewById(R.id.approxMonthChart);
+        topByCallsText = findViewById(R.id.approxTopByCalls);
+        topByDurationText = findViewById(R.id.approxTopByDuration);
+        stateText = findViewById(R.id.approxState);
+        progressBar = findViewById(R.id.approxProgress);
+        Button importButton = findViewById(R.id.approxImportButton);
+        importButton.setOnClickListener(v -> importLauncher.launch(CSV_TYPES));
+
+        progressBar.setVisibility(View.VISIBLE);
+        sourceText.setText("Device call log");
+        Context appContext = getApplicationContext();
+        loads.load(token -> {
+            ApproximateAggregator aggregator = new ApproximateAggregator(TOP_CONTACTS);
+            new CallLogSync(appContext).aggregateAll(aggregator, token);
+            return new LoadResult("Device call log", aggregator.snapshot(), 0, null);
+        }, (version, result) -> showResult(result));
+    }
+
+    // Replaces whatever is loading or shown. Progress is posted every PROGRESS_ROWS rows.
+    private void importFile(Uri uri) {
+        Context appContext = getApplicationContext();
+        String displayName = displayName(uri);
+        progressBar.setVisibility(View.VISIBLE);
+        sourceText.setText(displayName);
+        loads.reload(token -> {
+            ApproximateAggregator aggregator = new ApproximateAggregator(TOP_CONTACTS);
+            NumberNormalizer normalizer = new NumberNormalizer(CallLogSync.defaultRegion(appContext));
+            try {
+                ParcelFileDescriptor descriptor = appContext.getContentResolver().openFileDescriptor(uri, "r");
+                if (descriptor == null) return new LoadResult(displayName, null, 0, "The file could not be opened");
+                // Closing the stream closes the descriptor, also when the source rejects the header. The
+                // source closes the channel, and with it the stream, once more, which does no harm.
+                try (FileInputStream stream = new ParcelFileDescriptor.AutoCloseInputStream(descriptor);
+                     MappedCsvCallRecordSource source =
+                             new MappedCsvCallRecordSource(stream.getChannel(), TimeZone.getDefault(), normalizer)) {
+                    source.setProgressListener((rows, bytesRead, totalBytes) -> {
+                        token.throwIfCancelled();
+                        handler.post(() -> {
+                            if (!token.isCancelled()) showProgress(displayName, rows, bytesRead, totalBytes);
+                        });
+                    }, PROGRESS_ROWS);
+                    aggregator.consume(source, token);
+                    return new LoadResult(displayName, aggregator.snapshot(), source.getSkippedRows(), null);
+                }
+            } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+                // UncheckedIOException: a window of the file couldn't be mapped part way through
+                Log.w(TAG, "Could not import " + uri, e);
+                return new LoadResult(displayName, null, 0, e.getMessage());
+            }
+        }, (version, result) -> showResult(result));
+    }
+
+    private void showProgress(String displayName, long rows, long bytesRead, long totalBytes) {
+        sourceText.setText(String.format(Locale.getDefault(), "%s: %,d rows read (%d%%)",
+                displayName, rows, totalBytes > 0 ? bytesRead * 100 / totalBytes : 0));
+    }
+
+    private String displayName(Uri uri) {
+        try (Cursor cursor = getContentResolver().query(uri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && cursor.getString(0) != null) return cursor.getString(0);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "No display name for " + uri, e);
+        }
+        return uri.getLastPathSegment();
+    }
+
+    @Override
+    protected void onDestroy() {
+        loads.cancel();
+        executor.shutdownNow();
+        super.onDestroy();
+    }
+
+    private void showResult(LoadResult result) {
+        progressBar.setVisibility(View.GONE);
+        if (result.error != null) {
+            sourceText.setText(result.source + ": " + result.error);
+            return;
+        }
+        sourceText.setText(result.skippedRows == 0 ? result.source : String.format(Locale.getDefault(),
+                "%s (%,d unreadable rows skipped)", result.source, result.skippedRows));
+        showSnapshot(result.snapshot);
+    }
+
+    private void showSnapshot(ApproximateSnapshot snapshot) {
+        summaryText.setText(String.format(Locale.getDefault(),
+                "%,d calls: %,d incoming, %,d outgoing, %,d missed\nTotal duration %s",
+                snapshot.getTotalCalls(), snapshot.getIncomingCalls(), snapshot.getOutgoingCalls(),
+                snapshot.getMissedCalls(), formatter.formatStatsDuration(snapshot.getTotalDuration())));
+        distinctText.setText(String.format(Locale.getDefault(), "%,d distinct numbers (±%.1f%%)",
+                snapshot.getDistinctCallers(), snapshot.getDistinctError() * 100));
+        setupMonthChart(snapshot);
+
+        String confidence = String.format(Locale.getDefault(), "%.0f%%", snapshot.getConfidence() * 100);
+        StringBuilder calls = new StringBuilder();
+        for (HeavyHitters.Hitter hitter : snapshot.getTopByCalls()) {
+            appendName(calls, hitter).append(String.format(Locale.getDefault(), "%,d calls", hitter.getEstimate())).append('\n');
+        }
+        calls.append(String.format(Locale.getDefault(), "Each count is at most %,d too high (%s confidence)",
+                snapshot.getCallsErrorBound(), confidence));
+        topByCallsText.setText(calls);
+
+        StringBuilder durations = new StringBuilder();
+        for (HeavyHitters.Hitter hitter : snapshot.getTopByDuration()) {
+            formatter.appendStatsDuration(appendName(durations, hitter), hitter.getEstimate()).append('\n');
+        }
+        durations.append(String.format(Locale.getDefault(), "Each duration is at most %s too long (%s confidence)",
+                formatter.formatStatsDuration(snapshot.getDurationErrorBound()), confidence));
+        topByDurationText.setText(durations);
+
+        stateText.setText(String.format(Locale.getDefault(), "Held in %.1f MB of sketches",
+                snapshot.getStateBytes() / (1024.0 * 1024.0)));
+    }
+
+    private static StringBuilder appendName(StringBuilder out, HeavyHitters.Hitter hitter) {
+        String name = hitter.getName() != null ? hitter.getName() : hitter.getNumber();
+        return out.append(name).append("  ");
+    }
+
+    // Distinct numbers per month; the error is the same fraction for every bar, so it goes in the legend
+    private void setupMonthChart(ApproximateSnapshot snapshot) {
+        if (snapshot.getMonthCount() == 0) {
+            monthChart.setVisibility(View.GONE);
+            return;
+        }
+        String[] monthNames = new DateFormatSymbols(Locale.getDefault()).getShortMonths();
+        List<BarEntry> entries = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < snapshot.getMonthCount(); i++) {
+            int month = snapshot.getMonth(i);
+            entries.add(new BarEntry(i, snapshot.getMonthDistinctCallers(i)));
+            labels.add(monthNames[month % 12] + " " + month / 12);
+        }
+
+        BarDataSet dataSet = new BarDataSet(entries, String.format(Locale.getDefault(),
+                "Distinct numbers per month (±%.1f%%)", snapshot.getMonthError() * 100));
+        dataSet.setColor(Color.parseColor("#2196F3"));
+        dataSet.setDrawValues(false);
+
+        monthChart.getDescription().setEnabled(false);
+        monthChart.getLegend().setTextColor(Color.WHITE);
+        XAxis xAxis = monthChart.getXAxis();
+        xAxis.setValueFormatter(new IndexAxisValueFormatter(labels));
+        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
+        xAxis.setDrawGridLines(false);
+        xAxis.setGranularity(1f);
+        xAxis.setTextColor(Color.WHITE);
+        monthChart.getAxisLeft().setTextColor(Color.WHITE);
+        monthChart.getAxisLeft().setAxisMinimum(0f);
+        monthChart.getAxisRight().setEnabled(false);
+        monthChart.setData(new BarData(dataSet));
+        monthChart.invalidate();
+    }
+}
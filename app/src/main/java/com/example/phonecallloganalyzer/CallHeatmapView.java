@@ -0,0 +1,80 @@
+package com.example.phonecallloganalyzer;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Calls by hour of day (columns) and day of week (rows), read straight from
+ * the 7 x 24 rollup buckets. Cell colour scales with the busiest hour.
+ */
+public class CallHeatmapView extends View {
+
+    private static final String[] DAY_LABELS = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    private static final int CELL_COLOR = Color.rgb(0, 227, 150);
+    private static final int EMPTY_COLOR = Color.rgb(40, 40, 40);
+
+    private final int[] counts = new int[CallRollups.DAYS_PER_WEEK * CallRollups.HOURS_PER_DAY];
+    private int maxCount;
+
+    private final Paint cellPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF cell = new RectF();
+    private final float density;
+
+    public CallHeatmapView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        density = getResources().getDisplayMetrics().density;
+        labelPaint.setColor(Color.WHITE);
+        labelPaint.setTextSize(11 * density);
+    }
+
+    public void setRollups(CallRollups rollups) {
+        maxCount = 0;
+        for (int day = 0; day < CallRollups.DAYS_PER_WEEK; day++) {
+            for (int hour = 0; hour < CallRollups.HOURS_PER_DAY; hour++) {
+                int count = rollups.getHourOfWeekCount(day, hour);
+                counts[day * CallRollups.HOURS_PER_DAY + hour] = count;
+                maxCount = Math.max(maxCount, count);
+            }
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float labelWidth = labelPaint.measureText("Wed ") + 4 * density;
+        float labelHeight = labelPaint.getTextSize() + 6 * density;
+        float cellWidth = (getWidth() - labelWidth) / CallRollups.HOURS_PER_DAY;
+        float cellHeight = (getHeight() - labelHeight) / CallRollups.DAYS_PER_WEEK;
+        float gap = density;
+
+        for (int day = 0; day < CallRollups.DAYS_PER_WEEK; day++) {
+            float top = day * cellHeight;
+            canvas.drawText(DAY_LABELS[day], 0, top + cellHeight / 2 + labelPaint.getTextSize() / 3, labelPaint);
+            for (int hour = 0; hour < CallRollups.HOURS_PER_DAY; hour++) {
+                int count = counts[day * CallRollups.HOURS_PER_DAY + hour];
+                if (count == 0 || maxCount == 0) {
+                    cellPaint.setColor(EMPTY_COLOR);
+                } else {
+                    // Keep quiet hours visible next to a very busy one
+                    int alpha = 60 + (int) (195 * (count / (float) maxCount));
+                    cellPaint.setColor((alpha << 24) | (CELL_COLOR & 0x00FFFFFF));
+                }
+                float left = labelWidth + hour * cellWidth;
+                cell.set(left, top, left + cellWidth - gap, top + cellHeight - gap);
+                canvas.drawRoundRect(cell, 2 * density, 2 * density, cellPaint);
+            }
+        }
+
+        float baseline = getHeight() - 2 * density;
+        for (int hour = 0; hour < CallRollups.HOURS_PER_DAY; hour += 6) {
+            canvas.drawText(Integer.toString(hour), labelWidth + hour * cellWidth, baseline, labelPaint);
+        }
+    }
+}
@@ -1,166 +1,214 @@
 package com.example.phonecallloganalyzer;
 
-import android.content.Context;
-import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.LinearLayout;
 import android.widget.TextView;
-import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
-
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Call log rows, read straight from the CallLogTable columns. Item ids are the
+ * provider's _ID, so RecyclerView keeps track of rows across updates.
+ *
+ * Works like AsyncListDiffer, but over table rows instead of a List of item
+ * objects: submitChanges() diffs the shown version against the new one on a
+ * background thread and dispatches only the changed rows. A submitted table
+ * must not be modified afterwards; edit a copy instead.
+ */
 public class CallLogAdapter extends RecyclerView.Adapter<CallLogAdapter.ViewHolder> {
 
-    private final List<CallLogItem> callLogs;
-    private Context context; // Context is needed for colors
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+    // Type label colours, as ARGB ints so binding a row doesn't parse them
+    private static final int INCOMING_COLOR = 0xFF4CAF50; // Green
+    private static final int OUTGOING_COLOR = 0xFF2196F3; // Blue
+    private static final int MISSED_COLOR = 0xFFF44336; // Red
+    private static final int OTHER_COLOR = 0xFFB0BEC5; // Grey
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CallLogFormatter formatter = new CallLogFormatter();
+    private final StringBuilder text = new StringBuilder(64);
+    private CallLogTable table = new CallLogTable();
+    private int[] rows; // Table rows to show when a filter is active, null for all of them
+    private int generation; // Bumped on every submit so a stale diff result is dropped
+
+    // While PerfMetrics is on, binds are added up per frame and recorded as one span when the next frame starts
+    private final PerfMetrics metrics = PerfMetrics.getInstance();
+    private int frameBinds;
+    private long frameStart, frameBindNanos;
+    private final Choreographer.FrameCallback recordFrameBinds = frameTimeNanos -> {
+        metrics.record(PerfMetrics.Stage.ADAPTER_BIND, frameStart, frameBindNanos, frameBinds);
+        metrics.count(PerfMetrics.Counter.ADAPTER_BINDS, frameBinds);
+        metrics.count(PerfMetrics.Counter.ADAPTER_BIND_NANOS, frameBindNanos);
+        frameBinds = 0;
+        frameBindNanos = 0;
+    };
+
+    public CallLogAdapter() {
+        setHasStableIds(true);
+    }
+
+    // Swaps the whole list, e.g. after a reload or a new filter, where a diff would cost more than it saves
+    public void setTable(CallLogTable table, int[] rows) {
+        generation++;
+        this.table = table;
+        this.rows = rows;
+        notifyDataSetChanged();
+    }
+
+    // For small edits such as a sync: only the rows that differ are rebound and animated
+    public void submitChanges(CallLogTable newTable, int[] newRows) {
+        int submitted = ++generation;
+        RowDiff diff = new RowDiff(table, rows, newTable, newRows);
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(diff, false);
+            mainHandler.post(() -> {
+                if (submitted != generation) return; // A newer list was submitted meanwhile
+                table = newTable;
+                rows = newRows;
+                result.dispatchUpdatesTo(this);
+            });
+        });
+    }
 
-    public CallLogAdapter(List<CallLogItem> callLogs) {
-        this.callLogs = callLogs;
+    // The time zone, locale or clock changed: "Today"/"Yesterday" and every cached date may be stale
+    public void onTimeSettingsChanged() {
+        formatter.reset();
+        notifyDataSetChanged();
     }
 
     @Override
     public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        context = parent.getContext(); // Store context
-        View v = LayoutInflater.from(context)
+        View v = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_call_log, parent, false);
         return new ViewHolder(v);
     }
 
     @Override
     public void onBindViewHolder(ViewHolder holder, int position) {
-        CallLogItem item = callLogs.get(position);
-
-        holder.nameText.setText(item.getName());
-        holder.numberText.setText(item.getNumber());
-
-        if (item.getType().equals("STATS")) {
-            // --- STATS VIEW ---
-            holder.callDetailsRow.setVisibility(View.GONE);
-            holder.statsDetailsRow.setVisibility(View.VISIBLE);
-
-            String[] statsParts = item.getDuration().split("\\|");
-            if (statsParts.length == 2) {
-                String callCount = statsParts[0];
-                int totalDurationInSeconds = Integer.parseInt(statsParts[1]);
-
-                holder.tvCallCount.setText("📞 " + callCount + " Calls");
-                holder.tvTotalDuration.setText("⏱ " + formatStatsDuration(totalDurationInSeconds));
-
-                holder.tvCallCount.setTextColor(Color.parseColor("#33B5E5"));
-                holder.tvTotalDuration.setTextColor(Color.parseColor("#FFBB33"));
-            }
-        } else {
-            // --- REGULAR LOG VIEW ---
-            holder.callDetailsRow.setVisibility(View.VISIBLE);
-            holder.statsDetailsRow.setVisibility(View.GONE);
-
-            holder.tvType.setText(item.getType());
-            // Set color based on call type
-            switch (item.getType()) {
-                case "Incoming":
-                    holder.tvType.setTextColor(Color.parseColor("#4CAF50")); // Green
-                    break;
-                case "Outgoing":
-                    holder.tvType.setTextColor(Color.parseColor("#2196F3")); // Blue
-                    break;
-
-                case "Missed":
-                    holder.tvType.setTextColor(Color.parseColor("#F44336")); // Red
-                    break;
-                default:
-                    holder.tvType.setTextColor(Color.parseColor("#B0BEC5")); // Grey
-                    break;
-            }
-
-            holder.tvDate.setText(formatDate(item.getDate()));
-            holder.tvDuration.setText(formatLogDuration(item.getDuration()));
+        long started = metrics.begin();
+        int row = rowAt(rows, position);
+        holder.nameText.setText(table.getName(row));
+        holder.numberText.setText(table.getNumber(row));
+
+        byte type = table.getType(row);
+        holder.tvType.setText(CallLogTable.typeLabel(type));
+        // Set color based on call type
+        switch (type) {
+            case CallLogTable.TYPE_INCOMING:
+                holder.tvType.setTextColor(INCOMING_COLOR);
+                break;
+            case CallLogTable.TYPE_OUTGOING:
+                holder.tvType.setTextColor(OUTGOING_COLOR);
+                break;
+
+            case CallLogTable.TYPE_MISSED:
+                holder.tvType.setTextColor(MISSED_COLOR);
+                break;
+            default:
+                holder.tvType.setTextColor(OTHER_COLOR);
+                break;
         }
+
+        text.setLength(0);
+        holder.dateChars = setText(holder.tvDate, holder.dateChars, formatter.appendDate(text, table.getDate(row)));
+        text.setLength(0);
+        holder.durationChars = setText(holder.tvDuration, holder.durationChars,
+                formatter.appendLogDuration(text, table.getDuration(row)));
+        if (started != PerfMetrics.NOT_TIMING) countBind(started);
     }
 
-    @Override
-    public int getItemCount() {
-        return callLogs.size();
+    private void countBind(long started) {
+        if (frameBinds == 0) {
+            frameStart = started;
+            Choreographer.getInstance().postFrameCallback(recordFrameBinds);
+        }
+        frameBinds++;
+        frameBindNanos += System.nanoTime() - started;
     }
 
-    public static class ViewHolder extends RecyclerView.ViewHolder {
-        final TextView nameText, numberText;
-        final LinearLayout callDetailsRow, statsDetailsRow;
-        final TextView tvType, tvDate, tvDuration;
-        final TextView tvCallCount, tvTotalDuration;
+    // TextView keeps the array rather than copying it, so each view owns its buffer and the bind allocates nothing
+    static char[] setText(TextView view, char[] chars, StringBuilder text) {
+        if (chars.length < text.length()) chars = new char[text.length()];
+        text.getChars(0, text.length(), chars, 0);
+        view.setText(chars, 0, text.length());
+        return chars;
+    }
 
-        public ViewHolder(View itemView) {
-            super(itemView);
-            nameText = itemView.findViewById(R.id.tvName);
-            numberText = itemView.findViewById(R.id.tvNumber);
-            callDetailsRow = itemView.findViewById(R.id.callDetailsRow);
-            statsDetailsRow = itemView.findViewById(R.id.statsDetailsRow);
-            tvType = itemView.findViewById(R.id.tvType);
-            tvDate = itemView.findViewById(R.id.tvDate);
-            tvDuration = itemView.findViewById(R.id.tvDuration);
-            tvCallCount = itemView.findViewById(R.id.tvCallCount);
-            tvTotalDuration = itemView.findViewById(R.id.tvTotalDuration);
-        }
+    @Override
+    public long getItemId(int position) {
+        return table.getId(rowAt(rows, position));
     }
 
-    private String formatStatsDuration(int totalSeconds) {
-        int hours = totalSeconds / 3600;
-        int minutes = (totalSeconds % 3600) / 60;
-        if (hours > 0) {
-            return String.format(Locale.getDefault(), "%dh %dm", hours, minutes);
-        } else {
-            return String.format(Locale.getDefault(), "%dm %ds", minutes, totalSeconds % 60);
-        }
+    @Override
+    public int getItemCount() {
+        return rows != null ? rows.length : table.size();
     }
 
-    private String formatLogDuration(String durationStr) {
-        try {
-            int seconds = Integer.parseInt(durationStr);
-            if (seconds == 0) return "0s";
-            if (seconds < 60) return seconds + "s";
-            int minutes = seconds / 60;
-            return minutes + "m " + (seconds % 60) + "s";
-        } catch (NumberFormatException e) {
-            return "-";
-        }
+    private static int rowAt(int[] rows, int position) {
+        return rows != null ? rows[position] : position;
     }
 
-    private String formatDate(long timestamp) {
+    // Same _ID means same item; contents are every column the row shows
+    private static final class RowDiff extends DiffUtil.Callback {
 
-        Calendar now = Calendar.getInstance();
-        Calendar callTime = Calendar.getInstance();
-        callTime.setTimeInMillis(timestamp);
+        private final CallLogTable oldTable, newTable;
+        private final int[] oldRows, newRows;
 
-        SimpleDateFormat timeFormat = new SimpleDateFormat("hh:mm a", Locale.getDefault());
+        RowDiff(CallLogTable oldTable, int[] oldRows, CallLogTable newTable, int[] newRows) {
+            this.oldTable = oldTable;
+            this.oldRows = oldRows;
+            this.newTable = newTable;
+            this.newRows = newRows;
+        }
 
-        if (now.get(Calendar.YEAR) == callTime.get(Calendar.YEAR) &&
-                now.get(Calendar.DAY_OF_YEAR) == callTime.get(Calendar.DAY_OF_YEAR)) {
-            return "Today " + timeFormat.format(callTime.getTime());
+        @Override
+        public int getOldListSize() {
+            return oldRows != null ? oldRows.length : oldTable.size();
         }
 
-        Calendar yesterday = Calendar.getInstance();
-        yesterday.add(Calendar.DAY_OF_YEAR, -1);
-        if (yesterday.get(Calendar.YEAR) == callTime.get(Calendar.YEAR) && yesterday.get(Calendar.DAY_OF_YEAR) == callTime.get(Calendar.DAY_OF_YEAR)){
-            return "Yesterday " + timeFormat.format(callTime.getTime());
+        @Override
+        public int getNewListSize() {
+            return newRows != null ? newRows.length : newTable.size();
         }
 
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy hh:mm a", Locale.getDefault());
-        return dateFormat.format(callTime.getTime());
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return oldTable.getId(rowAt(oldRows, oldPosition)) == newTable.getId(rowAt(newRows, newPosition));
+        }
 
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            int oldRow = rowAt(oldRows, oldPosition);
+            int newRow = rowAt(newRows, newPosition);
+            return oldTable.getDate(oldRow) == newTable.getDate(newRow)
+                    && oldTable.getType(oldRow) == newTable.getType(newRow)
+                    && oldTable.getDuration(oldRow) == newTable.getDuration(newRow)
+                    && Objects.equals(oldTable.getNumber(oldRow), newTable.getNumber(newRow))
+                    && Objects.equals(oldTable.getName(oldRow), newTable.getName(newRow));
+        }
+    }
 
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView nameText, numberText;
+        final TextView tvType, tvDate, tvDuration;
+        char[] dateChars = new char[32];
+        char[] durationChars = new char[16];
 
-//        now.add(Calendar.DAY_OF_YEAR, -1);
-//        if (now.get(Calendar.YEAR) == callTime.get(Calendar.YEAR) &&
-//                now.get(Calendar.DAY_OF_YEAR) == callTime.get(Calendar.DAY_OF_YEAR)) {
-//            return "Yesterday, " + timeFormat.format(callTime.getTime());
-//        }
-//        SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM", Locale.getDefault());
-//        return dateFormat.format(callTime.getTime());
+        public ViewHolder(View itemView) {
+            super(itemView);
+            nameText = itemView.findViewById(R.id.tvName);
+            numberText = itemView.findViewById(R.id.tvNumber);
+            tvType = itemView.findViewById(R.id.tvType);
+            tvDate = itemView.findViewById(R.id.tvDate);
+            tvDuration = itemView.findViewById(R.id.tvDuration);
+        }
     }
 }
@@ -0,0 +1,255 @@
+package com.example.phonecallloganalyzer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Mirror of the call log in an indexed SQLite table, for histories too big to
+ * keep in memory as a CallLogTable. The aggregates are computed by SQLite:
+ * per-type and per-contact totals with one GROUP BY number, type, and the
+ * time rollups with one GROUP BY over 15 minute buckets (every time zone in
+ * use is a whole number of quarter hours off UTC, so a bucket never straddles
+ * a local hour). Duration sketches come from a GROUP BY on a stored
+ * DurationSketch bucket. Only contacts and buckets reach the heap, never
+ * every call.
+ *
+ * Not thread safe beyond what SQLiteOpenHelper gives; use it from the loader
+ * thread.
+ */
+public class CallLogDatabase extends SQLiteOpenHelper {
+
+    static final String NAME = "call_log.db";
+    private static final int VERSION = 2; // 2: duration_bucket
+    private static final long BUCKET_MS = 15 * 60_000L;
+
+    static final String TABLE = "calls";
+    static final String ID = "_id";
+    static final String NUMBER = "number";
+    static final String NAME_COLUMN = "name";
+    static final String TYPE = "type";
+    static final String DATE = "date";
+    static final String DURATION = "duration";
+    static final String DURATION_BUCKET = "duration_bucket"; // DurationSketch.bucketOf(duration)
+
+    public CallLogDatabase(Context context) {
+        this(context, NAME);
+    }
+
+    // A null name gives an in-memory database, for tests
+    CallLogDatabase(Context context, String name) {
+        super(context, name, null, VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + ID + " INTEGER PRIMARY KEY, "
+                + NUMBER + " TEXT, "
+                + NAME_COLUMN + " TEXT, "
+                + TYPE + " INTEGER NOT NULL, "
+                + DATE + " INTEGER NOT NULL, "
+                + DURATION + " INTEGER NOT NULL, "
+                + DURATION_BUCKET + " INTEGER NOT NULL)");
+        // Newest-first listing and date ranges, a contact's calls, and one type over a date range
+        db.execSQL("CREATE INDEX calls_date ON " + TABLE + " (" + DATE + ")");
+        db.execSQL("CREATE INDEX calls_number_date ON " + TABLE + " (" + NUMBER + ", " + DATE + ")");
+        db.execSQL("CREATE INDEX calls_type_date ON " + TABLE + " (" + TYPE + ", " + DATE + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Only a mirror of the provider: drop it and let the next load refill it
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        onCreate(db);
+    }
+
+    public void clear() {
+        getWritableDatabase().delete(TABLE, null, null);
+    }
+
+    // Inserts or replaces every row of the table in one transaction
+    public void insert(CallLogTable rows) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE
+                + " (" + ID + ", " + NUMBER + ", " + NAME_COLUMN + ", " + TYPE + ", " + DATE + ", " + DURATION
+                + ", " + DURATION_BUCKET + ") VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int row = 0; row < rows.size(); row++) {
+                insert.clearBindings();
+                insert.bindLong(1, rows.getId(row));
+                bindNullable(insert, 2, rows.getNumber(row));
+                bindNullable(insert, 3, rows.getName(row));
+                insert.bindLong(4, rows.getType(row));
+                insert.bindLong(5, rows.getDate(row));
+                insert.bindLong(6, rows.getDuration(row));
+                insert.bindLong(7, DurationSketch.bucketOf(rows.getDuration(row)));
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void delete(Collection<Long> ids) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement delete = db.compileStatement("DELETE FROM " + TABLE + " WHERE " + ID + " = ?")) {
+            for (long id : ids) {
+                delete.bindLong(1, id);
+                delete.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public long size() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE);
+    }
+
+    // The stored date of a row, or null if there is no row with that _id
+    public Long dateOf(long id) {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT " + DATE + " FROM " + TABLE
+                + " WHERE " + ID + " = ?", new String[]{Long.toString(id)})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : null;
+        }
+    }
+
+    // The stored versions of the given rows, in no particular order; ids with no row are skipped
+    public CallLogTable rows(Collection<Long> ids) {
+        CallLogTable table = new CallLogTable();
+        SQLiteDatabase db = getReadableDatabase();
+        String sql = "SELECT " + ID + ", " + NUMBER + ", " + NAME_COLUMN + ", " + TYPE + ", " + DATE + ", " + DURATION
+                + " FROM " + TABLE + " WHERE " + ID + " = ?";
+        for (long id : ids) {
+            try (Cursor cursor = db.rawQuery(sql, new String[]{Long.toString(id)})) {
+                if (cursor.moveToFirst()) {
+                    table.append(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                            (byte) cursor.getInt(3), cursor.getLong(4), cursor.getInt(5));
+                }
+            }
+        }
+        return table;
+    }
+
+    // _id and date of every row in _id order, off the primary key, for a merge against the provider's ids.
+    // The caller closes it.
+    public Cursor idsAndDates() {
+        return getReadableDatabase().rawQuery("SELECT " + ID + ", " + DATE + " FROM " + TABLE
+                + " ORDER BY " + ID, null);
+    }
+
+    public CallLogAggregator aggregate(CallLogFilter filter, int topK) {
+        return aggregate(filter, topK, TimeZone.getDefault());
+    }
+
+    // Same result as feeding every matching row to a CallLogAggregator, up to the order of ties
+    public CallLogAggregator aggregate(CallLogFilter filter, int topK, TimeZone zone) {
+        CallLogAggregator aggregator = new CallLogAggregator(topK, zone);
+        SQLiteDatabase db = getReadableDatabase();
+        List<String> args = new ArrayList<>();
+        String where = where(filter, args);
+        String[] whereArgs = args.toArray(new String[0]);
+
+        // A bare column next to MAX() comes from the row holding the maximum, so this is each
+        // group's newest name. Newest groups first, so a contact keeps the name of its newest call.
+        try (Cursor cursor = db.rawQuery("SELECT " + NUMBER + ", " + NAME_COLUMN + ", " + TYPE
+                + ", COUNT(*), SUM(" + DURATION + "), MAX(" + DATE + ") AS newest FROM " + TABLE + where
+                + " GROUP BY " + NUMBER + ", " + TYPE + " ORDER BY newest DESC", whereArgs)) {
+            while (cursor.moveToNext()) {
+                aggregator.addGroup(cursor.getString(0), cursor.getString(1), (byte) cursor.getInt(2),
+                        cursor.getInt(3), cursor.getLong(4));
+            }
+        }
+        try (Cursor cursor = db.rawQuery("SELECT MIN(" + DATE + "), COUNT(*), SUM(" + DURATION + ") FROM "
+                + TABLE + where + " GROUP BY " + DATE + " / " + BUCKET_MS, whereArgs)) {
+            while (cursor.moveToNext()) {
+                aggregator.addToRollups(cursor.getLong(0), cursor.getInt(1), cursor.getLong(2));
+            }
+        }
+        // The filter's clauses are all ANDed, so one more can go on the end
+        String connected = (where.isEmpty() ? " WHERE " : where + " AND ") + DURATION + " > 0";
+        try (Cursor cursor = db.rawQuery("SELECT " + NUMBER + ", " + DURATION_BUCKET + ", COUNT(*), MAX(" + DURATION
+                + ") FROM " + TABLE + connected + " GROUP BY " + NUMBER + ", " + DURATION_BUCKET, whereArgs)) {
+            while (cursor.moveToNext()) {
+                aggregator.addDurations(cursor.getString(0), cursor.getInt(1), cursor.getInt(2), cursor.getInt(3));
+            }
+        }
+        return aggregator;
+    }
+
+    // One pass over every row, newest first off the date index, as CallbackTracker needs them
+    public CallbackTracker trackCallbacks() {
+        CallbackTracker tracker = new CallbackTracker();
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT " + NUMBER + ", " + TYPE + ", " + DATE
+                + " FROM " + TABLE + " ORDER BY " + DATE + " DESC, " + ID + " DESC", null)) {
+            while (cursor.moveToNext()) {
+                tracker.add(cursor.getString(0), (byte) cursor.getInt(1), cursor.getLong(2));
+            }
+        }
+        return tracker;
+    }
+
+    // The newest matching rows, newest first, for the list
+    public CallLogTable newestRows(CallLogFilter filter, int limit) {
+        CallLogTable table = new CallLogTable();
+        List<String> args = new ArrayList<>();
+        String where = where(filter, args);
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT " + ID + ", " + NUMBER + ", " + NAME_COLUMN
+                + ", " + TYPE + ", " + DATE + ", " + DURATION + " FROM " + TABLE + where
+                + " ORDER BY " + DATE + " DESC, " + ID + " DESC LIMIT " + limit, args.toArray(new String[0]))) {
+            while (cursor.moveToNext()) {
+                table.append(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                        (byte) cursor.getInt(3), cursor.getLong(4), cursor.getInt(5));
+            }
+        }
+        return table;
+    }
+
+    // The filter as a WHERE clause the indexes can serve, or "" for everything
+    static String where(CallLogFilter filter, List<String> args) {
+        StringBuilder where = new StringBuilder();
+        if (filter.getNumber() != null) {
+            where.append(NUMBER).append(" = ?");
+            args.add(filter.getNumber());
+        }
+        if (filter.getFromDate() != Long.MIN_VALUE) {
+            if (where.length() > 0) where.append(" AND ");
+            where.append(DATE).append(" >= ?");
+            args.add(Long.toString(filter.getFromDate()));
+        }
+        if (filter.getToDate() != Long.MAX_VALUE) {
+            if (where.length() > 0) where.append(" AND ");
+            where.append(DATE).append(" < ?");
+            args.add(Long.toString(filter.getToDate()));
+        }
+        if (filter.getTypeMask() != CallLogFilter.ALL_TYPES) {
+            if (where.length() > 0) where.append(" AND ");
+            where.append(TYPE).append(" IN (");
+            String separator = "";
+            for (byte type = CallLogTable.TYPE_OTHER; type <= CallLogTable.TYPE_MISSED; type++) {
+                if (!filter.matchesType(type)) continue;
+                where.append(separator).append(type);
+                separator = ", ";
+            }
+            where.append(')');
+        }
+        return where.length() > 0 ? " WHERE " + where : "";
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) statement.bindNull(index);
+        else statement.bindString(index, value);
+    }
+}
@@ -0,0 +1,430 @@
+package com.example.phonecallloganalyzer;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.provider.CallLog;
+import android.provider.ContactsContract;
+import android.telephony.TelephonyManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the call log provider, either in full or as a delta against the rows
+ * already ingested. The watermark (highest _ID and LAST_MODIFIED seen) lives
+ * in memory and only moves forward, also across a loadAll(); what outlives the
+ * process is the copy saved beside the snapshot (see getWatermark()). Not
+ * thread safe: use it from the loader thread only.
+ *
+ * Only the columns the app uses are requested. A full load is fetched in
+ * pages keyed on the last (date, _id) seen rather than an offset, so each page
+ * costs the same however deep into the history it is.
+ *
+ * A delta finds edited and deleted rows among the ones read before. In memory
+ * mode their ids and dates are kept here; in database mode they are already
+ * in the CallLogDatabase mirror, which a delta reads instead, so the heap
+ * holds nothing per row.
+ *
+ * Numbers are canonicalized (see NumberNormalizer) as they are read, so every
+ * spelling of a number lands on the same table dictionary entry and contact.
+ *
+ * The aggregate passes (aggregateAll, aggregateSince) read the provider
+ * without moving the watermark, so SnapshotWorker can run them on an instance
+ * of its own.
+ */
+public class CallLogSync {
+
+    // Small first page so the list has something to show straight away
+    static final int FIRST_PAGE_SIZE = 50;
+    static final int PAGE_SIZE = 2_000;
+
+    private static final String[] PROJECTION = {
+            CallLog.Calls._ID,
+            CallLog.Calls.NUMBER,
+            CallLog.Calls.TYPE,
+            CallLog.Calls.DATE,
+            CallLog.Calls.DURATION,
+            CallLog.Calls.LAST_MODIFIED
+    };
+    private static final String SORT_ORDER = CallLog.Calls.DATE + " DESC, " + CallLog.Calls._ID + " DESC";
+    private static final String AFTER_ROW = CallLog.Calls.DATE + " < ? OR (" + CallLog.Calls.DATE + " = ? AND "
+            + CallLog.Calls._ID + " < ?)";
+
+    // Called on the loader thread after each page. The table is still being filled, so copy what you
+    // keep. A listener that moves the rows elsewhere may clear() the table; paging doesn't depend on it.
+    public interface PageListener {
+        void onPage(CallLogTable loadedSoFar);
+    }
+
+    // New or edited rows since the last sync, and ids that are gone from the provider
+    public static class Delta {
+        public final CallLogTable upserts = new CallLogTable();
+        public final List<Long> deletedIds = new ArrayList<>();
+        // Dates the edited and deleted rows had when last read, by id, so a table can find them by
+        // date. New calls have none and have nothing to replace.
+        public final HashMap<Long, Long> previousDates = new HashMap<>();
+
+        public boolean isEmpty() {
+            return upserts.size() == 0 && deletedIds.isEmpty();
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final HashMap<Long, Long> knownDates = new HashMap<>(); // Date of every row read, by id; memory mode only
+    private CallLogDatabase mirror; // Holds the rows read in database mode, null in memory mode
+    private long knownRows; // Read and not since deleted, so a delta can tell the count moved without asking the mirror
+    private final NumberNormalizer normalizer;
+    private final HashMap<String, String> contactCache = new HashMap<>(); // By canonical number
+    private final PerfMetrics metrics = PerfMetrics.getInstance();
+    private ContactIndex contacts = new ContactIndex();
+    private long lastId;
+    private long pageEndDate, pageEndId; // (date, _id) of the last row read, where the next page starts
+    private long lastModified;
+
+    public CallLogSync(Context context) {
+        this(context, defaultRegion(context));
+    }
+
+    // region: ISO country code national numbers are assumed to belong to
+    public CallLogSync(Context context, String region) {
+        normalizer = new NumberNormalizer(region);
+        resolver = context.getContentResolver();
+    }
+
+    // Full scan, newest first, into the table. Re-reads the contacts and the known ids; the watermark
+    // stays where it was if the log no longer reaches it. Stops between pages once the token is cancelled.
+    public void loadAll(CallLogTable table, PageListener listener, CancellationToken token) {
+        loadAll(table, listener, null, token);
+    }
+
+    // Database mode: the listener moves every page into mirror, and deltas find the rows read before there
+    public void loadAll(CallLogTable table, PageListener listener, CallLogDatabase mirror, CancellationToken token) {
+        contacts = loadContactIndex();
+        contactCache.clear();
+        knownDates.clear();
+        knownRows = 0;
+        this.mirror = mirror;
+
+        int pageSize = FIRST_PAGE_SIZE;
+        boolean firstPage = true;
+        while (true) {
+            token.throwIfCancelled();
+            int before = table.size();
+            String selection = null;
+            String[] args = null;
+            if (!firstPage) {
+                String date = Long.toString(pageEndDate);
+                selection = AFTER_ROW;
+                args = new String[]{date, date, Long.toString(pageEndId)};
+            }
+            long started = metrics.begin();
+            try (Cursor cursor = queryPage(selection, args, pageSize)) {
+                metrics.end(PerfMetrics.Stage.CURSOR_QUERY, started);
+                started = metrics.begin();
+                if (cursor != null) table.appendAll(new TrackingSource(cursor, null));
+            }
+            firstPage = false;
+
+            int fetched = table.size() - before;
+            metrics.end(PerfMetrics.Stage.ROW_ITERATION, started, fetched);
+            metrics.count(PerfMetrics.Counter.ROWS_READ, fetched);
+            if (fetched > 0 && listener != null) listener.onPage(table);
+            // A provider that ignores the limit returns everything at once, and the next page is empty
+            if (fetched < pageSize) break;
+            pageSize = PAGE_SIZE;
+        }
+        normalizer.clear(); // The spellings would otherwise stay on the heap as long as the table
+        token.throwIfCancelled();
+    }
+
+    // Streams the whole log through the aggregator in one pass, holding no rows. Leaves the
+    // watermark and the known ids alone, so it can run beside the regular loads.
+    public void aggregateAll(ApproximateAggregator aggregator, CancellationToken token) {
+        contacts = loadContactIndex();
+        contactCache.clear();
+        long started = metrics.begin();
+        try (Cursor cursor = resolver.query(CallLog.Calls.CONTENT_URI, PROJECTION, null, null, SORT_ORDER)) {
+            metrics.end(PerfMetrics.Stage.CURSOR_QUERY, started);
+            started = metrics.begin();
+            if (cursor != null) aggregator.consume(new CanonicalSource(cursor), token);
+            metrics.end(PerfMetrics.Stage.AGGREGATION, started);
+        } finally {
+            normalizer.clear();
+            contactCache.clear();
+        }
+    }
+
+    /**
+     * Streams the whole log through the aggregator, appending the newest newestRows rows to
+     * newest, and returns the watermark of what it read. Holds no other rows and, like the
+     * approximate pass, leaves the sync watermark alone.
+     */
+    public CallLogWatermark aggregateAll(CallLogAggregator aggregator, CallLogTable newest, int newestRows,
+                                         CancellationToken token) {
+        return aggregate(null, null, aggregator, newest, newestRows, token);
+    }
+
+    /**
+     * Brings a snapshot taken at the given watermark up to date: the rows past its _ID go
+     * through the aggregator, and the newest newestRows of them into added. Returns the new watermark, the same
+     * one when nothing changed, or null without reading any rows when calls were deleted or
+     * edited since, which takes aggregateAll(). Leaves the sync watermark alone.
+     */
+    public CallLogWatermark aggregateSince(CallLogWatermark since, CallLogAggregator aggregator, CallLogTable added,
+                                           int newestRows, CancellationToken token) {
+        if (!since.isKnown()) return null;
+        String[] past = {Long.toString(since.getLastId())};
+        String[] edited = {past[0], Long.toString(since.getLastModified())};
+        long newRows = count(CallLog.Calls._ID + " > ?", past);
+        if (!since.canExtend(count(null, null), newRows,
+                count(CallLog.Calls._ID + " <= ? AND " + CallLog.Calls.LAST_MODIFIED + " > ?", edited))) {
+            return null;
+        }
+        if (newRows == 0) return since;
+        CallLogWatermark read = aggregate(CallLog.Calls._ID + " > ?", past, aggregator, added, newestRows, token);
+        return since.extend(read.getRows(), read.getLastId(), read.getLastModified());
+    }
+
+    private CallLogWatermark aggregate(String selection, String[] args, CallLogAggregator aggregator,
+                                       CallLogTable newest, int newestRows, CancellationToken token) {
+        contacts = loadContactIndex();
+        contactCache.clear();
+        long rows = 0, maxId = 0, maxModified = 0;
+        long started = metrics.begin();
+        try (Cursor cursor = resolver.query(CallLog.Calls.CONTENT_URI, PROJECTION, selection, args, SORT_ORDER)) {
+            metrics.end(PerfMetrics.Stage.CURSOR_QUERY, started);
+            started = metrics.begin();
+            CanonicalSource source = cursor != null ? new CanonicalSource(cursor) : null;
+            while (source != null && source.next()) {
+                if ((++rows & 4095) == 0) token.throwIfCancelled();
+                byte type = CallLogTable.typeCode(source.type());
+                String number = source.number();
+                String name = source.name();
+                if (newest.size() < newestRows) {
+                    newest.append(source.id(), number, name, type, source.date(), source.duration());
+                }
+                aggregator.add(number, name, type, source.date(), source.duration());
+                maxId = Math.max(maxId, source.id());
+                maxModified = Math.max(maxModified, source.lastModified());
+            }
+            metrics.end(PerfMetrics.Stage.AGGREGATION, started, rows);
+            metrics.count(PerfMetrics.Counter.ROWS_READ, rows);
+        } finally {
+            normalizer.clear();
+            contactCache.clear();
+        }
+        token.throwIfCancelled();
+        return new CallLogWatermark(rows, maxId, maxModified);
+    }
+
+    // Rows matching the selection. Only the ids cross the Binder.
+    private long count(String selection, String[] args) {
+        try (Cursor cursor = resolver.query(
+                CallLog.Calls.CONTENT_URI, new String[]{CallLog.Calls._ID}, selection, args, null)) {
+            return cursor != null ? cursor.getCount() : 0;
+        }
+    }
+
+    // The watermark of what loadAll() and fetchDelta() have read, to save beside a snapshot of it
+    public CallLogWatermark getWatermark() {
+        return new CallLogWatermark(knownRows, lastId, lastModified);
+    }
+
+    /**
+     * Moves the watermark up to a saved one. After the newest calls are deleted the log no longer
+     * reaches the saved id and modification time, and a snapshot taken at a lower watermark would
+     * look older than the saved one to SnapshotStore. Raising it loses nothing: ids aren't reused
+     * and an edit moves LAST_MODIFIED past both.
+     */
+    public void keepAtLeast(CallLogWatermark saved) {
+        lastId = Math.max(lastId, saved.getLastId());
+        lastModified = Math.max(lastModified, saved.getLastModified());
+    }
+
+    private Cursor queryPage(String selection, String[] args, int limit) {
+        Uri uri = CallLog.Calls.CONTENT_URI.buildUpon()
+                .appendQueryParameter(CallLog.Calls.LIMIT_PARAM_KEY, Integer.toString(limit))
+                .build();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            Bundle queryArgs = new Bundle();
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+            queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, args);
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, SORT_ORDER);
+            queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
+            return resolver.query(uri, PROJECTION, queryArgs, null);
+        }
+        return resolver.query(uri, PROJECTION, selection, args, SORT_ORDER);
+    }
+
+    // Only rows past the watermark cross the Binder, so the cost tracks the size of the change
+    public Delta fetchDelta() {
+        Delta delta = new Delta();
+        String selection = CallLog.Calls._ID + " > ? OR " + CallLog.Calls.LAST_MODIFIED + " > ?";
+        String[] args = {Long.toString(lastId), Long.toString(lastModified)};
+        long started = metrics.begin();
+        try (Cursor cursor = resolver.query(
+                CallLog.Calls.CONTENT_URI, PROJECTION, selection, args, SORT_ORDER)) {
+            metrics.end(PerfMetrics.Stage.CURSOR_QUERY, started);
+            started = metrics.begin();
+            if (cursor != null) delta.upserts.appendAll(new TrackingSource(cursor, delta));
+        }
+        metrics.end(PerfMetrics.Stage.ROW_ITERATION, started, delta.upserts.size());
+        metrics.count(PerfMetrics.Counter.ROWS_READ, delta.upserts.size());
+
+        if (mirror != null) {
+            findDeletedInMirror(delta);
+            return delta;
+        }
+        // Deleted rows leave no trace, so only diff the ids when the row count moved
+        try (Cursor cursor = resolver.query(
+                CallLog.Calls.CONTENT_URI, new String[]{CallLog.Calls._ID}, null, null, null)) {
+            if (cursor != null && cursor.getCount() != knownRows) {
+                HashSet<Long> currentIds = new HashSet<>(cursor.getCount() * 2);
+                while (cursor.moveToNext()) {
+                    currentIds.add(cursor.getLong(0));
+                }
+                for (Iterator<Map.Entry<Long, Long>> it = knownDates.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<Long, Long> known = it.next();
+                    if (!currentIds.contains(known.getKey())) {
+                        delta.deletedIds.add(known.getKey());
+                        delta.previousDates.put(known.getKey(), known.getValue());
+                        it.remove();
+                        knownRows--;
+                    }
+                }
+            }
+        }
+        return delta;
+    }
+
+    // Database mode: one merge of the provider's ids against the mirror's, both in _id order, so neither
+    // side is held in memory. Runs before the delta goes into the mirror, so its new rows aren't there yet.
+    private void findDeletedInMirror(Delta delta) {
+        try (Cursor current = resolver.query(
+                CallLog.Calls.CONTENT_URI, new String[]{CallLog.Calls._ID}, null, null, CallLog.Calls._ID)) {
+            if (current == null || current.getCount() == knownRows) return;
+            try (Cursor known = mirror.idsAndDates()) {
+                boolean more = current.moveToNext();
+                while (known.moveToNext()) {
+                    long id = known.getLong(0);
+                    while (more && current.getLong(0) < id) more = current.moveToNext();
+                    if (more && current.getLong(0) == id) continue;
+                    delta.deletedIds.add(id);
+                    delta.previousDates.put(id, known.getLong(1));
+                    knownRows--;
+                }
+            }
+        }
+    }
+
+    // Canonicalizes the numbers as rows stream past, and names them by the canonical number
+    private class CanonicalSource extends CursorCallRecordSource {
+
+        private String number;
+
+        CanonicalSource(Cursor cursor) {
+            super(cursor, CallLogSync.this::getContactName);
+        }
+
+        @Override
+        public boolean next() {
+            if (!super.next()) return false;
+            number = normalizer.normalize(super.number());
+            return true;
+        }
+
+        @Override public String number() { return number; }
+        @Override public String name() { return getContactName(number); }
+    }
+
+    // Also advances the watermark and the known ids, and notes in the delta, if any, which rows were
+    // read before
+    private class TrackingSource extends CanonicalSource {
+
+        private final Delta delta;
+        private final long knownUpTo = lastId; // Rows past it are new, so the mirror needn't be asked
+
+        TrackingSource(Cursor cursor, Delta delta) {
+            super(cursor);
+            this.delta = delta;
+        }
+
+        @Override
+        public boolean next() {
+            if (!super.next()) return false;
+            long id = id();
+            pageEndDate = date();
+            pageEndId = id;
+            Long previousDate;
+            if (mirror == null) previousDate = knownDates.put(id, pageEndDate);
+            else previousDate = delta != null && id <= knownUpTo ? mirror.dateOf(id) : null;
+            if (previousDate == null) knownRows++;
+            else if (delta != null) delta.previousDates.put(id, previousDate);
+            lastId = Math.max(lastId, id);
+            CallLogSync.this.lastModified = Math.max(CallLogSync.this.lastModified, lastModified());
+            return true;
+        }
+    }
+
+    // Reads the Phone data table once so each call log row is an in-memory lookup
+    private ContactIndex loadContactIndex() {
+        ContactIndex index = new ContactIndex();
+        long started = metrics.begin();
+        String[] projection = {
+                ContactsContract.CommonDataKinds.Phone.NUMBER,
+                ContactsContract.CommonDataKinds.Phone.NORMALIZED_NUMBER,
+                ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME
+        };
+        try (Cursor cursor = resolver.query(
+                ContactsContract.CommonDataKinds.Phone.CONTENT_URI, projection, null, null, null)) {
+            if (cursor == null) return index;
+
+            int numberIndex = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.NUMBER);
+            int normalizedIndex = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.NORMALIZED_NUMBER);
+            int nameIndex = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME);
+
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(nameIndex);
+                index.add(cursor.getString(numberIndex), name);
+                index.add(cursor.getString(normalizedIndex), name);
+            }
+        }
+        metrics.end(PerfMetrics.Stage.CONTACT_INDEX, started, index.size());
+        return index;
+    }
+
+    // The network's country, else the SIM's, else the locale's
+    static String defaultRegion(Context context) {
+        TelephonyManager telephony = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        if (telephony != null) {
+            String network = telephony.getNetworkCountryIso();
+            if (NumberNormalizer.isSupportedRegion(network)) return network;
+            String sim = telephony.getSimCountryIso();
+            if (NumberNormalizer.isSupportedRegion(sim)) return sim;
+        }
+        return Locale.getDefault().getCountry();
+    }
+
+    private String getContactName(String phoneNumber) {
+        metrics.count(PerfMetrics.Counter.CONTACT_LOOKUPS, 1);
+        if (contactCache.containsKey(phoneNumber)) {
+            metrics.count(PerfMetrics.Counter.CONTACT_CACHE_HITS, 1);
+            return contactCache.get(phoneNumber);
+        }
+        long started = metrics.begin();
+        String name = contacts.lookup(phoneNumber);
+        if (name == null) name = phoneNumber;
+        contactCache.put(phoneNumber, name);
+        metrics.countSince(PerfMetrics.Counter.CONTACT_LOOKUP_NANOS, started);
+        return name;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.phonecallloganalyzer;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.TextView;
+
+import com.github.mikephil.charting.charts.BarChart;
+import com.google.android.material.bottomsheet.BottomSheetDialog;
+
+// One contact's counts, duration percentiles and duration histogram, from the snapshot on screen,
+// and how their missed calls were returned when callback stats are at hand
+final class ContactDetailSheet {
+
+    private ContactDetailSheet() {}
+
+    static void show(Context context, ContactStats stats) {
+        show(context, stats, null);
+    }
+
+    static void show(Context context, ContactStats stats, CallbackStats callbacks) {
+        View view = LayoutInflater.from(context).inflate(R.layout.sheet_contact_detail, null);
+        CallLogFormatter formatter = new CallLogFormatter();
+        StringBuilder text = new StringBuilder(64);
+
+        ((TextView) view.findViewById(R.id.detailName)).setText(stats.getName());
+        ((TextView) view.findViewById(R.id.detailNumber)).setText(stats.getNumber());
+        text.append(stats.getCount()).append(" calls · ").append(stats.getMissedCount()).append(" missed · ");
+        formatter.appendStatsDuration(text, stats.getTotalDuration()).append(" in total");
+        ((TextView) view.findViewById(R.id.detailCounts)).setText(text);
+        text.setLength(0);
+        DurationCharts.appendSummary(text, stats.getDurations(), formatter);
+        ((TextView) view.findViewById(R.id.detailDurations)).setText(text);
+        TextView callbackText = view.findViewById(R.id.detailCallbacks);
+        if (callbacks != null) {
+            text.setLength(0);
+            callbackText.setText(DurationCharts.appendCallbackSummary(text, callbacks));
+        } else {
+            callbackText.setVisibility(View.GONE);
+        }
+
+        BarChart histogram = view.findViewById(R.id.detailHistogram);
+        if (stats.getDurations().isEmpty()) histogram.setVisibility(View.GONE);
+        else DurationCharts.bindHistogram(histogram, stats.getDurations(), formatter);
+
+        BottomSheetDialog dialog = new BottomSheetDialog(context);
+        dialog.setContentView(view);
+        dialog.show();
+    }
+}
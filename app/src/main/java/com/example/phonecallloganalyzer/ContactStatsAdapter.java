@@ -0,0 +1,103 @@
+package com.example.phonecallloganalyzer;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Objects;
+
+// "Detailed Statistics" rows. submitList() diffs on a background thread, so a refresh only rebinds contacts whose stats changed.
+public class ContactStatsAdapter extends ListAdapter<ContactStatsRow, ContactStatsAdapter.ViewHolder> {
+
+    private static final DiffUtil.ItemCallback<ContactStatsRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<ContactStatsRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ContactStatsRow oldItem, @NonNull ContactStatsRow newItem) {
+            return Objects.equals(oldItem.getNumber(), newItem.getNumber());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ContactStatsRow oldItem, @NonNull ContactStatsRow newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    public interface OnContactClickListener {
+        void onContactClick(ContactStatsRow row);
+    }
+
+    private final CallLogFormatter formatter = new CallLogFormatter();
+    private final StringBuilder text = new StringBuilder(48);
+    private OnContactClickListener clickListener;
+
+    public ContactStatsAdapter() {
+        super(DIFF_CALLBACK);
+    }
+
+    public void setOnContactClickListener(OnContactClickListener listener) {
+        clickListener = listener;
+    }
+
+    // The locale changed, so the digits in the durations may have too
+    public void onTimeSettingsChanged() {
+        formatter.reset();
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View v = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_contact_stats, parent, false);
+        ViewHolder holder = new ViewHolder(v);
+        v.setOnClickListener(view -> {
+            int position = holder.getBindingAdapterPosition();
+            if (clickListener != null && position != RecyclerView.NO_POSITION) {
+                clickListener.onContactClick(getItem(position));
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        ContactStatsRow row = getItem(position);
+        holder.nameText.setText(row.getName());
+        holder.numberText.setText(row.getNumber());
+        text.setLength(0);
+        text.append("📞 ").append(row.getCount()).append(" Calls");
+        holder.countChars = CallLogAdapter.setText(holder.tvCallCount, holder.countChars, text);
+        text.setLength(0);
+        formatter.appendStatsDuration(text.append("⏱ "), row.getTotalDuration());
+        holder.durationChars = CallLogAdapter.setText(holder.tvTotalDuration, holder.durationChars, text);
+        text.setLength(0);
+        if (row.getMedianDuration() == 0) {
+            text.append("No connected calls");
+        } else {
+            formatter.appendLogDuration(text.append("Median "), row.getMedianDuration());
+            formatter.appendLogDuration(text.append(" · 90% under "), row.getP90Duration());
+        }
+        holder.spreadChars = CallLogAdapter.setText(holder.tvDurationSpread, holder.spreadChars, text);
+    }
+
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView nameText, numberText;
+        final TextView tvCallCount, tvTotalDuration, tvDurationSpread;
+        char[] countChars = new char[24];
+        char[] durationChars = new char[24];
+        char[] spreadChars = new char[48];
+
+        public ViewHolder(View itemView) {
+            super(itemView);
+            nameText = itemView.findViewById(R.id.tvName);
+            numberText = itemView.findViewById(R.id.tvNumber);
+            tvCallCount = itemView.findViewById(R.id.tvCallCount);
+            tvTotalDuration = itemView.findViewById(R.id.tvTotalDuration);
+            tvDurationSpread = itemView.findViewById(R.id.tvDurationSpread);
+        }
+    }
+}
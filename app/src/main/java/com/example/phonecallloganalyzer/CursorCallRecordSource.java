@@ -0,0 +1,41 @@
+package com.example.phonecallloganalyzer;
+
+import android.database.Cursor;
+import android.provider.CallLog;
+
+import java.util.function.Function;
+
+// CallRecordSource over a CallLog.Calls cursor. Names come from the given resolver.
+public class CursorCallRecordSource implements CallRecordSource {
+
+    private final Cursor cursor;
+    private final Function<String, String> nameResolver;
+    private final int idIndex, numberIndex, typeIndex, dateIndex, durationIndex, modifiedIndex;
+
+    public CursorCallRecordSource(Cursor cursor, Function<String, String> nameResolver) {
+        this.cursor = cursor;
+        this.nameResolver = nameResolver;
+        idIndex = cursor.getColumnIndex(CallLog.Calls._ID);
+        numberIndex = cursor.getColumnIndex(CallLog.Calls.NUMBER);
+        typeIndex = cursor.getColumnIndex(CallLog.Calls.TYPE);
+        dateIndex = cursor.getColumnIndex(CallLog.Calls.DATE);
+        durationIndex = cursor.getColumnIndex(CallLog.Calls.DURATION);
+        modifiedIndex = cursor.getColumnIndex(CallLog.Calls.LAST_MODIFIED);
+    }
+
+    @Override
+    public boolean next() {
+        return cursor.moveToNext();
+    }
+
+    @Override public long id() { return cursor.getLong(idIndex); }
+    @Override public String number() { return cursor.getString(numberIndex); }
+    @Override public String name() { return nameResolver.apply(cursor.getString(numberIndex)); }
+    @Override public int type() { return cursor.getInt(typeIndex); }
+    @Override public long date() { return cursor.getLong(dateIndex); }
+    @Override public int duration() { return cursor.getInt(durationIndex); }
+
+    public long lastModified() {
+        return modifiedIndex >= 0 ? cursor.getLong(modifiedIndex) : 0;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.phonecallloganalyzer;
+
+import android.graphics.Color;
+import android.graphics.Typeface;
+
+import com.github.mikephil.charting.data.BarData;
+import com.github.mikephil.charting.data.BarDataSet;
+import com.github.mikephil.charting.data.BarEntry;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
+import com.github.mikephil.charting.data.PieData;
+import com.github.mikephil.charting.data.PieDataSet;
+import com.github.mikephil.charting.data.PieEntry;
+import com.github.mikephil.charting.formatter.ValueFormatter;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Everything the dashboard shows for one snapshot, prepared on the loader
+ * thread: chart data, titles, the sorted stats rows and the rows of the log
+ * list. The main thread attaches these to its views and styles them; it never
+ * walks the contacts or the table itself.
+ *
+ * Immutable once built. Chart data objects are only ever handed to one chart.
+ */
+final class DashboardModel {
+
+    static final int VOLUME_CHART_DAYS = 90;
+    private static final long DAY_MS = 86_400_000L;
+
+    private static final int[] BAR_CHART_COLORS = {
+            Color.rgb(0, 227, 150),
+            Color.rgb(0, 184, 212),
+            Color.rgb(0, 145, 234),
+            Color.rgb(48, 79, 254),
+            Color.rgb(98, 0, 234)
+    };
+    private static final int[] PIE_CHART_COLORS = {
+            Color.rgb(0, 227, 150), // Teal
+            Color.rgb(0, 184, 212), // Cyan
+            Color.rgb(255, 64, 129)  // Pink
+    };
+
+    // The log list: rows of the table in display order, or the whole table when null
+    final CallLogTable table;
+    final int[] rows;
+    final CallLogSnapshot snapshot;
+    final List<ContactStatsRow> statsRows;
+
+    final ContactRanking ranking;
+    final int barCount;
+    final int barLimit; // Bars actually drawn, at most barCount
+    final String barTitle;
+    final BarData barData;
+    final List<String> barLabels; // Bottom bar first, as the axis counts
+
+    final PieData pieData;
+
+    final String volumeTitle;
+    final LineData volumeData;
+    final ValueFormatter volumeLabels;
+
+    final String durationSummary;
+    final DurationCharts.Histogram durationHistogram; // Null with no connected calls
+
+    private DashboardModel(DashboardModel base, ContactRanking ranking, int barCount) {
+        this.table = base.table;
+        this.rows = base.rows;
+        this.snapshot = base.snapshot;
+        this.statsRows = base.statsRows;
+        this.pieData = base.pieData;
+        this.volumeTitle = base.volumeTitle;
+        this.volumeData = base.volumeData;
+        this.volumeLabels = base.volumeLabels;
+        this.durationSummary = base.durationSummary;
+        this.durationHistogram = base.durationHistogram;
+
+        this.ranking = ranking;
+        this.barCount = barCount;
+        List<ContactStats> topContacts = snapshot.getTopContacts(ranking);
+        this.barLimit = Math.min(topContacts.size(), barCount);
+        List<BarEntry> entries = new ArrayList<>(barLimit);
+        List<String> labels = new ArrayList<>(barLimit);
+        for (int i = 0; i < barLimit; i++) {
+            ContactStats stats = topContacts.get(i);
+            entries.add(new BarEntry(barLimit - 1 - i, barValue(stats, ranking), stats)); // Tapping a bar filters by that contact
+            labels.add(stats.getName());
+        }
+        Collections.reverse(labels);
+        this.barLabels = labels;
+
+        final String unit;
+        switch (ranking) {
+            case CALL_COUNT:
+                barTitle = "Top Contacts by Calls";
+                unit = "calls";
+                break;
+            case MISSED_COUNT:
+                barTitle = "Top Contacts by Missed Calls";
+                unit = "missed";
+                break;
+            default:
+                barTitle = "Top Contacts by Duration";
+                unit = "min";
+                break;
+        }
+        BarDataSet dataSet = new BarDataSet(entries, "Top Contacts (" + unit + ")");
+        dataSet.setColors(BAR_CHART_COLORS);
+        dataSet.setValueTextColor(Color.WHITE);
+        dataSet.setValueTextSize(12f);
+        dataSet.setValueTypeface(Typeface.DEFAULT_BOLD);
+        dataSet.setValueFormatter(new ValueFormatter() {
+            @Override
+            public String getFormattedValue(float value) {
+                return String.format("%.0f " + unit, value);
+            }
+        });
+        this.barData = new BarData(dataSet);
+        barData.setBarWidth(0.6f);
+    }
+
+    private DashboardModel(CallLogTable table, int[] rows, CallLogSnapshot snapshot, CallLogFormatter formatter, long now) {
+        this.table = table;
+        this.rows = rows;
+        this.snapshot = snapshot;
+        // One row per contact, sorted alphabetically by name; the adapter diffs it against the current list
+        this.statsRows = Collections.unmodifiableList(StatsListBuilder.build(snapshot.getContactStats().values()));
+        this.pieData = pieData(snapshot.getIncomingCalls(), snapshot.getOutgoingCalls(), snapshot.getMissedCalls());
+
+        // One point per day from the rollups, so the cost is the number of days shown, not calls
+        CallRollups rollups = snapshot.getRollups();
+        int lastDay = rollups.localDay(now);
+        int firstDay = lastDay - VOLUME_CHART_DAYS + 1;
+        List<Entry> entries = new ArrayList<>(VOLUME_CHART_DAYS);
+        for (int day = firstDay; day <= lastDay; day++) {
+            entries.add(new Entry(day - firstDay, rollups.getDayCount(day)));
+        }
+        this.volumeTitle = "Calls per Day (" + rollups.countBetweenDays(firstDay, lastDay)
+                + " in the last " + VOLUME_CHART_DAYS + " days)";
+        LineDataSet dataSet = new LineDataSet(entries, "Calls per day");
+        dataSet.setColor(Color.rgb(0, 184, 212));
+        dataSet.setLineWidth(2f);
+        dataSet.setDrawCircles(false);
+        dataSet.setDrawValues(false);
+        dataSet.setDrawFilled(true);
+        dataSet.setFillColor(Color.rgb(0, 184, 212));
+        dataSet.setMode(LineDataSet.Mode.HORIZONTAL_BEZIER);
+        this.volumeData = new LineData(dataSet);
+        // Day buckets are local midnights, so label them as UTC dates
+        SimpleDateFormat labelFormat = new SimpleDateFormat("dd MMM", Locale.getDefault());
+        labelFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        this.volumeLabels = new ValueFormatter() {
+            @Override
+            public String getFormattedValue(float value) {
+                return labelFormat.format((firstDay + (long) value) * DAY_MS);
+            }
+        };
+
+        // Percentiles and histogram of every connected call, from the snapshot's sketch
+        DurationSketch durations = snapshot.getDurations();
+        this.durationSummary = DurationCharts.appendSummary(new StringBuilder(), durations, formatter).toString();
+        this.durationHistogram = durations.isEmpty() ? null : DurationCharts.histogram(durations, formatter);
+
+        this.ranking = null;
+        this.barCount = 0;
+        this.barLimit = 0;
+        this.barTitle = null;
+        this.barData = null;
+        this.barLabels = null;
+    }
+
+    // Loader thread. The formatter must belong to the calling thread.
+    static DashboardModel build(CallLogTable table, int[] rows, CallLogSnapshot snapshot,
+                                ContactRanking ranking, int barCount, CallLogFormatter formatter, long now) {
+        return new DashboardModel(new DashboardModel(table, rows, snapshot, formatter, now), ranking, barCount);
+    }
+
+    // Same snapshot with another leaderboard; the rest is shared, not rebuilt
+    DashboardModel withBars(ContactRanking ranking, int barCount) {
+        if (ranking == this.ranking && barCount == this.barCount) return this;
+        return new DashboardModel(this, ranking, barCount);
+    }
+
+    private static float barValue(ContactStats stats, ContactRanking ranking) {
+        switch (ranking) {
+            case CALL_COUNT: return stats.getCount();
+            case MISSED_COUNT: return stats.getMissedCount();
+            default: return stats.getTotalDuration() / 60f;
+        }
+    }
+
+    // The percent formatter needs the chart, so MainActivity sets it when binding
+    private static PieData pieData(int incoming, int outgoing, int missed) {
+        ArrayList<PieEntry> entries = new ArrayList<>();
+        if (incoming > 0) entries.add(new PieEntry(incoming, "Incoming"));
+        if (outgoing > 0) entries.add(new PieEntry(outgoing, "Outgoing"));
+        if (missed > 0) entries.add(new PieEntry(missed, "Missed"));
+
+        PieDataSet dataSet = new PieDataSet(entries, "");
+        dataSet.setColors(PIE_CHART_COLORS);
+        dataSet.setValueTextColor(Color.WHITE);
+        dataSet.setValueTextSize(16f);
+        dataSet.setValueTypeface(Typeface.DEFAULT_BOLD);
+        dataSet.setSliceSpace(3f);
+        dataSet.setValueLinePart1OffsetPercentage(80.f);
+        dataSet.setValueLinePart1Length(0.3f);
+        dataSet.setValueLinePart2Length(0.3f);
+        dataSet.setValueLineColor(Color.WHITE);
+        dataSet.setYValuePosition(PieDataSet.ValuePosition.OUTSIDE_SLICE);
+        return new PieData(dataSet);
+    }
+
+    /**
+     * The missed-call callback panel, which covers the whole history whatever
+     * the filter, so it is prepared on its own after each full load or sync.
+     */
+    static final class Callbacks {
+        final CallbackSnapshot snapshot;
+        final String summary;
+        final DurationCharts.Histogram waits; // Null when no missed call was returned
+
+        Callbacks(CallbackSnapshot snapshot) {
+            this.snapshot = snapshot;
+            CallbackStats overall = snapshot.getOverall();
+            // Median and p90 wait for a callback, the share never returned, and the spread of the waits
+            this.summary = DurationCharts.appendCallbackSummary(new StringBuilder(), overall).toString();
+            this.waits = overall.getLatencies().isEmpty() ? null : DurationCharts.waitHistogram(overall.getLatencies());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.phonecallloganalyzer;
+
+import android.graphics.Color;
+
+import com.github.mikephil.charting.charts.BarChart;
+import com.github.mikephil.charting.components.XAxis;
+import com.github.mikephil.charting.components.YAxis;
+import com.github.mikephil.charting.data.BarData;
+import com.github.mikephil.charting.data.BarDataSet;
+import com.github.mikephil.charting.data.BarEntry;
+import com.github.mikephil.charting.formatter.IndexAxisValueFormatter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// Shared by the dashboard and the contact sheet: a DurationSketch as a summary line and a histogram.
+// Call durations and callback waits are both sketches of seconds.
+final class DurationCharts {
+
+    private DurationCharts() {}
+
+    // "Median 2m 10s · 90% under 8m 3s · Longest 41m 0s", or a placeholder with no connected calls
+    static StringBuilder appendSummary(StringBuilder out, DurationSketch durations, CallLogFormatter formatter) {
+        if (durations.isEmpty()) return out.append("No connected calls");
+        formatter.appendLogDuration(out.append("Median "), durations.getMedian());
+        formatter.appendLogDuration(out.append(" · 90% under "), durations.getP90());
+        return formatter.appendLogDuration(out.append(" · Longest "), durations.getMax());
+    }
+
+    // "Median wait 12m · 90% within 5h · 3 of 10 never returned", or a placeholder with no missed calls
+    static StringBuilder appendCallbackSummary(StringBuilder out, CallbackStats callbacks) {
+        if (callbacks.getMissed() == 0) return out.append("No missed calls");
+        DurationSketch waits = callbacks.getLatencies();
+        if (!waits.isEmpty()) {
+            out.append("Median wait ").append(formatWait(waits.getMedian()));
+            out.append(" · 90% within ").append(formatWait(waits.getP90())).append(" · ");
+        }
+        return out.append(callbacks.getUnreturned()).append(" of ").append(callbacks.getMissed())
+                .append(" never returned");
+    }
+
+    // Waits run from seconds to weeks, so only the largest unit is shown: "45s", "12m", "5h", "3d"
+    static String formatWait(int seconds) {
+        if (seconds < 60) return seconds + "s";
+        if (seconds < 3600) return seconds / 60 + "m";
+        if (seconds < 86_400) return seconds / 3600 + "h";
+        return seconds / 86_400 + "d";
+    }
+
+    // Bars and their labels, built off the main thread and attached to a chart later by bind()
+    static final class Histogram {
+        final BarData data;
+        final List<String> labels;
+
+        Histogram(BarData data, List<String> labels) {
+            this.data = data;
+            this.labels = labels;
+        }
+    }
+
+    static void bindHistogram(BarChart chart, DurationSketch durations, CallLogFormatter formatter) {
+        bind(chart, histogram(durations, formatter));
+    }
+
+    static Histogram histogram(DurationSketch durations, CallLogFormatter formatter) {
+        return histogram(durations, end -> formatter.formatLogDuration(end).replace(" 0s", ""));
+    }
+
+    static Histogram waitHistogram(DurationSketch waits) {
+        return histogram(waits, DurationCharts::formatWait);
+    }
+
+    // One bar for values under 8 s, then one per doubling up to the largest. The sketch has
+    // four buckets per doubling, so the bars add them up exactly.
+    private static Histogram histogram(DurationSketch durations, IntFunction<String> label) {
+        List<BarEntry> entries = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        int limit = durations.bucketLimit();
+        int calls = 0;
+        for (int bucket = 1; bucket < limit; bucket++) {
+            calls += durations.countAt(bucket);
+            boolean lastOfBar = bucket + 1 == limit || bucket + 1 == DurationSketch.EXACT
+                    || (bucket >= DurationSketch.EXACT && (bucket - DurationSketch.EXACT) % 4 == 3);
+            if (!lastOfBar) continue;
+            entries.add(new BarEntry(entries.size(), calls));
+            int end = (int) Math.min(Integer.MAX_VALUE, DurationSketch.upperBound(bucket) + 1L);
+            labels.add(label.apply(end));
+            calls = 0;
+        }
+
+        BarDataSet dataSet = new BarDataSet(entries, "Calls");
+        dataSet.setColor(Color.rgb(0, 184, 212));
+        dataSet.setDrawValues(false);
+        BarData data = new BarData(dataSet);
+        data.setBarWidth(0.8f);
+        return new Histogram(data, labels);
+    }
+
+    // Main thread
+    static void bind(BarChart chart, Histogram histogram) {
+        chart.getDescription().setEnabled(false);
+        chart.getLegend().setEnabled(false);
+        chart.setFitBars(true);
+        XAxis xAxis = chart.getXAxis();
+        // Each bar is labelled with where it ends: "under 16s", "under 32s", ...
+        xAxis.setValueFormatter(new IndexAxisValueFormatter(histogram.labels));
+        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
+        xAxis.setDrawGridLines(false);
+        xAxis.setGranularity(1f);
+        xAxis.setTextColor(Color.WHITE);
+        YAxis leftAxis = chart.getAxisLeft();
+        leftAxis.setDrawGridLines(false);
+        leftAxis.setTextColor(Color.WHITE);
+        leftAxis.setAxisMinimum(0f);
+        chart.getAxisRight().setEnabled(false);
+        chart.setData(histogram.data);
+        chart.invalidate();
+    }
+}
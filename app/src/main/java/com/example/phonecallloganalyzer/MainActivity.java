@@ -1,20 +1,27 @@
 package com.example.phonecallloganalyzer;
 
 import android.Manifest;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
+import android.database.ContentObserver;
 import android.graphics.Color;
-import android.graphics.Typeface;
-import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.provider.CallLog;
-import android.provider.ContactsContract;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.ProgressBar;
+import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
@@ -22,33 +29,43 @@ import androidx.core.widget.NestedScrollView;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.material.button.MaterialButtonToggleGroup;
+import com.google.android.material.chip.Chip;
+import com.google.android.material.chip.ChipGroup;
+import com.google.android.material.materialswitch.MaterialSwitch;
+
+import com.github.mikephil.charting.charts.BarChart;
 import com.github.mikephil.charting.charts.HorizontalBarChart;
+import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.charts.PieChart;
 import com.github.mikephil.charting.components.Legend;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
-import com.github.mikephil.charting.data.BarData;
-import com.github.mikephil.charting.data.BarDataSet;
-import com.github.mikephil.charting.data.BarEntry;
+import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.PieData;
-import com.github.mikephil.charting.data.PieDataSet;
-import com.github.mikephil.charting.data.PieEntry;
 import com.github.mikephil.charting.formatter.IndexAxisValueFormatter;
 import com.github.mikephil.charting.formatter.PercentFormatter;
-import com.github.mikephil.charting.formatter.ValueFormatter;
+import com.github.mikephil.charting.highlight.Highlight;
+import com.github.mikephil.charting.listener.OnChartValueSelectedListener;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final int REQUEST_CODE = 100;
+    private static final String TAG = "MainActivity";
+    static final int TOP_CONTACTS = 25; // Largest leaderboard the bar chart offers
+    static final int SAVED_ROWS = 500; // Newest rows kept with the saved snapshot for the next cold start
+    static final String SNAPSHOT_FILE = "call-log-snapshot.bin"; // In the no-backup dir; SnapshotWorker keeps it warm
+    private static final int DATABASE_LIST_ROWS = 2_000; // Newest matching rows held in memory in database mode
+    private static final String SETTINGS = "settings";
+    private static final String KEY_DATABASE_MODE = "database_mode";
+    private static final long DAY_MS = 86_400_000L;
 
     // UI Views
     private RecyclerView recyclerView;
@@ -59,17 +76,84 @@ public class MainActivity extends AppCompatActivity {
     private NestedScrollView statsContainer;
     private HorizontalBarChart barChart;
     private PieChart pieChart;
+    private CallHeatmapView hourHeatmap;
+    private LineChart volumeChart;
+    private BarChart durationChart, callbackChart;
+    private TextView barChartTitle, volumeChartTitle, detailedStatsTitle, durationSummary, approximateStatsLink;
+    private TextView callbackSummary;
+    private MaterialButtonToggleGroup topCountToggle, rankingToggle;
+    private ChipGroup rangeChips, typeChips;
+    private Chip contactChip;
+    private MaterialSwitch databaseModeSwitch;
+    private EditText searchField;
 
     // Data
-    private List<CallLogItem> callLogList = new ArrayList<>();
     private CallLogAdapter adapter;
-    private HashMap<String, ContactStats> statsMap = new HashMap<>();
-    private int incomingCalls = 0, outgoingCalls = 0, missedCalls = 0;
+    private ContactStatsAdapter statsAdapter;
+    private DashboardModel dashboard; // What the dashboard shows, filtered or not
+    private CallbackSnapshot callbacks; // Whole history, whatever the filter; null until the first full load
+    private CallLogFilter filter = CallLogFilter.ALL;
+    private String searchQuery = ""; // Narrows the dashboard's rows and stats list; empty shows them as they are
+    private long snapshotVersion = -1; // Of the shown snapshot in StatsRepository
+    private int barChartCount = 5;
+    private ContactRanking barChartRanking = ContactRanking.TOTAL_DURATION;
     private boolean isDataLoaded = false;
+    private long loadVersion = -1; // Of the full scan last started, so a joined trigger doesn't restart the spinner
+    private int publishedRows; // Loader thread only: rows in the last partial list handed to the adapter
+    private CallLogSync callLogSync;
+    private SnapshotStore snapshotStore; // Loader thread only
+    private CallLogDatabase database; // Loader thread only
+    private boolean databaseMode; // History in SQLite rather than in liveTable
+    private boolean isObservingCallLog = false;
+
+    // The whole history as last loaded or synced. Loader thread only: the main thread sees it
+    // through the DashboardModels built from it. In database mode the table holds the newest rows.
+    private CallLogTable liveTable;
+    private CallLogAggregator liveAggregator; // In database mode the full load's GROUP BY totals, patched the same way
+    private CallbackTracker liveCallbacks; // The full pass's state, new calls fold into it
+    private CallLogSnapshot liveSnapshot;
+    private CallLogIndex liveIndex; // Built on the first filtered view, dropped when the table changes
+    private DashboardModel builtModel; // Last one built, reused while only the bar chart options change
+    private CallLogFilter builtFilter;
+    // Search indexes, loader thread only. The live one follows liveTable in memory mode: copies keep the
+    // contact refs, so it only ever adds new contacts. Any other table searched (the saved snapshot's
+    // rows, a database page, a live table a sync has since replaced) gets an index of its own, kept
+    // until another table is searched.
+    private SearchIndex liveSearchIndex; // Null in database mode
+    private SearchIndex otherSearchIndex;
+    private CallLogTable otherSearchTable;
 
     // Threading
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
     private final Handler handler = new Handler(Looper.getMainLooper());
+    private final CallLogFormatter modelFormatter = new CallLogFormatter(); // Loader thread only
+    private final PerfMetrics metrics = PerfMetrics.getInstance();
+    private final Runnable syncRunnable = this::syncCallLogsInBackground;
+    // One lane per kind of work. A result only reaches the UI if nothing newer replaced its request.
+    private final LoadScheduler<LoadResult> loads = new LoadScheduler<>(executor, handler::post);
+    private final LoadScheduler<CallLogSync.Delta> syncs = new LoadScheduler<>(executor, handler::post);
+    private final LoadScheduler<DashboardModel> dashboards = new LoadScheduler<>(executor, handler::post);
+    private final LoadScheduler<DashboardModel.Callbacks> callbackRuns = new LoadScheduler<>(executor, handler::post);
+    private final LoadScheduler<SearchResult> searches = new LoadScheduler<>(executor, handler::post);
+
+    // The provider fires several notifications per call, so wait for them to settle
+    private final ContentObserver callLogObserver = new ContentObserver(handler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            handler.removeCallbacks(syncRunnable);
+            handler.postDelayed(syncRunnable, 500);
+        }
+    };
+
+    // Formatters cache day boundaries and localized text, so they start over when any of these change
+    private final BroadcastReceiver timeSettingsReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            adapter.onTimeSettingsChanged();
+            statsAdapter.onTimeSettingsChanged();
+            executor.execute(modelFormatter::reset);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -86,19 +170,164 @@ public class MainActivity extends AppCompatActivity {
         statsContainer = findViewById(R.id.statsContainer);
         barChart = findViewById(R.id.barChart);
         pieChart = findViewById(R.id.pieChart);
+        hourHeatmap = findViewById(R.id.hourHeatmap);
+        volumeChart = findViewById(R.id.volumeChart);
+        durationChart = findViewById(R.id.durationChart);
+        durationSummary = findViewById(R.id.durationSummary);
+        callbackChart = findViewById(R.id.callbackChart);
+        callbackSummary = findViewById(R.id.callbackSummary);
+        barChartTitle = findViewById(R.id.barChartTitle);
+        volumeChartTitle = findViewById(R.id.volumeChartTitle);
+        detailedStatsTitle = findViewById(R.id.detailedStatsTitle);
+        approximateStatsLink = findViewById(R.id.approximateStatsLink);
+        topCountToggle = findViewById(R.id.topCountToggle);
+        rankingToggle = findViewById(R.id.rankingToggle);
+        rangeChips = findViewById(R.id.rangeChips);
+        typeChips = findViewById(R.id.typeChips);
+        contactChip = findViewById(R.id.contactChip);
+        databaseModeSwitch = findViewById(R.id.databaseModeSwitch);
+        searchField = findViewById(R.id.searchField);
 
         // Setup RecyclerView
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        adapter = new CallLogAdapter(callLogList);
+        adapter = new CallLogAdapter();
         recyclerView.setAdapter(adapter);
+        statsAdapter = new ContactStatsAdapter();
+        statsAdapter.setOnContactClickListener(row -> {
+            ContactStats stats = dashboard != null ? dashboard.snapshot.getContactStats().get(row.getNumber()) : null;
+            if (stats != null) {
+                ContactDetailSheet.show(this, stats, callbacks != null ? callbacks.get(row.getNumber()) : null);
+            }
+        });
+        statsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        statsRecyclerView.setAdapter(statsAdapter);
+
+        callLogSync = new CallLogSync(this);
+        snapshotStore = new SnapshotStore(new File(getNoBackupFilesDir(), SNAPSHOT_FILE));
+        database = new CallLogDatabase(this); // Opened on first use, on the loader thread
+        PerfMetricsActivity.restoreEnabled(this);
+        SharedPreferences settings = getSharedPreferences(SETTINGS, MODE_PRIVATE);
+        databaseMode = settings.getBoolean(KEY_DATABASE_MODE, false);
+        databaseModeSwitch.setChecked(databaseMode);
+        databaseModeSwitch.setOnCheckedChangeListener((button, checked) -> {
+            if (checked == databaseMode) return;
+            databaseMode = checked;
+            settings.edit().putBoolean(KEY_DATABASE_MODE, checked).apply();
+            if (!checked) {
+                // Don't leave a copy of the call log behind
+                executor.execute(() -> {
+                    database.close();
+                    deleteDatabase(CallLogDatabase.NAME);
+                });
+            }
+            // A scan already running in the old mode is cancelled between pages
+            if (isDataLoaded || !loads.isIdle()) {
+                isDataLoaded = false;
+                startLoad(true);
+            }
+        });
 
         // Setup Click Listeners
         btnShowLogs.setOnClickListener(v -> showLogsView());
         btnShowStats.setOnClickListener(v -> showStatsView());
+        detailedStatsTitle.setOnClickListener(v -> {
+            if (dashboard != null) startActivity(StatisticsActivity.newIntent(this, snapshotVersion));
+        });
+        approximateStatsLink.setOnClickListener(v -> startActivity(ApproximateStatsActivity.newIntent(this)));
+        // Hidden: timings of the load stages, for finding where a slow load goes
+        detailedStatsTitle.setOnLongClickListener(v -> {
+            startActivity(PerfMetricsActivity.newIntent(this));
+            return true;
+        });
+        topCountToggle.addOnButtonCheckedListener((group, checkedId, isChecked) -> {
+            if (!isChecked) return;
+            if (checkedId == R.id.top10Button) barChartCount = 10;
+            else if (checkedId == R.id.top25Button) barChartCount = 25;
+            else barChartCount = 5;
+            refreshDashboard(false);
+        });
+        rankingToggle.addOnButtonCheckedListener((group, checkedId, isChecked) -> {
+            if (!isChecked) return;
+            if (checkedId == R.id.rankCallsButton) barChartRanking = ContactRanking.CALL_COUNT;
+            else if (checkedId == R.id.rankMissedButton) barChartRanking = ContactRanking.MISSED_COUNT;
+            else barChartRanking = ContactRanking.TOTAL_DURATION;
+            refreshDashboard(false);
+        });
+
+        rangeChips.setOnCheckedStateChangeListener((group, checkedIds) -> {
+            int checkedId = group.getCheckedChipId();
+            int days = checkedId == R.id.range7Chip ? 7 : checkedId == R.id.range30Chip ? 30
+                    : checkedId == R.id.range90Chip ? 90 : 0;
+            long from = days == 0 ? Long.MIN_VALUE : System.currentTimeMillis() - days * DAY_MS;
+            filter = filter.withDateRange(from, Long.MAX_VALUE);
+            refreshDashboard(false);
+        });
+        typeChips.setOnCheckedStateChangeListener((group, checkedIds) -> {
+            int checkedId = group.getCheckedChipId();
+            if (checkedId == R.id.typeIncomingChip) filter = filter.withTypes(CallLogFilter.typeBit(CallLogTable.TYPE_INCOMING));
+            else if (checkedId == R.id.typeOutgoingChip) filter = filter.withTypes(CallLogFilter.typeBit(CallLogTable.TYPE_OUTGOING));
+            else if (checkedId == R.id.typeMissedChip) filter = filter.withTypes(CallLogFilter.typeBit(CallLogTable.TYPE_MISSED));
+            else filter = filter.withTypes(CallLogFilter.ALL_TYPES);
+            refreshDashboard(false);
+        });
+        searchField.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable text) {
+                setSearchQuery(text.toString().trim());
+            }
+        });
+        contactChip.setOnCloseIconClickListener(v -> {
+            contactChip.setVisibility(View.GONE);
+            filter = filter.withNumber(null);
+            refreshDashboard(false);
+        });
+        barChart.setOnChartValueSelectedListener(new OnChartValueSelectedListener() {
+            @Override
+            public void onValueSelected(Entry entry, Highlight highlight) {
+                if (!(entry.getData() instanceof ContactStats)) return;
+                ContactStats contact = (ContactStats) entry.getData();
+                contactChip.setText(contact.getName());
+                contactChip.setVisibility(View.VISIBLE);
+                filter = filter.withNumber(contact.getNumber());
+                refreshDashboard(false);
+            }
+
+            @Override
+            public void onNothingSelected() {
+            }
+        });
+
+        IntentFilter timeSettings = new IntentFilter();
+        timeSettings.addAction(Intent.ACTION_DATE_CHANGED);
+        timeSettings.addAction(Intent.ACTION_TIME_CHANGED);
+        timeSettings.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        timeSettings.addAction(Intent.ACTION_LOCALE_CHANGED);
+        ContextCompat.registerReceiver(this, timeSettingsReceiver, timeSettings, ContextCompat.RECEIVER_NOT_EXPORTED);
 
         checkPermissionsAndLoad();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        unregisterReceiver(timeSettingsReceiver);
+        handler.removeCallbacks(syncRunnable);
+        loads.cancel();
+        syncs.cancel();
+        dashboards.cancel();
+        callbackRuns.cancel();
+        searches.cancel();
+        if (isObservingCallLog) getContentResolver().unregisterContentObserver(callLogObserver);
+    }
+
     private void showLogsView() {
         animateSlider(btnShowLogs);
         statsContainer.setVisibility(View.GONE);
@@ -107,12 +336,13 @@ public class MainActivity extends AppCompatActivity {
 
     private void showStatsView() {
         animateSlider(btnShowStats);
-        if (isDataLoaded) {
+        if (dashboard != null) {
             recyclerView.setVisibility(View.GONE);
             statsContainer.setVisibility(View.VISIBLE);
             // Re-animate charts for a nice effect when they appear
             barChart.animateY(1000);
             pieChart.animateY(1000);
+            volumeChart.animateX(1000);
         } else {
             // If data isn't loaded yet, load it. The charts will appear when done.
             checkPermissionsAndLoad();
@@ -144,143 +374,454 @@ public class MainActivity extends AppCompatActivity {
         statsContainer.setVisibility(isLoading ? View.INVISIBLE : statsContainer.getVisibility());
     }
 
+    // What a full scan hands back to the main thread
+    private static final class LoadResult {
+        final DashboardModel dashboard;
+        final CallLogFilter filter; // The dashboard was built for this one
+        final DashboardModel.Callbacks callbacks;
+
+        LoadResult(DashboardModel dashboard, CallLogFilter filter, DashboardModel.Callbacks callbacks) {
+            this.dashboard = dashboard;
+            this.filter = filter;
+            this.callbacks = callbacks;
+        }
+    }
+
+    // A second trigger (permission result, stats tab) joins the scan already queued or running
     private void loadCallLogsInBackground() {
-        showLoading(true);
-        executor.execute(() -> {
-            // Reset counters
-            incomingCalls = 0;
-            outgoingCalls = 0;
-            missedCalls = 0;
-
-            List<CallLogItem> loadedLogs = new ArrayList<>();
-            HashMap<String, ContactStats> loadedStats = new HashMap<>();
-            HashMap<String, String> contactCache = new HashMap<>();
-
-            try (Cursor cursor = getContentResolver().query(
-                    CallLog.Calls.CONTENT_URI, null, null, null, CallLog.Calls.DATE + " DESC")) {
-                if (cursor == null) return;
-
-                int numberIndex = cursor.getColumnIndex(CallLog.Calls.NUMBER);
-                int typeIndex = cursor.getColumnIndex(CallLog.Calls.TYPE);
-                int dateIndex = cursor.getColumnIndex(CallLog.Calls.DATE);
-                int durationIndex = cursor.getColumnIndex(CallLog.Calls.DURATION);
-
-                while (cursor.moveToNext()) {
-                    String number = cursor.getString(numberIndex);
-                    String typeStr = cursor.getString(typeIndex);
-                    long dateLong = cursor.getLong(dateIndex);
-                    String durationStr = cursor.getString(durationIndex);
-                    String name = getContactName(this, number, contactCache);
-
-                    String type;
-                    switch (Integer.parseInt(typeStr)) {
-                        case CallLog.Calls.INCOMING_TYPE: type = "Incoming"; incomingCalls++; break;
-                        case CallLog.Calls.OUTGOING_TYPE: type = "Outgoing"; outgoingCalls++; break;
-                        case CallLog.Calls.MISSED_TYPE: type = "Missed"; missedCalls++; break;
-                        default: type = "Other"; break;
-                    }
-                    loadedLogs.add(new CallLogItem(name, number, type, dateLong, durationStr));
-                    int duration = Integer.parseInt(durationStr);
-                    loadedStats.computeIfAbsent(number, k -> new ContactStats(name, number)).addCall(duration);
-                }
-            }
+        startLoad(false);
+    }
 
-            // Post the result back to the UI thread
+    // restart drops the current scan, for when its parameters changed
+    private void startLoad(boolean restart) {
+        // A full scan reads everything a queued sync or query would, and replaces their results
+        syncs.cancel();
+        dashboards.cancel();
+        callbackRuns.cancel();
+        searches.cancel();
+        boolean coldStart = dashboard == null;
+        boolean useDatabase = databaseMode;
+        CallLogFilter current = filter;
+        ContactRanking ranking = barChartRanking;
+        int barCount = barChartCount;
+        LoadScheduler.Task<LoadResult> task = token -> scanCallLog(coldStart, useDatabase, current, ranking, barCount, token);
+        long version = restart ? loads.reload(task, this::showLoadResult) : loads.load(task, this::showLoadResult);
+        if (version != loadVersion) {
+            loadVersion = version;
+            showLoading(true);
+        }
+    }
+
+    // Loader thread
+    private LoadResult scanCallLog(boolean coldStart, boolean useDatabase, CallLogFilter current,
+                                   ContactRanking ranking, int barCount, CancellationToken token) {
+        // Draw last run's results first, then revalidate them against the provider
+        SnapshotStore.Saved saved = coldStart ? readSavedSnapshot() : null;
+        if (saved != null) {
+            callLogSync.keepAtLeast(saved.getWatermark()); // So this run's saves aren't taken for older ones
+            DashboardModel savedModel = DashboardModel.build(saved.getRecentRows(), null, saved.getSnapshot(),
+                    ranking, barCount, modelFormatter, System.currentTimeMillis());
             handler.post(() -> {
-                callLogList.clear();
-                callLogList.addAll(loadedLogs);
-                statsMap = loadedStats;
-                adapter.notifyDataSetChanged();
-
-                // Now, setup the charts and the new stats list with the new data
-                setupBarChart(statsMap);
-                setupPieChart(incomingCalls, outgoingCalls, missedCalls);
-                setupStatsRecyclerView(statsMap); // Call the new method
-
-                isDataLoaded = true;
-                showLoading(false);
+                if (!token.isCancelled()) showSavedSnapshot(savedModel);
             });
+        }
+
+        CallLogTable loadedLogs;
+        CallLogAggregator loadedAggregator;
+        CallLogSnapshot loadedSnapshot;
+        CallbackTracker loadedTracker;
+        CallbackSnapshot loadedCallbacks;
+        publishedRows = 0;
+        if (useDatabase) {
+            // Pages go straight into SQLite, so the heap only ever holds one of them. Pages come
+            // newest first like the rows in them, so callbacks are tracked on the way through.
+            database.clear();
+            CallbackTracker tracker = new CallbackTracker();
+            callLogSync.loadAll(new CallLogTable(), page -> {
+                if (saved == null && publishedRows == 0) publishPartialLog(page, token);
+                tracker.addRows(page, 0, page.size());
+                database.insert(page);
+                page.clear();
+            }, database, token);
+            loadedCallbacks = tracker.snapshot();
+            loadedTracker = tracker; // Per number, not per row, so it stays in memory like the aggregator
+            long started = metrics.begin();
+            loadedAggregator = database.aggregate(CallLogFilter.ALL, TOP_CONTACTS);
+            loadedSnapshot = loadedAggregator.snapshot();
+            metrics.end(PerfMetrics.Stage.AGGREGATION, started);
+            loadedLogs = database.newestRows(CallLogFilter.ALL, DATABASE_LIST_ROWS);
+        } else {
+            loadedLogs = new CallLogTable();
+            callLogSync.loadAll(loadedLogs, saved == null ? page -> publishPartialLog(page, token) : null, token);
+            // Splits across cores once the history is large enough to benefit
+            long started = metrics.begin();
+            loadedAggregator = ParallelCallLogAggregator.aggregate(loadedLogs, TOP_CONTACTS);
+            loadedSnapshot = loadedAggregator.snapshot();
+            metrics.end(PerfMetrics.Stage.AGGREGATION, started, loadedLogs.size());
+            started = metrics.begin();
+            loadedTracker = new CallbackTracker();
+            loadedTracker.addRows(loadedLogs, 0, loadedLogs.size());
+            loadedCallbacks = loadedTracker.snapshot();
+            metrics.end(PerfMetrics.Stage.CALLBACKS, started, loadedLogs.size());
+        }
+        token.throwIfCancelled();
+        liveTable = loadedLogs;
+        liveAggregator = loadedAggregator;
+        liveCallbacks = loadedTracker;
+        liveSnapshot = loadedSnapshot;
+        liveIndex = null;
+        builtFilter = null;
+        // Built with the table, so the first keystroke only has to query it
+        liveSearchIndex = useDatabase ? null : new SearchIndex();
+        if (liveSearchIndex != null) liveSearchIndex.update(loadedLogs);
+        saveSnapshot(loadedSnapshot, loadedLogs);
+        return new LoadResult(buildDashboard(current, useDatabase, ranking, barCount, token), current,
+                new DashboardModel.Callbacks(loadedCallbacks));
+    }
+
+    private void showLoadResult(long version, LoadResult result) {
+        isDataLoaded = true;
+        showCallbacks(result.callbacks);
+        if (result.filter == filter) showDashboard(result.dashboard, false);
+        // The filter or the bar chart changed while the scan ran; the live state is in place by now
+        if (result.filter != filter || result.dashboard.ranking != barChartRanking
+                || result.dashboard.barCount != barChartCount) {
+            refreshDashboard(false);
+        }
+
+        showLoading(false);
+        registerCallLogObserver();
+        SnapshotWorker.schedule(this); // Permission is granted by now; already scheduled work is kept
+    }
+
+    private SnapshotStore.Saved readSavedSnapshot() {
+        try {
+            return snapshotStore.read();
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable saved snapshot", e);
+            snapshotStore.delete();
+            return null;
+        }
+    }
+
+    // Loader thread. The snapshot is always the unfiltered one and the table is never edited in place.
+    // The sync watermark goes with it, so SnapshotWorker can extend it rather than start over; the
+    // store drops the write if SnapshotWorker has saved a newer snapshot meanwhile.
+    private void saveSnapshot(CallLogSnapshot snapshot, CallLogTable table) {
+        try {
+            snapshotStore.write(snapshot, table, SAVED_ROWS, System.currentTimeMillis(), callLogSync.getWatermark());
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save the snapshot", e);
+        }
+    }
+
+    // Last run's charts and newest rows, shown until the reload replaces them
+    private void showSavedSnapshot(DashboardModel saved) {
+        if (isDataLoaded || !filter.isAll()) return;
+        showDashboard(saved, false);
+        showLoading(false);
+    }
+
+    // Shows the rows loaded so far while later pages are still coming in. Only when the
+    // count has doubled, so the copies add up to about one more pass over the table.
+    private void publishPartialLog(CallLogTable loadedSoFar, CancellationToken token) {
+        if (loadedSoFar.size() < 2 * publishedRows) return;
+        publishedRows = loadedSoFar.size();
+        CallLogTable partial = new CallLogTable(loadedSoFar);
+        handler.post(() -> {
+            // A filtered or searched list has to wait for the whole history
+            if (token.isCancelled() || isDataLoaded || !filter.isAll() || !searchQuery.isEmpty()) return;
+            adapter.setTable(partial, null);
+            progressBar.setVisibility(View.GONE);
+            if (statsContainer.getVisibility() != View.VISIBLE) recyclerView.setVisibility(View.VISIBLE);
         });
     }
 
-    private void setupStatsRecyclerView(HashMap<String, ContactStats> statsMap) {
-        List<CallLogItem> statsList = new ArrayList<>();
+    // Re-aggregates only the matching rows, found through the index rather than a full scan, and
+    // prepares every chart and list from them, all on the loader thread. A newer request replaces
+    // one still queued or running, so only the last one is shown. After a sync the list is diffed
+    // so only changed rows animate; a new filter replaces it outright.
+    private void refreshDashboard(boolean incremental) {
+        if (!isDataLoaded) return;
+        CallLogFilter current = filter;
+        boolean useDatabase = databaseMode;
+        ContactRanking ranking = barChartRanking;
+        int barCount = barChartCount;
+        dashboards.reload(token -> buildDashboard(current, useDatabase, ranking, barCount, token),
+                (version, model) -> showDashboard(model, incremental));
+    }
 
-        for (ContactStats stats : statsMap.values()) {
-            String statsData = stats.getCount() + "|" + stats.getTotalDuration();
-            statsList.add(new CallLogItem(stats.getName(), stats.getNumber(), "STATS", 0L, statsData));
+    // Loader thread. Database mode runs the filter as SQL and keeps only the newest matches.
+    private DashboardModel buildDashboard(CallLogFilter current, boolean useDatabase, ContactRanking ranking,
+                                          int barCount, CancellationToken token) {
+        // Filters are immutable and replaced on every change, so the same one means the same rows
+        if (current == builtFilter) return builtModel = builtModel.withBars(ranking, barCount);
+        CallLogTable table = liveTable;
+        int[] rows = null;
+        CallLogSnapshot shown;
+        if (current.isAll()) {
+            shown = liveSnapshot;
+        } else if (useDatabase) {
+            long started = metrics.begin();
+            shown = database.aggregate(current, TOP_CONTACTS).snapshot();
+            metrics.end(PerfMetrics.Stage.AGGREGATION, started);
+            token.throwIfCancelled();
+            table = database.newestRows(current, DATABASE_LIST_ROWS);
+        } else {
+            long started = metrics.begin();
+            if (liveIndex == null) liveIndex = new CallLogIndex(liveTable);
+            rows = liveIndex.select(current);
+            CallLogAggregator filtered = new CallLogAggregator(TOP_CONTACTS);
+            filtered.addRows(liveTable, rows);
+            shown = filtered.snapshot();
+            metrics.end(PerfMetrics.Stage.AGGREGATION, started, rows.length);
         }
+        token.throwIfCancelled();
+        long started = metrics.begin();
+        builtModel = DashboardModel.build(table, rows, shown, ranking, barCount, modelFormatter, System.currentTimeMillis());
+        metrics.end(PerfMetrics.Stage.CHART_BUILD, started, shown.getContactStats().size());
+        builtFilter = current;
+        return builtModel;
+    }
 
-        statsList.sort(Comparator.comparing(CallLogItem::getName));
+    // Main thread: only swaps in what the loader thread prepared, and leaves the parts that didn't change
+    private void showDashboard(DashboardModel model, boolean incremental) {
+        long started = metrics.begin();
+        try {
+            bindDashboard(model, incremental);
+        } finally {
+            metrics.end(PerfMetrics.Stage.UI_PUBLISH, started);
+        }
+    }
 
-        CallLogAdapter statsAdapter = new CallLogAdapter(statsList);
-        statsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        statsRecyclerView.setAdapter(statsAdapter);
+    private void bindDashboard(DashboardModel model, boolean incremental) {
+        DashboardModel shown = dashboard;
+        dashboard = model;
+        boolean searching = !searchQuery.isEmpty();
+        boolean rowsChanged = shown == null || model.table != shown.table || model.rows != shown.rows;
+        if (searching) {
+            // The lists are filled when the search over the new model comes back
+            if (rowsChanged || model.statsRows != shown.statsRows) search(model, incremental);
+        } else if (rowsChanged) {
+            if (incremental) adapter.submitChanges(model.table, model.rows);
+            else adapter.setTable(model.table, model.rows);
+        }
+        if (shown == null || model.barData != shown.barData) bindBarChart(model);
+        if (shown != null && model.snapshot == shown.snapshot) return;
+
+        // Shared by reference with StatisticsActivity, which is only told the version
+        snapshotVersion = StatsRepository.getInstance().publish(model.snapshot);
+        bindPieChart(model.pieData);
+        hourHeatmap.setRollups(model.snapshot.getRollups());
+        bindVolumeChart(model);
+        durationSummary.setText(model.durationSummary);
+        durationChart.setVisibility(model.durationHistogram == null ? View.GONE : View.VISIBLE);
+        if (model.durationHistogram != null) DurationCharts.bind(durationChart, model.durationHistogram);
+        if (!searching) statsAdapter.submitList(model.statsRows);
+    }
+
+    private void setSearchQuery(String query) {
+        if (query.equals(searchQuery)) return;
+        searchQuery = query;
+        DashboardModel model = dashboard;
+        if (model == null) return; // The first model is searched when it is bound
+        if (!query.isEmpty()) {
+            search(model, false);
+            return;
+        }
+        searches.cancel();
+        adapter.setTable(model.table, model.rows);
+        statsAdapter.submitList(model.statsRows);
+    }
+
+    // Each keystroke replaces the search still queued or running, so typing never backs up behind
+    // stale queries. The index finds the contacts; one pass over the model's rows keeps theirs.
+    private void search(DashboardModel model, boolean incremental) {
+        String query = searchQuery;
+        searches.reload(token -> searchModel(model, query), (version, result) -> showSearchResult(result, incremental));
+    }
+
+    // What a search hands back to the main thread
+    private static final class SearchResult {
+        final DashboardModel model; // Searched within
+        final String query;
+        final int[] rows;
+        final List<ContactStatsRow> statsRows;
+
+        SearchResult(DashboardModel model, String query, int[] rows, List<ContactStatsRow> statsRows) {
+            this.model = model;
+            this.query = query;
+            this.rows = rows;
+            this.statsRows = statsRows;
+        }
     }
 
-    private String getContactName(Context context, String phoneNumber, HashMap<String, String> cache) {
-        if (cache.containsKey(phoneNumber)) return cache.get(phoneNumber);
-        String name = phoneNumber;
-        Uri uri = Uri.withAppendedPath(ContactsContract.PhoneLookup.CONTENT_FILTER_URI, Uri.encode(phoneNumber));
-        try (Cursor cursor = context.getContentResolver().query(uri, new String[]{ContactsContract.PhoneLookup.DISPLAY_NAME}, null, null, null)) {
-            if (cursor != null && cursor.moveToFirst()) {
-                name = cursor.getString(cursor.getColumnIndexOrThrow(ContactsContract.PhoneLookup.DISPLAY_NAME));
+    // Loader thread
+    private SearchResult searchModel(DashboardModel model, String query) {
+        long started = metrics.begin();
+        SearchIndex index = searchIndexFor(model.table);
+        boolean[] contacts = index.findContacts(query);
+        int[] rows = SearchIndex.select(model.table, model.rows, contacts);
+        List<ContactStatsRow> statsRows = model.statsRows;
+        if (contacts != null) {
+            // In database mode the stats cover contacts the page of rows may not have
+            statsRows = new ArrayList<>();
+            for (ContactStatsRow row : model.statsRows) {
+                int ref = model.table.findContactRef(row.getNumber());
+                boolean match = ref >= 0 && ref < contacts.length ? contacts[ref]
+                        : SearchIndex.matches(query, row.getNumber(), row.getName());
+                if (match) statsRows.add(row);
             }
         }
-        cache.put(phoneNumber, name);
-        return name;
+        metrics.end(PerfMetrics.Stage.SEARCH, started, rows != null ? rows.length : model.table.size());
+        return new SearchResult(model, query, rows, statsRows);
     }
 
-    private void animateSlider(View clickedButton) {
-        slidingSelector.animate().x(clickedButton.getX()).setDuration(250).start();
+    // Loader thread
+    private SearchIndex searchIndexFor(CallLogTable table) {
+        if (liveSearchIndex != null && table == liveTable) return liveSearchIndex;
+        if (table != otherSearchTable) {
+            otherSearchIndex = new SearchIndex();
+            otherSearchTable = table;
+        }
+        otherSearchIndex.update(table);
+        return otherSearchIndex;
     }
 
-    // --- CHART SETUP METHODS ---
+    private void showSearchResult(SearchResult result, boolean incremental) {
+        if (result.model != dashboard || !result.query.equals(searchQuery)) return; // A newer search is on its way
+        if (incremental) adapter.submitChanges(result.model.table, result.rows);
+        else adapter.setTable(result.model.table, result.rows);
+        statsAdapter.submitList(result.statsRows);
+    }
+
+    private void showCallbacks(DashboardModel.Callbacks result) {
+        callbacks = result.snapshot;
+        callbackSummary.setText(result.summary);
+        callbackChart.setVisibility(result.waits == null ? View.GONE : View.VISIBLE);
+        if (result.waits != null) DurationCharts.bind(callbackChart, result.waits);
+    }
 
-    private void setupBarChart(HashMap<String, ContactStats> statsMap) {
-        List<Map.Entry<String, ContactStats>> sortedList = new ArrayList<>(statsMap.entrySet());
-        sortedList.sort((o1, o2) -> Integer.compare(o2.getValue().getTotalDuration(), o1.getValue().getTotalDuration()));
+    private void registerCallLogObserver() {
+        if (isObservingCallLog) return;
+        getContentResolver().registerContentObserver(CallLog.Calls.CONTENT_URI, true, callLogObserver);
+        isObservingCallLog = true;
+    }
 
-        List<BarEntry> entries = new ArrayList<>();
-        ArrayList<String> labels = new ArrayList<>();
-        int limit = Math.min(sortedList.size(), 5);
+    // Only fetches rows past the sync watermark and patches the live state on the loader thread.
+    // A notification while a sync is queued folds into it; one during a sync queues another.
+    private void syncCallLogsInBackground() {
+        if (!isDataLoaded) return;
+        boolean useDatabase = databaseMode;
+        syncs.refresh(token -> {
+            CallLogSync.Delta delta = callLogSync.fetchDelta();
+            if (!delta.isEmpty()) applyDelta(delta, useDatabase);
+            return delta;
+        }, (version, delta) -> {
+            if (delta.isEmpty()) return;
+            refreshDashboard(true);
+            // A new call can return an older miss; applyDelta() has folded it in by now
+            callbackRuns.refresh(token -> new DashboardModel.Callbacks(liveCallbacks.snapshot()),
+                    (runVersion, result) -> showCallbacks(result));
+        });
+    }
 
-        for (int i = 0; i < limit; i++) {
-            Map.Entry<String, ContactStats> entry = sortedList.get(i);
-            entries.add(new BarEntry(limit - 1 - i, entry.getValue().getTotalDuration() / 60f));
-            labels.add(entry.getValue().getName());
+    // Loader thread
+    private void applyDelta(CallLogSync.Delta delta, boolean useDatabase) {
+        if (useDatabase) {
+            // The aggregator holds contacts, not rows, so it is patched like the in-memory one rather than
+            // grouped again over the whole mirror. The old versions of deleted and edited rows come out of
+            // it first, read back before the mirror drops them.
+            CallLogTable replaced = database.rows(delta.previousDates.keySet());
+            for (int row = 0; row < replaced.size(); row++) {
+                liveAggregator.remove(replaced.getNumber(row), replaced.getType(row),
+                        replaced.getDate(row), replaced.getDuration(row));
+            }
+            database.delete(delta.deletedIds);
+            database.insert(delta.upserts); // An edited row replaces its old version by _id
+            liveAggregator.addRows(delta.upserts, 0, delta.upserts.size());
+            liveSnapshot = liveAggregator.snapshot();
+            liveTable = database.newestRows(CallLogFilter.ALL, DATABASE_LIST_ROWS);
+            foldCallbacks(delta, true);
+        } else {
+            // Copy on write: the adapter may still be diffing against the table it shows. Only the
+            // chunks the delta touches are copied, usually the one new calls go on top of.
+            liveTable = new CallLogTable(liveTable);
+            for (Long id : delta.deletedIds) removeRow(id, delta.previousDates.get(id));
+            for (int i = 0; i < delta.upserts.size(); i++) {
+                // An edited row replaces its old version; a new call has none to look for
+                Long previousDate = delta.previousDates.get(delta.upserts.getId(i));
+                if (previousDate != null) removeRow(delta.upserts.getId(i), previousDate);
+                insertRow(delta.upserts, i);
+            }
+            liveSnapshot = liveAggregator.snapshot();
+            foldCallbacks(delta, false);
+            liveSearchIndex.update(liveTable); // Only the contacts the delta brought
         }
-        Collections.reverse(labels);
-
-        BarDataSet dataSet = new BarDataSet(entries, "Total Call Duration (Minutes)");
-
-        // **NEW**: A professional, cohesive color palette
-        final int[] BAR_CHART_COLORS = {
-                Color.rgb(0, 227, 150),
-                Color.rgb(0, 184, 212),
-                Color.rgb(0, 145, 234),
-                Color.rgb(48, 79, 254),
-                Color.rgb(98, 0, 234)
-        };
-        dataSet.setColors(BAR_CHART_COLORS);
-        dataSet.setValueTextColor(Color.WHITE);
-        dataSet.setValueTextSize(12f);
-        dataSet.setValueTypeface(Typeface.DEFAULT_BOLD);
-        dataSet.setValueFormatter(new ValueFormatter() {
-            @Override
-            public String getFormattedValue(float value) {
-                return String.format("%.0f min", value);
+        liveIndex = null;
+        builtFilter = null;
+        saveSnapshot(liveSnapshot, liveTable);
+    }
+
+    // Loader thread. New calls on top go straight into the tracker, oldest first. A deletion, an edit
+    // or a call older than the newest can change which call returned any miss before it, so those
+    // take a new pass over the synced table, or in database mode over the mirror.
+    private void foldCallbacks(CallLogSync.Delta delta, boolean useDatabase) {
+        long started = metrics.begin();
+        CallLogTable upserts = delta.upserts;
+        boolean onTop = delta.deletedIds.isEmpty() && delta.previousDates.isEmpty()
+                && (upserts.size() == 0 || upserts.getDate(upserts.size() - 1) >= liveCallbacks.getNewestDate());
+        if (onTop) {
+            for (int row = upserts.size() - 1; row >= 0; row--) {
+                liveCallbacks.addNewer(upserts.getNumber(row), upserts.getType(row), upserts.getDate(row));
             }
-        });
+            metrics.end(PerfMetrics.Stage.CALLBACKS, started, upserts.size());
+        } else if (useDatabase) {
+            liveCallbacks = database.trackCallbacks();
+            metrics.end(PerfMetrics.Stage.CALLBACKS, started);
+        } else {
+            liveCallbacks = new CallbackTracker();
+            liveCallbacks.addRows(liveTable, 0, liveTable.size());
+            metrics.end(PerfMetrics.Stage.CALLBACKS, started, liveTable.size());
+        }
+    }
+
+    private void insertRow(CallLogTable source, int row) {
+        liveTable.insertFrom(source, row);
+        liveAggregator.add(source.getNumber(row), source.getName(row), source.getType(row),
+                source.getDate(row), source.getDuration(row));
+    }
+
+    private void removeRow(long id, long date) {
+        int row = liveTable.indexOf(id, date);
+        if (row < 0) return;
+        liveAggregator.remove(liveTable.getNumber(row), liveTable.getType(row),
+                liveTable.getDate(row), liveTable.getDuration(row));
+        liveTable.removeAt(row);
+    }
+
+    private void animateSlider(View clickedButton) {
+        slidingSelector.animate().x(clickedButton.getX()).setDuration(250).start();
+    }
+
+    // --- CHART SETUP METHODS ---
 
-        BarData barData = new BarData(dataSet);
-        barData.setBarWidth(0.6f);
-        styleBarChart(labels);
-        barChart.setData(barData);
+    // The leaderboard is already selected and ranked by the aggregator; the model holds its prefix
+    private void bindBarChart(DashboardModel model) {
+        barChartTitle.setText(model.barTitle);
+
+        // Keep bars readable when the chart shows 10 or 25 contacts
+        float density = getResources().getDisplayMetrics().density;
+        ViewGroup.LayoutParams params = barChart.getLayoutParams();
+        params.height = (int) (Math.max(250, model.barLimit * 36) * density);
+        barChart.setLayoutParams(params);
+
+        styleBarChart(model.barLabels);
+        barChart.setData(model.barData);
         barChart.invalidate();
     }
 
-    private void styleBarChart(ArrayList<String> labels) {
+    private void styleBarChart(List<String> labels) {
         barChart.getDescription().setEnabled(false);
         barChart.getLegend().setEnabled(false);
         barChart.setDrawValueAboveBar(true);
@@ -294,6 +835,7 @@ public class MainActivity extends AppCompatActivity {
         xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
         xAxis.setDrawGridLines(false);
         xAxis.setGranularity(1f);
+        xAxis.setLabelCount(labels.size());
         xAxis.setTextColor(Color.WHITE);
         xAxis.setTextSize(12f);
         YAxis leftAxis = barChart.getAxisLeft();
@@ -303,37 +845,28 @@ public class MainActivity extends AppCompatActivity {
         barChart.getAxisRight().setEnabled(false);
     }
 
-    private void setupPieChart(int incoming, int outgoing, int missed) {
-        ArrayList<PieEntry> entries = new ArrayList<>();
-        if (incoming > 0) entries.add(new PieEntry(incoming, "Incoming"));
-        if (outgoing > 0) entries.add(new PieEntry(outgoing, "Outgoing"));
-        if (missed > 0) entries.add(new PieEntry(missed, "Missed"));
-
-        PieDataSet dataSet = new PieDataSet(entries, "");
-
-        // **NEW**: A professional, cohesive color palette
-        final int[] PIE_CHART_COLORS = {
-                Color.rgb(0, 227, 150), // Teal
-                Color.rgb(0, 184, 212), // Cyan
-                Color.rgb(255, 64, 129)  // Pink
-        };
-        dataSet.setColors(PIE_CHART_COLORS);
-        dataSet.setValueTextColor(Color.WHITE);
-        dataSet.setValueTextSize(16f);
-        dataSet.setValueTypeface(Typeface.DEFAULT_BOLD);
-        dataSet.setSliceSpace(3f);
-        dataSet.setValueLinePart1OffsetPercentage(80.f);
-
-        // **EDIT**: Make the connector lines shorter
-        dataSet.setValueLinePart1Length(0.3f);
-        dataSet.setValueLinePart2Length(0.3f);
-
-        // **EDIT**: Change the connector line color to white
-        dataSet.setValueLineColor(Color.WHITE);
-
-        dataSet.setYValuePosition(PieDataSet.ValuePosition.OUTSIDE_SLICE);
+    // The points and the day labels come with the model; this only styles the chart
+    private void bindVolumeChart(DashboardModel model) {
+        volumeChartTitle.setText(model.volumeTitle);
+        volumeChart.getDescription().setEnabled(false);
+        volumeChart.getLegend().setEnabled(false);
+        XAxis xAxis = volumeChart.getXAxis();
+        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
+        xAxis.setDrawGridLines(false);
+        xAxis.setTextColor(Color.WHITE);
+        xAxis.setGranularity(1f);
+        xAxis.setValueFormatter(model.volumeLabels);
+        YAxis leftAxis = volumeChart.getAxisLeft();
+        leftAxis.setDrawGridLines(false);
+        leftAxis.setTextColor(Color.WHITE);
+        leftAxis.setAxisMinimum(0f);
+        leftAxis.setGranularity(1f);
+        volumeChart.getAxisRight().setEnabled(false);
+        volumeChart.setData(model.volumeData);
+        volumeChart.invalidate();
+    }
 
-        PieData pieData = new PieData(dataSet);
+    private void bindPieChart(PieData pieData) {
         pieData.setValueFormatter(new PercentFormatter(pieChart));
         stylePieChart();
         pieChart.setData(pieData);
@@ -0,0 +1,181 @@
+package com.example.phonecallloganalyzer;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.google.android.material.materialswitch.MaterialSwitch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hidden debug screen, opened by a long press on "Detailed Statistics": what
+ * PerfMetrics recorded, summed per stage, with the counters and the latest
+ * spans. Recording is switched on here and stays on across restarts. The JSON
+ * export goes wherever the document picker points.
+ */
+public class PerfMetricsActivity extends AppCompatActivity {
+
+    private static final String TAG = "PerfMetrics";
+    private static final String PREFS_NAME = "perf_metrics";
+    private static final String KEY_ENABLED = "enabled";
+    private static final int LATEST_SPANS = 40;
+
+    private TextView statusText, stagesText, countersText, spansText;
+
+    private final PerfMetrics metrics = PerfMetrics.getInstance();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ActivityResultLauncher<String> exportLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("application/json"), uri -> {
+                if (uri != null) export(uri);
+            });
+
+    public static Intent newIntent(Context context) {
+        return new Intent(context, PerfMetricsActivity.class);
+    }
+
+    // At startup, so recording picks up again before the first load
+    static void restoreEnabled(Context context) {
+        boolean enabled = context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE).getBoolean(KEY_ENABLED, false);
+        PerfMetrics.getInstance().setEnabled(enabled);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_perf_metrics);
+
+        statusText = findViewById(R.id.perfStatus);
+        stagesText = findViewById(R.id.perfStages);
+        countersText = findViewById(R.id.perfCounters);
+        spansText = findViewById(R.id.perfSpans);
+        MaterialSwitch enabledSwitch = findViewById(R.id.perfEnabledSwitch);
+        Button refreshButton = findViewById(R.id.perfRefreshButton);
+        Button clearButton = findViewById(R.id.perfClearButton);
+        Button exportButton = findViewById(R.id.perfExportButton);
+
+        enabledSwitch.setChecked(metrics.isEnabled());
+        enabledSwitch.setOnCheckedChangeListener((button, checked) -> {
+            metrics.setEnabled(checked);
+            getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit().putBoolean(KEY_ENABLED, checked).apply();
+            showMetrics();
+        });
+        refreshButton.setOnClickListener(v -> showMetrics());
+        clearButton.setOnClickListener(v -> {
+            metrics.reset();
+            showMetrics();
+        });
+        exportButton.setOnClickListener(v -> exportLauncher.launch("call-log-metrics.json"));
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+    @Override
+    protected void onDestroy() {
+        executor.shutdown(); // Lets an export in progress finish
+        super.onDestroy();
+    }
+
+    private void showMetrics() {
+        List<PerfMetrics.Span> spans = metrics.spans();
+        statusText.setText(metrics.isEnabled()
+                ? spans.size() + " spans kept, " + metrics.overwritten() + " older ones overwritten"
+                : "Recording is off");
+        stagesText.setText(stageTotals(spans));
+        countersText.setText(counters());
+        spansText.setText(latestSpans(spans));
+    }
+
+    // One line per stage: how often it ran, its total and longest time, and the items it handled
+    private static String stageTotals(List<PerfMetrics.Span> spans) {
+        PerfMetrics.Stage[] stages = PerfMetrics.Stage.values();
+        int[] runs = new int[stages.length];
+        long[] total = new long[stages.length], longest = new long[stages.length], items = new long[stages.length];
+        for (PerfMetrics.Span span : spans) {
+            int stage = span.getStage().ordinal();
+            runs[stage]++;
+            total[stage] += span.getDurationNanos();
+            longest[stage] = Math.max(longest[stage], span.getDurationNanos());
+            items[stage] += span.getItems();
+        }
+        StringBuilder out = new StringBuilder();
+        for (PerfMetrics.Stage stage : stages) {
+            int i = stage.ordinal();
+            if (runs[i] == 0) continue;
+            out.append(String.format(Locale.ROOT, "%-14s %4d× %9.1f ms  max %8.1f ms  %,d items%n",
+                    stage.name().toLowerCase(Locale.ROOT), runs[i], total[i] / 1e6, longest[i] / 1e6, items[i]));
+        }
+        return out.length() == 0 ? "Nothing recorded" : out.toString();
+    }
+
+    private String counters() {
+        long lookups = metrics.get(PerfMetrics.Counter.CONTACT_LOOKUPS);
+        long hits = metrics.get(PerfMetrics.Counter.CONTACT_CACHE_HITS);
+        long misses = lookups - hits;
+        long binds = metrics.get(PerfMetrics.Counter.ADAPTER_BINDS);
+        return String.format(Locale.ROOT,
+                "Rows read          %,d%n"
+                        + "Contact lookups    %,d, %.1f%% from the cache%n"
+                        + "Cache misses       %.1f µs each%n"
+                        + "Log list binds     %,d, %.1f µs each",
+                metrics.get(PerfMetrics.Counter.ROWS_READ),
+                lookups, lookups == 0 ? 0.0 : 100.0 * hits / lookups,
+                misses == 0 ? 0.0 : metrics.get(PerfMetrics.Counter.CONTACT_LOOKUP_NANOS) / 1e3 / misses,
+                binds, binds == 0 ? 0.0 : metrics.get(PerfMetrics.Counter.ADAPTER_BIND_NANOS) / 1e3 / binds);
+    }
+
+    // Newest first, timed from the oldest one shown
+    private static String latestSpans(List<PerfMetrics.Span> spans) {
+        if (spans.isEmpty()) return "";
+        int from = Math.max(0, spans.size() - LATEST_SPANS);
+        long origin = spans.get(from).getStartNanos();
+        StringBuilder out = new StringBuilder();
+        for (int i = spans.size() - 1; i >= from; i--) {
+            PerfMetrics.Span span = spans.get(i);
+            out.append(String.format(Locale.ROOT, "+%9.1f ms  %-14s %8.1f ms  %,d%n",
+                    (span.getStartNanos() - origin) / 1e6, span.getStage().name().toLowerCase(Locale.ROOT),
+                    span.getDurationNanos() / 1e6, span.getItems()));
+        }
+        return out.toString();
+    }
+
+    private void export(Uri uri) {
+        Context appContext = getApplicationContext();
+        statusText.setText("Exporting…");
+        executor.execute(() -> {
+            String status;
+            try (OutputStream out = appContext.getContentResolver().openOutputStream(uri)) {
+                if (out == null) throw new IOException("No stream for " + uri);
+                out.write(metrics.toJson().getBytes(StandardCharsets.UTF_8));
+                status = "Exported";
+            } catch (IOException e) {
+                Log.w(TAG, "Could not export to " + uri, e);
+                status = "The file could not be written";
+            }
+            String shown = status;
+            handler.post(() -> {
+                if (!isDestroyed()) statusText.setText(shown);
+            });
+        });
+    }
+}
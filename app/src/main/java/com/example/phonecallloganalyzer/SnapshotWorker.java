@@ -0,0 +1,149 @@
+package com.example.phonecallloganalyzer;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.provider.CallLog;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the snapshot MainActivity starts from up to date while the app isn't
+ * open. Runs a few seconds after the call log changes (bursts of changes are
+ * coalesced into one run) and twice a day while the device is idle, never on
+ * a low battery.
+ *
+ * Incremental where it can be. Nothing changed costs three id-only queries;
+ * calls added since the snapshot was saved are aggregated onto it; only a
+ * deletion or an edit in between costs a full pass, streamed through the
+ * aggregator without holding the log. Stops between records when WorkManager
+ * stops it, leaving the saved snapshot as it was.
+ */
+public class SnapshotWorker extends Worker {
+
+    private static final String TAG = "SnapshotWorker";
+    static final String PERIODIC_WORK = "snapshot-periodic";
+    static final String ON_CHANGE_WORK = "snapshot-on-change";
+    private static final String TAG_ON_CHANGE = "on-change";
+
+    // Output: which pass ran
+    static final String KEY_PASS = "pass";
+    static final String PASS_UNCHANGED = "unchanged";
+    static final String PASS_INCREMENTAL = "incremental";
+    static final String PASS_FULL = "full";
+
+    private final CancellationToken token = new CancellationToken();
+
+    public SnapshotWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    // Safe to call on every start: work that is already scheduled is kept
+    static void schedule(Context context) {
+        WorkManager workManager = WorkManager.getInstance(context);
+        Constraints idle = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .setRequiresDeviceIdle(true)
+                .build();
+        workManager.enqueueUniquePeriodicWork(PERIODIC_WORK, ExistingPeriodicWorkPolicy.KEEP,
+                new PeriodicWorkRequest.Builder(SnapshotWorker.class, 12, TimeUnit.HOURS)
+                        .setConstraints(idle)
+                        .build());
+        scheduleOnChange(workManager, ExistingWorkPolicy.KEEP);
+    }
+
+    // A content URI trigger fires once, so each run it starts queues the next one behind itself
+    private static void scheduleOnChange(WorkManager workManager, ExistingWorkPolicy policy) {
+        Constraints onChange = new Constraints.Builder()
+                .addContentUriTrigger(CallLog.Calls.CONTENT_URI, true)
+                .setTriggerContentUpdateDelay(10, TimeUnit.SECONDS)
+                .setTriggerContentMaxDelay(2, TimeUnit.MINUTES)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        workManager.enqueueUniqueWork(ON_CHANGE_WORK, policy,
+                new OneTimeWorkRequest.Builder(SnapshotWorker.class)
+                        .setConstraints(onChange)
+                        .addTag(TAG_ON_CHANGE)
+                        .build());
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        if (getTags().contains(TAG_ON_CHANGE)) {
+            scheduleOnChange(WorkManager.getInstance(context), ExistingWorkPolicy.APPEND_OR_REPLACE);
+        }
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.READ_CALL_LOG) != PackageManager.PERMISSION_GRANTED
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.READ_CONTACTS) != PackageManager.PERMISSION_GRANTED) {
+            return Result.failure();
+        }
+        SnapshotStore store = new SnapshotStore(new File(context.getNoBackupFilesDir(), MainActivity.SNAPSHOT_FILE));
+        try {
+            String pass = refresh(store, new CallLogSync(context));
+            return Result.success(new Data.Builder().putString(KEY_PASS, pass).build());
+        } catch (CancellationException e) {
+            return Result.retry(); // Stopped; WorkManager runs it again once the constraints hold
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save the snapshot", e);
+            return Result.retry();
+        }
+    }
+
+    @Override
+    public void onStopped() {
+        token.cancel();
+    }
+
+    private String refresh(SnapshotStore store, CallLogSync sync) throws IOException {
+        SnapshotStore.Saved saved = readSaved(store);
+        if (saved != null) {
+            CallLogAggregator aggregator = new CallLogAggregator(saved.getSnapshot(), MainActivity.TOP_CONTACTS);
+            CallLogTable added = new CallLogTable();
+            CallLogWatermark since = saved.getWatermark();
+            CallLogWatermark now = sync.aggregateSince(since, aggregator, added, MainActivity.SAVED_ROWS, token);
+            if (now == since) return PASS_UNCHANGED;
+            if (now != null) {
+                // New calls usually go on top, but a restored or imported one can carry an older date
+                CallLogTable recent = new CallLogTable(saved.getRecentRows());
+                for (int row = 0; row < added.size(); row++) recent.insertFrom(added, row);
+                store.write(aggregator.snapshot(), recent, MainActivity.SAVED_ROWS, System.currentTimeMillis(), now);
+                return PASS_INCREMENTAL;
+            }
+        }
+        CallLogAggregator aggregator = new CallLogAggregator(MainActivity.TOP_CONTACTS);
+        CallLogTable newest = new CallLogTable();
+        CallLogWatermark now = sync.aggregateAll(aggregator, newest, MainActivity.SAVED_ROWS, token);
+        if (saved != null) {
+            // Deleting the newest calls lowers what the pass sees; carried forward, as CallLogSync does, so
+            // the store doesn't take this snapshot for an older one (see CallLogSync.keepAtLeast)
+            now = now.extend(0, saved.getWatermark().getLastId(), saved.getWatermark().getLastModified());
+        }
+        store.write(aggregator.snapshot(), newest, MainActivity.SAVED_ROWS, System.currentTimeMillis(), now);
+        return PASS_FULL;
+    }
+
+    private static SnapshotStore.Saved readSaved(SnapshotStore store) {
+        try {
+            return store.read();
+        } catch (IOException e) {
+            Log.w(TAG, "Rebuilding an unreadable saved snapshot", e);
+            return null;
+        }
+    }
+}
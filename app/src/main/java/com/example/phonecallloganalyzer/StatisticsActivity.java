@@ -1,7 +1,12 @@
 package com.example.phonecallloganalyzer;
 
+import android.content.Context;
+import android.content.Intent;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -22,18 +27,48 @@ import com.github.mikephil.charting.formatter.PercentFormatter;
 import com.github.mikephil.charting.formatter.ValueFormatter;
 import com.github.mikephil.charting.utils.ColorTemplate;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Full screen statistics for one snapshot. The intent carries only the
+ * snapshot's version in StatsRepository, never the stats, so opening it costs
+ * the same for ten contacts or ten thousand and can't hit the Binder limit.
+ *
+ * If the process died while this screen was in the background, the
+ * repository comes back empty. For that case the snapshot is saved to a
+ * SnapshotStore file in onSaveInstanceState() and mapped back on restore.
+ */
 public class StatisticsActivity extends AppCompatActivity {
 
+    public static final String EXTRA_SNAPSHOT_VERSION = "snapshotVersion";
+    private static final String TAG = "StatisticsActivity";
+    private static final String FALLBACK_FILE = "statistics-snapshot.bin";
+    private static final ExecutorService IO_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static long savedVersion = -1; // Last version written to the fallback file, IO thread only
+
     private HorizontalBarChart barChart;
     private PieChart pieChart;
     private RecyclerView statsRecyclerView; // The new RecyclerView for the list
+    private ContactStatsAdapter statsAdapter;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final StatsRepository repository = StatsRepository.getInstance();
+    private long shownVersion = -1;
+    private CallLogSnapshot shownSnapshot;
+
+    // A refresh published while this screen is visible, e.g. a call log sync behind it
+    private final StatsRepository.Listener repositoryListener = (version, snapshot) ->
+            handler.post(() -> showSnapshot(version, snapshot));
+
+    public static Intent newIntent(Context context, long snapshotVersion) {
+        return new Intent(context, StatisticsActivity.class).putExtra(EXTRA_SNAPSHOT_VERSION, snapshotVersion);
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -44,55 +79,118 @@ public class StatisticsActivity extends AppCompatActivity {
         barChart = findViewById(R.id.barChart);
         pieChart = findViewById(R.id.pieChart);
         statsRecyclerView = findViewById(R.id.statsRecyclerView);
+        statsAdapter = new ContactStatsAdapter();
+        statsAdapter.setOnContactClickListener(row -> {
+            ContactStats stats = shownSnapshot != null ? shownSnapshot.getContactStats().get(row.getNumber()) : null;
+            if (stats != null) ContactDetailSheet.show(this, stats);
+        });
+        statsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        statsRecyclerView.setAdapter(statsAdapter);
 
-        // Retrieve all data from MainActivity
-        HashMap<String, ContactStats> statsMap = (HashMap<String, ContactStats>) getIntent().getSerializableExtra("statsMap");
-        int incoming = getIntent().getIntExtra("incomingCount", 0);
-        int outgoing = getIntent().getIntExtra("outgoingCount", 0);
-        int missed = getIntent().getIntExtra("missedCount", 0);
-
-        if (statsMap != null && !statsMap.isEmpty()) {
-            setupBarChart(statsMap);
-            setupRecyclerView(statsMap); // Call the new method to setup the list
+        long version = savedInstanceState != null
+                ? savedInstanceState.getLong(EXTRA_SNAPSHOT_VERSION, -1)
+                : getIntent().getLongExtra(EXTRA_SNAPSHOT_VERSION, -1);
+        CallLogSnapshot snapshot = repository.get(version);
+        if (snapshot != null) {
+            showSnapshot(version, snapshot);
+        } else if (repository.getLatest() != null) {
+            // Replaced by a newer snapshot since the intent was sent
+            showSnapshot(repository.getLatestVersion(), repository.getLatest());
+        } else {
+            restoreFallback(version);
         }
+    }
 
-        if (incoming > 0 || outgoing > 0 || missed > 0) {
-            setupPieChart(incoming, outgoing, missed);
+    @Override
+    protected void onStart() {
+        super.onStart();
+        repository.addListener(repositoryListener);
+        // Catch up on anything published while stopped
+        if (repository.getLatest() != null && repository.getLatestVersion() != shownVersion) {
+            showSnapshot(repository.getLatestVersion(), repository.getLatest());
         }
     }
 
-    // --- NEW METHOD TO SETUP THE DETAILED STATS LIST ---
-    private void setupRecyclerView(HashMap<String, ContactStats> statsMap) {
-        List<CallLogItem> statsList = new ArrayList<>();
+    @Override
+    protected void onStop() {
+        repository.removeListener(repositoryListener);
+        super.onStop();
+    }
 
-        // Convert the statsMap into a list that the adapter can use
-        for (ContactStats stats : statsMap.values()) {
-            String statsData = stats.getCount() + "|" + stats.getTotalDuration();
-            statsList.add(new CallLogItem(stats.getName(), stats.getNumber(), "STATS", 0L, statsData));
-        }
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong(EXTRA_SNAPSHOT_VERSION, shownVersion);
+        if (shownSnapshot == null) return;
 
-        // Sort the list alphabetically by name
-        statsList.sort(Comparator.comparing(CallLogItem::getName));
+        long version = shownVersion;
+        CallLogSnapshot snapshot = shownSnapshot;
+        SnapshotStore store = new SnapshotStore(new File(getCacheDir(), FALLBACK_FILE));
+        IO_EXECUTOR.execute(() -> {
+            if (version == savedVersion) return;
+            try {
+                store.write(snapshot, null, 0, System.currentTimeMillis());
+                savedVersion = version;
+            } catch (IOException e) {
+                Log.w(TAG, "Could not save the statistics snapshot", e);
+            }
+        });
+    }
 
-        // Use the same CallLogAdapter you've already built!
-        CallLogAdapter adapter = new CallLogAdapter(statsList);
-        statsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        statsRecyclerView.setAdapter(adapter);
+    // The process was restarted, so the repository is empty: map the saved file back in
+    private void restoreFallback(long version) {
+        SnapshotStore store = new SnapshotStore(new File(getCacheDir(), FALLBACK_FILE));
+        IO_EXECUTOR.execute(() -> {
+            CallLogSnapshot snapshot;
+            try {
+                SnapshotStore.Saved saved = store.read();
+                if (saved == null) return;
+                snapshot = saved.getSnapshot();
+            } catch (IOException e) {
+                Log.w(TAG, "Could not restore the statistics snapshot", e);
+                return;
+            }
+            savedVersion = version;
+            handler.post(() -> {
+                if (isDestroyed() || shownSnapshot != null) return;
+                showSnapshot(version, snapshot);
+            });
+        });
+    }
+
+    private void showSnapshot(long version, CallLogSnapshot snapshot) {
+        if (version == shownVersion && shownSnapshot != null) return;
+        shownVersion = version;
+        shownSnapshot = snapshot;
+
+        if (!snapshot.getContactStats().isEmpty()) {
+            setupBarChart(snapshot.getTopContacts());
+        }
+        if (snapshot.getIncomingCalls() > 0 || snapshot.getOutgoingCalls() > 0 || snapshot.getMissedCalls() > 0) {
+            setupPieChart(snapshot.getIncomingCalls(), snapshot.getOutgoingCalls(), snapshot.getMissedCalls());
+        }
+        // One row per contact, sorted alphabetically by name; the sort stays off the main thread
+        IO_EXECUTOR.execute(() -> {
+            List<ContactStatsRow> rows = StatsListBuilder.build(snapshot.getContactStats().values());
+            handler.post(() -> {
+                if (shownSnapshot == snapshot) statsAdapter.submitList(rows);
+            });
+        });
     }
 
-    // --- BAR CHART SETUP (No changes here) ---
-    private void setupBarChart(HashMap<String, ContactStats> statsMap) {
-        List<Map.Entry<String, ContactStats>> sortedList = new ArrayList<>(statsMap.entrySet());
-        sortedList.sort((o1, o2) -> Integer.compare(o2.getValue().getTotalDuration(), o1.getValue().getTotalDuration()));
+    // --- BAR CHART SETUP ---
+    private void setupBarChart(List<ContactStats> leaders) {
+        // The snapshot's leaderboard is already ranked; take the first five
+        List<ContactStats> topContacts = leaders.subList(0, Math.min(5, leaders.size()));
 
         List<BarEntry> entries = new ArrayList<>();
         ArrayList<String> labels = new ArrayList<>();
-        int limit = Math.min(sortedList.size(), 5);
+        int limit = topContacts.size();
 
         for (int i = 0; i < limit; i++) {
-            Map.Entry<String, ContactStats> entry = sortedList.get(i);
-            entries.add(new BarEntry(limit - 1 - i, entry.getValue().getTotalDuration() / 60f));
-            labels.add(entry.getValue().getName());
+            ContactStats stats = topContacts.get(i);
+            entries.add(new BarEntry(limit - 1 - i, stats.getTotalDuration() / 60f));
+            labels.add(stats.getName());
         }
         Collections.reverse(labels);
 
@@ -0,0 +1,200 @@
+package com.example.phonecallloganalyzer;
+
+import android.database.Cursor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class CallLogDatabaseTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long DAY_MS = 86_400_000L;
+    private static final TimeZone ZONE = TimeZone.getTimeZone("Asia/Kolkata");
+
+    private CallLogDatabase database;
+    private CallLogTable table;
+
+    @Before
+    public void setUp() {
+        database = new CallLogDatabase(RuntimeEnvironment.getApplication(), null);
+        table = new CallLogTable();
+        Random random = new Random(9);
+        for (int i = 0; i < 5_000; i++) {
+            int contact = (int) (400 * Math.pow(random.nextDouble(), 2));
+            table.append(5_000 - i, "+91 98" + (10_000_000 + contact), contact % 5 == 0 ? null : "Contact " + contact,
+                    CallLogTable.typeCode(1 + random.nextInt(6)), NOW - i * 17 * 60_000L, random.nextInt(3600));
+        }
+        database.insert(table);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    private static void assertSameSketch(DurationSketch expected, DurationSketch actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertEquals(expected.getMedian(), actual.getMedian());
+        assertEquals(expected.getP90(), actual.getP90());
+    }
+
+    private void assertSameAsInMemory(CallLogFilter filter) {
+        int[] rows = new CallLogIndex(table).select(filter);
+        CallLogAggregator inMemory = new CallLogAggregator(10, ZONE);
+        inMemory.addRows(table, rows);
+        CallLogSnapshot expected = inMemory.snapshot();
+        CallLogSnapshot actual = database.aggregate(filter, 10, ZONE).snapshot();
+
+        assertEquals(expected.getIncomingCalls(), actual.getIncomingCalls());
+        assertEquals(expected.getOutgoingCalls(), actual.getOutgoingCalls());
+        assertEquals(expected.getMissedCalls(), actual.getMissedCalls());
+        assertEquals(expected.getOtherCalls(), actual.getOtherCalls());
+        assertEquals(expected.getContactStats().size(), actual.getContactStats().size());
+        for (ContactStats stats : expected.getContactStats().values()) {
+            ContactStats other = actual.getContactStats().get(stats.getNumber());
+            assertEquals(stats.getName(), other.getName());
+            assertEquals(stats.getCount(), other.getCount());
+            assertEquals(stats.getMissedCount(), other.getMissedCount());
+            assertEquals(stats.getTotalDuration(), other.getTotalDuration());
+            assertSameSketch(stats.getDurations(), other.getDurations());
+        }
+        assertSameSketch(expected.getDurations(), actual.getDurations());
+        for (ContactRanking ranking : ContactRanking.values()) {
+            for (int i = 0; i < expected.getTopContacts(ranking).size(); i++) {
+                assertEquals(0, ranking.order().compare(
+                        expected.getTopContacts(ranking).get(i), actual.getTopContacts(ranking).get(i)));
+            }
+        }
+        CallRollups expectedRollups = expected.getRollups();
+        CallRollups actualRollups = actual.getRollups();
+        for (int dayOfWeek = 0; dayOfWeek < CallRollups.DAYS_PER_WEEK; dayOfWeek++) {
+            for (int hour = 0; hour < CallRollups.HOURS_PER_DAY; hour++) {
+                assertEquals(expectedRollups.getHourOfWeekCount(dayOfWeek, hour),
+                        actualRollups.getHourOfWeekCount(dayOfWeek, hour));
+            }
+        }
+        if (!expectedRollups.isEmpty()) {
+            for (int day = expectedRollups.getFirstDay(); day <= expectedRollups.getLastDay(); day++) {
+                assertEquals(expectedRollups.getDayDuration(day), actualRollups.getDayDuration(day));
+            }
+        }
+
+        CallLogTable newest = database.newestRows(filter, 100);
+        assertEquals(Math.min(100, rows.length), newest.size());
+        for (int i = 0; i < newest.size(); i++) {
+            assertEquals(table.getId(rows[i]), newest.getId(i));
+            assertEquals(table.getName(rows[i]), newest.getName(i));
+        }
+    }
+
+    @Test
+    public void groupByAggregatesMatchTheInMemoryAggregator() {
+        assertSameAsInMemory(CallLogFilter.ALL);
+        assertSameAsInMemory(CallLogFilter.ALL.withDateRange(NOW - 7 * DAY_MS, Long.MAX_VALUE));
+        assertSameAsInMemory(CallLogFilter.ALL.withTypes(CallLogFilter.typeBit(CallLogTable.TYPE_MISSED)));
+        assertSameAsInMemory(CallLogFilter.ALL.withTypes(CallLogFilter.typeBit(CallLogTable.TYPE_INCOMING)
+                | CallLogFilter.typeBit(CallLogTable.TYPE_OTHER)).withDateRange(NOW - 30 * DAY_MS, NOW - DAY_MS));
+        assertSameAsInMemory(CallLogFilter.ALL.withNumber(table.getNumber(0)));
+        assertSameAsInMemory(CallLogFilter.ALL.withNumber("+0 unknown"));
+    }
+
+    @Test
+    public void syncedEditsAndDeletesAreApplied() {
+        CallLogTable edits = new CallLogTable();
+        edits.append(5_001, "+91 9800000001", "New", CallLogTable.TYPE_INCOMING, NOW + 60_000L, 45);
+        edits.append(table.getId(10), table.getNumber(10), table.getName(10), CallLogTable.TYPE_MISSED,
+                table.getDate(10), 0);
+        database.insert(edits);
+        database.delete(Arrays.asList(table.getId(20), table.getId(30)));
+
+        // Same edits on the in-memory table
+        table.removeAt(30);
+        table.removeAt(20);
+        table.removeAt(10);
+        table.insertFrom(edits, 1);
+        table.insertFrom(edits, 0);
+
+        assertEquals(table.size(), database.size());
+        assertSameAsInMemory(CallLogFilter.ALL);
+        assertSameAsInMemory(CallLogFilter.ALL.withTypes(CallLogFilter.typeBit(CallLogTable.TYPE_MISSED)));
+    }
+
+    @Test
+    public void findsRowsByIdForTheSync() {
+        assertEquals(Long.valueOf(table.getDate(42)), database.dateOf(table.getId(42)));
+        assertNull(database.dateOf(9_999));
+
+        database.delete(Arrays.asList(2L, 3L));
+        try (Cursor cursor = database.idsAndDates()) {
+            assertEquals(table.size() - 2, cursor.getCount());
+            long previous = 0;
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                assertTrue(id > previous);
+                assertTrue(id != 2 && id != 3);
+                assertEquals(table.getDate(5_000 - (int) id), cursor.getLong(1)); // Ids count down from 5,000
+                previous = id;
+            }
+        }
+    }
+
+    // What MainActivity does with a sync in database mode, against grouping the edited mirror again
+    @Test
+    public void patchedAggregatesMatchAGroupByAfterTheEdits() {
+        CallLogAggregator patched = database.aggregate(CallLogFilter.ALL, 10, ZONE);
+        CallLogTable upserts = new CallLogTable();
+        upserts.append(5_001, table.getNumber(3), table.getName(3), CallLogTable.TYPE_OUTGOING, NOW + 60_000L, 80);
+        upserts.append(table.getId(10), table.getNumber(10), table.getName(10), CallLogTable.TYPE_MISSED,
+                table.getDate(10), 0);
+        List<Long> deleted = Arrays.asList(table.getId(20), table.getId(30));
+
+        CallLogTable replaced = database.rows(Arrays.asList(table.getId(10), table.getId(20), table.getId(30), 9_999L));
+        assertEquals(3, replaced.size());
+        for (int row = 0; row < replaced.size(); row++) {
+            patched.remove(replaced.getNumber(row), replaced.getType(row), replaced.getDate(row), replaced.getDuration(row));
+        }
+        database.delete(deleted);
+        database.insert(upserts);
+        patched.addRows(upserts, 0, upserts.size());
+
+        CallLogSnapshot expected = database.aggregate(CallLogFilter.ALL, 10, ZONE).snapshot();
+        CallLogSnapshot actual = patched.snapshot();
+        assertEquals(expected.getTotalCalls(), actual.getTotalCalls());
+        assertEquals(expected.getMissedCalls(), actual.getMissedCalls());
+        assertEquals(expected.getOutgoingCalls(), actual.getOutgoingCalls());
+        assertEquals(expected.getContactStats().size(), actual.getContactStats().size());
+        for (ContactStats stats : expected.getContactStats().values()) {
+            ContactStats other = actual.getContactStats().get(stats.getNumber());
+            assertEquals(stats.getCount(), other.getCount());
+            assertEquals(stats.getMissedCount(), other.getMissedCount());
+            assertEquals(stats.getTotalDuration(), other.getTotalDuration());
+            assertEquals(stats.getDurations().getMedian(), other.getDurations().getMedian());
+        }
+        assertEquals(expected.getDurations().getCount(), actual.getDurations().getCount());
+    }
+
+    @Test
+    public void callbacksOverTheMirrorMatchAPassOverTheTable() {
+        CallbackSnapshot expected = CallbackTracker.track(table);
+        CallbackSnapshot actual = database.trackCallbacks().snapshot();
+        assertEquals(expected.getOverall().getMissed(), actual.getOverall().getMissed());
+        assertEquals(expected.getOverall().getReturned(), actual.getOverall().getReturned());
+        assertEquals(expected.getOverall().getLatencies().getMedian(), actual.getOverall().getLatencies().getMedian());
+        assertEquals(expected.getByNumber().keySet(), actual.getByNumber().keySet());
+    }
+}
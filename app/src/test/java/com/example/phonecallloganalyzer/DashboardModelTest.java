@@ -0,0 +1,85 @@
+package com.example.phonecallloganalyzer;
+
+import com.github.mikephil.charting.data.BarEntry;
+import com.github.mikephil.charting.interfaces.datasets.IBarDataSet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class DashboardModelTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static CallLogSnapshot snapshot(CallLogTable table) {
+        CallLogAggregator aggregator = new CallLogAggregator(25, UTC);
+        aggregator.addRows(table, 0, table.size());
+        return aggregator.snapshot();
+    }
+
+    private static CallLogTable table(int rows) {
+        CallLogTable table = new CallLogTable();
+        Random random = new Random(3);
+        for (int i = 0; i < rows; i++) {
+            int contact = random.nextInt(40);
+            table.append(rows - i, "+1555" + (1_000_000 + contact), "Contact " + contact,
+                    CallLogTable.typeCode(1 + random.nextInt(3)), NOW - i * 3_600_000L, random.nextInt(600));
+        }
+        return table;
+    }
+
+    @Test
+    public void barsFollowTheRankingTopFirst() {
+        CallLogTable table = table(2_000);
+        CallLogSnapshot snapshot = snapshot(table);
+        DashboardModel model = DashboardModel.build(table, null, snapshot, ContactRanking.CALL_COUNT, 10,
+                new CallLogFormatter(), NOW);
+
+        assertEquals(10, model.barLimit);
+        assertEquals("Top Contacts by Calls", model.barTitle);
+        IBarDataSet bars = model.barData.getDataSetByIndex(0);
+        assertEquals(10, bars.getEntryCount());
+        // The top contact is the highest bar, so its label comes last on the axis
+        ContactStats top = snapshot.getTopContacts(ContactRanking.CALL_COUNT).get(0);
+        BarEntry highest = bars.getEntryForIndex(0);
+        assertSame(top, highest.getData());
+        assertEquals(9f, highest.getX(), 0f);
+        assertEquals(top.getCount(), highest.getY(), 0f);
+        assertEquals(top.getName(), model.barLabels.get(9));
+
+        assertEquals(snapshot.getContactStats().size(), model.statsRows.size());
+        for (int i = 1; i < model.statsRows.size(); i++) {
+            assertTrue(model.statsRows.get(i - 1).getName().compareTo(model.statsRows.get(i).getName()) <= 0);
+        }
+        assertNotNull(model.durationHistogram);
+        assertEquals(DashboardModel.VOLUME_CHART_DAYS, model.volumeData.getDataSetByIndex(0).getEntryCount());
+    }
+
+    @Test
+    public void otherBarsShareTheRestOfTheModel() {
+        CallLogTable table = table(500);
+        int[] rows = {0, 1, 2};
+        DashboardModel model = DashboardModel.build(table, rows, snapshot(table), ContactRanking.TOTAL_DURATION, 5,
+                new CallLogFormatter(), NOW);
+        assertSame(model, model.withBars(ContactRanking.TOTAL_DURATION, 5));
+
+        DashboardModel missed = model.withBars(ContactRanking.MISSED_COUNT, 25);
+        assertNotSame(model.barData, missed.barData);
+        assertEquals("Top Contacts by Missed Calls", missed.barTitle);
+        assertSame(model.table, missed.table);
+        assertSame(model.rows, missed.rows);
+        assertSame(model.statsRows, missed.statsRows);
+        assertSame(model.pieData, missed.pieData);
+        assertSame(model.volumeData, missed.volumeData);
+        assertSame(model.durationHistogram, missed.durationHistogram);
+    }
+}
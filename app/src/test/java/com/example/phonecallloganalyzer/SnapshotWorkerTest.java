@@ -0,0 +1,212 @@
+package com.example.phonecallloganalyzer;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.provider.CallLog;
+import androidx.work.ListenableWorker;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.testing.TestWorkerBuilder;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class SnapshotWorkerTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    // The columns CallLogSync reads, in an in-memory table
+    public static class FakeCallLogProvider extends ContentProvider {
+
+        private SQLiteDatabase db;
+        private long nextId = 1;
+
+        @Override
+        public boolean onCreate() {
+            db = SQLiteDatabase.create(null);
+            db.execSQL("CREATE TABLE calls (_id INTEGER PRIMARY KEY, number TEXT, type INTEGER, date INTEGER,"
+                    + " duration INTEGER, last_modified INTEGER)");
+            return true;
+        }
+
+        // Ignores the limit parameter, as CallLogSync allows
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] args, String sortOrder) {
+            return db.query("calls", projection, selection, args, null, null, sortOrder);
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return Uri.withAppendedPath(uri, Long.toString(db.insert("calls", null, values)));
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection, String[] args) {
+            return db.update("calls", values, selection, args);
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] args) {
+            return db.delete("calls", selection, args);
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return null;
+        }
+
+        void addCall(int contact, int type, long date, int duration) {
+            ContentValues values = new ContentValues();
+            values.put(CallLog.Calls._ID, nextId++);
+            values.put(CallLog.Calls.NUMBER, "+1555" + (1_000_000 + contact));
+            values.put(CallLog.Calls.TYPE, type);
+            values.put(CallLog.Calls.DATE, date);
+            values.put(CallLog.Calls.DURATION, duration);
+            values.put(CallLog.Calls.LAST_MODIFIED, date + 1_000);
+            insert(CallLog.Calls.CONTENT_URI, values);
+        }
+    }
+
+    private Application context;
+    private FakeCallLogProvider provider;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        provider = Robolectric.setupContentProvider(FakeCallLogProvider.class, CallLog.AUTHORITY);
+        Random random = new Random(4);
+        for (int i = 0; i < 300; i++) {
+            provider.addCall(random.nextInt(30), 1 + random.nextInt(3), NOW - (300 - i) * 3_600_000L, random.nextInt(900));
+        }
+    }
+
+    private void grantPermissions() {
+        shadowOf(context).grantPermissions(Manifest.permission.READ_CALL_LOG, Manifest.permission.READ_CONTACTS);
+    }
+
+    private String runWorker() {
+        ListenableWorker.Result result = TestWorkerBuilder.from(context, SnapshotWorker.class, Runnable::run)
+                .build()
+                .doWork();
+        assertTrue(result instanceof ListenableWorker.Result.Success);
+        return result.getOutputData().getString(SnapshotWorker.KEY_PASS);
+    }
+
+    private SnapshotStore.Saved saved() throws IOException {
+        return new SnapshotStore(new File(context.getNoBackupFilesDir(), MainActivity.SNAPSHOT_FILE)).read();
+    }
+
+    // What a fresh pass over the whole provider gives
+    private CallLogSnapshot expected() {
+        CallLogAggregator aggregator = new CallLogAggregator(MainActivity.TOP_CONTACTS);
+        new CallLogSync(context).aggregateAll(aggregator, new CallLogTable(), 0, new CancellationToken());
+        return aggregator.snapshot();
+    }
+
+    private static void assertSameSnapshot(CallLogSnapshot expected, CallLogSnapshot actual) {
+        assertEquals(expected.getIncomingCalls(), actual.getIncomingCalls());
+        assertEquals(expected.getOutgoingCalls(), actual.getOutgoingCalls());
+        assertEquals(expected.getMissedCalls(), actual.getMissedCalls());
+        assertEquals(expected.getContactStats().size(), actual.getContactStats().size());
+        for (ContactStats stats : expected.getContactStats().values()) {
+            ContactStats other = actual.getContactStats().get(stats.getNumber());
+            assertEquals(stats.getCount(), other.getCount());
+            assertEquals(stats.getTotalDuration(), other.getTotalDuration());
+        }
+        assertEquals(expected.getDurations().getMedian(), actual.getDurations().getMedian());
+    }
+
+    @Test
+    public void addsNewCallsOntoTheSavedSnapshot() throws IOException {
+        grantPermissions();
+        assertEquals(SnapshotWorker.PASS_FULL, runWorker());
+        SnapshotStore.Saved first = saved();
+        assertEquals(300, first.getSnapshot().getTotalCalls());
+        assertEquals(new CallLogWatermark(300, 300, NOW - 3_600_000L + 1_000), first.getWatermark());
+
+        provider.addCall(7, CallLog.Calls.INCOMING_TYPE, NOW, 120);
+        provider.addCall(31, CallLog.Calls.MISSED_TYPE, NOW + 60_000, 0);
+        provider.addCall(2, CallLog.Calls.OUTGOING_TYPE, NOW - 400 * 3_600_000L, 45); // Imported, older than the rest
+        assertEquals(SnapshotWorker.PASS_INCREMENTAL, runWorker());
+        SnapshotStore.Saved second = saved();
+        assertSameSnapshot(expected(), second.getSnapshot());
+        assertEquals(303, second.getWatermark().getRows());
+        assertEquals(303, second.getWatermark().getLastId());
+
+        CallLogTable recent = second.getRecentRows();
+        assertEquals(303, recent.size());
+        assertEquals(302, recent.getId(0));
+        assertEquals(301, recent.getId(1));
+        assertEquals(303, recent.getId(302));
+        for (int row = 1; row < recent.size(); row++) assertTrue(recent.getDate(row - 1) >= recent.getDate(row));
+
+        assertEquals(SnapshotWorker.PASS_UNCHANGED, runWorker());
+        assertEquals(second.getSavedAt(), saved().getSavedAt());
+    }
+
+    @Test
+    public void deletionsAndEditsTakeAFullPass() throws IOException {
+        grantPermissions();
+        runWorker();
+
+        provider.delete(CallLog.Calls.CONTENT_URI, CallLog.Calls._ID + " = ?", new String[]{"17"});
+        assertEquals(SnapshotWorker.PASS_FULL, runWorker());
+        assertEquals(299, saved().getSnapshot().getTotalCalls());
+
+        ContentValues edit = new ContentValues();
+        edit.put(CallLog.Calls.DURATION, 5_000);
+        edit.put(CallLog.Calls.LAST_MODIFIED, NOW + 1);
+        provider.update(CallLog.Calls.CONTENT_URI, edit, CallLog.Calls._ID + " = ?", new String[]{"42"});
+        assertEquals(SnapshotWorker.PASS_FULL, runWorker());
+        assertSameSnapshot(expected(), saved().getSnapshot());
+        assertEquals(SnapshotWorker.PASS_UNCHANGED, runWorker());
+    }
+
+    @Test
+    public void failsWithoutPermission() throws IOException {
+        ListenableWorker.Result result = TestWorkerBuilder.from(context, SnapshotWorker.class, Runnable::run)
+                .build()
+                .doWork();
+        assertEquals(ListenableWorker.Result.failure(), result);
+        assertNull(saved());
+    }
+
+    @Test
+    public void schedulingTwiceKeepsTheQueuedWork() throws Exception {
+        WorkManagerTestInitHelper.initializeTestWorkManager(context);
+        WorkManager workManager = WorkManager.getInstance(context);
+        SnapshotWorker.schedule(context);
+        List<WorkInfo> periodic = workManager.getWorkInfosForUniqueWork(SnapshotWorker.PERIODIC_WORK).get();
+        List<WorkInfo> onChange = workManager.getWorkInfosForUniqueWork(SnapshotWorker.ON_CHANGE_WORK).get();
+        assertEquals(1, periodic.size());
+        assertEquals(1, onChange.size());
+        assertEquals(WorkInfo.State.ENQUEUED, onChange.get(0).getState());
+
+        SnapshotWorker.schedule(context);
+        assertEquals(periodic.get(0).getId(),
+                workManager.getWorkInfosForUniqueWork(SnapshotWorker.PERIODIC_WORK).get().get(0).getId());
+        assertEquals(onChange.get(0).getId(),
+                workManager.getWorkInfosForUniqueWork(SnapshotWorker.ON_CHANGE_WORK).get().get(0).getId());
+    }
+}
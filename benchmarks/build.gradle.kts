@@ -0,0 +1,25 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmh(project(":core"))
+}
+
+// Run with ./gradlew :benchmarks:jmh, results land in build/results/jmh/results.json
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    // e.g. -PjmhInclude=FormatBenchmark to run a single class
+    providers.gradleProperty("jmhInclude").orNull?.let { includes.set(listOf(it)) }
+}
@@ -0,0 +1,43 @@
+package com.example.phonecallloganalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Callback latency of every missed call, over the table a full load builds
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CallbackBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private CallLogTable table;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        table = new SyntheticCallLog(rows, 42).table();
+    }
+
+    @Benchmark
+    public CallbackSnapshot track() {
+        return CallbackTracker.track(table);
+    }
+
+    // For scale: the aggregation the same load already does
+    @Benchmark
+    public CallLogAggregator aggregate() {
+        CallLogAggregator aggregator = new CallLogAggregator(5);
+        aggregator.addRows(table, 0, table.size());
+        return aggregator;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.phonecallloganalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+// Importing a generated CDR export. One op reads the whole file, so rows / (ms/op) is rows per ms:
+// the 1M-row file must come in under 1000 ms/op for 1M rows per second.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CsvImportBenchmark {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Param({"1000000"})
+    public int rows;
+
+    // How the export writes its start times
+    @Param({"millis", "iso"})
+    public String dates;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticCallLog log = new SyntheticCallLog(rows, 42);
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ROOT);
+        iso.setTimeZone(UTC);
+        file = File.createTempFile("cdr", ".csv");
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("id,number,name,type,date,duration");
+            for (int i = 0; i < rows; i++) {
+                String date = dates.equals("iso") ? iso.format(new Date(log.dates[i])) : Long.toString(log.dates[i]);
+                writer.println(log.ids[i] + "," + log.numbers[i] + ",\"" + log.names[i] + "\"," + log.types[i]
+                        + "," + date + "," + log.durations[i]);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    // Parsing alone, every field touched
+    @Benchmark
+    public long parseMapped() throws IOException {
+        long checksum = 0;
+        try (MappedCsvCallRecordSource source = MappedCsvCallRecordSource.open(file, UTC, null)) {
+            while (source.next()) {
+                checksum += source.id() + source.date() + source.type() + source.duration()
+                        + System.identityHashCode(source.number()) + System.identityHashCode(source.name());
+            }
+        }
+        return checksum;
+    }
+
+    // Baseline: a line reader with split and parse, one String per field
+    @Benchmark
+    public long parseLines() throws IOException {
+        long checksum = 0;
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ROOT);
+        iso.setTimeZone(UTC);
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath())) {
+            reader.readLine();
+            for (String line; (line = reader.readLine()) != null; ) {
+                String[] fields = line.split(",", -1);
+                long date;
+                try {
+                    date = dates.equals("iso") ? iso.parse(fields[4]).getTime() : Long.parseLong(fields[4]);
+                } catch (ParseException e) {
+                    continue;
+                }
+                checksum += Long.parseLong(fields[0]) + date + Integer.parseInt(fields[3]) + Integer.parseInt(fields[5])
+                        + fields[1].hashCode() + fields[2].hashCode();
+            }
+        }
+        return checksum;
+    }
+
+    // The exact path: rows into a CallLogTable and per-contact stats
+    @Benchmark
+    public CallLogSnapshot importIntoTable() throws IOException {
+        CallLogAggregator aggregator = new CallLogAggregator(5, UTC);
+        try (MappedCsvCallRecordSource source = MappedCsvCallRecordSource.open(file, UTC, null)) {
+            aggregator.consume(source, new CallLogTable());
+        }
+        return aggregator.snapshot();
+    }
+
+    // The bounded-memory path ApproximateStatsActivity uses for imports
+    @Benchmark
+    public ApproximateSnapshot importApproximate() throws IOException {
+        ApproximateAggregator aggregator = new ApproximateAggregator(10, UTC);
+        try (MappedCsvCallRecordSource source = MappedCsvCallRecordSource.open(file, UTC, null)) {
+            aggregator.consume(source);
+        }
+        return aggregator.snapshot();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.phonecallloganalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Applying a dashboard filter: the budget is one 16 ms frame at 100k rows
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private CallLogTable table;
+    private CallLogIndex index;
+    private CallLogFilter lastMonthMissed;
+    private CallLogFilter lastMonthAnswered;
+    private CallLogFilter topContact;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        table = new SyntheticCallLog(rows, 42).table();
+        index = new CallLogIndex(table);
+        CallLogFilter lastMonth = CallLogFilter.ALL.withDateRange(
+                table.getDate(0) - 30 * 86_400_000L, Long.MAX_VALUE);
+        lastMonthMissed = lastMonth.withTypes(CallLogFilter.typeBit(CallLogTable.TYPE_MISSED));
+        lastMonthAnswered = lastMonth.withTypes(CallLogFilter.typeBit(CallLogTable.TYPE_INCOMING)
+                | CallLogFilter.typeBit(CallLogTable.TYPE_OUTGOING));
+        topContact = CallLogFilter.ALL.withNumber(table.getNumber(0));
+    }
+
+    // Rebuilt after every sync that changes the table
+    @Benchmark
+    public CallLogIndex buildIndex() {
+        return new CallLogIndex(table);
+    }
+
+    // Baseline: check every row
+    @Benchmark
+    public CallLogAggregator scanLastMonthMissed() {
+        CallLogAggregator aggregator = new CallLogAggregator(25);
+        for (int row = 0; row < table.size(); row++) {
+            if (lastMonthMissed.matches(table, row)) {
+                aggregator.add(table.getNumber(row), table.getName(row), table.getType(row),
+                        table.getDate(row), table.getDuration(row));
+            }
+        }
+        return aggregator;
+    }
+
+    @Benchmark
+    public CallLogAggregator lastMonthMissed() {
+        return index.aggregate(lastMonthMissed, 25);
+    }
+
+    @Benchmark
+    public CallLogAggregator lastMonthAnswered() {
+        return index.aggregate(lastMonthAnswered, 25);
+    }
+
+    @Benchmark
+    public CallLogSnapshot topContactSnapshot() {
+        return index.aggregate(topContact, 25).snapshot();
+    }
+}
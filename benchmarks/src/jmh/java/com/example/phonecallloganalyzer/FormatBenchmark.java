@@ -0,0 +1,77 @@
+package com.example.phonecallloganalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Per bound row: the original CallFormats against the cached CallLogFormatter the adapters use
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FormatBenchmark {
+
+    private static final int SAMPLES = 1024; // Power of two, see next()
+
+    private final long[] dates = new long[SAMPLES];
+    private final int[] durations = new int[SAMPLES];
+    private final CallLogFormatter formatter = new CallLogFormatter();
+    private final StringBuilder out = new StringBuilder(64);
+    private int position;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Spread over the last month so today, yesterday and older rows are all hit
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < SAMPLES; i++) {
+            dates[i] = now - (long) (random.nextDouble() * 30 * 24 * 3_600_000L);
+            durations[i] = random.nextInt(7200);
+        }
+    }
+
+    private int next() {
+        position = (position + 1) & (SAMPLES - 1);
+        return position;
+    }
+
+    @Benchmark
+    public String formatDate() {
+        return CallFormats.formatDate(dates[next()]);
+    }
+
+    @Benchmark
+    public String formatLogDuration() {
+        return CallFormats.formatLogDuration(durations[next()]);
+    }
+
+    @Benchmark
+    public String formatStatsDuration() {
+        return CallFormats.formatStatsDuration(durations[next()]);
+    }
+
+    @Benchmark
+    public StringBuilder cachedDate() {
+        out.setLength(0);
+        return formatter.appendDate(out, dates[next()]);
+    }
+
+    @Benchmark
+    public StringBuilder cachedLogDuration() {
+        out.setLength(0);
+        return formatter.appendLogDuration(out, durations[next()]);
+    }
+
+    @Benchmark
+    public StringBuilder cachedStatsDuration() {
+        out.setLength(0);
+        return formatter.appendStatsDuration(out, durations[next()]);
+    }
+}
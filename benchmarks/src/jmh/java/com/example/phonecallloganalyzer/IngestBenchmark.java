@@ -0,0 +1,84 @@
+package com.example.phonecallloganalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The per-row work of MainActivity.loadCallLogsInBackground, minus the provider query
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IngestBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private SyntheticCallLog log;
+    private String[] typeStrings;
+    private String[] durationStrings;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        log = new SyntheticCallLog(rows, 42);
+        // The old loop read TYPE and DURATION as strings off the cursor
+        typeStrings = new String[rows];
+        durationStrings = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            typeStrings[i] = String.valueOf(log.types[i]);
+            durationStrings[i] = String.valueOf(log.durations[i]);
+        }
+    }
+
+    @Benchmark
+    public CallLogSnapshot aggregateIntoTable() {
+        CallLogAggregator aggregator = new CallLogAggregator(5);
+        aggregator.consume(log.source(), new CallLogTable());
+        return aggregator.snapshot();
+    }
+
+    @Benchmark
+    public CallLogAggregator aggregateOnly() {
+        CallLogAggregator aggregator = new CallLogAggregator(5);
+        aggregator.consume(log.source(), null);
+        return aggregator;
+    }
+
+    // Baseline: the List<CallLogItem> loop the app used before CallLogTable
+    @Benchmark
+    public void objectListLoop(Blackhole blackhole) {
+        List<CallLogItem> loadedLogs = new ArrayList<>();
+        HashMap<String, ContactStats> loadedStats = new HashMap<>();
+        int incoming = 0, outgoing = 0, missed = 0;
+        for (int i = 0; i < rows; i++) {
+            String number = log.numbers[i];
+            String name = log.names[i];
+            String type;
+            switch (Integer.parseInt(typeStrings[i])) {
+                case 1: type = "Incoming"; incoming++; break;
+                case 2: type = "Outgoing"; outgoing++; break;
+                case 3: type = "Missed"; missed++; break;
+                default: type = "Other"; break;
+            }
+            loadedLogs.add(new CallLogItem(log.ids[i], name, number, type, log.dates[i], durationStrings[i]));
+            int duration = Integer.parseInt(durationStrings[i]);
+            loadedStats.computeIfAbsent(number, k -> new ContactStats(name, number)).addCall(duration);
+        }
+        blackhole.consume(incoming);
+        blackhole.consume(outgoing);
+        blackhole.consume(missed);
+        blackhole.consume(loadedLogs);
+        blackhole.consume(loadedStats);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.phonecallloganalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// One keystroke of the search box, from query to the rows handed to the adapter: the budget is
+// a 16 ms frame, with room left for the bind
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private CallLogTable table;
+    private SearchIndex index;
+    private String digitRun;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        table = new SyntheticCallLog(rows, 42).table();
+        index = new SearchIndex();
+        index.update(table);
+        String number = table.getNumber(rows / 2);
+        digitRun = number.substring(number.length() - 6, number.length() - 1);
+    }
+
+    // At load, and after a sync only for the new contacts
+    @Benchmark
+    public SearchIndex buildIndex() {
+        SearchIndex built = new SearchIndex();
+        built.update(table);
+        return built;
+    }
+
+    // Baseline: contains() on every row's name and number
+    @Benchmark
+    public int[] scanNames() {
+        return scan("contact 12");
+    }
+
+    @Benchmark
+    public int[] scanDigits() {
+        return scan(digitRun);
+    }
+
+    @Benchmark
+    public int[] namePrefix() {
+        return SearchIndex.select(table, null, index.findContacts("contact 12"));
+    }
+
+    // "Contact" is in two thirds of the names: most of the work is the row pass
+    @Benchmark
+    public int[] broadNamePrefix() {
+        return SearchIndex.select(table, null, index.findContacts("con"));
+    }
+
+    @Benchmark
+    public int[] digitSubstring() {
+        return SearchIndex.select(table, null, index.findContacts(digitRun));
+    }
+
+    // Under three digits there is no trigram to go by
+    @Benchmark
+    public int[] shortDigits() {
+        return SearchIndex.select(table, null, index.findContacts("98"));
+    }
+
+    private int[] scan(String query) {
+        int[] found = new int[table.size()];
+        int count = 0;
+        for (int row = 0; row < table.size(); row++) {
+            String name = table.getName(row);
+            if ((name != null && name.toLowerCase(Locale.ROOT).contains(query)) || table.getNumber(row).contains(query)) {
+                found[count++] = row;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+}
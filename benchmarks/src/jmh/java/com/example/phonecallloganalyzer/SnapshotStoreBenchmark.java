@@ -0,0 +1,102 @@
+package com.example.phonecallloganalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Cold start restore of the saved aggregates, against deserializing the old Intent extra
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnapshotStoreBenchmark {
+
+    private static final int RECENT_ROWS = 500;
+
+    @Param({"1000", "10000"})
+    public int contacts;
+
+    private CallLogSnapshot snapshot;
+    private CallLogTable table;
+    private SnapshotStore store;
+    private byte[] serializedMap;
+
+    // The fields ContactStats had while it went through the Intent as a Serializable
+    private static final class SerializedStats implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String name, number;
+        final int count, missedCount;
+        final long totalDuration;
+        final int[] durationCounts = new int[DurationSketch.BUCKETS];
+
+        SerializedStats(ContactStats stats) {
+            name = stats.getName();
+            number = stats.getNumber();
+            count = stats.getCount();
+            missedCount = stats.getMissedCount();
+            totalDuration = stats.getTotalDuration();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticCallLog log = new SyntheticCallLog(contacts * 20, contacts, 42);
+        table = log.table();
+        snapshot = log.aggregate().snapshot();
+
+        store = new SnapshotStore(File.createTempFile("snapshot", ".bin"));
+        store.write(snapshot, table, RECENT_ROWS, SyntheticCallLog.NEWEST_DATE);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            HashMap<String, SerializedStats> map = new HashMap<>();
+            for (Map.Entry<String, ContactStats> entry : snapshot.getContactStats().entrySet()) {
+                map.put(entry.getKey(), new SerializedStats(entry.getValue()));
+            }
+            out.writeObject(map);
+        }
+        serializedMap = bytes.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.delete();
+    }
+
+    // Baseline: the Serializable HashMap the statistics screen used to receive
+    @Benchmark
+    public Object deserializeStatsMap() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serializedMap))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public SnapshotStore.Saved readStore() throws IOException {
+        return store.read();
+    }
+
+    @Benchmark
+    public SnapshotStore writeStore() throws IOException {
+        store.write(snapshot, table, RECENT_ROWS, SyntheticCallLog.NEWEST_DATE);
+        return store;
+    }
+}
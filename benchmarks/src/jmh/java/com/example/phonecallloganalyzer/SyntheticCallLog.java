@@ -0,0 +1,83 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.Random;
+
+/**
+ * Seeded, reproducible call log for the benchmarks. Rows are newest first
+ * like the provider cursor, a few contacts get most of the calls, and
+ * numbers come in the mix of formats a real call log has.
+ */
+public final class SyntheticCallLog {
+
+    public static final long NEWEST_DATE = 1_700_000_000_000L;
+
+    public final int rows;
+    public final int contacts;
+    public final long[] ids;
+    public final String[] numbers;
+    public final String[] names;
+    public final int[] types;
+    public final long[] dates;
+    public final int[] durations;
+
+    public SyntheticCallLog(int rows, long seed) {
+        this(rows, Math.max(50, rows / 25), seed);
+    }
+
+    public SyntheticCallLog(int rows, int contacts, long seed) {
+        this.rows = rows;
+        this.contacts = contacts;
+        Random random = new Random(seed);
+
+        String[] contactNumbers = new String[contacts];
+        String[] contactNames = new String[contacts];
+        for (int i = 0; i < contacts; i++) {
+            String national = String.valueOf(7_000_000_000L + random.nextInt(999_999_999));
+            switch (i % 3) {
+                case 0: contactNumbers[i] = "+91" + national; break;
+                case 1: contactNumbers[i] = "0" + national; break;
+                default: contactNumbers[i] = national.substring(0, 5) + " " + national.substring(5); break;
+            }
+            // Roughly a third of callers are not in the address book
+            contactNames[i] = i % 3 == 2 ? contactNumbers[i] : "Contact " + i;
+        }
+
+        ids = new long[rows];
+        numbers = new String[rows];
+        names = new String[rows];
+        types = new int[rows];
+        dates = new long[rows];
+        durations = new int[rows];
+
+        long date = NEWEST_DATE;
+        for (int i = 0; i < rows; i++) {
+            double skew = random.nextDouble();
+            int contact = (int) (contacts * skew * skew * skew);
+            ids[i] = rows - i;
+            numbers[i] = contactNumbers[contact];
+            names[i] = contactNames[contact];
+
+            int roll = random.nextInt(100);
+            types[i] = roll < 45 ? 1 : roll < 80 ? 2 : roll < 95 ? 3 : 5; // incoming, outgoing, missed, rejected
+            durations[i] = types[i] == 1 || types[i] == 2 ? (int) (-180 * Math.log(1 - random.nextDouble())) : 0;
+            dates[i] = date;
+            date -= 60_000L + random.nextInt(3_600_000);
+        }
+    }
+
+    public ArrayCallRecordSource source() {
+        return new ArrayCallRecordSource(ids, numbers, names, types, dates, durations);
+    }
+
+    public CallLogTable table() {
+        CallLogTable table = new CallLogTable();
+        new CallLogAggregator(5).consume(source(), table);
+        return table;
+    }
+
+    public CallLogAggregator aggregate() {
+        CallLogAggregator aggregator = new CallLogAggregator(5);
+        aggregator.consume(source(), null);
+        return aggregator;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.phonecallloganalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// setupBarChart's top-5 selection and setupStatsRecyclerView's list build
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TopContactsBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private CallLogAggregator aggregator;
+    private HashMap<String, ContactStats> statsMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        aggregator = new SyntheticCallLog(rows, 42).aggregate();
+        statsMap = new HashMap<>(aggregator.snapshot().getContactStats());
+    }
+
+    // Baseline: copy every entry and fully sort to take five
+    @Benchmark
+    public List<Map.Entry<String, ContactStats>> fullSortTop5() {
+        List<Map.Entry<String, ContactStats>> sortedList = new ArrayList<>(statsMap.entrySet());
+        sortedList.sort((o1, o2) -> Long.compare(o2.getValue().getTotalDuration(), o1.getValue().getTotalDuration()));
+        return sortedList.subList(0, Math.min(sortedList.size(), 5));
+    }
+
+    @Benchmark
+    public List<ContactStats> boundedHeapTop5() {
+        return TopK.select(statsMap.values(), 5, ContactRanking.TOTAL_DURATION.order());
+    }
+
+    @Benchmark
+    public CallLogSnapshot snapshot() {
+        return aggregator.snapshot();
+    }
+
+    @Benchmark
+    public List<ContactStatsRow> buildStatsList() {
+        return StatsListBuilder.build(statsMap.values());
+    }
+}
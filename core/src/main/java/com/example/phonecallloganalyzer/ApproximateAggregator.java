@@ -0,0 +1,143 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TimeZone;
+
+/**
+ * Call log analytics in fixed-size state, for imports too large to aggregate
+ * per number. Counters per call type and the CallRollups are exact, as in
+ * CallLogAggregator. Everything per number is sketched:
+ * - distinct callers overall, per month and per day with HyperLogLog;
+ * - calls and seconds per number with Count-Min, and the top contacts by
+ *   each with HeavyHitters over those estimates.
+ *
+ * Memory depends on the number of days and months covered, not on the number
+ * of calls or numbers: about 1.1 MB of sketches plus 4 KB per month and 1 KB
+ * per day of history. Owned by one thread, like CallLogAggregator.
+ */
+public class ApproximateAggregator {
+
+    static final int DISTINCT_PRECISION = 14; // 0.8% standard error
+    static final int MONTH_PRECISION = 12; // 1.6%
+    static final int DAY_PRECISION = 10; // 3.3%
+    static final int SKETCH_DEPTH = 4; // Bounds hold with 98% confidence
+    static final int SKETCH_WIDTH = 16_384; // Overcounts by at most 0.017% of the total
+    static final int CANDIDATES_PER_SLOT = 4;
+
+    private final int topK;
+    private final CallRollups rollups;
+    private long incomingCalls, outgoingCalls, missedCalls, otherCalls;
+    private long totalDuration;
+
+    private final HyperLogLog distinct = new HyperLogLog(DISTINCT_PRECISION);
+    private final HashMap<Integer, HyperLogLog> byMonth = new HashMap<>();
+    private final HashMap<Integer, HyperLogLog> byDay = new HashMap<>();
+    private final CountMinSketch callCounts = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final CountMinSketch callSeconds = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final HeavyHitters topByCalls;
+    private final HeavyHitters topByDuration;
+
+    // Records mostly arrive in date order, so the last day's sketches are kept at hand
+    private int lastDay = Integer.MIN_VALUE;
+    private HyperLogLog lastDaySketch, lastMonthSketch;
+
+    public ApproximateAggregator(int topK) {
+        this(topK, TimeZone.getDefault());
+    }
+
+    public ApproximateAggregator(int topK, TimeZone zone) {
+        this.topK = topK;
+        this.rollups = new CallRollups(zone);
+        this.topByCalls = new HeavyHitters(topK * CANDIDATES_PER_SLOT);
+        this.topByDuration = new HeavyHitters(topK * CANDIDATES_PER_SLOT);
+    }
+
+    // Drains the source
+    public void consume(CallRecordSource source) {
+        consume(source, new CancellationToken());
+    }
+
+    // Drains the source, checking the token every few thousand records
+    public void consume(CallRecordSource source, CancellationToken token) {
+        int records = 0;
+        while (source.next()) {
+            if ((++records & 4095) == 0) token.throwIfCancelled();
+            add(source.number(), source.name(), CallLogTable.typeCode(source.type()), source.date(), source.duration());
+        }
+    }
+
+    public void add(String number, String name, byte type, long date, int duration) {
+        switch (type) {
+            case CallLogTable.TYPE_INCOMING: incomingCalls++; break;
+            case CallLogTable.TYPE_OUTGOING: outgoingCalls++; break;
+            case CallLogTable.TYPE_MISSED: missedCalls++; break;
+            default: otherCalls++; break;
+        }
+        totalDuration += duration;
+        rollups.add(date, duration);
+
+        if (number == null) number = "";
+        long hash = hash(number);
+        distinct.add(hash);
+        int day = rollups.localDay(date);
+        if (day != lastDay) {
+            lastDay = day;
+            lastDaySketch = byDay.computeIfAbsent(day, k -> new HyperLogLog(DAY_PRECISION));
+            lastMonthSketch = byMonth.computeIfAbsent(CallRollups.monthOf(day), k -> new HyperLogLog(MONTH_PRECISION));
+        }
+        lastDaySketch.add(hash);
+        lastMonthSketch.add(hash);
+
+        topByCalls.offer(number, name, callCounts.addAndEstimate(hash, 1));
+        if (duration > 0) topByDuration.offer(number, name, callSeconds.addAndEstimate(hash, duration));
+    }
+
+    public ApproximateSnapshot snapshot() {
+        int[] months = sortedKeys(byMonth);
+        long[] monthEstimates = new long[months.length];
+        for (int i = 0; i < months.length; i++) monthEstimates[i] = byMonth.get(months[i]).estimate();
+        int[] days = sortedKeys(byDay);
+        long[] dayEstimates = new long[days.length];
+        for (int i = 0; i < days.length; i++) dayEstimates[i] = byDay.get(days[i]).estimate();
+
+        return new ApproximateSnapshot(incomingCalls, outgoingCalls, missedCalls, otherCalls, totalDuration,
+                new CallRollups(rollups), distinct.estimate(), 2 * HyperLogLog.standardError(DISTINCT_PRECISION),
+                months, monthEstimates, 2 * HyperLogLog.standardError(MONTH_PRECISION),
+                days, dayEstimates, 2 * HyperLogLog.standardError(DAY_PRECISION),
+                topByCalls.top(topK), callCounts.errorBound(),
+                topByDuration.top(topK), callSeconds.errorBound(), callCounts.confidence(),
+                stateBytes());
+    }
+
+    // Sketches and candidate lists; the rollups come on top, like in the exact aggregator
+    public long stateBytes() {
+        long bytes = distinct.sizeInBytes() + callCounts.sizeInBytes() + callSeconds.sizeInBytes();
+        bytes += (long) byMonth.size() * (1 << MONTH_PRECISION) + (long) byDay.size() * (1 << DAY_PRECISION);
+        bytes += (long) (topByCalls.capacity() + topByDuration.capacity()) * 128; // Entry, hitter, strings
+        return bytes;
+    }
+
+    // 64-bit FNV-1a, finished with the MurmurHash3 mixer so every bit depends on every char.
+    // String.hashCode() has too few bits for millions of numbers.
+    static long hash(String number) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < number.length(); i++) {
+            h ^= number.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static int[] sortedKeys(HashMap<Integer, ?> map) {
+        int[] keys = new int[map.size()];
+        int i = 0;
+        for (int key : map.keySet()) keys[i++] = key;
+        Arrays.sort(keys);
+        return keys;
+    }
+}
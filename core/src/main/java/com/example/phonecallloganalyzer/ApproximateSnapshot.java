@@ -0,0 +1,94 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable result of an ApproximateAggregator, with the error bound of every
+ * estimate. Distinct counts are within the given fraction of the truth about
+ * 95% of the time. Per-contact calls and seconds are never below the truth
+ * and exceed it by at most the given bound, at getConfidence().
+ */
+public final class ApproximateSnapshot {
+
+    private final long incomingCalls, outgoingCalls, missedCalls, otherCalls;
+    private final long totalDuration;
+    private final CallRollups rollups;
+    private final long distinctCallers;
+    private final double distinctError;
+    private final int[] months;
+    private final long[] monthDistinct;
+    private final double monthError;
+    private final int[] days;
+    private final long[] dayDistinct;
+    private final double dayError;
+    private final List<HeavyHitters.Hitter> topByCalls;
+    private final long callsErrorBound;
+    private final List<HeavyHitters.Hitter> topByDuration;
+    private final long durationErrorBound;
+    private final double confidence;
+    private final long stateBytes;
+
+    ApproximateSnapshot(long incomingCalls, long outgoingCalls, long missedCalls, long otherCalls, long totalDuration,
+                        CallRollups rollups, long distinctCallers, double distinctError,
+                        int[] months, long[] monthDistinct, double monthError,
+                        int[] days, long[] dayDistinct, double dayError,
+                        List<HeavyHitters.Hitter> topByCalls, long callsErrorBound,
+                        List<HeavyHitters.Hitter> topByDuration, long durationErrorBound, double confidence,
+                        long stateBytes) {
+        this.incomingCalls = incomingCalls;
+        this.outgoingCalls = outgoingCalls;
+        this.missedCalls = missedCalls;
+        this.otherCalls = otherCalls;
+        this.totalDuration = totalDuration;
+        this.rollups = rollups;
+        this.distinctCallers = distinctCallers;
+        this.distinctError = distinctError;
+        this.months = months;
+        this.monthDistinct = monthDistinct;
+        this.monthError = monthError;
+        this.days = days;
+        this.dayDistinct = dayDistinct;
+        this.dayError = dayError;
+        this.topByCalls = Collections.unmodifiableList(topByCalls);
+        this.callsErrorBound = callsErrorBound;
+        this.topByDuration = Collections.unmodifiableList(topByDuration);
+        this.durationErrorBound = durationErrorBound;
+        this.confidence = confidence;
+        this.stateBytes = stateBytes;
+    }
+
+    public long getIncomingCalls() { return incomingCalls; }
+    public long getOutgoingCalls() { return outgoingCalls; }
+    public long getMissedCalls() { return missedCalls; }
+    public long getOtherCalls() { return otherCalls; }
+    public long getTotalCalls() { return incomingCalls + outgoingCalls + missedCalls + otherCalls; }
+    public long getTotalDuration() { return totalDuration; }
+
+    // Exact, like CallLogSnapshot.getRollups(); query it but don't add to it
+    public CallRollups getRollups() { return rollups; }
+
+    public long getDistinctCallers() { return distinctCallers; }
+    public double getDistinctError() { return distinctError; }
+
+    // Months as in CallRollups (year * 12 + month - 1), oldest first
+    public int getMonthCount() { return months.length; }
+    public int getMonth(int i) { return months[i]; }
+    public long getMonthDistinctCallers(int i) { return monthDistinct[i]; }
+    public double getMonthError() { return monthError; }
+
+    // Local epoch days, oldest first
+    public int getDayCount() { return days.length; }
+    public int getDay(int i) { return days[i]; }
+    public long getDayDistinctCallers(int i) { return dayDistinct[i]; }
+    public double getDayError() { return dayError; }
+
+    // Largest first. Estimates are upper bounds; the truth is at most the error bound lower.
+    public List<HeavyHitters.Hitter> getTopByCalls() { return topByCalls; }
+    public long getCallsErrorBound() { return callsErrorBound; }
+    public List<HeavyHitters.Hitter> getTopByDuration() { return topByDuration; }
+    public long getDurationErrorBound() { return durationErrorBound; }
+    public double getConfidence() { return confidence; }
+
+    public long getStateBytes() { return stateBytes; }
+}
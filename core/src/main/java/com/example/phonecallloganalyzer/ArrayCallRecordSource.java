@@ -0,0 +1,37 @@
+package com.example.phonecallloganalyzer;
+
+// Record source over parallel arrays, for tests, benchmarks and imported data
+public class ArrayCallRecordSource implements CallRecordSource {
+
+    private final long[] ids;
+    private final String[] numbers;
+    private final String[] names;
+    private final int[] types;
+    private final long[] dates;
+    private final int[] durations;
+    private int position = -1;
+
+    public ArrayCallRecordSource(long[] ids, String[] numbers, String[] names,
+                                 int[] types, long[] dates, int[] durations) {
+        this.ids = ids;
+        this.numbers = numbers;
+        this.names = names;
+        this.types = types;
+        this.dates = dates;
+        this.durations = durations;
+    }
+
+    @Override
+    public boolean next() {
+        if (position + 1 >= ids.length) return false;
+        position++;
+        return true;
+    }
+
+    @Override public long id() { return ids[position]; }
+    @Override public String number() { return numbers[position]; }
+    @Override public String name() { return names[position]; }
+    @Override public int type() { return types[position]; }
+    @Override public long date() { return dates[position]; }
+    @Override public int duration() { return durations[position]; }
+}
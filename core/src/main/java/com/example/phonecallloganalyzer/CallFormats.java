@@ -0,0 +1,52 @@
+package com.example.phonecallloganalyzer;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+
+// Original display formatting for call rows and stats rows. The adapters use CallLogFormatter;
+// this stays as the reference its output is tested against and the benchmark baseline.
+public final class CallFormats {
+
+    private CallFormats() {}
+
+    public static String formatStatsDuration(long totalSeconds) {
+        long hours = totalSeconds / 3600;
+        long minutes = (totalSeconds % 3600) / 60;
+        if (hours > 0) {
+            return String.format(Locale.getDefault(), "%dh %dm", hours, minutes);
+        } else {
+            return String.format(Locale.getDefault(), "%dm %ds", minutes, totalSeconds % 60);
+        }
+    }
+
+    public static String formatLogDuration(int seconds) {
+        if (seconds == 0) return "0s";
+        if (seconds < 60) return seconds + "s";
+        int minutes = seconds / 60;
+        return minutes + "m " + (seconds % 60) + "s";
+    }
+
+    public static String formatDate(long timestamp) {
+
+        Calendar now = Calendar.getInstance();
+        Calendar callTime = Calendar.getInstance();
+        callTime.setTimeInMillis(timestamp);
+
+        SimpleDateFormat timeFormat = new SimpleDateFormat("hh:mm a", Locale.getDefault());
+
+        if (now.get(Calendar.YEAR) == callTime.get(Calendar.YEAR) &&
+                now.get(Calendar.DAY_OF_YEAR) == callTime.get(Calendar.DAY_OF_YEAR)) {
+            return "Today " + timeFormat.format(callTime.getTime());
+        }
+
+        Calendar yesterday = Calendar.getInstance();
+        yesterday.add(Calendar.DAY_OF_YEAR, -1);
+        if (yesterday.get(Calendar.YEAR) == callTime.get(Calendar.YEAR) && yesterday.get(Calendar.DAY_OF_YEAR) == callTime.get(Calendar.DAY_OF_YEAR)){
+            return "Yesterday " + timeFormat.format(callTime.getTime());
+        }
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy hh:mm a", Locale.getDefault());
+        return dateFormat.format(callTime.getTime());
+    }
+}
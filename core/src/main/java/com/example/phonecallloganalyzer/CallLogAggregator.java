@@ -0,0 +1,206 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Turns call records into per-type counts and per-contact stats. Has no
+ * Android dependencies so it can be tested and benchmarked on a plain JVM.
+ *
+ * The aggregator itself is mutable (rows can be added and removed as the
+ * call log changes) and is meant to be owned by one thread; snapshot() hands
+ * out an immutable copy for everyone else.
+ *
+ * Leaderboards for every ContactRanking are selected with a bounded heap on
+ * the first snapshot, then kept up to date call by call. Removals and merges
+ * can push a contact down, so they drop the leaderboards until the next
+ * snapshot rebuilds them.
+ *
+ * Time rollups (see CallRollups) are filled in the same pass, bucketed in the
+ * zone given at construction, and so is a DurationSketch for every contact
+ * and one for all calls.
+ */
+public class CallLogAggregator {
+
+    private final int topK;
+    private final HashMap<String, ContactStats> stats = new HashMap<>();
+    private int incomingCalls, outgoingCalls, missedCalls, otherCalls;
+    private final EnumMap<ContactRanking, TopK<ContactStats>> leaders = new EnumMap<>(ContactRanking.class);
+    private boolean leadersValid = false;
+    private final CallRollups rollups;
+    private final DurationSketch durations = new DurationSketch();
+
+    public CallLogAggregator(int topK) {
+        this(topK, TimeZone.getDefault());
+    }
+
+    public CallLogAggregator(int topK, TimeZone zone) {
+        this.topK = topK;
+        this.rollups = new CallRollups(zone);
+    }
+
+    // Picks up where the aggregator behind a snapshot stopped, e.g. one read back from a
+    // SnapshotStore, in the snapshot's time zone. The snapshot itself is left untouched.
+    public CallLogAggregator(CallLogSnapshot snapshot, int topK) {
+        this.topK = topK;
+        this.rollups = new CallRollups(snapshot.getRollups());
+        incomingCalls = snapshot.getIncomingCalls();
+        outgoingCalls = snapshot.getOutgoingCalls();
+        missedCalls = snapshot.getMissedCalls();
+        otherCalls = snapshot.getOtherCalls();
+        for (ContactStats contact : snapshot.getContactStats().values()) {
+            stats.put(contact.getNumber(), new ContactStats(contact));
+        }
+        durations.merge(snapshot.getDurations());
+    }
+
+    // Drains the source. When rows is not null every record is also appended to it.
+    public void consume(CallRecordSource source, CallLogTable rows) {
+        while (source.next()) {
+            byte type = CallLogTable.typeCode(source.type());
+            String number = source.number();
+            String name = source.name();
+            long date = source.date();
+            int duration = source.duration();
+            if (rows != null) rows.append(source.id(), number, name, type, date, duration);
+            add(number, name, type, date, duration);
+        }
+    }
+
+    // Aggregates rows [from, to) of a table that is already in memory
+    public void addRows(CallLogTable table, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(table.getNumber(i), table.getName(i), table.getType(i), table.getDate(i), table.getDuration(i));
+        }
+    }
+
+    // Aggregates the given table rows, e.g. the result of a CallLogIndex query
+    public void addRows(CallLogTable table, int[] rows) {
+        for (int row : rows) {
+            add(table.getNumber(row), table.getName(row), table.getType(row), table.getDate(row), table.getDuration(row));
+        }
+    }
+
+    public void add(String number, String name, byte type, long date, int duration) {
+        count(type, 1);
+        rollups.add(date, duration);
+        durations.add(duration);
+        ContactStats contact = stats.get(number);
+        if (contact == null) {
+            contact = new ContactStats(name, number);
+            stats.put(number, contact);
+        }
+        contact.addCall(duration, type);
+        if (leadersValid) {
+            for (TopK<ContactStats> top : leaders.values()) top.update(contact);
+        }
+    }
+
+    // Calls of one type with one number, summed elsewhere (e.g. by a SQL GROUP BY). Their
+    // dates aren't known here, so the rollups are fed separately through addToRollups().
+    public void addGroup(String number, String name, byte type, int calls, long totalDuration) {
+        count(type, calls);
+        ContactStats contact = stats.get(number);
+        if (contact == null) {
+            contact = new ContactStats(name, number);
+            stats.put(number, contact);
+        }
+        contact.addCalls(calls, totalDuration, type);
+        if (leadersValid) {
+            for (TopK<ContactStats> top : leaders.values()) top.update(contact);
+        }
+    }
+
+    // Calls summed elsewhere, all within the same local hour as date
+    public void addToRollups(long date, int calls, long totalDuration) {
+        rollups.addBucket(date, calls, totalDuration);
+    }
+
+    // Connected calls with one number counted elsewhere by DurationSketch bucket. The number
+    // must already have come through addGroup().
+    public void addDurations(String number, int bucket, int calls, int longest) {
+        durations.addBucket(bucket, calls, longest);
+        ContactStats contact = stats.get(number);
+        if (contact != null) contact.addDurations(bucket, calls, longest);
+    }
+
+    public void remove(String number, byte type, long date, int duration) {
+        count(type, -1);
+        rollups.remove(date, duration);
+        durations.remove(duration);
+        ContactStats contact = stats.get(number);
+        if (contact == null) return;
+        contact.removeCall(duration, type);
+        if (contact.getCount() == 0) stats.remove(number);
+        leadersValid = false;
+    }
+
+    /**
+     * Folds another aggregator in. When both saw a number, this one's name wins,
+     * so merging shards left to right gives the same result as one sequential
+     * pass. Takes ownership of the other aggregator's stats; don't use it after.
+     * Both aggregators must bucket in the same time zone.
+     */
+    public void merge(CallLogAggregator other) {
+        incomingCalls += other.incomingCalls;
+        outgoingCalls += other.outgoingCalls;
+        missedCalls += other.missedCalls;
+        otherCalls += other.otherCalls;
+        for (Map.Entry<String, ContactStats> entry : other.stats.entrySet()) {
+            ContactStats contact = stats.get(entry.getKey());
+            if (contact == null) stats.put(entry.getKey(), entry.getValue());
+            else contact.merge(entry.getValue());
+        }
+        rollups.merge(other.rollups);
+        durations.merge(other.durations);
+        leadersValid = false;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public CallLogSnapshot snapshot() {
+        if (!leadersValid) rebuildLeaders();
+
+        HashMap<String, ContactStats> copies = new HashMap<>(stats.size() * 2);
+        for (ContactStats contact : stats.values()) {
+            copies.put(contact.getNumber(), new ContactStats(contact));
+        }
+        EnumMap<ContactRanking, List<ContactStats>> top = new EnumMap<>(ContactRanking.class);
+        for (Map.Entry<ContactRanking, TopK<ContactStats>> entry : leaders.entrySet()) {
+            List<ContactStats> ranked = new ArrayList<>();
+            for (ContactStats contact : entry.getValue().toList()) {
+                ranked.add(copies.get(contact.getNumber()));
+            }
+            top.put(entry.getKey(), ranked);
+        }
+
+        return new CallLogSnapshot(incomingCalls, outgoingCalls, missedCalls, otherCalls, copies, top,
+                new CallRollups(rollups), new DurationSketch(durations));
+    }
+
+    // One pass over the contacts, O(n log k) per ranking
+    private void rebuildLeaders() {
+        for (ContactRanking ranking : ContactRanking.values()) {
+            leaders.put(ranking, new TopK<>(topK, ranking.order()));
+        }
+        for (ContactStats contact : stats.values()) {
+            for (TopK<ContactStats> top : leaders.values()) top.offer(contact);
+        }
+        leadersValid = true;
+    }
+
+    private void count(byte type, int delta) {
+        switch (type) {
+            case CallLogTable.TYPE_INCOMING: incomingCalls += delta; break;
+            case CallLogTable.TYPE_OUTGOING: outgoingCalls += delta; break;
+            case CallLogTable.TYPE_MISSED: missedCalls += delta; break;
+            default: otherCalls += delta; break;
+        }
+    }
+}
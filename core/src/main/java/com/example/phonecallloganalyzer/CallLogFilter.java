@@ -0,0 +1,65 @@
+package com.example.phonecallloganalyzer;
+
+/**
+ * Immutable filter over the call log: a date range [fromDate, toDate), a set
+ * of call types and optionally one contact number. The with* methods return a
+ * new filter, so a filter can be kept as UI state and changed one part at a time.
+ */
+public final class CallLogFilter {
+
+    public static final int ALL_TYPES = typeBit(CallLogTable.TYPE_OTHER) | typeBit(CallLogTable.TYPE_INCOMING)
+            | typeBit(CallLogTable.TYPE_OUTGOING) | typeBit(CallLogTable.TYPE_MISSED);
+
+    public static final CallLogFilter ALL = new CallLogFilter(Long.MIN_VALUE, Long.MAX_VALUE, ALL_TYPES, null);
+
+    private final long fromDate;
+    private final long toDate;
+    private final int typeMask;
+    private final String number;
+
+    private CallLogFilter(long fromDate, long toDate, int typeMask, String number) {
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        this.typeMask = typeMask;
+        this.number = number;
+    }
+
+    public static int typeBit(byte type) {
+        return 1 << type;
+    }
+
+    // Long.MIN_VALUE / Long.MAX_VALUE leave that end open
+    public CallLogFilter withDateRange(long fromDate, long toDate) {
+        return new CallLogFilter(fromDate, toDate, typeMask, number);
+    }
+
+    // Bitwise OR of typeBit() values
+    public CallLogFilter withTypes(int typeMask) {
+        return new CallLogFilter(fromDate, toDate, typeMask & ALL_TYPES, number);
+    }
+
+    // null matches every contact
+    public CallLogFilter withNumber(String number) {
+        return new CallLogFilter(fromDate, toDate, typeMask, number);
+    }
+
+    public long getFromDate() { return fromDate; }
+    public long getToDate() { return toDate; }
+    public int getTypeMask() { return typeMask; }
+    public String getNumber() { return number; }
+
+    public boolean hasDateRange() { return fromDate != Long.MIN_VALUE || toDate != Long.MAX_VALUE; }
+
+    public boolean matchesType(byte type) { return (typeMask & typeBit(type)) != 0; }
+
+    public boolean isAll() {
+        return !hasDateRange() && typeMask == ALL_TYPES && number == null;
+    }
+
+    // Row-at-a-time check, for callers without an index
+    public boolean matches(CallLogTable table, int row) {
+        long date = table.getDate(row);
+        return date >= fromDate && date < toDate && matchesType(table.getType(row))
+                && (number == null || number.equals(table.getNumber(row)));
+    }
+}
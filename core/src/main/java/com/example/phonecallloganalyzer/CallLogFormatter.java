@@ -0,0 +1,162 @@
+package com.example.phonecallloganalyzer;
+
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.function.LongSupplier;
+
+/**
+ * Same output as CallFormats, without the per-call Calendars, SimpleDateFormats
+ * and string concatenation. Today's and yesterday's boundaries are computed
+ * once per day, the "hh:mm a" text is cached per minute of the day and the
+ * "dd MMM yyyy " prefix per day, and the append methods write into a builder
+ * the caller reuses. Once the caches are warm a call allocates nothing.
+ *
+ * Not thread safe: give each thread (in practice, each adapter) its own.
+ * Call reset() when the time zone, locale or wall clock changes.
+ */
+public final class CallLogFormatter {
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int DAY_CACHE_SIZE = 256; // Power of two, direct mapped by local day
+
+    private final LongSupplier clock;
+    private final StringBuilder scratch = new StringBuilder(32);
+
+    private TimeZone zone;
+    private Locale locale;
+    private Calendar calendar;
+    private SimpleDateFormat timeFormat;
+    private SimpleDateFormat dayFormat;
+    private char zeroDigit;
+
+    private long yesterdayStart, todayStart, tomorrowStart;
+    private final String[] times = new String[MINUTES_PER_DAY];
+    private final int[] dayKeys = new int[DAY_CACHE_SIZE];
+    private final String[] dayPrefixes = new String[DAY_CACHE_SIZE];
+
+    public CallLogFormatter() {
+        this(System::currentTimeMillis);
+    }
+
+    CallLogFormatter(LongSupplier clock) {
+        this.clock = clock;
+        reset();
+    }
+
+    // Re-reads the default time zone and locale and drops every cached string
+    public void reset() {
+        zone = TimeZone.getDefault();
+        locale = Locale.getDefault();
+        calendar = Calendar.getInstance(zone, locale);
+        timeFormat = new SimpleDateFormat("hh:mm a", locale);
+        timeFormat.setTimeZone(zone);
+        dayFormat = new SimpleDateFormat("dd MMM yyyy", locale);
+        dayFormat.setTimeZone(zone);
+        zeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+
+        Arrays.fill(times, null);
+        Arrays.fill(dayPrefixes, null);
+        todayStart = tomorrowStart = 0;
+    }
+
+    // "Today hh:mm a", "Yesterday hh:mm a" or "dd MMM yyyy hh:mm a"
+    public StringBuilder appendDate(StringBuilder out, long timestamp) {
+        long now = clock.getAsLong();
+        if (now < todayStart || now >= tomorrowStart) computeBoundaries(now);
+
+        long local = timestamp + zone.getOffset(timestamp);
+        if (timestamp >= todayStart && timestamp < tomorrowStart) {
+            out.append("Today ");
+        } else if (timestamp >= yesterdayStart && timestamp < todayStart) {
+            out.append("Yesterday ");
+        } else {
+            out.append(dayPrefix(timestamp, (int) Math.floorDiv(local, DAY_MS)));
+        }
+        return out.append(time(timestamp, (int) (Math.floorMod(local, DAY_MS) / 60_000L)));
+    }
+
+    // "0s", "42s" or "3m 7s"
+    public StringBuilder appendLogDuration(StringBuilder out, int seconds) {
+        if (seconds == 0) return out.append("0s");
+        if (seconds < 60) return out.append(seconds).append('s');
+        return out.append(seconds / 60).append("m ").append(seconds % 60).append('s');
+    }
+
+    // "2h 5m" or "4m 12s", with the locale's digits like String.format("%d")
+    public StringBuilder appendStatsDuration(StringBuilder out, long totalSeconds) {
+        long hours = totalSeconds / 3600;
+        long minutes = (totalSeconds % 3600) / 60;
+        if (hours > 0) {
+            appendNumber(out, hours).append("h ");
+            return appendNumber(out, minutes).append('m');
+        }
+        appendNumber(out, minutes).append("m ");
+        return appendNumber(out, totalSeconds % 60).append('s');
+    }
+
+    public String formatDate(long timestamp) {
+        scratch.setLength(0);
+        return appendDate(scratch, timestamp).toString();
+    }
+
+    public String formatLogDuration(int seconds) {
+        scratch.setLength(0);
+        return appendLogDuration(scratch, seconds).toString();
+    }
+
+    public String formatStatsDuration(long totalSeconds) {
+        scratch.setLength(0);
+        return appendStatsDuration(scratch, totalSeconds).toString();
+    }
+
+    // Calendar arithmetic, so days that are 23 or 25 hours long around DST changes come out right
+    private void computeBoundaries(long now) {
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        todayStart = calendar.getTimeInMillis();
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        tomorrowStart = calendar.getTimeInMillis();
+        calendar.setTimeInMillis(todayStart);
+        calendar.add(Calendar.DAY_OF_YEAR, -1);
+        yesterdayStart = calendar.getTimeInMillis();
+    }
+
+    // The wall clock minute fixes "hh:mm a", even on the hour a DST change repeats
+    private String time(long timestamp, int minuteOfDay) {
+        String text = times[minuteOfDay];
+        if (text == null) {
+            text = timeFormat.format(new Date(timestamp));
+            times[minuteOfDay] = text;
+        }
+        return text;
+    }
+
+    private String dayPrefix(long timestamp, int day) {
+        int slot = day & (DAY_CACHE_SIZE - 1);
+        if (dayPrefixes[slot] == null || dayKeys[slot] != day) {
+            dayPrefixes[slot] = dayFormat.format(new Date(timestamp)) + " ";
+            dayKeys[slot] = day;
+        }
+        return dayPrefixes[slot];
+    }
+
+    private StringBuilder appendNumber(StringBuilder out, long value) {
+        if (value < 0) return out.append(String.format(locale, "%d", value)); // Never happens for a duration
+        if (zeroDigit == '0') return out.append(value);
+        int start = out.length();
+        out.append(value);
+        for (int i = start; i < out.length(); i++) {
+            out.setCharAt(i, (char) (zeroDigit + (out.charAt(i) - '0')));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.Arrays;
+
+/**
+ * Answers CallLogFilter queries over a CallLogTable without touching rows
+ * outside the result where it can. The date range comes from a binary search
+ * on the date column; call type and contact come from posting lists (sorted
+ * row numbers per type and per contact, packed into one int[] each with an
+ * offsets array).
+ *
+ * The index describes the table as it was when it was built. Any insert or
+ * remove on the table shifts row numbers, so build a new index after one.
+ */
+public final class CallLogIndex {
+
+    private static final int TYPE_COUNT = CallLogTable.TYPE_MISSED + 1;
+
+    private final CallLogTable table;
+    private final int[] typeOffsets;
+    private final int[] typeRows;
+    private final int[] contactOffsets;
+    private final int[] contactRows;
+
+    // Two passes over the type and contact columns: count, then fill
+    public CallLogIndex(CallLogTable table) {
+        this.table = table;
+        int size = table.size();
+        typeOffsets = new int[TYPE_COUNT + 1];
+        contactOffsets = new int[table.contactCount() + 1];
+        for (int row = 0; row < size; row++) {
+            typeOffsets[table.getType(row) + 1]++;
+            contactOffsets[table.getContactRef(row) + 1]++;
+        }
+        for (int i = 1; i < typeOffsets.length; i++) typeOffsets[i] += typeOffsets[i - 1];
+        for (int i = 1; i < contactOffsets.length; i++) contactOffsets[i] += contactOffsets[i - 1];
+
+        typeRows = new int[size];
+        contactRows = new int[size];
+        int[] typeFill = Arrays.copyOf(typeOffsets, TYPE_COUNT);
+        int[] contactFill = Arrays.copyOf(contactOffsets, table.contactCount());
+        for (int row = 0; row < size; row++) {
+            typeRows[typeFill[table.getType(row)]++] = row;
+            contactRows[contactFill[table.getContactRef(row)]++] = row;
+        }
+    }
+
+    public CallLogTable getTable() { return table; }
+
+    // Matching rows in table order (newest first)
+    public int[] select(CallLogFilter filter) {
+        int from = filter.getToDate() == Long.MAX_VALUE ? 0 : table.searchDate(filter.getToDate() - 1);
+        int to = filter.getFromDate() == Long.MIN_VALUE ? table.size() : table.searchDate(filter.getFromDate() - 1);
+        if (from >= to || filter.getTypeMask() == 0) return new int[0];
+
+        if (filter.getNumber() != null) {
+            int ref = table.findContactRef(filter.getNumber());
+            if (ref < 0) return new int[0];
+            return slice(contactRows, contactOffsets[ref], contactOffsets[ref + 1], from, to, filter);
+        }
+        int type = singleType(filter.getTypeMask());
+        if (type >= 0) {
+            return slice(typeRows, typeOffsets[type], typeOffsets[type + 1], from, to, null);
+        }
+
+        // Several types: a straight scan of the range keeps rows in order
+        int[] rows = new int[to - from];
+        int count = 0;
+        for (int row = from; row < to; row++) {
+            if (filter.matchesType(table.getType(row))) rows[count++] = row;
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    public CallLogAggregator aggregate(CallLogFilter filter, int topK) {
+        CallLogAggregator aggregator = new CallLogAggregator(topK);
+        aggregator.addRows(table, select(filter));
+        return aggregator;
+    }
+
+    // The part of one posting list inside [from, to), optionally narrowed by type
+    private int[] slice(int[] postings, int start, int end, int from, int to, CallLogFilter typeFilter) {
+        int low = lowerBound(postings, start, end, from);
+        int high = lowerBound(postings, low, end, to);
+        if (typeFilter == null || typeFilter.getTypeMask() == CallLogFilter.ALL_TYPES) {
+            return Arrays.copyOfRange(postings, low, high);
+        }
+        int[] rows = new int[high - low];
+        int count = 0;
+        for (int i = low; i < high; i++) {
+            if (typeFilter.matchesType(table.getType(postings[i]))) rows[count++] = postings[i];
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // First index in [start, end) whose value is >= key
+    private static int lowerBound(int[] values, int start, int end, int key) {
+        while (start < end) {
+            int mid = (start + end) >>> 1;
+            if (values[mid] < key) start = mid + 1;
+            else end = mid;
+        }
+        return start;
+    }
+
+    // The type when exactly one bit is set, otherwise -1
+    private static int singleType(int typeMask) {
+        return Integer.bitCount(typeMask) == 1 ? Integer.numberOfTrailingZeros(typeMask) : -1;
+    }
+}
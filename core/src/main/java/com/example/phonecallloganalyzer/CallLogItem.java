@@ -1,12 +1,14 @@
 package com.example.phonecallloganalyzer;
 public class CallLogItem {
+    private long id;
     private String name;
     private String number;
     private String type;
     private long date;
     private String duration;
 
-    public CallLogItem(String name, String number, String type, long date, String duration) {
+    public CallLogItem(long id, String name, String number, String type, long date, String duration) {
+        this.id = id;
         this.name = name;
         this.number = number;
         this.type = type;
@@ -14,6 +16,7 @@ public class CallLogItem {
         this.duration = duration;
     }
 
+    public long getId() { return id; }
     public String getName() { return name; }
     public String getNumber() { return number; }
     public String getType() { return type; }
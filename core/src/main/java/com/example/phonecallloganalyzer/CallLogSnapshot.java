@@ -0,0 +1,59 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable result of one aggregation pass. Safe to hand across threads.
+public final class CallLogSnapshot {
+
+    private final int incomingCalls;
+    private final int outgoingCalls;
+    private final int missedCalls;
+    private final int otherCalls;
+    private final Map<String, ContactStats> contactStats;
+    private final EnumMap<ContactRanking, List<ContactStats>> topContacts;
+    private final CallRollups rollups;
+    private final DurationSketch durations;
+
+    CallLogSnapshot(int incomingCalls, int outgoingCalls, int missedCalls, int otherCalls,
+                    Map<String, ContactStats> contactStats, EnumMap<ContactRanking, List<ContactStats>> topContacts,
+                    CallRollups rollups, DurationSketch durations) {
+        this.incomingCalls = incomingCalls;
+        this.outgoingCalls = outgoingCalls;
+        this.missedCalls = missedCalls;
+        this.otherCalls = otherCalls;
+        this.contactStats = Collections.unmodifiableMap(contactStats);
+        this.topContacts = new EnumMap<>(ContactRanking.class);
+        for (Map.Entry<ContactRanking, List<ContactStats>> entry : topContacts.entrySet()) {
+            this.topContacts.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+        }
+        this.rollups = rollups;
+        this.durations = durations;
+    }
+
+    public int getIncomingCalls() { return incomingCalls; }
+    public int getOutgoingCalls() { return outgoingCalls; }
+    public int getMissedCalls() { return missedCalls; }
+    public int getOtherCalls() { return otherCalls; }
+    public int getTotalCalls() { return incomingCalls + outgoingCalls + missedCalls + otherCalls; }
+
+    // Keyed by number. The ContactStats are private copies and must not be modified.
+    public Map<String, ContactStats> getContactStats() { return contactStats; }
+
+    // Highest total duration first
+    public List<ContactStats> getTopContacts() { return getTopContacts(ContactRanking.TOTAL_DURATION); }
+
+    // Up to the aggregator's top-K contacts, best first
+    public List<ContactStats> getTopContacts(ContactRanking ranking) {
+        List<ContactStats> top = topContacts.get(ranking);
+        return top != null ? top : Collections.emptyList();
+    }
+
+    // A private copy, like the ContactStats; query it but don't add to it
+    public CallRollups getRollups() { return rollups; }
+
+    // Every connected call; same rules as getRollups()
+    public DurationSketch getDurations() { return durations; }
+}
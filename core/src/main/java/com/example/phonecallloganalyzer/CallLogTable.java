@@ -0,0 +1,266 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Column-oriented call log, newest call first. Each row is a handful of
+ * primitives; numbers and names live once in a dictionary that rows point
+ * into. Rows occupy slots [start, start + size) of a run of fixed-size
+ * chunks, each holding every column for CHUNK_SIZE slots, so new calls can be
+ * put on top without shifting the whole history.
+ *
+ * Copies share the chunks and copy one only before writing to it, so taking a
+ * copy costs a pointer per chunk and putting a new call on top of it costs
+ * one chunk, however long the history. The dictionary is still copied whole;
+ * it has an entry per distinct number, a small fraction of the rows.
+ *
+ * Not thread safe. Build it on the loader thread, then hand it to the UI.
+ */
+public class CallLogTable {
+
+    // Same values as CallLog.Calls.*_TYPE so cursor ints can be stored as is
+    public static final byte TYPE_OTHER = 0;
+    public static final byte TYPE_INCOMING = 1;
+    public static final byte TYPE_OUTGOING = 2;
+    public static final byte TYPE_MISSED = 3;
+
+    static final int CHUNK_SIZE = 4096;
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final class Chunk {
+        final long[] ids = new long[CHUNK_SIZE];
+        final long[] dates = new long[CHUNK_SIZE];
+        final int[] durations = new int[CHUNK_SIZE];
+        final byte[] types = new byte[CHUNK_SIZE];
+        final int[] contactRefs = new int[CHUNK_SIZE];
+        boolean shared; // Reachable from more than one table: copied before any write, never written again
+
+        Chunk copy() {
+            Chunk copy = new Chunk();
+            System.arraycopy(ids, 0, copy.ids, 0, CHUNK_SIZE);
+            System.arraycopy(dates, 0, copy.dates, 0, CHUNK_SIZE);
+            System.arraycopy(durations, 0, copy.durations, 0, CHUNK_SIZE);
+            System.arraycopy(types, 0, copy.types, 0, CHUNK_SIZE);
+            System.arraycopy(contactRefs, 0, copy.contactRefs, 0, CHUNK_SIZE);
+            return copy;
+        }
+    }
+
+    private Chunk[] chunks = new Chunk[0];
+    private int start; // Slot of row 0
+    private int size;
+
+    private final ArrayList<String> numbers = new ArrayList<>();
+    private final ArrayList<String> names = new ArrayList<>();
+    private final HashMap<String, Integer> refsByNumber = new HashMap<>();
+
+    public CallLogTable() {}
+
+    // Independent copy, so a displayed version can stay untouched while the next one is edited.
+    // Either table may be edited afterwards: both copy a chunk before writing to it.
+    public CallLogTable(CallLogTable other) {
+        chunks = other.chunks.clone();
+        for (Chunk chunk : chunks) chunk.shared = true;
+        start = other.start;
+        size = other.size;
+        numbers.addAll(other.numbers);
+        names.addAll(other.names);
+        refsByNumber.putAll(other.refsByNumber);
+    }
+
+    public static byte typeCode(int callLogType) {
+        switch (callLogType) {
+            case TYPE_INCOMING:
+            case TYPE_OUTGOING:
+            case TYPE_MISSED:
+                return (byte) callLogType;
+            default:
+                return TYPE_OTHER;
+        }
+    }
+
+    public static String typeLabel(byte type) {
+        switch (type) {
+            case TYPE_INCOMING: return "Incoming";
+            case TYPE_OUTGOING: return "Outgoing";
+            case TYPE_MISSED: return "Missed";
+            default: return "Other";
+        }
+    }
+
+    public int size() { return size; }
+    public int capacity() { return chunks.length * CHUNK_SIZE; }
+
+    public long getId(int row) { return chunkOf(row).ids[(start + row) & CHUNK_MASK]; }
+    public long getDate(int row) { return chunkOf(row).dates[(start + row) & CHUNK_MASK]; }
+    public int getDuration(int row) { return chunkOf(row).durations[(start + row) & CHUNK_MASK]; }
+    public byte getType(int row) { return chunkOf(row).types[(start + row) & CHUNK_MASK]; }
+    public int getContactRef(int row) { return chunkOf(row).contactRefs[(start + row) & CHUNK_MASK]; }
+    public String getNumber(int row) { return numbers.get(getContactRef(row)); }
+    public String getName(int row) { return names.get(getContactRef(row)); }
+
+    // Dictionary side: one entry per distinct number, in first-seen order
+    public int contactCount() { return numbers.size(); }
+    public String numberOf(int ref) { return numbers.get(ref); }
+    public String nameOf(int ref) { return names.get(ref); }
+
+    // -1 when no row has ever used the number
+    public int findContactRef(String number) {
+        Integer ref = refsByNumber.get(number);
+        return ref != null ? ref : -1;
+    }
+
+    public int contactRef(String number, String name) {
+        Integer ref = refsByNumber.get(number);
+        if (ref == null) {
+            ref = numbers.size();
+            numbers.add(number);
+            names.add(name);
+            refsByNumber.put(number, ref);
+        }
+        return ref;
+    }
+
+    // Rows must arrive newest first, as they do from a "date DESC" cursor
+    public void append(long id, String number, String name, byte type, long date, int duration) {
+        if (start + size == capacity()) addChunk(false);
+        set(start + size, id, contactRef(number, name), type, date, duration);
+        size++;
+    }
+
+    // Keeps date order. Shifts whichever side of the insert point is shorter.
+    public void insert(long id, String number, String name, byte type, long date, int duration) {
+        int row = searchDate(date);
+        if (row <= size / 2) {
+            if (start == 0) addChunk(true);
+            move(start, start - 1, row);
+            start--;
+        } else {
+            if (start + size == capacity()) addChunk(false);
+            move(start + row, start + row + 1, size - row);
+        }
+        set(start + row, id, contactRef(number, name), type, date, duration);
+        size++;
+    }
+
+    // Drains a source that yields rows newest first
+    public void appendAll(CallRecordSource source) {
+        while (source.next()) {
+            append(source.id(), source.number(), source.name(),
+                    typeCode(source.type()), source.date(), source.duration());
+        }
+    }
+
+    public void insertFrom(CallLogTable other, int row) {
+        insert(other.getId(row), other.getNumber(row), other.getName(row),
+                other.getType(row), other.getDate(row), other.getDuration(row));
+    }
+
+    // First row whose date is <= the given date; size() when every row is newer
+    public int searchDate(long date) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getDate(mid) > date) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // Row of the call with this id and date, by binary search on the date; -1 when there is none
+    public int indexOf(long id, long date) {
+        for (int row = searchDate(date); row < size && getDate(row) == date; row++) {
+            if (getId(row) == id) return row;
+        }
+        return -1;
+    }
+
+    // Linear scan, for when the date isn't known
+    public int indexOfId(long id) {
+        for (int i = 0; i < size; i++) {
+            if (getId(i) == id) return i;
+        }
+        return -1;
+    }
+
+    public void removeAt(int row) {
+        if (row < size / 2) {
+            move(start, start + 1, row);
+            start++;
+        } else {
+            move(start + row + 1, start + row, size - row - 1);
+        }
+        size--;
+    }
+
+    // Drops every row but keeps the arrays and the contact dictionary, e.g. to reuse the table for the next page
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    private void set(int slot, long id, int ref, byte type, long date, int duration) {
+        Chunk chunk = writable(slot >> CHUNK_SHIFT);
+        int i = slot & CHUNK_MASK;
+        chunk.ids[i] = id;
+        chunk.contactRefs[i] = ref;
+        chunk.types[i] = type;
+        chunk.dates[i] = date;
+        chunk.durations[i] = duration;
+    }
+
+    private Chunk chunkOf(int row) {
+        return chunks[(start + row) >> CHUNK_SHIFT];
+    }
+
+    private Chunk writable(int index) {
+        Chunk chunk = chunks[index];
+        if (chunk.shared) chunk = chunks[index] = chunk.copy();
+        return chunk;
+    }
+
+    // Shifts slots [from, from + length) to start at to, a piece at a time so no piece crosses a chunk
+    // boundary on either side. Front to back when moving towards the front, so nothing is overwritten
+    // before it's read, and back to front otherwise.
+    private void move(int from, int to, int length) {
+        if (to < from) {
+            for (int done = 0; done < length; ) {
+                int source = from + done, target = to + done;
+                int piece = Math.min(length - done,
+                        CHUNK_SIZE - Math.max(source & CHUNK_MASK, target & CHUNK_MASK));
+                movePiece(source, target, piece);
+                done += piece;
+            }
+        } else {
+            for (int left = length; left > 0; ) {
+                int sourceEnd = from + left, targetEnd = to + left;
+                int piece = Math.min(left,
+                        Math.min(((sourceEnd - 1) & CHUNK_MASK) + 1, ((targetEnd - 1) & CHUNK_MASK) + 1));
+                movePiece(sourceEnd - piece, targetEnd - piece, piece);
+                left -= piece;
+            }
+        }
+    }
+
+    private void movePiece(int from, int to, int length) {
+        Chunk target = writable(to >> CHUNK_SHIFT);
+        Chunk source = chunks[from >> CHUNK_SHIFT]; // After writable(), in case it is the same chunk
+        int i = from & CHUNK_MASK, j = to & CHUNK_MASK;
+        System.arraycopy(source.ids, i, target.ids, j, length);
+        System.arraycopy(source.dates, i, target.dates, j, length);
+        System.arraycopy(source.durations, i, target.durations, j, length);
+        System.arraycopy(source.types, i, target.types, j, length);
+        System.arraycopy(source.contactRefs, i, target.contactRefs, j, length);
+    }
+
+    // One chunk more, at the front or the back. Only the chunk references are copied.
+    private void addChunk(boolean atFront) {
+        Chunk[] grown = new Chunk[chunks.length + 1];
+        System.arraycopy(chunks, 0, grown, atFront ? 1 : 0, chunks.length);
+        grown[atFront ? 0 : chunks.length] = new Chunk();
+        chunks = grown;
+        if (atFront) start += CHUNK_SIZE;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.phonecallloganalyzer;
+
+/**
+ * How much of the provider's call log a saved snapshot covers: the number of
+ * rows, the highest _ID and the latest LAST_MODIFIED it saw.
+ *
+ * The provider hands out increasing ids, so as long as the log only grows
+ * the rows past lastId are exactly the new calls and nothing at or below it
+ * was modified after lastModified. Then the snapshot can be brought up to
+ * date by adding the new rows; canExtend() tells when that holds.
+ */
+public final class CallLogWatermark {
+
+    // For snapshots saved without one; never extends
+    public static final CallLogWatermark UNKNOWN = new CallLogWatermark(-1, -1, -1);
+
+    private final long rows, lastId, lastModified;
+
+    public CallLogWatermark(long rows, long lastId, long lastModified) {
+        this.rows = rows;
+        this.lastId = lastId;
+        this.lastModified = lastModified;
+    }
+
+    public long getRows() { return rows; }
+    public long getLastId() { return lastId; }
+    public long getLastModified() { return lastModified; }
+    public boolean isKnown() { return rows >= 0; }
+
+    /**
+     * Whether this watermark can be carried forward by adding the newRows rows
+     * with an _ID above lastId, given that the log now holds totalRows and that
+     * editedRows rows at or below lastId were modified after lastModified.
+     * Anything else means a deletion or an edit in between, and a full pass.
+     */
+    public boolean canExtend(long totalRows, long newRows, long editedRows) {
+        return isKnown() && editedRows == 0 && rows + newRows == totalRows;
+    }
+
+    // The watermark after the rows past lastId were added
+    public CallLogWatermark extend(long newRows, long newLastId, long newLastModified) {
+        return new CallLogWatermark(rows + newRows, Math.max(lastId, newLastId), Math.max(lastModified, newLastModified));
+    }
+
+    /**
+     * Whether other has seen an insert or an edit this one hasn't: neither
+     * its id nor its modification time is past other's, and one is behind.
+     * A deletion moves neither forward, so snapshots that differ only by one
+     * are not ordered. Unknown watermarks are never behind or ahead.
+     */
+    public boolean isBehind(CallLogWatermark other) {
+        return isKnown() && other.isKnown()
+                && lastId <= other.lastId && lastModified <= other.lastModified
+                && (lastId < other.lastId || lastModified < other.lastModified);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CallLogWatermark)) return false;
+        CallLogWatermark other = (CallLogWatermark) o;
+        return rows == other.rows && lastId == other.lastId && lastModified == other.lastModified;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(rows) * 31 * 31 + Long.hashCode(lastId) * 31 + Long.hashCode(lastModified);
+    }
+
+    @Override
+    public String toString() {
+        return isKnown() ? rows + " rows to id " + lastId + ", modified " + lastModified : "unknown";
+    }
+}
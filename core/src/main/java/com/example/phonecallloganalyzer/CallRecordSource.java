@@ -0,0 +1,19 @@
+package com.example.phonecallloganalyzer;
+
+/**
+ * Forward-only stream of call records, read like a cursor: call next(), then
+ * the getters for the current record. The app wraps the CallLog provider
+ * cursor; tests and benchmarks feed arrays or files.
+ */
+public interface CallRecordSource {
+
+    // Moves to the next record, false once the source is exhausted
+    boolean next();
+
+    long id();
+    String number();
+    String name();
+    int type(); // Raw CallLog.Calls.TYPE value
+    long date();
+    int duration(); // Seconds
+}
@@ -0,0 +1,267 @@
+package com.example.phonecallloganalyzer;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.TimeZone;
+
+/**
+ * Call counts and duration sums bucketed by hour-of-day x day-of-week, by day
+ * and by month, all in primitive arrays. Filled in the same pass as the rest
+ * of the aggregation, so chart queries over a date range cost O(buckets)
+ * instead of a walk over every call.
+ *
+ * Buckets follow local time in the zone given at construction. Days are
+ * epoch days (days since 1970-01-01 local), months are year * 12 + month - 1,
+ * and weekdays run Monday = 0 to Sunday = 6.
+ */
+public class CallRollups {
+
+    public static final int DAYS_PER_WEEK = 7;
+    public static final int HOURS_PER_DAY = 24;
+    private static final long DAY_MS = 86_400_000L;
+    private static final long HOUR_MS = 3_600_000L;
+
+    private final TimeZone zone;
+    private final int[] hourOfWeekCounts = new int[DAYS_PER_WEEK * HOURS_PER_DAY];
+    private final long[] hourOfWeekDurations = new long[DAYS_PER_WEEK * HOURS_PER_DAY];
+    private final Series days;
+    private final Series months;
+
+    public CallRollups(TimeZone zone) {
+        this.zone = zone;
+        this.days = new Series();
+        this.months = new Series();
+    }
+
+    public CallRollups(CallRollups other) {
+        this.zone = other.zone;
+        System.arraycopy(other.hourOfWeekCounts, 0, hourOfWeekCounts, 0, hourOfWeekCounts.length);
+        System.arraycopy(other.hourOfWeekDurations, 0, hourOfWeekDurations, 0, hourOfWeekDurations.length);
+        this.days = new Series(other.days);
+        this.months = new Series(other.months);
+    }
+
+    // For SnapshotCodec: the zone id, the hour-of-week grid, then the used range of each series
+    void writeTo(DataOutput out) throws IOException {
+        SnapshotCodec.writeString(out, zone.getID());
+        for (int count : hourOfWeekCounts) out.writeInt(count);
+        for (long duration : hourOfWeekDurations) out.writeLong(duration);
+        days.writeTo(out);
+        months.writeTo(out);
+    }
+
+    static CallRollups readFrom(ByteBuffer in) {
+        CallRollups rollups = new CallRollups(TimeZone.getTimeZone(SnapshotCodec.readString(in)));
+        for (int i = 0; i < rollups.hourOfWeekCounts.length; i++) rollups.hourOfWeekCounts[i] = in.getInt();
+        for (int i = 0; i < rollups.hourOfWeekDurations.length; i++) rollups.hourOfWeekDurations[i] = in.getLong();
+        rollups.days.readFrom(in);
+        rollups.months.readFrom(in);
+        return rollups;
+    }
+
+    public void add(long date, int duration) {
+        update(date, 1, duration);
+    }
+
+    public void remove(long date, int duration) {
+        update(date, -1, -duration);
+    }
+
+    // Calls summed elsewhere, all within the same local hour as date
+    public void addBucket(long date, int count, long totalDuration) {
+        update(date, count, totalDuration);
+    }
+
+    // Both sides must use the same zone
+    public void merge(CallRollups other) {
+        for (int i = 0; i < hourOfWeekCounts.length; i++) {
+            hourOfWeekCounts[i] += other.hourOfWeekCounts[i];
+            hourOfWeekDurations[i] += other.hourOfWeekDurations[i];
+        }
+        days.merge(other.days);
+        months.merge(other.months);
+    }
+
+    private void update(long date, int count, long duration) {
+        long local = date + zone.getOffset(date);
+        int day = (int) Math.floorDiv(local, DAY_MS);
+        int hour = (int) (Math.floorMod(local, DAY_MS) / HOUR_MS);
+        int slot = dayOfWeek(day) * HOURS_PER_DAY + hour;
+
+        hourOfWeekCounts[slot] += count;
+        hourOfWeekDurations[slot] += duration;
+        days.add(day, count, duration);
+        months.add(monthOf(day), count, duration);
+    }
+
+    public TimeZone getZone() { return zone; }
+
+    public int localDay(long date) {
+        return (int) Math.floorDiv(date + zone.getOffset(date), DAY_MS);
+    }
+
+    // --- Hour of day x day of week ---
+
+    public int getHourOfWeekCount(int dayOfWeek, int hour) {
+        return hourOfWeekCounts[dayOfWeek * HOURS_PER_DAY + hour];
+    }
+
+    public long getHourOfWeekDuration(int dayOfWeek, int hour) {
+        return hourOfWeekDurations[dayOfWeek * HOURS_PER_DAY + hour];
+    }
+
+    // --- Days ---
+
+    public boolean isEmpty() { return days.length() == 0; }
+    public int getFirstDay() { return days.first(); }
+    public int getLastDay() { return days.first() + days.length() - 1; }
+    public int getDayCount(int day) { return days.count(day); }
+    public long getDayDuration(int day) { return days.duration(day); }
+    public int countBetweenDays(int fromDay, int toDay) { return days.countBetween(fromDay, toDay); }
+    public long durationBetweenDays(int fromDay, int toDay) { return days.durationBetween(fromDay, toDay); }
+
+    // --- Months ---
+
+    public int getFirstMonth() { return months.first(); }
+    public int getLastMonth() { return months.first() + months.length() - 1; }
+    public int getMonthCount(int month) { return months.count(month); }
+    public long getMonthDuration(int month) { return months.duration(month); }
+    public int countBetweenMonths(int fromMonth, int toMonth) { return months.countBetween(fromMonth, toMonth); }
+
+    // Monday = 0. Epoch day 0 was a Thursday.
+    public static int dayOfWeek(int epochDay) {
+        return Math.floorMod(epochDay + 3, DAYS_PER_WEEK);
+    }
+
+    // year * 12 + month - 1, from the civil calendar algorithm in H. Hinnant's chrono date paper
+    public static int monthOf(int epochDay) {
+        long z = epochDay + 719_468L;
+        long era = Math.floorDiv(z, 146_097L);
+        long dayOfEra = z - era * 146_097L;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153; // March = 0
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) (year * 12 + month - 1);
+    }
+
+    // Dense buckets over [first, first + length). Like CallLogTable, the used
+    // range floats inside the arrays so it can grow in either direction.
+    private static final class Series {
+
+        private int origin; // Key stored at index 0
+        private int first;
+        private int length;
+        private int[] counts = new int[0];
+        private long[] durations = new long[0];
+
+        Series() {}
+
+        Series(Series other) {
+            origin = other.origin;
+            first = other.first;
+            length = other.length;
+            counts = other.counts.clone();
+            durations = other.durations.clone();
+        }
+
+        int first() { return first; }
+        int length() { return length; }
+
+        void writeTo(DataOutput out) throws IOException {
+            out.writeInt(first);
+            out.writeInt(length);
+            for (int i = first - origin; i < first - origin + length; i++) out.writeInt(counts[i]);
+            for (int i = first - origin; i < first - origin + length; i++) out.writeLong(durations[i]);
+        }
+
+        // Sized to fit; the next add() outside the range grows it as usual
+        void readFrom(ByteBuffer in) {
+            first = in.getInt();
+            length = in.getInt();
+            if (length < 0 || length > in.remaining() / 12) throw new BufferUnderflowException();
+            origin = first;
+            counts = new int[length];
+            durations = new long[length];
+            in.asIntBuffer().get(counts);
+            in.position(in.position() + 4 * length);
+            in.asLongBuffer().get(durations);
+            in.position(in.position() + 8 * length);
+        }
+
+        void add(int key, int count, long duration) {
+            ensure(key);
+            counts[key - origin] += count;
+            durations[key - origin] += duration;
+        }
+
+        int count(int key) {
+            return key >= first && key < first + length ? counts[key - origin] : 0;
+        }
+
+        long duration(int key) {
+            return key >= first && key < first + length ? durations[key - origin] : 0;
+        }
+
+        int countBetween(int from, int to) {
+            int total = 0;
+            for (int key = Math.max(from, first), end = Math.min(to, first + length - 1); key <= end; key++) {
+                total += counts[key - origin];
+            }
+            return total;
+        }
+
+        long durationBetween(int from, int to) {
+            long total = 0;
+            for (int key = Math.max(from, first), end = Math.min(to, first + length - 1); key <= end; key++) {
+                total += durations[key - origin];
+            }
+            return total;
+        }
+
+        void merge(Series other) {
+            if (other.length == 0) return;
+            ensure(other.first);
+            ensure(other.first + other.length - 1);
+            for (int key = other.first; key < other.first + other.length; key++) {
+                counts[key - origin] += other.counts[key - other.origin];
+                durations[key - origin] += other.durations[key - other.origin];
+            }
+        }
+
+        private void ensure(int key) {
+            if (length == 0) {
+                if (counts.length == 0) {
+                    counts = new int[64];
+                    durations = new long[64];
+                }
+                origin = key - counts.length / 2;
+                first = key;
+                length = 1;
+            } else if (key < first) {
+                if (key < origin) resize(key, first + length - 1, true);
+                length += first - key;
+                first = key;
+            } else if (key >= first + length) {
+                if (key >= origin + counts.length) resize(first, key, false);
+                length = key - first + 1;
+            }
+        }
+
+        // Doubles the arrays to cover [low, high] with the free space on the side that grew
+        private void resize(int low, int high, boolean atFront) {
+            int capacity = Math.max(high - low + 1 + 32, counts.length * 2);
+            int newOrigin = atFront ? high - capacity + 1 : low;
+            int[] newCounts = new int[capacity];
+            long[] newDurations = new long[capacity];
+            System.arraycopy(counts, first - origin, newCounts, first - newOrigin, length);
+            System.arraycopy(durations, first - origin, newDurations, first - newOrigin, length);
+            counts = newCounts;
+            durations = newDurations;
+            origin = newOrigin;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable result of a CallbackTracker: callback stats for all missed calls
+ * and for every number with any, keyed like CallLogSnapshot.getContactStats()
+ * so the two can be looked up side by side.
+ */
+public final class CallbackSnapshot {
+
+    private final CallbackStats overall;
+    private final Map<String, CallbackStats> byNumber;
+
+    CallbackSnapshot(CallbackStats overall, Map<String, CallbackStats> byNumber) {
+        this.overall = overall;
+        this.byNumber = Collections.unmodifiableMap(byNumber);
+    }
+
+    public CallbackStats getOverall() { return overall; }
+
+    public Map<String, CallbackStats> getByNumber() { return byNumber; }
+
+    // Null when the number has no missed calls
+    public CallbackStats get(String number) { return byNumber.get(number); }
+}
@@ -0,0 +1,51 @@
+package com.example.phonecallloganalyzer;
+
+/**
+ * How one contact's missed calls (or everyone's) were returned. A missed call
+ * counts as returned once any incoming or outgoing call with the same number
+ * follows it; the wait until then goes into a DurationSketch in seconds.
+ * Mutable while CallbackTracker fills it; the copies in a CallbackSnapshot
+ * must not be modified.
+ */
+public final class CallbackStats {
+
+    private int missed;
+    private int returned;
+    private final DurationSketch latencies; // Seconds from the missed call to the next call, returned ones only
+
+    CallbackStats() {
+        latencies = new DurationSketch();
+    }
+
+    CallbackStats(CallbackStats other) {
+        missed = other.missed;
+        returned = other.returned;
+        latencies = new DurationSketch(other.latencies);
+    }
+
+    void addReturned(long latencyMillis) {
+        missed++;
+        markReturned(latencyMillis);
+    }
+
+    // A missed call counted as unreturned that a newer call has now returned
+    void markReturned(long latencyMillis) {
+        returned++;
+        // The sketch only records positive values, and a callback in the same second still counts
+        latencies.add((int) Math.min(Integer.MAX_VALUE, Math.max(1, latencyMillis / 1000)));
+    }
+
+    void addUnreturned() {
+        missed++;
+    }
+
+    public int getMissed() { return missed; }
+    public int getReturned() { return returned; }
+    public int getUnreturned() { return missed - returned; }
+    public DurationSketch getLatencies() { return latencies; }
+
+    // Fraction of missed calls that were never followed by a call, 0 without missed calls
+    public double getUnreturnedShare() {
+        return missed == 0 ? 0 : (double) (missed - returned) / missed;
+    }
+}
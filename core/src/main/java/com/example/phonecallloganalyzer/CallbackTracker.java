@@ -0,0 +1,135 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Callback latency of missed calls, in one pass over rows newest first, the
+ * order of CallLogTable and of the provider cursor. Walking back in time, the
+ * call that returns a missed call has always been seen already, so the only
+ * state per number is the date of the nearest later incoming or outgoing call.
+ * A missed call with none is unreturned.
+ *
+ * Every missed call before a callback is returned by it, so two missed calls
+ * an hour apart and then a callback give two latencies. Other call types
+ * (voicemail, rejected, blocked) neither return nor need returning.
+ *
+ * Calls newer than every row so far, like the ones a sync finds, fold in with
+ * addNewer(), oldest first. For that it keeps per number the dates of the
+ * missed calls nothing has returned yet, which the next answered call returns.
+ *
+ * Owned by one thread, like CallLogAggregator. Because it depends on the order
+ * of the rows it can't be merged across shards or patched with a removal, an
+ * edit or a call older than the newest; run it again over the table instead.
+ */
+public class CallbackTracker {
+
+    private static final long NO_CALL = Long.MIN_VALUE;
+
+    private static final class NumberState {
+        long nextCall = NO_CALL; // Date of the nearest later incoming or outgoing call
+        CallbackStats stats; // Created on the first missed call
+        long[] unreturned; // Dates of the missed calls no call has followed yet, for addNewer()
+        int unreturnedCount;
+
+        void addUnreturned(long date) {
+            if (unreturned == null) unreturned = new long[2];
+            else if (unreturnedCount == unreturned.length) unreturned = Arrays.copyOf(unreturned, unreturnedCount * 2);
+            unreturned[unreturnedCount++] = date;
+        }
+    }
+
+    private final HashMap<String, NumberState> numbers = new HashMap<>();
+    private final CallbackStats overall = new CallbackStats();
+    private long lastDate = Long.MAX_VALUE; // Oldest row so far
+    private long newestDate = Long.MIN_VALUE;
+
+    public void add(String number, byte type, long date) {
+        if (date > lastDate) throw new IllegalArgumentException("Rows must come newest first: " + date + " after " + lastDate);
+        lastDate = date;
+        newestDate = Math.max(newestDate, date);
+        if (!isTracked(type)) return;
+
+        NumberState state = stateOf(number);
+        if (type != CallLogTable.TYPE_MISSED) {
+            state.nextCall = date;
+            return;
+        }
+        if (state.stats == null) state.stats = new CallbackStats();
+        if (state.nextCall == NO_CALL) {
+            state.stats.addUnreturned();
+            overall.addUnreturned();
+            state.addUnreturned(date);
+        } else {
+            state.stats.addReturned(state.nextCall - date);
+            overall.addReturned(state.nextCall - date);
+        }
+    }
+
+    // A call at least as new as every row so far; several come oldest first. An answered one returns
+    // the number's unreturned missed calls, as a pass over the whole table would have had it.
+    public void addNewer(String number, byte type, long date) {
+        if (date < newestDate) throw new IllegalArgumentException("Rows must be newer than " + newestDate + ": " + date);
+        newestDate = date;
+        if (lastDate == Long.MAX_VALUE) lastDate = date;
+        if (!isTracked(type)) return;
+
+        NumberState state = stateOf(number);
+        if (type != CallLogTable.TYPE_MISSED) {
+            for (int i = 0; i < state.unreturnedCount; i++) {
+                state.stats.markReturned(date - state.unreturned[i]);
+                overall.markReturned(date - state.unreturned[i]);
+            }
+            state.unreturned = null;
+            state.unreturnedCount = 0;
+            if (state.nextCall == NO_CALL) state.nextCall = date; // The nearest for any older row add() brings later
+            return;
+        }
+        if (state.stats == null) state.stats = new CallbackStats();
+        state.stats.addUnreturned();
+        overall.addUnreturned();
+        state.addUnreturned(date);
+    }
+
+    // Long.MIN_VALUE before the first row; addNewer() takes rows from this date on
+    public long getNewestDate() {
+        return newestDate;
+    }
+
+    private static boolean isTracked(byte type) {
+        return type == CallLogTable.TYPE_MISSED || type == CallLogTable.TYPE_INCOMING || type == CallLogTable.TYPE_OUTGOING;
+    }
+
+    private NumberState stateOf(String number) {
+        NumberState state = numbers.get(number);
+        if (state == null) {
+            state = new NumberState();
+            numbers.put(number, state);
+        }
+        return state;
+    }
+
+    // Rows [from, to) of a table, which is newest first
+    public void addRows(CallLogTable table, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(table.getNumber(i), table.getType(i), table.getDate(i));
+        }
+    }
+
+    public static CallbackSnapshot track(CallLogTable table) {
+        CallbackTracker tracker = new CallbackTracker();
+        tracker.addRows(table, 0, table.size());
+        return tracker.snapshot();
+    }
+
+    // Only numbers with missed calls get an entry
+    public CallbackSnapshot snapshot() {
+        HashMap<String, CallbackStats> copies = new HashMap<>();
+        for (Map.Entry<String, NumberState> entry : numbers.entrySet()) {
+            CallbackStats stats = entry.getValue().stats;
+            if (stats != null) copies.put(entry.getKey(), new CallbackStats(stats));
+        }
+        return new CallbackSnapshot(new CallbackStats(overall), copies);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.concurrent.CancellationException;
+
+// Set by LoadScheduler when a newer request supersedes a running one. Long tasks check it between steps.
+public final class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException();
+    }
+}
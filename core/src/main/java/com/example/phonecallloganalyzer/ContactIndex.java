@@ -0,0 +1,72 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.HashMap;
+
+/**
+ * In-memory phone number -> display name index, built from one pass over the
+ * contacts Phone table instead of one PhoneLookup query per call log number.
+ *
+ * Lookups try the full digit string first, then the last 10 digits (national
+ * number with a country code in front), then the last 7 digits, which is the
+ * loose match PhoneLookup falls back to. For every tier the first contact added
+ * wins, same as taking the first row of a lookup cursor.
+ */
+public class ContactIndex {
+
+    static final int NATIONAL_MATCH = 10;
+    static final int MIN_MATCH = 7;
+
+    private final HashMap<String, String> byDigits = new HashMap<>();
+    private final HashMap<String, String> byNational = new HashMap<>();
+    private final HashMap<String, String> byMinMatch = new HashMap<>();
+
+    public void add(String number, String name) {
+        if (number == null || name == null) return;
+        String digits = digitsOf(number);
+        if (digits.isEmpty()) return;
+
+        byDigits.putIfAbsent(digits, name);
+        if (digits.length() >= NATIONAL_MATCH) {
+            byNational.putIfAbsent(suffix(digits, NATIONAL_MATCH), name);
+        }
+        if (digits.length() >= MIN_MATCH) {
+            byMinMatch.putIfAbsent(suffix(digits, MIN_MATCH), name);
+        }
+    }
+
+    // Returns null when no contact matches, so callers can fall back to the raw number
+    public String lookup(String number) {
+        if (number == null) return null;
+        String digits = digitsOf(number);
+        if (digits.isEmpty()) return null;
+
+        String name = byDigits.get(digits);
+        if (name != null) return name;
+        if (digits.length() >= NATIONAL_MATCH) {
+            name = byNational.get(suffix(digits, NATIONAL_MATCH));
+            if (name != null) return name;
+        }
+        if (digits.length() >= MIN_MATCH) {
+            return byMinMatch.get(suffix(digits, MIN_MATCH));
+        }
+        return null;
+    }
+
+    public int size() {
+        return byDigits.size();
+    }
+
+    // Strips formatting ("+", spaces, dashes, brackets) and keeps only the digits
+    static String digitsOf(String number) {
+        StringBuilder sb = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static String suffix(String digits, int length) {
+        return digits.substring(digits.length() - length);
+    }
+}
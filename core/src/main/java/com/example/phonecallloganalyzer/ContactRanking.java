@@ -0,0 +1,22 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.Comparator;
+
+// Keys the contact leaderboard can be ranked by. Ties go to the lower number so rankings are stable.
+public enum ContactRanking {
+    TOTAL_DURATION(Comparator.comparingLong(ContactStats::getTotalDuration)),
+    CALL_COUNT(Comparator.comparingInt(ContactStats::getCount)),
+    MISSED_COUNT(Comparator.comparingInt(ContactStats::getMissedCount));
+
+    private final Comparator<ContactStats> order;
+
+    ContactRanking(Comparator<ContactStats> key) {
+        this.order = key.reversed()
+                .thenComparing(ContactStats::getNumber, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
+    // Highest first
+    public Comparator<ContactStats> order() {
+        return order;
+    }
+}
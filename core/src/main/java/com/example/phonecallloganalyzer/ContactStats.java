@@ -0,0 +1,89 @@
+package com.example.phonecallloganalyzer;
+
+public class ContactStats {
+    private String name;
+    private String number; // <-- 1. Add field for the number
+    private int count;
+    private int missedCount;
+    private long totalDuration; // Seconds. Long so heavy contacts on imported histories can't overflow
+    private final DurationSketch durations; // Connected calls only
+
+    // 2. Update the constructor to accept the number
+    public ContactStats(String name, String number) {
+        this.name = name;
+        this.number = number; // <-- Store the number
+        this.count = 0;
+        this.totalDuration = 0;
+        this.durations = new DurationSketch();
+    }
+
+    public ContactStats(ContactStats other) {
+        this.name = other.name;
+        this.number = other.number;
+        this.count = other.count;
+        this.missedCount = other.missedCount;
+        this.totalDuration = other.totalDuration;
+        this.durations = new DurationSketch(other.durations);
+    }
+
+    // Restores stats read back from a saved snapshot
+    ContactStats(String name, String number, int count, int missedCount, long totalDuration,
+                 DurationSketch durations) {
+        this.name = name;
+        this.number = number;
+        this.count = count;
+        this.missedCount = missedCount;
+        this.totalDuration = totalDuration;
+        this.durations = durations;
+    }
+
+    public void addCall(int duration) {
+        count++;
+        totalDuration += duration;
+        durations.add(duration);
+    }
+
+    public void addCall(int duration, byte type) {
+        addCall(duration);
+        if (type == CallLogTable.TYPE_MISSED) missedCount++;
+    }
+
+    // Calls of one type summed elsewhere, e.g. by a SQL GROUP BY. Their durations go in
+    // separately through addDurations(), since a sum says nothing about the spread.
+    void addCalls(int calls, long duration, byte type) {
+        count += calls;
+        totalDuration += duration;
+        if (type == CallLogTable.TYPE_MISSED) missedCount += calls;
+    }
+
+    // Connected calls counted elsewhere by DurationSketch bucket
+    void addDurations(int bucket, int calls, int longest) {
+        durations.addBucket(bucket, calls, longest);
+    }
+
+    // Folds in stats for the same number aggregated from another shard
+    public void merge(ContactStats other) {
+        count += other.count;
+        missedCount += other.missedCount;
+        totalDuration += other.totalDuration;
+        durations.merge(other.durations);
+    }
+
+    // Used when a synced call log row is deleted or edited
+    public void removeCall(int duration, byte type) {
+        count--;
+        totalDuration -= duration;
+        durations.remove(duration);
+        if (type == CallLogTable.TYPE_MISSED) missedCount--;
+    }
+
+    // --- Getters ---
+    public String getName() { return name; }
+    public int getCount() { return count; }
+    public int getMissedCount() { return missedCount; }
+    public long getTotalDuration() { return totalDuration; }
+    public DurationSketch getDurations() { return durations; }
+
+    // 3. This is the "getter" method that was missing
+    public String getNumber() { return number; }
+}
\ No newline at end of file
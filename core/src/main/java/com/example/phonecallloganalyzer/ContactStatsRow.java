@@ -0,0 +1,47 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.Objects;
+
+// One row of the "Detailed Statistics" list. Immutable; equals() compares every field so list diffs can spot changes.
+public final class ContactStatsRow {
+
+    private final String name;
+    private final String number;
+    private final int count;
+    private final int missedCount;
+    private final long totalDuration;
+    private final int medianDuration, p90Duration; // Of connected calls, 0 when there were none
+
+    public ContactStatsRow(ContactStats stats) {
+        this.name = stats.getName();
+        this.number = stats.getNumber();
+        this.count = stats.getCount();
+        this.missedCount = stats.getMissedCount();
+        this.totalDuration = stats.getTotalDuration();
+        this.medianDuration = stats.getDurations().getMedian();
+        this.p90Duration = stats.getDurations().getP90();
+    }
+
+    public String getName() { return name; }
+    public String getNumber() { return number; }
+    public int getCount() { return count; }
+    public int getMissedCount() { return missedCount; }
+    public long getTotalDuration() { return totalDuration; }
+    public int getMedianDuration() { return medianDuration; }
+    public int getP90Duration() { return p90Duration; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ContactStatsRow)) return false;
+        ContactStatsRow other = (ContactStatsRow) o;
+        return count == other.count && missedCount == other.missedCount && totalDuration == other.totalDuration
+                && medianDuration == other.medianDuration && p90Duration == other.p90Duration
+                && Objects.equals(name, other.name) && Objects.equals(number, other.number);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, number, count, missedCount, totalDuration, medianDuration, p90Duration);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.phonecallloganalyzer;
+
+/**
+ * Per-key totals (calls, seconds) in depth x width counters. An estimate never
+ * undercounts, and with probability 1 - e^-depth it overcounts by at most
+ * e / width of the grand total, whatever the number of distinct keys.
+ *
+ * Keys come in as 64-bit hashes; the rows are indexed with two halves of it
+ * (Kirsch-Mitzenmacher), so one hash serves every row.
+ */
+public final class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final long[] counters; // depth rows of width, row major
+    private long total;
+
+    // width is rounded up to a power of two
+    public CountMinSketch(int depth, int width) {
+        int rounded = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = rounded - 1;
+        this.counters = new long[depth * rounded];
+    }
+
+    public long estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1; // Odd, so no two rows pick the same column
+        int width = mask + 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row * width + ((h1 + row * h2) & mask)]);
+        }
+        return min;
+    }
+
+    // Adds to the key and returns its new estimate, in one pass over the rows
+    public long addAndEstimate(long hash, long amount) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int width = mask + 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int slot = row * width + ((h1 + row * h2) & mask);
+            min = Math.min(min, counters[slot] += amount);
+        }
+        total += amount;
+        return min;
+    }
+
+    public long getTotal() { return total; }
+
+    // The most any estimate overcounts by, at confidence()
+    public long errorBound() {
+        return (long) Math.ceil(Math.E / (mask + 1) * total);
+    }
+
+    public double confidence() {
+        return 1 - Math.exp(-depth);
+    }
+
+    public int sizeInBytes() {
+        return counters.length * Long.BYTES;
+    }
+}
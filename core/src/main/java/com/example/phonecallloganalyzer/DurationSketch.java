@@ -0,0 +1,158 @@
+package com.example.phonecallloganalyzer;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Histogram of call durations in log-linear buckets: one bucket per second
+ * below 8 s, then four per doubling. A quantile is the middle of its bucket,
+ * so it is within 12.5% of the true value, and the sketch never holds more
+ * than BUCKETS counters however many calls it has seen. Sketches of the same
+ * kind add up exactly, so shards and snapshots merge without loss.
+ *
+ * Only connected calls (duration > 0) are recorded; a missed call would drag
+ * every percentile towards zero.
+ *
+ * Mutable like ContactStats. The copy in a snapshot must not be modified.
+ */
+public final class DurationSketch {
+
+    static final int EXACT = 8; // Below this each second has a bucket
+    static final int BUCKETS = EXACT + 4 * (31 - 3); // Up to Integer.MAX_VALUE seconds
+
+    private int[] counts; // Grown to the highest bucket used, null while empty
+    private int count;
+    private int max; // Exact until the longest call is removed, then the top of its bucket
+
+    public DurationSketch() {}
+
+    public DurationSketch(DurationSketch other) {
+        counts = other.counts != null ? other.counts.clone() : null;
+        count = other.count;
+        max = other.max;
+    }
+
+    public static int bucketOf(int seconds) {
+        if (seconds < EXACT) return seconds;
+        int octave = 31 - Integer.numberOfLeadingZeros(seconds); // >= 3
+        int sub = (seconds >>> (octave - 2)) & 3;
+        return EXACT + (octave - 3) * 4 + sub;
+    }
+
+    public static int lowerBound(int bucket) {
+        if (bucket < EXACT) return bucket;
+        int octave = 3 + (bucket - EXACT) / 4;
+        int sub = (bucket - EXACT) % 4;
+        return (4 + sub) << (octave - 2);
+    }
+
+    // Last second in the bucket
+    public static int upperBound(int bucket) {
+        return bucket + 1 == BUCKETS ? Integer.MAX_VALUE : lowerBound(bucket + 1) - 1;
+    }
+
+    public void add(int seconds) {
+        if (seconds <= 0) return;
+        addToBucket(bucketOf(seconds), 1);
+        max = Math.max(max, seconds);
+    }
+
+    // Calls counted elsewhere by bucket, e.g. by a SQL GROUP BY on the bucket column
+    void addBucket(int bucket, int calls, int longest) {
+        addToBucket(bucket, calls);
+        max = Math.max(max, longest);
+    }
+
+    private void addToBucket(int bucket, int calls) {
+        if (calls <= 0) return;
+        if (counts == null || counts.length <= bucket) {
+            counts = counts == null ? new int[bucket + 1] : Arrays.copyOf(counts, bucket + 1);
+        }
+        counts[bucket] += calls;
+        count += calls;
+    }
+
+    public void remove(int seconds) {
+        if (seconds <= 0 || counts == null) return;
+        int bucket = bucketOf(seconds);
+        if (bucket >= counts.length || counts[bucket] == 0) return;
+        counts[bucket]--;
+        count--;
+        if (bucket >= bucketOf(max)) max = highestValue();
+    }
+
+    public void merge(DurationSketch other) {
+        if (other.counts == null) return;
+        if (counts == null || counts.length < other.counts.length) {
+            counts = counts == null ? new int[other.counts.length] : Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        max = Math.max(max, other.max);
+    }
+
+    public int getCount() { return count; }
+    public boolean isEmpty() { return count == 0; }
+    public int getMax() { return max; }
+
+    public int getMedian() { return quantile(0.5); }
+    public int getP90() { return quantile(0.9); }
+
+    // Seconds, 0 for an empty sketch. q = 0.5 is the median.
+    public int quantile(double q) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                int low = lowerBound(bucket);
+                int middle = low + (int) (((long) upperBound(bucket) - low) / 2);
+                return Math.min(middle, max);
+            }
+        }
+        return max;
+    }
+
+    // Histogram access: buckets 0 until bucketLimit(), each covering [lowerBound, upperBound] seconds
+    public int bucketLimit() { return counts != null ? counts.length : 0; }
+    public int countAt(int bucket) { return counts[bucket]; }
+
+    private int highestValue() {
+        for (int bucket = counts.length - 1; bucket >= 0; bucket--) {
+            if (counts[bucket] > 0) return Math.min(upperBound(bucket), max);
+        }
+        return 0;
+    }
+
+    // Buckets in use, then their counts; the max goes with them so it stays exact
+    void writeTo(DataOutput out) throws IOException {
+        int used = bucketLimit();
+        out.writeInt(used);
+        for (int i = 0; i < used; i++) {
+            out.writeInt(counts[i]);
+        }
+        out.writeInt(max);
+    }
+
+    static DurationSketch readFrom(ByteBuffer in) {
+        DurationSketch sketch = new DurationSketch();
+        int used = in.getInt();
+        if (used < 0 || used > BUCKETS) throw new IllegalArgumentException("Corrupt sketch size " + used);
+        if (used > 0) {
+            sketch.counts = new int[used];
+            for (int i = 0; i < used; i++) {
+                int calls = in.getInt();
+                if (calls < 0) throw new IllegalArgumentException("Corrupt sketch count " + calls);
+                sketch.counts[i] = calls;
+                sketch.count += calls;
+            }
+        }
+        sketch.max = in.getInt();
+        return sketch;
+    }
+}
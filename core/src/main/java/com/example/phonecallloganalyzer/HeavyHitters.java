@@ -0,0 +1,82 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The keys with the largest Count-Min estimates, in a fixed number of slots.
+ * Every add offers the key with its fresh estimate: a key already held is
+ * updated, a new one replaces the smallest held key if it beats it. Estimates
+ * only grow, so a key whose true total reaches the top is always admitted.
+ *
+ * Holds a few times more candidates than are shown, so keys near the cut
+ * don't keep evicting each other.
+ */
+public final class HeavyHitters {
+
+    public static final class Hitter {
+        private final String number;
+        private String name;
+        private long estimate;
+
+        Hitter(String number, String name, long estimate) {
+            this.number = number;
+            this.name = name;
+            this.estimate = estimate;
+        }
+
+        public String getNumber() { return number; }
+        public String getName() { return name; }
+        public long getEstimate() { return estimate; }
+    }
+
+    private final int capacity;
+    private final HashMap<String, Hitter> held;
+    private long floor; // At most the smallest held estimate. Estimates only grow, so it stays a lower bound.
+
+    public HeavyHitters(int capacity) {
+        this.capacity = capacity;
+        this.held = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(String number, String name, long estimate) {
+        Hitter hitter = held.get(number);
+        if (hitter != null) {
+            hitter.estimate = estimate;
+            if (name != null) hitter.name = name;
+            return;
+        }
+        if (held.size() < capacity) {
+            held.put(number, new Hitter(number, name, estimate));
+            return;
+        }
+        if (estimate <= floor) return; // The common case: a small key, turned away without a scan
+        Hitter smallest = findSmallest();
+        floor = smallest.estimate;
+        if (estimate <= floor) return;
+        held.remove(smallest.number);
+        held.put(number, new Hitter(number, name, estimate));
+    }
+
+    // Copies of the k largest, largest first
+    public List<Hitter> top(int k) {
+        List<Hitter> top = new ArrayList<>();
+        for (Hitter hitter : TopK.select(held.values(), k, (a, b) -> Long.compare(b.estimate, a.estimate))) {
+            top.add(new Hitter(hitter.number, hitter.name, hitter.estimate));
+        }
+        return top;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private Hitter findSmallest() {
+        Hitter min = null;
+        for (Hitter hitter : held.values()) {
+            if (min == null || hitter.estimate < min.estimate) min = hitter;
+        }
+        return min;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs one kind of background load (a full scan, a sync, a query) on a
+ * worker executor and hands the result to a delivery executor, normally the
+ * main thread. Every request gets a version number, and a result is only
+ * delivered while its request hasn't been superseded or cancelled, so the UI
+ * never applies a stale one.
+ *
+ * Three ways to ask, depending on what changed:
+ * - load(): nothing new, e.g. a second trigger for the same scan. Joins the
+ *   queued or running request if there is one.
+ * - reload(): the parameters changed. Cancels whatever is queued or running
+ *   and starts over.
+ * - refresh(): the source changed. Folds into a queued request, or queues one
+ *   behind the running request so it still sees the change.
+ *
+ * The request methods are meant to be called from the delivery thread.
+ */
+public final class LoadScheduler<T> {
+
+    public interface Task<T> {
+        // On the worker. Check the token between steps; throwing CancellationException is fine.
+        T run(CancellationToken token);
+    }
+
+    public interface Callback<T> {
+        void onResult(long version, T result);
+    }
+
+    private final Executor worker;
+    private final Executor delivery;
+    private long version;
+    private long discardThrough; // Results of this version and older are dropped, even if already finished
+    private Request pending; // Queued on the worker but not started
+    private Request running;
+
+    public LoadScheduler(Executor worker, Executor delivery) {
+        this.worker = worker;
+        this.delivery = delivery;
+    }
+
+    public synchronized long load(Task<T> task, Callback<T> callback) {
+        if (pending != null) return pending.version;
+        if (running != null) return running.version;
+        return start(task, callback);
+    }
+
+    public synchronized long reload(Task<T> task, Callback<T> callback) {
+        cancel();
+        return start(task, callback);
+    }
+
+    public synchronized long refresh(Task<T> task, Callback<T> callback) {
+        if (pending != null) {
+            pending.task = task;
+            pending.callback = callback;
+            return pending.version;
+        }
+        return start(task, callback);
+    }
+
+    public synchronized void cancel() {
+        if (pending != null) pending.token.cancel();
+        if (running != null) running.token.cancel();
+        pending = null;
+        running = null; // Left to finish on its own; nothing it returns is delivered
+        discardThrough = version;
+    }
+
+    public synchronized boolean isIdle() {
+        return pending == null && running == null;
+    }
+
+    private long start(Task<T> task, Callback<T> callback) {
+        Request request = new Request(++version, task, callback);
+        pending = request;
+        worker.execute(request);
+        return request.version;
+    }
+
+    private final class Request implements Runnable {
+
+        final long version;
+        final CancellationToken token = new CancellationToken();
+        Task<T> task;
+        Callback<T> callback;
+
+        Request(long version, Task<T> task, Callback<T> callback) {
+            this.version = version;
+            this.task = task;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            Task<T> task;
+            Callback<T> callback;
+            synchronized (LoadScheduler.this) {
+                if (token.isCancelled()) return;
+                if (pending == this) pending = null;
+                running = this;
+                task = this.task;
+                callback = this.callback;
+            }
+
+            T result;
+            try {
+                result = task.run(token);
+            } catch (CancellationException e) {
+                return;
+            } finally {
+                synchronized (LoadScheduler.this) {
+                    if (running == this) running = null;
+                }
+            }
+            if (token.isCancelled()) return;
+            // Checked again on delivery: a reload() may have come in while this was queued
+            delivery.execute(() -> {
+                if (isCurrent()) callback.onResult(version, result);
+            });
+        }
+
+        private boolean isCurrent() {
+            synchronized (LoadScheduler.this) {
+                return version > discardThrough;
+            }
+        }
+    }
+}
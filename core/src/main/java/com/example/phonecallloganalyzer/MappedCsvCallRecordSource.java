@@ -0,0 +1,591 @@
+package com.example.phonecallloganalyzer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Call detail record export (CSV) read straight out of a memory-mapped file.
+ * Fields are parsed in place: dates, types and durations as numbers, numbers
+ * and names through an interning table keyed on their bytes, so a String is
+ * only made the first time a spelling is seen. The table starts over past
+ * INTERN_LIMIT spellings, so an export of millions of distinct numbers feeds
+ * ApproximateAggregator in bounded memory. Feeds CallLogTable and
+ * CallLogAggregator like any CallRecordSource too.
+ *
+ * The first line names the columns; number and date are required, id, name,
+ * type and duration are optional (see COLUMN_NAMES for the accepted
+ * spellings). Fields may be quoted, with "" for a quote inside. Accepted
+ * values:
+ * - date: epoch milliseconds, epoch seconds (10 digits or fewer), or
+ *   "yyyy-MM-dd HH:mm[:ss[.fff]]" with a 'T' or a space, local to the given
+ *   zone unless it ends in Z or +hh:mm;
+ * - type: CallLog.Calls.TYPE values, or words (incoming or in, outgoing or
+ *   out, missed, voicemail, rejected, blocked);
+ * - duration: seconds, or [h:]mm:ss.
+ * Rows that don't parse are skipped and counted, never fatal.
+ *
+ * The file is mapped in windows of WINDOW_SIZE, so it may be larger than 2 GB.
+ * Not thread safe. Close it to release the file.
+ */
+public final class MappedCsvCallRecordSource implements CallRecordSource, Closeable {
+
+    // Called every progressInterval rows from next(). Throw (e.g. CancellationToken.throwIfCancelled) to stop.
+    public interface ProgressListener {
+        void onProgress(long rows, long bytesRead, long totalBytes);
+    }
+
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    static final int INTERN_LIMIT = 16_384; // Spellings per interning table before it starts over
+    private static final int MAX_COLUMNS = 64;
+
+    private static final int COL_ID = 0, COL_NUMBER = 1, COL_NAME = 2, COL_TYPE = 3, COL_DATE = 4, COL_DURATION = 5;
+    // Header names, lower case with spaces, '_' and '-' removed, by column
+    private static final String[][] COLUMN_NAMES = {
+            {"id", "recordid", "callid"},
+            {"number", "phonenumber", "caller", "callingnumber", "othernumber", "remotenumber", "msisdn"},
+            {"name", "contactname", "cachedname"},
+            {"type", "calltype", "direction"},
+            {"date", "datetime", "calldate", "starttime", "start", "timestamp"},
+            {"duration", "durationseconds", "seconds", "billsec"}
+    };
+    // Words for the CallLog.Calls.TYPE values 1 (incoming) to 6 (blocked)
+    private static final String[][] TYPE_WORDS = {
+            {"incoming", "in", "inbound"},
+            {"outgoing", "out", "outbound"},
+            {"missed"},
+            {"voicemail"},
+            {"rejected"},
+            {"blocked"}
+    };
+
+    private final FileChannel channel;
+    private final int windowSize;
+    private final long length;
+    private final TimeZone zone;
+    private final Interner numbers;
+    private final Interner names = new Interner(null);
+    private final int[] columnOf = new int[MAX_COLUMNS]; // File column -> COL_*, -1 to skip
+    private int columnCount;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position; // In the window
+
+    // Current row, as [start, end) in the window
+    private final int[] fieldStart = new int[6];
+    private final int[] fieldEnd = new int[6];
+    private final boolean[] fieldEscaped = new boolean[6];
+    private long id;
+    private String number, name;
+    private int type, duration;
+    private long date;
+
+    private long rows, skippedRows;
+    private byte[] scratch = new byte[256];
+    private long cachedHour = Long.MIN_VALUE; // Local hour whose zone offset is cachedOffset
+    private int cachedOffset;
+
+    private ProgressListener progressListener;
+    private int progressInterval;
+
+    public static MappedCsvCallRecordSource open(File file, TimeZone zone, NumberNormalizer normalizer)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return new MappedCsvCallRecordSource(raf.getChannel(), zone, normalizer);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    // Takes over the channel and closes it on close(). normalizer may be null to keep numbers as
+    // spelled; it is consulted once per spelling the interning table doesn't hold.
+    public MappedCsvCallRecordSource(FileChannel channel, TimeZone zone, NumberNormalizer normalizer)
+            throws IOException {
+        this(channel, zone, normalizer, WINDOW_SIZE);
+    }
+
+    // Small windows let tests cross window boundaries without huge files
+    MappedCsvCallRecordSource(FileChannel channel, TimeZone zone, NumberNormalizer normalizer, int windowSize)
+            throws IOException {
+        this.channel = channel;
+        this.windowSize = windowSize;
+        this.length = channel.size();
+        this.zone = zone;
+        this.numbers = new Interner(normalizer);
+        mapWindow(0);
+        readHeader();
+    }
+
+    public void setProgressListener(ProgressListener listener, int interval) {
+        this.progressListener = listener;
+        this.progressInterval = Math.max(1, interval);
+    }
+
+    @Override
+    public boolean next() {
+        while (true) {
+            int rowStart = position;
+            int result = parseRow();
+            if (result == ROW_INCOMPLETE) {
+                // The row runs past the window: map the next window from its first byte
+                if (rowStart == 0) {
+                    throw new IllegalArgumentException("Row longer than " + windowSize + " bytes at " + windowStart);
+                }
+                remap(windowStart + rowStart);
+                continue;
+            }
+            if (result == ROW_END) return false;
+            if (result == ROW_SKIPPED) {
+                skippedRows++;
+                continue;
+            }
+            if (result == ROW_BLANK) continue;
+            rows++;
+            if (progressListener != null && rows % progressInterval == 0) {
+                progressListener.onProgress(rows, getPosition(), length);
+            }
+            return true;
+        }
+    }
+
+    @Override public long id() { return id; }
+    @Override public String number() { return number; }
+    @Override public String name() { return name; }
+    @Override public int type() { return type; }
+    @Override public long date() { return date; }
+    @Override public int duration() { return duration; }
+
+    public long getRowCount() { return rows; }
+    public long getSkippedRows() { return skippedRows; }
+    public long getPosition() { return windowStart + position; }
+    public long getLength() { return length; }
+
+    // Distinct spellings the interning tables hold now
+    public int internedStrings() {
+        return numbers.size + names.size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null; // Unmapped when collected
+        channel.close();
+    }
+
+    // --- Rows ---
+
+    private static final int ROW_OK = 0, ROW_BLANK = 1, ROW_SKIPPED = 2, ROW_INCOMPLETE = 3, ROW_END = 4;
+
+    private int parseRow() {
+        ByteBuffer buffer = window;
+        int limit = buffer.limit();
+        if (position >= limit) return windowStart + limit >= length ? ROW_END : ROW_INCOMPLETE;
+
+        Arrays.fill(fieldStart, -1);
+        int column = 0;
+        int p = position;
+        int firstLength = 0;
+        while (true) {
+            if (p >= limit) {
+                if (windowStart + limit < length) return ROW_INCOMPLETE;
+                if (column == 0 && p == position) return ROW_END;
+            }
+            int start = p, end;
+            boolean escaped = false;
+            if (p < limit && buffer.get(p) == '"') {
+                start = ++p;
+                while (true) {
+                    if (p >= limit) {
+                        if (windowStart + limit < length) return ROW_INCOMPLETE;
+                        position = limit;
+                        return ROW_SKIPPED; // Unterminated quote at the end of the file
+                    }
+                    if (buffer.get(p) == '"') {
+                        if (p + 1 < limit && buffer.get(p + 1) == '"') {
+                            escaped = true;
+                            p += 2;
+                            continue;
+                        }
+                        if (p + 1 >= limit && windowStart + limit < length) return ROW_INCOMPLETE;
+                        break;
+                    }
+                    p++;
+                }
+                end = p++; // Past the closing quote
+                while (p < limit && buffer.get(p) != ',' && buffer.get(p) != '\n') p++; // Junk after it
+            } else {
+                while (p < limit) {
+                    byte b = buffer.get(p);
+                    if (b == ',' || b == '\n') break;
+                    p++;
+                }
+                end = p;
+                if (end > start && buffer.get(end - 1) == '\r') end--;
+            }
+            if (p >= limit && windowStart + limit < length) return ROW_INCOMPLETE;
+
+            if (column == 0) firstLength = end - start;
+            int target = column < columnCount ? columnOf[column] : -1;
+            if (target >= 0) {
+                fieldStart[target] = start;
+                fieldEnd[target] = end;
+                fieldEscaped[target] = escaped;
+            }
+            column++;
+            if (p >= limit) break; // Last line without a newline
+            if (buffer.get(p++) == '\n') break;
+        }
+        position = p;
+
+        if (column == 1 && firstLength == 0) return ROW_BLANK;
+        return fillRecord() ? ROW_OK : ROW_SKIPPED;
+    }
+
+    private boolean fillRecord() {
+        if (fieldStart[COL_NUMBER] < 0 || fieldStart[COL_DATE] < 0) return false;
+        long parsedDate = parseDate(fieldStart[COL_DATE], fieldEnd[COL_DATE]);
+        if (parsedDate == Long.MIN_VALUE) return false;
+
+        int parsedType = CallLogTable.TYPE_OTHER;
+        if (fieldStart[COL_TYPE] >= 0) {
+            parsedType = parseType(fieldStart[COL_TYPE], fieldEnd[COL_TYPE]);
+            if (parsedType < 0) return false;
+        }
+        int parsedDuration = 0;
+        if (fieldStart[COL_DURATION] >= 0 && fieldEnd[COL_DURATION] > fieldStart[COL_DURATION]) {
+            parsedDuration = parseDuration(fieldStart[COL_DURATION], fieldEnd[COL_DURATION]);
+            if (parsedDuration < 0) return false;
+        }
+        long parsedId = rows + 1; // Line order when the export has no ids
+        if (fieldStart[COL_ID] >= 0 && fieldEnd[COL_ID] > fieldStart[COL_ID]) {
+            parsedId = parseLong(fieldStart[COL_ID], fieldEnd[COL_ID]);
+            if (parsedId < 0) return false;
+        }
+
+        number = intern(numbers, COL_NUMBER);
+        if (number == null) number = ""; // Withheld, as the provider reports it
+        name = fieldStart[COL_NAME] >= 0 ? intern(names, COL_NAME) : null;
+        id = parsedId;
+        date = parsedDate;
+        type = parsedType;
+        duration = parsedDuration;
+        return true;
+    }
+
+    private String intern(Interner interner, int column) {
+        int start = fieldStart[column], end = fieldEnd[column];
+        // Trim, as exports often pad fields
+        while (start < end && window.get(start) == ' ') start++;
+        while (end > start && window.get(end - 1) == ' ') end--;
+        if (start == end) return null;
+        if (!fieldEscaped[column]) return interner.intern(window, start, end);
+
+        // "" inside a quoted field: copy it out once with the quotes undoubled
+        int length = 0;
+        if (scratch.length < end - start) scratch = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            byte b = window.get(i);
+            scratch[length++] = b;
+            if (b == '"') i++;
+        }
+        return interner.intern(ByteBuffer.wrap(scratch), 0, length);
+    }
+
+    // --- Field parsers. Each returns a negative value (Long.MIN_VALUE for dates) when the field doesn't parse. ---
+
+    private long parseLong(int start, int end) {
+        while (start < end && window.get(start) == ' ') start++;
+        while (end > start && window.get(end - 1) == ' ') end--;
+        if (start == end || end - start > 18) return -1;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private int parseType(int start, int end) {
+        while (start < end && window.get(start) == ' ') start++;
+        while (end > start && window.get(end - 1) == ' ') end--;
+        if (start == end) return CallLogTable.TYPE_OTHER;
+        byte first = window.get(start);
+        if (first >= '0' && first <= '9') {
+            long value = parseLong(start, end);
+            return value > Integer.MAX_VALUE ? -1 : (int) value;
+        }
+        for (int i = 0; i < TYPE_WORDS.length; i++) {
+            for (String word : TYPE_WORDS[i]) {
+                if (equalsIgnoreCase(start, end, word)) return i + 1;
+            }
+        }
+        return CallLogTable.TYPE_OTHER;
+    }
+
+    private boolean equalsIgnoreCase(int start, int end, String word) {
+        if (end - start != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            int b = window.get(start + i);
+            if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+            if (b != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // Seconds, or [h:]mm:ss
+    private int parseDuration(int start, int end) {
+        while (start < end && window.get(start) == ' ') start++;
+        while (end > start && window.get(end - 1) == ' ') end--;
+        long total = 0, part = 0;
+        boolean digits = false;
+        for (int i = start; i < end; i++) {
+            byte b = window.get(i);
+            if (b == ':') {
+                if (!digits) return -1;
+                total = (total + part) * 60;
+                part = 0;
+                digits = false;
+            } else if (b >= '0' && b <= '9') {
+                part = part * 10 + (b - '0');
+                digits = true;
+                if (part > Integer.MAX_VALUE) return -1;
+            } else if (b == '.') {
+                break; // Fractions of a second are dropped
+            } else {
+                return -1;
+            }
+        }
+        total += part;
+        return digits && total <= Integer.MAX_VALUE ? (int) total : -1;
+    }
+
+    private long parseDate(int start, int end) {
+        while (start < end && window.get(start) == ' ') start++;
+        while (end > start && window.get(end - 1) == ' ') end--;
+        if (end - start >= 10 && window.get(start + 4) == '-') return parseIsoDate(start, end);
+        long value = parseLong(start, end);
+        if (value < 0) return Long.MIN_VALUE;
+        return end - start <= 10 ? value * 1000 : value;
+    }
+
+    // yyyy-MM-dd[( |T)HH:mm[:ss[.fff]]][Z|(+|-)hh[:]mm]
+    private long parseIsoDate(int start, int end) {
+        int year = digits(start, 4), month = digits(start + 5, 2), day = digits(start + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || window.get(start + 7) != '-') {
+            return Long.MIN_VALUE;
+        }
+        int p = start + 10;
+        long millis = 0;
+        if (p < end && (window.get(p) == ' ' || window.get(p) == 'T')) {
+            int hour = digits(p + 1, 2), minute = digits(p + 4, 2);
+            if (p + 6 > end || hour < 0 || hour > 23 || minute < 0 || minute > 59 || window.get(p + 3) != ':') {
+                return Long.MIN_VALUE;
+            }
+            millis = (hour * 60L + minute) * 60_000L;
+            p += 6;
+            if (p < end && window.get(p) == ':') {
+                int second = digits(p + 1, 2);
+                if (p + 3 > end || second < 0 || second > 60) return Long.MIN_VALUE;
+                millis += second * 1000L;
+                p += 3;
+                if (p < end && window.get(p) == '.') {
+                    int scale = 100;
+                    for (p++; p < end && window.get(p) >= '0' && window.get(p) <= '9'; p++) {
+                        millis += (window.get(p) - '0') * scale;
+                        scale /= 10;
+                    }
+                }
+            }
+        }
+        long local = epochDay(year, month, day) * 86_400_000L + millis;
+
+        if (p == end) return local - zoneOffset(local);
+        byte sign = window.get(p);
+        if (sign == 'Z' && p + 1 == end) return local;
+        if (sign != '+' && sign != '-' || p + 3 > end) return Long.MIN_VALUE;
+        int hours = digits(p + 1, 2);
+        int minutesAt = p + 3 < end && window.get(p + 3) == ':' ? p + 4 : p + 3;
+        int minutes = minutesAt + 2 == end ? digits(minutesAt, 2) : p + 3 == end ? 0 : -1;
+        if (hours < 0 || minutes < 0) return Long.MIN_VALUE;
+        long offset = (hours * 60L + minutes) * 60_000L;
+        return sign == '+' ? local - offset : local + offset;
+    }
+
+    private int digits(int start, int count) {
+        if (start + count > window.limit()) return -1;
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar
+    static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    // Offset of the zone at a local time; exports are in date order, so it rarely needs a lookup
+    private int zoneOffset(long local) {
+        long hour = Math.floorDiv(local, 3_600_000L);
+        if (hour != cachedHour) {
+            cachedHour = hour;
+            cachedOffset = zone.getOffset(local - zone.getRawOffset());
+        }
+        return cachedOffset;
+    }
+
+    // --- Header and windows ---
+
+    private void readHeader() throws IOException {
+        Arrays.fill(columnOf, -1);
+        StringBuilder header = new StringBuilder();
+        int limit = window.limit();
+        if (limit >= 3 && window.get(0) == (byte) 0xEF && window.get(1) == (byte) 0xBB && window.get(2) == (byte) 0xBF) {
+            position = 3; // UTF-8 byte order mark
+        }
+        while (position < limit && window.get(position) != '\n') {
+            header.append((char) (window.get(position++) & 0xFF));
+        }
+        if (position < limit) position++;
+
+        String[] columns = header.toString().split(",", -1);
+        if (columns.length > MAX_COLUMNS) throw new IOException("Too many columns: " + columns.length);
+        columnCount = columns.length;
+        for (int i = 0; i < columns.length; i++) {
+            String key = columns[i].replaceAll("[\"\\s_\\-]", "").toLowerCase(Locale.ROOT);
+            for (int col = 0; col < COLUMN_NAMES.length; col++) {
+                if (Arrays.asList(COLUMN_NAMES[col]).contains(key) && !mapped(col)) columnOf[i] = col;
+            }
+        }
+        if (!mapped(COL_NUMBER) || !mapped(COL_DATE)) {
+            throw new IOException("No number or date column in header: " + header);
+        }
+    }
+
+    private boolean mapped(int col) {
+        for (int i = 0; i < columnCount; i++) {
+            if (columnOf[i] == col) return true;
+        }
+        return false;
+    }
+
+    private void mapWindow(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, length - start));
+        position = 0;
+    }
+
+    // next() can't throw IOException, so a failure mid-file comes out unchecked
+    private void remap(long start) {
+        try {
+            mapWindow(start);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map " + start + " of the file", e);
+        }
+    }
+
+    // Open addressing table from bytes to the String made for them. Cleared rather than grown past
+    // INTERN_LIMIT entries, so it never takes more than a few hundred KB plus the entries.
+    private static final class Interner {
+        private final NumberNormalizer normalizer;
+        private int[] hashes = new int[1024];
+        private byte[][] keys = new byte[1024][];
+        private String[] values = new String[1024];
+        private int size;
+
+        Interner(NumberNormalizer normalizer) {
+            this.normalizer = normalizer;
+        }
+
+        String intern(ByteBuffer buffer, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) hash = 31 * hash + buffer.get(i);
+            hash |= 1; // 0 marks an empty slot
+            int mask = hashes.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                if (hashes[slot] == 0) {
+                    if (size == INTERN_LIMIT) {
+                        clear();
+                        slot = mix(hash) & mask;
+                    }
+                    return insert(slot, hash, buffer, start, end);
+                }
+                if (hashes[slot] == hash && sameBytes(keys[slot], buffer, start, end)) return values[slot];
+            }
+        }
+
+        private String insert(int slot, int hash, ByteBuffer buffer, int start, int end) {
+            byte[] key = new byte[end - start];
+            for (int i = 0; i < key.length; i++) key[i] = buffer.get(start + i);
+            String value = new String(key, StandardCharsets.UTF_8);
+            if (normalizer != null) value = normalizer.normalize(value);
+            hashes[slot] = hash;
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > hashes.length) grow();
+            return value;
+        }
+
+        private void clear() {
+            Arrays.fill(hashes, 0);
+            Arrays.fill(keys, null);
+            Arrays.fill(values, null);
+            size = 0;
+        }
+
+        private void grow() {
+            int[] oldHashes = hashes;
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            hashes = new int[oldHashes.length * 2];
+            keys = new byte[hashes.length][];
+            values = new String[hashes.length];
+            int mask = hashes.length - 1;
+            for (int i = 0; i < oldHashes.length; i++) {
+                if (oldHashes[i] == 0) continue;
+                int slot = mix(oldHashes[i]) & mask;
+                while (hashes[slot] != 0) slot = (slot + 1) & mask;
+                hashes[slot] = oldHashes[i];
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+
+        // Numbers and names in an export are often sequential, and so are their polynomial hashes;
+        // spread them so linear probing doesn't run into long clusters
+        private static int mix(int hash) {
+            hash ^= hash >>> 16;
+            hash *= 0x85ebca6b;
+            hash ^= hash >>> 13;
+            return hash;
+        }
+
+        private static boolean sameBytes(byte[] key, ByteBuffer buffer, int start, int end) {
+            if (key.length != end - start) return false;
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(start + i)) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Rewrites the numbers the call log stores as dialled ("+1 555-010-0199",
+ * "5550100199", "(555) 010-0199") into one canonical E.164-style form
+ * ("+15550100199"), so a contact's calls are counted together and the table
+ * dictionary (CallLogTable.contactRef) holds one entry per person.
+ *
+ * National numbers get the default region's calling code. Numbers that can't
+ * be placed (wrong length for the region, unknown region) keep just their
+ * digits, which still merges their spellings. Short codes, hidden callers and
+ * anything with letters in it are returned unchanged.
+ *
+ * Each raw spelling is worked out once, and every spelling of a number maps
+ * to the same String instance, as long as the caches hold it. Past
+ * CACHE_LIMIT spellings they start over, so an import of millions of numbers
+ * holds a bounded amount; a spelling seen again after that is worked out
+ * again, to an equal String. Not thread safe: use it from the loader thread.
+ */
+public class NumberNormalizer {
+
+    private static final class Region {
+        final String callingCode;
+        final String trunkPrefix;
+        final String internationalPrefix;
+        final int nationalLength; // 0 when it varies, then only trunk-prefixed numbers are placed
+
+        Region(String callingCode, String trunkPrefix, String internationalPrefix, int nationalLength) {
+            this.callingCode = callingCode;
+            this.trunkPrefix = trunkPrefix;
+            this.internationalPrefix = internationalPrefix;
+            this.nationalLength = nationalLength;
+        }
+    }
+
+    private static final HashMap<String, Region> REGIONS = new HashMap<>();
+
+    static {
+        Region nanp = new Region("1", "1", "011", 10);
+        REGIONS.put("US", nanp);
+        REGIONS.put("CA", nanp);
+        REGIONS.put("IN", new Region("91", "0", "00", 10));
+        REGIONS.put("GB", new Region("44", "0", "00", 10));
+        REGIONS.put("IE", new Region("353", "0", "00", 0));
+        REGIONS.put("AU", new Region("61", "0", "0011", 9));
+        REGIONS.put("NZ", new Region("64", "0", "00", 0));
+        REGIONS.put("DE", new Region("49", "0", "00", 0));
+        REGIONS.put("FR", new Region("33", "0", "00", 9));
+        REGIONS.put("ES", new Region("34", "", "00", 9));
+        REGIONS.put("IT", new Region("39", "", "00", 0));
+        REGIONS.put("BR", new Region("55", "0", "00", 0));
+        REGIONS.put("AE", new Region("971", "0", "00", 0));
+        REGIONS.put("SG", new Region("65", "", "000", 8));
+        REGIONS.put("PK", new Region("92", "0", "00", 10));
+    }
+
+    // Shorter than this it's a short code or a local number without its area code
+    static final int MIN_DIGITS = 7;
+    // Raw spellings remembered before the caches start over; a device's log has far fewer
+    static final int CACHE_LIMIT = 16_384;
+
+    private final Region region; // Null when the region isn't known, then only +/00 numbers are placed
+    private final HashMap<String, String> canonicalByRaw = new HashMap<>();
+    private final HashMap<String, String> canonical = new HashMap<>();
+
+    // ISO 3166 country code such as "US" or "in"; null or an unknown code disables national numbers
+    public NumberNormalizer(String defaultRegion) {
+        region = defaultRegion == null ? null : REGIONS.get(defaultRegion.toUpperCase(Locale.ROOT));
+    }
+
+    public static boolean isSupportedRegion(String region) {
+        return region != null && REGIONS.containsKey(region.toUpperCase(Locale.ROOT));
+    }
+
+    public String normalize(String raw) {
+        if (raw == null) return null;
+        String result = canonicalByRaw.get(raw);
+        if (result == null) {
+            if (canonicalByRaw.size() >= CACHE_LIMIT) clear();
+            result = canonicalize(raw);
+            String existing = canonical.putIfAbsent(result, result);
+            if (existing != null) result = existing;
+            canonicalByRaw.put(raw, result);
+        }
+        return result;
+    }
+
+    // Distinct canonical numbers in the caches
+    public int size() {
+        return canonical.size();
+    }
+
+    // Forgets the spellings seen so far, e.g. once a full load is done with them
+    public void clear() {
+        canonicalByRaw.clear();
+        canonical.clear();
+    }
+
+    String canonicalize(String raw) {
+        StringBuilder digits = new StringBuilder(raw.length() + 4);
+        boolean plus = false;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c >= '0' && c <= '9') digits.append(c);
+            else if (c == '+' && digits.length() == 0) plus = true;
+            else if (Character.isLetter(c)) return raw; // Vanity number or a sender name, leave it be
+        }
+        if (digits.length() == 0) return raw;
+        if (plus) return digits.insert(0, '+').toString();
+        if (digits.length() < MIN_DIGITS) return raw;
+
+        String internationalPrefix = region != null ? region.internationalPrefix : "00";
+        if (startsWith(digits, internationalPrefix) && digits.length() - internationalPrefix.length() >= MIN_DIGITS) {
+            return digits.replace(0, internationalPrefix.length(), "+").toString();
+        }
+        if (region == null) return digits.toString();
+
+        int length = digits.length();
+        String trunk = region.trunkPrefix;
+        if (!trunk.isEmpty() && startsWith(digits, trunk)
+                && (region.nationalLength == 0 || length - trunk.length() == region.nationalLength)) {
+            return digits.replace(0, trunk.length(), "+" + region.callingCode).toString();
+        }
+        if (length == region.nationalLength) {
+            return digits.insert(0, region.callingCode).insert(0, '+').toString();
+        }
+        // The calling code typed without the "+"
+        if (region.nationalLength != 0 && startsWith(digits, region.callingCode)
+                && length - region.callingCode.length() == region.nationalLength) {
+            return digits.insert(0, '+').toString();
+        }
+        return digits.toString();
+    }
+
+    private static boolean startsWith(CharSequence digits, String prefix) {
+        if (digits.length() < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (digits.charAt(i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+}
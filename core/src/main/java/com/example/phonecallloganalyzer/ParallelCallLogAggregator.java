@@ -0,0 +1,72 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregates a CallLogTable that is already in memory by splitting the rows
+ * into ranges, aggregating each range into its own CallLogAggregator on a
+ * ForkJoinPool and merging the partial results left to right. The result is
+ * identical to one sequential pass over the table.
+ */
+public final class ParallelCallLogAggregator {
+
+    // Below this many rows the fork/merge overhead isn't worth it
+    public static final int PARALLEL_THRESHOLD = 200_000;
+    static final int MIN_CHUNK = 32_768;
+
+    private ParallelCallLogAggregator() {}
+
+    public static CallLogAggregator aggregate(CallLogTable table, int topK) {
+        if (table.size() < PARALLEL_THRESHOLD) {
+            CallLogAggregator aggregator = new CallLogAggregator(topK);
+            aggregator.addRows(table, 0, table.size());
+            return aggregator;
+        }
+        return aggregate(table, topK, ForkJoinPool.commonPool());
+    }
+
+    public static CallLogAggregator aggregate(CallLogTable table, int topK, ForkJoinPool pool) {
+        // A few chunks per worker so uneven ranges still balance out
+        int chunk = Math.max(MIN_CHUNK, table.size() / (pool.getParallelism() * 4));
+        // Read the zone once so every partial buckets its rollups the same way
+        return pool.invoke(new RangeTask(table, topK, TimeZone.getDefault(), 0, table.size(), chunk));
+    }
+
+    private static final class RangeTask extends RecursiveTask<CallLogAggregator> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CallLogTable table;
+        private final int topK;
+        private final TimeZone zone;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        RangeTask(CallLogTable table, int topK, TimeZone zone, int from, int to, int chunk) {
+            this.table = table;
+            this.topK = topK;
+            this.zone = zone;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected CallLogAggregator compute() {
+            if (to - from <= chunk) {
+                CallLogAggregator partial = new CallLogAggregator(topK, zone);
+                partial.addRows(table, from, to);
+                return partial;
+            }
+            int mid = (from + to) >>> 1;
+            RangeTask right = new RangeTask(table, topK, zone, mid, to, chunk);
+            right.fork();
+            CallLogAggregator left = new RangeTask(table, topK, zone, from, mid, chunk).compute();
+            left.merge(right.join());
+            return left;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings and counters for the load path, so a debug screen can show where a
+ * load spent its time. Spans are measured on the monotonic clock
+ * (System.nanoTime) and kept in a ring of the latest CAPACITY; counters add up
+ * until reset().
+ *
+ * Off by default. While off, begin() returns NOT_TIMING and every other call
+ * returns after one volatile read, without allocating, so the calls stay in
+ * the hot paths for good.
+ *
+ * Lock-free on both sides. A writer claims a slot with an atomic increment
+ * and a compare-and-set, and publishes it by storing the slot's sequence
+ * number last; a reader copies the ring and drops any slot whose sequence
+ * changed while it was read.
+ */
+public final class PerfMetrics {
+
+    public enum Stage {
+        CURSOR_QUERY, // Provider query until the cursor is returned
+        ROW_ITERATION, // Reading rows off a cursor into a table; items = rows
+        CONTACT_INDEX, // Reading the phone numbers of all contacts; items = numbers
+        AGGREGATION, // Per-contact stats and rollups; items = rows
+        CALLBACKS, // Missed-call callback pass; items = rows
+        CHART_BUILD, // DashboardModel on the loader thread; items = contacts
+        UI_PUBLISH, // Binding a DashboardModel on the main thread
+        ADAPTER_BIND, // Log list binds in one frame; items = binds
+        SEARCH // Search box query over the shown rows; items = rows kept
+    }
+
+    public enum Counter {
+        ROWS_READ,
+        CONTACT_LOOKUPS,
+        CONTACT_CACHE_HITS,
+        CONTACT_LOOKUP_NANOS, // Spent on cache misses
+        ADAPTER_BINDS,
+        ADAPTER_BIND_NANOS
+    }
+
+    // One recorded span
+    public static final class Span {
+        private final Stage stage;
+        private final long startNanos, durationNanos, items;
+
+        Span(Stage stage, long startNanos, long durationNanos, long items) {
+            this.stage = stage;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.items = items;
+        }
+
+        public Stage getStage() { return stage; }
+        public long getStartNanos() { return startNanos; }
+        public long getDurationNanos() { return durationNanos; }
+        public long getItems() { return items; }
+    }
+
+    public static final long NOT_TIMING = Long.MIN_VALUE;
+    public static final int CAPACITY = 1024;
+    private static final int FIELDS = 5; // Sequence, stage, start, duration, items
+    private static final long WRITING = -1, EMPTY = -2;
+
+    private static final PerfMetrics INSTANCE = new PerfMetrics(CAPACITY);
+
+    private final int mask;
+    private final AtomicLongArray ring;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private volatile boolean enabled;
+    private volatile long cleared; // Sequences below this were recorded before the last reset()
+
+    PerfMetrics(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity " + capacity);
+        this.mask = capacity - 1;
+        this.ring = new AtomicLongArray(capacity * FIELDS);
+        for (int slot = 0; slot < capacity; slot++) ring.set(slot * FIELDS, EMPTY);
+    }
+
+    public static PerfMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Start of a span, or NOT_TIMING while disabled
+    public long begin() {
+        return enabled ? System.nanoTime() : NOT_TIMING;
+    }
+
+    public void end(Stage stage, long start) {
+        end(stage, start, 0);
+    }
+
+    public void end(Stage stage, long start, long items) {
+        if (start == NOT_TIMING) return;
+        record(stage, start, System.nanoTime() - start, items);
+    }
+
+    // For spans timed elsewhere, e.g. the binds of one frame added up
+    public void record(Stage stage, long startNanos, long durationNanos, long items) {
+        if (!enabled) return;
+        long sequence = next.getAndIncrement();
+        int base = (int) (sequence & mask) * FIELDS;
+        // A writer a whole lap behind may still hold the slot; the span is dropped rather than mixed into its
+        long previous = ring.get(base);
+        if (previous == WRITING || !ring.compareAndSet(base, previous, WRITING)) return;
+        ring.set(base + 1, stage.ordinal());
+        ring.set(base + 2, startNanos);
+        ring.set(base + 3, durationNanos);
+        ring.set(base + 4, items);
+        ring.set(base, sequence);
+    }
+
+    public void count(Counter counter, long delta) {
+        if (enabled) counters.getAndAdd(counter.ordinal(), delta);
+    }
+
+    // Adds the time since begin() to a counter, e.g. lookups too frequent for a span each
+    public void countSince(Counter counter, long start) {
+        if (start != NOT_TIMING) count(counter, System.nanoTime() - start);
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    // Oldest first. Spans overwritten while this ran are left out.
+    public List<Span> spans() {
+        long end = next.get();
+        long start = Math.max(cleared, end - (mask + 1));
+        Stage[] stages = Stage.values();
+        List<Span> spans = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            int base = (int) (sequence & mask) * FIELDS;
+            if (ring.get(base) != sequence) continue;
+            Span span = new Span(stages[(int) ring.get(base + 1)], ring.get(base + 2), ring.get(base + 3), ring.get(base + 4));
+            if (ring.get(base) == sequence) spans.add(span);
+        }
+        return spans;
+    }
+
+    // Roughly how many spans since the last reset() the ring no longer holds, counting the few
+    // dropped because a slower writer still held their slot
+    public long overwritten() {
+        return Math.max(0, next.get() - cleared - (mask + 1));
+    }
+
+    public void reset() {
+        cleared = next.get();
+        for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+    }
+
+    // {"enabled":true,"overwritten":0,"counters":{"rows_read":12,...},"spans":[{"stage":"cursor_query",...},...]}
+    public String toJson() {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"enabled\":").append(enabled).append(",\"overwritten\":").append(overwritten());
+        json.append(",\"counters\":{");
+        for (Counter counter : Counter.values()) {
+            if (counter.ordinal() > 0) json.append(',');
+            json.append('"').append(counter.name().toLowerCase(Locale.ROOT)).append("\":").append(get(counter));
+        }
+        json.append("},\"spans\":[");
+        List<Span> spans = spans();
+        for (int i = 0; i < spans.size(); i++) {
+            Span span = spans.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"stage\":\"").append(span.stage.name().toLowerCase(Locale.ROOT))
+                    .append("\",\"start_ns\":").append(span.startNanos)
+                    .append(",\"duration_ns\":").append(span.durationNanos)
+                    .append(",\"items\":").append(span.items).append('}');
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.phonecallloganalyzer;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * As-you-type search over the contacts of a CallLogTable: by the start of any
+ * word of the name, or by any run of digits in the number.
+ *
+ * Indexes the table's contact dictionary rather than its rows. Every row of a
+ * contact matches or none does, the dictionary is a small fraction of the
+ * rows, and its refs never change: entries are only ever added and copies of
+ * a table keep them. So one index serves a table and every copy made from it,
+ * and update() only has to add the contacts that arrived since the last call.
+ *
+ * Names: every word, case and accent folded, in one sorted array, so a prefix
+ * is a binary search and a scan of the words it covers. Words of contacts
+ * added later wait in a short unsorted tail until there are enough to merge.
+ * Numbers: a posting list of contact refs per digit trigram (1000 of them);
+ * a query only looks at the contacts on the list of its rarest trigram, and
+ * checks each for the whole run of digits. Queries under three digits scan
+ * the dictionary's digits.
+ *
+ * Not thread safe: update and query from one thread.
+ */
+public final class SearchIndex {
+
+    private static final int TRIGRAMS = 1000;
+    private static final int TAIL_LIMIT = 256; // Unsorted words searched linearly before a merge
+
+    private String[] words = new String[0];
+    private int[] wordRefs = new int[0];
+    private final ArrayList<String> tailWords = new ArrayList<>();
+    private int[] tailRefs = new int[16];
+
+    private final ArrayList<String> digits = new ArrayList<>(); // By contact ref
+    private final int[][] trigramRefs = new int[TRIGRAMS][];
+    private final int[] trigramSizes = new int[TRIGRAMS];
+
+    // Adds the contacts the table's dictionary gained since the last update
+    public void update(CallLogTable table) {
+        for (int ref = digits.size(); ref < table.contactCount(); ref++) {
+            add(ref, table.numberOf(ref), table.nameOf(ref));
+        }
+        if (tailWords.size() > TAIL_LIMIT) mergeTail();
+    }
+
+    public int contactCount() {
+        return digits.size();
+    }
+
+    /**
+     * Marks the matching contacts, by ref. With a letter in it the query is
+     * read as name words, each of which has to start some word of the name;
+     * otherwise its digits have to appear in the number. Null when the query
+     * has nothing to search by, meaning everything matches.
+     */
+    public boolean[] findContacts(String query) {
+        String folded = fold(query);
+        if (hasLetter(folded)) {
+            boolean[] found = null;
+            for (String word : words(folded)) {
+                boolean[] matches = new boolean[digits.size()];
+                markPrefix(word, matches);
+                if (found != null) {
+                    for (int ref = 0; ref < matches.length; ref++) matches[ref] &= found[ref];
+                }
+                found = matches;
+            }
+            return found;
+        }
+        String wanted = digitsOf(folded);
+        if (wanted.isEmpty()) return null;
+        boolean[] found = new boolean[digits.size()];
+        if (wanted.length() < 3) {
+            for (int ref = 0; ref < found.length; ref++) found[ref] = digits.get(ref).contains(wanted);
+            return found;
+        }
+        int rarest = trigramOf(wanted, 0);
+        for (int i = 1; i + 3 <= wanted.length(); i++) {
+            int trigram = trigramOf(wanted, i);
+            if (trigramSizes[trigram] < trigramSizes[rarest]) rarest = trigram;
+        }
+        for (int p = 0; p < trigramSizes[rarest]; p++) {
+            int ref = trigramRefs[rarest][p];
+            if (digits.get(ref).contains(wanted)) found[ref] = true;
+        }
+        return found;
+    }
+
+    // Rows of the table whose contact is marked, in the order given; all rows when rows is null.
+    // A null mask matches everything and gives back rows as they are.
+    public static int[] select(CallLogTable table, int[] rows, boolean[] contacts) {
+        if (contacts == null) return rows;
+        int count = rows != null ? rows.length : table.size();
+        // Branch free: every row is written and only kept when it matches, so a short query that
+        // matches rows at random costs no more than a selective one
+        int[] selected = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows != null ? rows[i] : i;
+            selected[size] = row;
+            size += marked(contacts, table.getContactRef(row)) ? 1 : 0;
+        }
+        return Arrays.copyOf(selected, size);
+    }
+
+    private static boolean marked(boolean[] contacts, int ref) {
+        return ref < contacts.length && contacts[ref];
+    }
+
+    // The same test without an index, for contacts the index hasn't seen
+    public static boolean matches(String query, String number, String name) {
+        String folded = fold(query);
+        if (hasLetter(folded)) {
+            if (name == null) return false;
+            List<String> nameWords = words(fold(name));
+            for (String word : words(folded)) {
+                boolean any = false;
+                for (String nameWord : nameWords) any |= nameWord.startsWith(word);
+                if (!any) return false;
+            }
+            return true;
+        }
+        String wanted = digitsOf(folded);
+        return wanted.isEmpty() || (number != null && digitsOf(number).contains(wanted));
+    }
+
+    private void add(int ref, String number, String name) {
+        String numberDigits = number != null ? digitsOf(number) : "";
+        digits.add(numberDigits);
+        for (int i = 0; i + 3 <= numberDigits.length(); i++) {
+            int trigram = trigramOf(numberDigits, i);
+            int size = trigramSizes[trigram];
+            int[] refs = trigramRefs[trigram];
+            if (size > 0 && refs[size - 1] == ref) continue; // The trigram came up earlier in this number
+            if (refs == null) refs = trigramRefs[trigram] = new int[4];
+            else if (size == refs.length) refs = trigramRefs[trigram] = Arrays.copyOf(refs, size * 2);
+            refs[size] = ref;
+            trigramSizes[trigram] = size + 1;
+        }
+        if (name == null) return;
+        for (String word : words(fold(name))) {
+            if (tailWords.size() == tailRefs.length) tailRefs = Arrays.copyOf(tailRefs, tailRefs.length * 2);
+            tailRefs[tailWords.size()] = ref;
+            tailWords.add(word);
+        }
+    }
+
+    // Sorts the tail into the word array
+    private void mergeTail() {
+        int size = words.length + tailWords.size();
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> wordAt(a).compareTo(wordAt(b)));
+        String[] mergedWords = new String[size];
+        int[] mergedRefs = new int[size];
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            mergedWords[i] = wordAt(from);
+            mergedRefs[i] = from < words.length ? wordRefs[from] : tailRefs[from - words.length];
+        }
+        words = mergedWords;
+        wordRefs = mergedRefs;
+        tailWords.clear();
+    }
+
+    private String wordAt(int i) {
+        return i < words.length ? words[i] : tailWords.get(i - words.length);
+    }
+
+    private void markPrefix(String prefix, boolean[] matches) {
+        int low = 0, high = words.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[mid].compareTo(prefix) < 0) low = mid + 1;
+            else high = mid;
+        }
+        for (int i = low; i < words.length && words[i].startsWith(prefix); i++) matches[wordRefs[i]] = true;
+        for (int i = 0; i < tailWords.size(); i++) {
+            if (tailWords.get(i).startsWith(prefix)) matches[tailRefs[i]] = true;
+        }
+    }
+
+    private static int trigramOf(String digits, int at) {
+        return (digits.charAt(at) - '0') * 100 + (digits.charAt(at + 1) - '0') * 10 + (digits.charAt(at + 2) - '0');
+    }
+
+    // Lower case without accents, so "Jose" finds the accented spelling too
+    static String fold(String text) {
+        boolean ascii = true;
+        for (int i = 0; i < text.length() && ascii; i++) ascii = text.charAt(i) < 0x80;
+        if (!ascii) text = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    // Runs of letters and digits
+    private static List<String> words(String folded) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean inWord = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (inWord && start < 0) start = i;
+            else if (!inWord && start >= 0) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static boolean hasLetter(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetter(text.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    private static String digitsOf(String text) {
+        StringBuilder digits = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') digits.append(c);
+        }
+        return digits.length() == text.length() ? text : digits.toString();
+    }
+}
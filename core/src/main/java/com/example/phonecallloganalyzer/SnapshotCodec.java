@@ -0,0 +1,117 @@
+package com.example.phonecallloganalyzer;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of a CallLogSnapshot: a header, the type counters, the
+ * rollups, the duration sketch and one record per contact. Far smaller and quicker
+ * than Java serialization of the stats map, and read straight out of a
+ * ByteBuffer, so a memory-mapped file works as well as a byte array.
+ *
+ * The leaderboards aren't stored. They are rebuilt from the contacts with
+ * TopK on read, which gives the aggregator's lists up to the order of ties.
+ */
+public final class SnapshotCodec {
+
+    private static final int MAGIC = 0x434C4153; // "CLAS"
+    static final int FORMAT_VERSION = 2; // 2: duration sketches
+
+    private SnapshotCodec() {}
+
+    public static void write(CallLogSnapshot snapshot, DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(snapshot.getIncomingCalls());
+        out.writeInt(snapshot.getOutgoingCalls());
+        out.writeInt(snapshot.getMissedCalls());
+        out.writeInt(snapshot.getOtherCalls());
+        // Every ranking holds min(topK, contacts) entries, so this is enough to rebuild them
+        out.writeInt(snapshot.getTopContacts().size());
+        snapshot.getRollups().writeTo(out);
+        snapshot.getDurations().writeTo(out);
+
+        Map<String, ContactStats> contacts = snapshot.getContactStats();
+        out.writeInt(contacts.size());
+        for (ContactStats contact : contacts.values()) {
+            writeString(out, contact.getName());
+            writeString(out, contact.getNumber());
+            out.writeInt(contact.getCount());
+            out.writeInt(contact.getMissedCount());
+            out.writeLong(contact.getTotalDuration());
+            contact.getDurations().writeTo(out);
+        }
+    }
+
+    // Reads from the buffer's position and leaves it just past the snapshot
+    public static CallLogSnapshot read(ByteBuffer in) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) throw new IOException("Not a call log snapshot");
+            int format = in.getInt();
+            if (format != FORMAT_VERSION) throw new IOException("Unsupported snapshot format " + format);
+
+            int incoming = in.getInt();
+            int outgoing = in.getInt();
+            int missed = in.getInt();
+            int other = in.getInt();
+            int topK = in.getInt();
+            CallRollups rollups = CallRollups.readFrom(in);
+            DurationSketch durations = DurationSketch.readFrom(in);
+
+            int size = in.getInt();
+            if (size < 0 || size > in.remaining() / 32) throw new IOException("Corrupt contact count " + size);
+            HashMap<String, ContactStats> contacts = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                String name = readString(in);
+                String number = readString(in);
+                contacts.put(number, new ContactStats(name, number, in.getInt(), in.getInt(), in.getLong(),
+                        DurationSketch.readFrom(in)));
+            }
+
+            EnumMap<ContactRanking, List<ContactStats>> top = new EnumMap<>(ContactRanking.class);
+            for (ContactRanking ranking : ContactRanking.values()) {
+                top.put(ranking, topK > 0
+                        ? TopK.select(contacts.values(), topK, ranking.order())
+                        : new ArrayList<>());
+            }
+            return new CallLogSnapshot(incoming, outgoing, missed, other, contacts, top, rollups, durations);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt snapshot", e);
+        }
+    }
+
+    // UTF-8 with an int length, -1 for null
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        if (length > in.remaining()) throw new BufferUnderflowException();
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+}
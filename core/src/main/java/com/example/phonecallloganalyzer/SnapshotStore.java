@@ -0,0 +1,173 @@
+package com.example.phonecallloganalyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Keeps the last aggregated snapshot, plus the newest rows of the log, in one
+ * versioned binary file so a cold start can draw the charts and the top of
+ * the list before the provider has been queried.
+ *
+ * Layout: magic, format version, save time, the CallLogWatermark the
+ * snapshot was taken at, the SnapshotCodec block, then the newest rows.
+ * Version 1 files, which had no watermark, still read, with an unknown one.
+ * Writes go to a temporary file that is synced and renamed over the old one,
+ * so a reader sees either the previous file or the new one, never a torn
+ * write. Reads map the file rather than copying it through a stream.
+ *
+ * MainActivity and SnapshotWorker both save after the same change to the log,
+ * so writes take a lock shared by every store in the process, each uses a
+ * temporary file of its own, and a write whose watermark is behind the one on
+ * disk is dropped rather than replacing a newer snapshot with an older one.
+ */
+public final class SnapshotStore {
+
+    private static final int MAGIC = 0x434C5353; // "CLSS"
+    static final int FORMAT_VERSION = 2; // 2: watermark
+    private static final Object WRITE_LOCK = new Object();
+
+    private final File file;
+
+    public SnapshotStore(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // What read() found on disk
+    public static final class Saved {
+        private final long savedAt;
+        private final CallLogWatermark watermark;
+        private final CallLogSnapshot snapshot;
+        private final CallLogTable recentRows;
+
+        Saved(long savedAt, CallLogWatermark watermark, CallLogSnapshot snapshot, CallLogTable recentRows) {
+            this.savedAt = savedAt;
+            this.watermark = watermark;
+            this.snapshot = snapshot;
+            this.recentRows = recentRows;
+        }
+
+        public long getSavedAt() { return savedAt; }
+        public CallLogWatermark getWatermark() { return watermark; }
+        public CallLogSnapshot getSnapshot() { return snapshot; }
+        // Newest first, at most the count given to write()
+        public CallLogTable getRecentRows() { return recentRows; }
+    }
+
+    // Saves the snapshot and the first recentRows rows of the table, which may be null
+    public boolean write(CallLogSnapshot snapshot, CallLogTable table, int recentRows, long savedAt) throws IOException {
+        return write(snapshot, table, recentRows, savedAt, CallLogWatermark.UNKNOWN);
+    }
+
+    // False, leaving the file as it is, when the snapshot on disk is past the watermark
+    public boolean write(CallLogSnapshot snapshot, CallLogTable table, int recentRows, long savedAt,
+                         CallLogWatermark watermark) throws IOException {
+        synchronized (WRITE_LOCK) {
+            if (watermark.isBehind(readWatermark())) return false;
+            writeFile(snapshot, table, recentRows, savedAt, watermark);
+            return true;
+        }
+    }
+
+    private void writeFile(CallLogSnapshot snapshot, CallLogTable table, int recentRows, long savedAt,
+                           CallLogWatermark watermark) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(savedAt);
+            out.writeLong(watermark.getRows());
+            out.writeLong(watermark.getLastId());
+            out.writeLong(watermark.getLastModified());
+            SnapshotCodec.write(snapshot, out);
+
+            int rows = table != null ? Math.min(recentRows, table.size()) : 0;
+            out.writeInt(rows);
+            for (int row = 0; row < rows; row++) {
+                out.writeLong(table.getId(row));
+                SnapshotCodec.writeString(out, table.getNumber(row));
+                SnapshotCodec.writeString(out, table.getName(row));
+                out.writeByte(table.getType(row));
+                out.writeLong(table.getDate(row));
+                out.writeInt(table.getDuration(row));
+            }
+            out.flush();
+            stream.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    // Of the file on disk: just the header. Unknown when there is none or it can't be read.
+    private CallLogWatermark readWatermark() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64))) {
+            if (in.readInt() != MAGIC) return CallLogWatermark.UNKNOWN;
+            int format = in.readInt();
+            if (format < 2 || format > FORMAT_VERSION) return CallLogWatermark.UNKNOWN;
+            in.readLong(); // Save time
+            return new CallLogWatermark(in.readLong(), in.readLong(), in.readLong());
+        } catch (IOException e) {
+            return CallLogWatermark.UNKNOWN;
+        }
+    }
+
+    // Null if nothing was saved yet; an IOException if the file is unreadable or from another format
+    public Saved read() throws IOException {
+        ByteBuffer in;
+        try (FileInputStream stream = new FileInputStream(file); FileChannel channel = stream.getChannel()) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        return read(in);
+    }
+
+    static Saved read(ByteBuffer in) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) throw new IOException("Not a snapshot store file");
+            int format = in.getInt();
+            if (format < 1 || format > FORMAT_VERSION) throw new IOException("Unsupported store format " + format);
+            long savedAt = in.getLong();
+            CallLogWatermark watermark = format >= 2
+                    ? new CallLogWatermark(in.getLong(), in.getLong(), in.getLong())
+                    : CallLogWatermark.UNKNOWN;
+            CallLogSnapshot snapshot = SnapshotCodec.read(in);
+
+            int rows = in.getInt();
+            if (rows < 0 || rows > in.remaining() / 29) throw new IOException("Corrupt row count " + rows);
+            CallLogTable table = new CallLogTable();
+            for (int row = 0; row < rows; row++) {
+                long id = in.getLong();
+                String number = SnapshotCodec.readString(in);
+                String name = SnapshotCodec.readString(in);
+                table.append(id, number, name, in.get(), in.getLong(), in.getInt());
+            }
+            return new Saved(savedAt, watermark, snapshot, table);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot store file", e);
+        }
+    }
+
+    public boolean delete() {
+        return file.delete();
+    }
+}
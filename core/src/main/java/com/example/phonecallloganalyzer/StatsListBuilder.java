@@ -0,0 +1,26 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+// Builds the "Detailed Statistics" rows: one row per contact, sorted by name
+public final class StatsListBuilder {
+
+    private StatsListBuilder() {}
+
+    public static List<ContactStatsRow> build(Collection<ContactStats> contacts) {
+        List<ContactStatsRow> statsList = new ArrayList<>(contacts.size());
+
+        for (ContactStats stats : contacts) {
+            statsList.add(new ContactStatsRow(stats));
+        }
+
+        // Number breaks ties so the order is stable from one refresh to the next
+        Comparator<String> text = Comparator.nullsFirst(Comparator.naturalOrder());
+        statsList.sort(Comparator.comparing(ContactStatsRow::getName, text)
+                .thenComparing(ContactStatsRow::getNumber, text));
+        return statsList;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide holder of the latest CallLogSnapshot, so screens share it by
+ * reference and pass each other only its version id instead of the stats
+ * themselves. Opening a screen costs the same whatever the contact count.
+ *
+ * Only the latest snapshot is kept. Versions start from the wall clock, so an
+ * id saved before the process died never matches one handed out after.
+ */
+public final class StatsRepository {
+
+    public interface Listener {
+        // Called on the publishing thread
+        void onSnapshot(long version, CallLogSnapshot snapshot);
+    }
+
+    private static final StatsRepository INSTANCE = new StatsRepository();
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private long version = System.currentTimeMillis() << 16;
+    private CallLogSnapshot snapshot;
+
+    StatsRepository() {}
+
+    public static StatsRepository getInstance() {
+        return INSTANCE;
+    }
+
+    public long publish(CallLogSnapshot snapshot) {
+        long published;
+        synchronized (this) {
+            published = ++version;
+            this.snapshot = snapshot;
+        }
+        for (Listener listener : listeners) listener.onSnapshot(published, snapshot);
+        return published;
+    }
+
+    // Null until the first publish or once a newer snapshot replaced that version
+    public synchronized CallLogSnapshot get(long version) {
+        return version == this.version ? snapshot : null;
+    }
+
+    public synchronized CallLogSnapshot getLatest() {
+        return snapshot;
+    }
+
+    public synchronized long getLatestVersion() {
+        return version;
+    }
+
+    // Register while visible, e.g. from onStart() to onStop()
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.phonecallloganalyzer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best k items seen so far in a bounded heap, so picking a top-k
+ * out of n items costs O(n log k) instead of a full sort. The worst kept
+ * item sits at the head of the heap and is the one evicted.
+ *
+ * Items may be re-offered through update() after their ranking key went up,
+ * which keeps the selection correct as calls are added one by one. Keys that
+ * go down (deleted calls) need a fresh selection.
+ */
+public final class TopK<T> {
+
+    private final int k;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+
+    // order sorts the best item first
+    public TopK(int k, Comparator<? super T> order) {
+        this.k = k;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.max(1, k), (a, b) -> order.compare(b, a));
+    }
+
+    public static <T> List<T> select(Iterable<? extends T> items, int k, Comparator<? super T> order) {
+        TopK<T> top = new TopK<>(k, order);
+        for (T item : items) {
+            top.offer(item);
+        }
+        return top.toList();
+    }
+
+    public void offer(T item) {
+        if (k <= 0) return;
+        if (heap.size() < k) {
+            heap.add(item);
+        } else if (order.compare(item, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(item);
+        }
+    }
+
+    // O(k) when the item is already kept, since it has to be found and re-sifted
+    public void update(T item) {
+        if (heap.remove(item)) heap.add(item);
+        else offer(item);
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    // Best first
+    public List<T> toList() {
+        List<T> list = new ArrayList<>(heap);
+        list.sort(order);
+        return list;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class ApproximateAggregatorTest {
+
+    private static final int RECORDS = 10_000_000;
+    private static final int NUMBERS = 1_000_000;
+    private static final long START = 1_672_531_200_000L; // 2023-01-01 UTC
+    private static final long YEAR_MS = 365 * 86_400_000L;
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final int TOP = 10;
+
+    // A carrier export: a year of calls, a few numbers call a lot, most only a few times
+    private static final class SyntheticExport implements CallRecordSource {
+        private final Random random = new Random(2024);
+        private final int records;
+        private int index = -1;
+        private int contact, type, duration;
+
+        SyntheticExport(int records) {
+            this.records = records;
+        }
+
+        @Override
+        public boolean next() {
+            if (++index >= records) return false;
+            contact = (int) (NUMBERS * Math.pow(random.nextDouble(), 3));
+            type = 1 + random.nextInt(3);
+            duration = type == CallLogTable.TYPE_MISSED ? 0 : random.nextInt(900);
+            return true;
+        }
+
+        int contact() { return contact; }
+
+        @Override public long id() { return index; }
+        @Override public String number() { return numberOf(contact); }
+        @Override public String name() { return null; }
+        @Override public int type() { return type; }
+        @Override public long date() { return START + index * (YEAR_MS / records); }
+        @Override public int duration() { return duration; }
+    }
+
+    private static String numberOf(int contact) {
+        return "+1555" + (1_000_000 + contact);
+    }
+
+    private static Set<String> trueTop(long[] totals) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < totals.length; i++) order.add(i);
+        order.sort((a, b) -> Long.compare(totals[b], totals[a]));
+        Set<String> top = new HashSet<>();
+        for (int i = 0; i < TOP; i++) top.add(numberOf(order.get(i)));
+        return top;
+    }
+
+    private static void assertWithin(String what, long truth, long estimate, double error) {
+        // The reported bound is two standard errors; allow three so one unlucky period doesn't fail the build
+        assertTrue(what + ": truth=" + truth + " estimate=" + estimate,
+                Math.abs(estimate - truth) <= 1.5 * error * truth + 2);
+    }
+
+    @Test
+    public void tenMillionRecordsMatchTheExactAnswersWithinTheBounds() {
+        long[] calls = new long[NUMBERS];
+        long[] seconds = new long[NUMBERS];
+        BitSet all = new BitSet(NUMBERS);
+        BitSet[] months = new BitSet[13];
+        BitSet[] sampledDays = new BitSet[365];
+        long incoming = 0, totalDuration = 0;
+
+        ApproximateAggregator aggregator = new ApproximateAggregator(TOP, UTC);
+        SyntheticExport export = new SyntheticExport(RECORDS);
+        while (export.next()) {
+            aggregator.add(export.number(), export.name(), CallLogTable.typeCode(export.type()),
+                    export.date(), export.duration());
+
+            int contact = export.contact();
+            calls[contact]++;
+            seconds[contact] += export.duration();
+            totalDuration += export.duration();
+            if (export.type() == CallLogTable.TYPE_INCOMING) incoming++;
+            all.set(contact);
+            int day = (int) ((export.date() - START) / 86_400_000L);
+            int month = CallRollups.monthOf((int) (export.date() / 86_400_000L)) - CallRollups.monthOf((int) (START / 86_400_000L));
+            if (months[month] == null) months[month] = new BitSet(NUMBERS);
+            months[month].set(contact);
+            if (day % 30 == 0) {
+                if (sampledDays[day] == null) sampledDays[day] = new BitSet(NUMBERS);
+                sampledDays[day].set(contact);
+            }
+        }
+        ApproximateSnapshot snapshot = aggregator.snapshot();
+
+        // Counters are exact
+        assertEquals(RECORDS, snapshot.getTotalCalls());
+        assertEquals(incoming, snapshot.getIncomingCalls());
+        assertEquals(totalDuration, snapshot.getTotalDuration());
+
+        // Distinct callers: overall, every month, and one day a month
+        assertWithin("all", all.cardinality(), snapshot.getDistinctCallers(), snapshot.getDistinctError());
+        int firstMonth = CallRollups.monthOf((int) (START / 86_400_000L));
+        for (int i = 0; i < snapshot.getMonthCount(); i++) {
+            BitSet truth = months[snapshot.getMonth(i) - firstMonth];
+            assertWithin("month " + i, truth.cardinality(), snapshot.getMonthDistinctCallers(i), snapshot.getMonthError());
+        }
+        int firstDay = (int) (START / 86_400_000L);
+        int checkedDays = 0;
+        for (int i = 0; i < snapshot.getDayCount(); i++) {
+            BitSet truth = sampledDays[snapshot.getDay(i) - firstDay];
+            if (truth == null) continue;
+            assertWithin("day " + i, truth.cardinality(), snapshot.getDayDistinctCallers(i), snapshot.getDayError());
+            checkedDays++;
+        }
+        assertEquals(13, checkedDays);
+
+        // Heavy hitters: never under the truth, over it by no more than the bound, and the right contacts
+        Set<String> reportedByCalls = new HashSet<>();
+        for (HeavyHitters.Hitter hitter : snapshot.getTopByCalls()) {
+            long truth = calls[Integer.parseInt(hitter.getNumber().substring(5)) - 1_000_000];
+            assertTrue(hitter.getEstimate() >= truth);
+            assertTrue(hitter.getEstimate() <= truth + snapshot.getCallsErrorBound());
+            reportedByCalls.add(hitter.getNumber());
+        }
+        assertEquals(trueTop(calls), reportedByCalls);
+        Set<String> reportedByDuration = new HashSet<>();
+        for (HeavyHitters.Hitter hitter : snapshot.getTopByDuration()) {
+            long truth = seconds[Integer.parseInt(hitter.getNumber().substring(5)) - 1_000_000];
+            assertTrue(hitter.getEstimate() >= truth);
+            assertTrue(hitter.getEstimate() <= truth + snapshot.getDurationErrorBound());
+            reportedByDuration.add(hitter.getNumber());
+        }
+        assertEquals(trueTop(seconds), reportedByDuration);
+
+        // A year of history in a few MB, against a million distinct numbers
+        assertTrue("state=" + snapshot.getStateBytes(), snapshot.getStateBytes() < 3 * 1024 * 1024);
+    }
+
+    @Test
+    public void takesAFractionOfTheExactAggregatorsHeap() {
+        int records = 300_000;
+        long baseline = usedHeap();
+        CallLogAggregator exact = new CallLogAggregator(TOP, UTC);
+        SyntheticExport export = new SyntheticExport(records);
+        while (export.next()) {
+            exact.add(export.number(), export.name(), CallLogTable.typeCode(export.type()), export.date(), export.duration());
+        }
+        long exactBytes = usedHeap() - baseline;
+
+        baseline = usedHeap();
+        ApproximateAggregator approximate = new ApproximateAggregator(TOP, UTC);
+        approximate.consume(new SyntheticExport(records));
+        long approximateBytes = usedHeap() - baseline;
+
+        assertEquals(records, exact.snapshot().getTotalCalls());
+        assertEquals(records, approximate.snapshot().getTotalCalls());
+        assertTrue("exact=" + exactBytes + " approximate=" + approximateBytes, approximateBytes * 10 < exactBytes);
+    }
+
+    @Test
+    public void countMinNeverUndercounts() {
+        CountMinSketch sketch = new CountMinSketch(4, 64); // Tiny, so collisions are certain
+        Random random = new Random(3);
+        long[] truth = new long[1_000];
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(truth.length);
+            int amount = 1 + random.nextInt(5);
+            truth[key] += amount;
+            sketch.addAndEstimate(ApproximateAggregator.hash("k" + key), amount);
+        }
+        int withinBound = 0;
+        for (int key = 0; key < truth.length; key++) {
+            long estimate = sketch.estimate(ApproximateAggregator.hash("k" + key));
+            assertTrue(estimate >= truth[key]);
+            if (estimate <= truth[key] + sketch.errorBound()) withinBound++;
+        }
+        assertTrue(withinBound >= sketch.confidence() * truth.length);
+    }
+
+    @Test
+    public void hyperLogLogCountsSmallAndLargeSets() {
+        for (int n : new int[]{0, 1, 10, 1_000, 100_000, 2_000_000}) {
+            HyperLogLog sketch = new HyperLogLog(12);
+            HyperLogLog half = new HyperLogLog(12);
+            for (int i = 0; i < n; i++) {
+                sketch.add(ApproximateAggregator.hash("+44" + i));
+                if (i % 2 == 0) half.add(ApproximateAggregator.hash("+44" + i));
+            }
+            assertWithin("n=" + n, n, sketch.estimate(), 2 * HyperLogLog.standardError(12));
+            half.merge(sketch); // The union is the bigger set
+            assertEquals(sketch.estimate(), half.estimate());
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
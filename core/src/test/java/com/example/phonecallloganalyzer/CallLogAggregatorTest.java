@@ -0,0 +1,231 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class CallLogAggregatorTest {
+
+    private static final int ROWS = 20_000;
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ArrayCallRecordSource syntheticSource(int rows, long seed) {
+        Random random = new Random(seed);
+        long[] ids = new long[rows];
+        String[] numbers = new String[rows];
+        String[] names = new String[rows];
+        int[] types = new int[rows];
+        long[] dates = new long[rows];
+        int[] durations = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            int contact = random.nextInt(300);
+            ids[i] = rows - i;
+            numbers[i] = "+1555" + (1_000_000 + contact);
+            names[i] = "Contact " + contact;
+            types[i] = 1 + random.nextInt(6); // Includes voicemail/rejected/blocked as "other"
+            dates[i] = 1_700_000_000_000L - i * 60_000L;
+            durations[i] = types[i] == 3 ? 0 : random.nextInt(3600);
+        }
+        return new ArrayCallRecordSource(ids, numbers, names, types, dates, durations);
+    }
+
+    @Test
+    public void countsTypesAndContactsLikeTheOldLoop() {
+        ArrayCallRecordSource expectedSource = syntheticSource(ROWS, 1);
+        int incoming = 0, outgoing = 0, missed = 0;
+        HashMap<String, ContactStats> expected = new HashMap<>();
+        while (expectedSource.next()) {
+            switch (expectedSource.type()) {
+                case 1: incoming++; break;
+                case 2: outgoing++; break;
+                case 3: missed++; break;
+            }
+            expected.computeIfAbsent(expectedSource.number(), k -> new ContactStats(expectedSource.name(), k))
+                    .addCall(expectedSource.duration());
+        }
+
+        CallLogAggregator aggregator = new CallLogAggregator(5);
+        CallLogTable rows = new CallLogTable();
+        aggregator.consume(syntheticSource(ROWS, 1), rows);
+        CallLogSnapshot snapshot = aggregator.snapshot();
+
+        assertEquals(incoming, snapshot.getIncomingCalls());
+        assertEquals(outgoing, snapshot.getOutgoingCalls());
+        assertEquals(missed, snapshot.getMissedCalls());
+        assertEquals(ROWS, snapshot.getTotalCalls());
+        assertEquals(ROWS, rows.size());
+        assertEquals(expected.size(), snapshot.getContactStats().size());
+        for (ContactStats stats : expected.values()) {
+            ContactStats actual = snapshot.getContactStats().get(stats.getNumber());
+            assertEquals(stats.getCount(), actual.getCount());
+            assertEquals(stats.getTotalDuration(), actual.getTotalDuration());
+        }
+
+        assertEquals(5, snapshot.getTopContacts().size());
+        long fifth = snapshot.getTopContacts().get(4).getTotalDuration();
+        for (ContactStats stats : snapshot.getContactStats().values()) {
+            if (!snapshot.getTopContacts().contains(stats)) assertTrue(stats.getTotalDuration() <= fifth);
+        }
+    }
+
+    @Test
+    public void fileSourceMatchesArraySource() throws Exception {
+        File file = folder.newFile("calls.csv");
+        ArrayCallRecordSource source = syntheticSource(ROWS, 2);
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            while (source.next()) {
+                writer.println(source.id() + "," + source.number() + "," + source.name() + ","
+                        + source.type() + "," + source.date() + "," + source.duration());
+            }
+        }
+
+        CallLogAggregator fromArray = new CallLogAggregator(5);
+        fromArray.consume(syntheticSource(ROWS, 2), null);
+        CallLogAggregator fromFile = new CallLogAggregator(5);
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath())) {
+            fromFile.consume(new CsvCallRecordSource(reader), null);
+        }
+
+        CallLogSnapshot expected = fromArray.snapshot();
+        CallLogSnapshot actual = fromFile.snapshot();
+        assertEquals(expected.getMissedCalls(), actual.getMissedCalls());
+        assertEquals(expected.getContactStats().size(), actual.getContactStats().size());
+        for (int i = 0; i < expected.getTopContacts().size(); i++) {
+            assertEquals(expected.getTopContacts().get(i).getNumber(), actual.getTopContacts().get(i).getNumber());
+        }
+    }
+
+    @Test
+    public void groupedInputMatchesRowByRow() {
+        TimeZone zone = TimeZone.getTimeZone("Asia/Kathmandu"); // +05:45, not a whole hour
+        CallLogAggregator rowByRow = new CallLogAggregator(5, zone);
+        rowByRow.consume(syntheticSource(ROWS, 3), null);
+
+        // What a GROUP BY number, type and a GROUP BY date / 15 minutes would return
+        HashMap<String, long[]> groups = new HashMap<>();
+        HashMap<Long, long[]> quarterHours = new HashMap<>();
+        ArrayCallRecordSource source = syntheticSource(ROWS, 3);
+        while (source.next()) {
+            long[] group = groups.computeIfAbsent(source.number() + "," + source.type(), k -> new long[2]);
+            group[0]++;
+            group[1] += source.duration();
+            long[] bucket = quarterHours.computeIfAbsent(source.date() / 900_000L, k -> new long[]{Long.MAX_VALUE, 0, 0});
+            bucket[0] = Math.min(bucket[0], source.date());
+            bucket[1]++;
+            bucket[2] += source.duration();
+        }
+        CallLogAggregator grouped = new CallLogAggregator(5, zone);
+        for (Map.Entry<String, long[]> entry : groups.entrySet()) {
+            String[] key = entry.getKey().split(",");
+            grouped.addGroup(key[0], "Contact " + (Integer.parseInt(key[0].substring(5)) - 1_000_000),
+                    CallLogTable.typeCode(Integer.parseInt(key[1])), (int) entry.getValue()[0], entry.getValue()[1]);
+        }
+        for (long[] bucket : quarterHours.values()) {
+            grouped.addToRollups(bucket[0], (int) bucket[1], bucket[2]);
+        }
+
+        CallLogSnapshot expected = rowByRow.snapshot();
+        CallLogSnapshot actual = grouped.snapshot();
+        assertEquals(expected.getIncomingCalls(), actual.getIncomingCalls());
+        assertEquals(expected.getOutgoingCalls(), actual.getOutgoingCalls());
+        assertEquals(expected.getMissedCalls(), actual.getMissedCalls());
+        assertEquals(expected.getOtherCalls(), actual.getOtherCalls());
+        for (ContactStats stats : expected.getContactStats().values()) {
+            ContactStats other = actual.getContactStats().get(stats.getNumber());
+            assertEquals(stats.getName(), other.getName());
+            assertEquals(stats.getCount(), other.getCount());
+            assertEquals(stats.getMissedCount(), other.getMissedCount());
+            assertEquals(stats.getTotalDuration(), other.getTotalDuration());
+        }
+        CallRollups expectedRollups = expected.getRollups();
+        CallRollups actualRollups = actual.getRollups();
+        for (int dayOfWeek = 0; dayOfWeek < CallRollups.DAYS_PER_WEEK; dayOfWeek++) {
+            for (int hour = 0; hour < CallRollups.HOURS_PER_DAY; hour++) {
+                assertEquals(expectedRollups.getHourOfWeekCount(dayOfWeek, hour),
+                        actualRollups.getHourOfWeekCount(dayOfWeek, hour));
+                assertEquals(expectedRollups.getHourOfWeekDuration(dayOfWeek, hour),
+                        actualRollups.getHourOfWeekDuration(dayOfWeek, hour));
+            }
+        }
+        for (int day = expectedRollups.getFirstDay(); day <= expectedRollups.getLastDay(); day++) {
+            assertEquals(expectedRollups.getDayCount(day), actualRollups.getDayCount(day));
+        }
+    }
+
+    @Test
+    public void resumingFromASnapshotMatchesOnePass() {
+        TimeZone zone = TimeZone.getTimeZone("America/St_Johns");
+        CallLogTable rows = new CallLogTable();
+        CallLogAggregator onePass = new CallLogAggregator(5, zone);
+        onePass.consume(syntheticSource(ROWS, 4), rows);
+
+        CallLogAggregator first = new CallLogAggregator(5, zone);
+        first.addRows(rows, 0, ROWS / 3);
+        CallLogSnapshot saved = first.snapshot();
+        CallLogAggregator resumed = new CallLogAggregator(saved, 5);
+        resumed.addRows(rows, ROWS / 3, ROWS);
+
+        CallLogSnapshot expected = onePass.snapshot();
+        CallLogSnapshot actual = resumed.snapshot();
+        assertEquals(ROWS / 3, saved.getTotalCalls()); // Not changed by the resumed aggregator
+        assertEquals(expected.getIncomingCalls(), actual.getIncomingCalls());
+        assertEquals(expected.getOutgoingCalls(), actual.getOutgoingCalls());
+        assertEquals(expected.getMissedCalls(), actual.getMissedCalls());
+        assertEquals(expected.getOtherCalls(), actual.getOtherCalls());
+        assertEquals(expected.getContactStats().size(), actual.getContactStats().size());
+        for (ContactStats stats : expected.getContactStats().values()) {
+            ContactStats other = actual.getContactStats().get(stats.getNumber());
+            assertEquals(stats.getCount(), other.getCount());
+            assertEquals(stats.getMissedCount(), other.getMissedCount());
+            assertEquals(stats.getTotalDuration(), other.getTotalDuration());
+            assertEquals(stats.getDurations().getMedian(), other.getDurations().getMedian());
+        }
+        for (ContactRanking ranking : ContactRanking.values()) {
+            for (int i = 0; i < 5; i++) {
+                assertEquals(expected.getTopContacts(ranking).get(i).getNumber(),
+                        actual.getTopContacts(ranking).get(i).getNumber());
+            }
+        }
+        assertEquals(zone, actual.getRollups().getZone());
+        CallRollups expectedRollups = expected.getRollups();
+        for (int day = expectedRollups.getFirstDay(); day <= expectedRollups.getLastDay(); day++) {
+            assertEquals(expectedRollups.getDayCount(day), actual.getRollups().getDayCount(day));
+            assertEquals(expectedRollups.getDayDuration(day), actual.getRollups().getDayDuration(day));
+        }
+        assertEquals(expected.getDurations().getCount(), actual.getDurations().getCount());
+        assertEquals(expected.getDurations().getP90(), actual.getDurations().getP90());
+    }
+
+    @Test
+    public void snapshotIsNotAffectedByLaterChanges() {
+        CallLogAggregator aggregator = new CallLogAggregator(5);
+        aggregator.add("111", "Alice", CallLogTable.TYPE_INCOMING, NOW, 30);
+        aggregator.add("222", "Bob", CallLogTable.TYPE_MISSED, NOW, 0);
+        CallLogSnapshot before = aggregator.snapshot();
+
+        aggregator.add("111", "Alice", CallLogTable.TYPE_OUTGOING, NOW, 90);
+        aggregator.remove("222", CallLogTable.TYPE_MISSED, NOW, 0);
+        CallLogSnapshot after = aggregator.snapshot();
+
+        assertEquals(2, before.getContactStats().size());
+        assertEquals(30, before.getContactStats().get("111").getTotalDuration());
+        assertEquals(1, before.getMissedCalls());
+        assertEquals(1, after.getContactStats().size());
+        assertEquals(120, after.getContactStats().get("111").getTotalDuration());
+        assertEquals(0, after.getMissedCalls());
+    }
+}
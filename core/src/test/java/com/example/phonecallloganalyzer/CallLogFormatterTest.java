@@ -0,0 +1,126 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class CallLogFormatterTest {
+
+    private static final long DAY_MS = 86_400_000L;
+
+    private TimeZone defaultZone;
+    private Locale defaultLocale;
+
+    @Before
+    public void saveDefaults() {
+        defaultZone = TimeZone.getDefault();
+        defaultLocale = Locale.getDefault();
+    }
+
+    @After
+    public void restoreDefaults() {
+        TimeZone.setDefault(defaultZone);
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    public void matchesCallFormatsAcrossZonesAndLocales() {
+        String[] zones = {"UTC", "Europe/London", "America/Sao_Paulo", "Asia/Kolkata", "Australia/Lord_Howe"};
+        Locale[] locales = {Locale.US, Locale.FRANCE, new Locale("ru", "RU"), new Locale("hi", "IN"), new Locale("ar", "EG")};
+        Random random = new Random(17);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < zones.length; i++) {
+            TimeZone.setDefault(TimeZone.getTimeZone(zones[i]));
+            Locale.setDefault(locales[i]);
+            CallLogFormatter formatter = new CallLogFormatter();
+
+            for (int j = 0; j < 5_000; j++) {
+                // Mostly the last few weeks, some far back and a few in the future
+                long timestamp = j % 10 == 0
+                        ? now - (long) (random.nextDouble() * 20 * 365 * DAY_MS)
+                        : now + 2 * DAY_MS - (long) (random.nextDouble() * 40 * DAY_MS);
+                assertEquals(CallFormats.formatDate(timestamp), formatter.formatDate(timestamp));
+
+                int seconds = j < 200 ? j : random.nextInt(100_000);
+                assertEquals(CallFormats.formatLogDuration(seconds), formatter.formatLogDuration(seconds));
+                long total = j < 200 ? j * 37L : (long) (random.nextDouble() * 10_000_000L);
+                assertEquals(CallFormats.formatStatsDuration(total), formatter.formatStatsDuration(total));
+            }
+        }
+    }
+
+    @Test
+    public void rollsTodayIntoYesterdayAtMidnight() {
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/London"));
+        Locale.setDefault(Locale.US);
+        long midnight = 1_700_006_400_000L; // 2023-11-15 00:00 in London
+        long[] clock = {midnight - 60_000L};
+        CallLogFormatter formatter = new CallLogFormatter(() -> clock[0]);
+
+        assertEquals("Today 11:58 PM", formatter.formatDate(midnight - 120_000L));
+        clock[0] = midnight + 60_000L;
+        assertEquals("Yesterday 11:58 PM", formatter.formatDate(midnight - 120_000L));
+        assertEquals("Today 12:00 AM", formatter.formatDate(midnight));
+        clock[0] = midnight + DAY_MS;
+        assertEquals("14 Nov 2023 11:58 PM", formatter.formatDate(midnight - 120_000L));
+    }
+
+    @Test
+    public void resetPicksUpANewTimeZone() {
+        Locale.setDefault(Locale.US);
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        long timestamp = 1_600_000_000_000L; // 2020-09-13 12:26:40 UTC
+        CallLogFormatter formatter = new CallLogFormatter();
+        assertEquals("13 Sep 2020 12:26 PM", formatter.formatDate(timestamp));
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        formatter.reset();
+        assertEquals("13 Sep 2020 09:26 PM", formatter.formatDate(timestamp));
+    }
+
+    @Test
+    public void warmCallsDoNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+        CallLogFormatter formatter = new CallLogFormatter();
+        StringBuilder out = new StringBuilder(64);
+        long now = System.currentTimeMillis();
+        long[] dates = new long[1024];
+        Random random = new Random(3);
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = now - (long) (random.nextDouble() * 60 * DAY_MS); // Fits the day cache
+        }
+        int calls = 200_000;
+        for (int i = 0; i < calls; i++) { // Fill the caches and let the JIT settle
+            out.setLength(0);
+            formatter.appendDate(out, dates[i & 1023]);
+            formatter.appendLogDuration(out, i % 7200);
+            formatter.appendStatsDuration(out, i);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < calls; i++) {
+            out.setLength(0);
+            formatter.appendDate(out, dates[i & 1023]);
+            formatter.appendLogDuration(out, i % 7200);
+            formatter.appendStatsDuration(out, i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // The old path allocates kilobytes per row; allow a little for the measurement itself
+        assertTrue("allocated " + allocated + " bytes over " + calls + " rows", allocated < calls / 10);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CallLogIndexTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private static CallLogTable syntheticTable(int rows, Random random) {
+        CallLogTable table = new CallLogTable();
+        long date = NOW;
+        for (int i = 0; i < rows; i++) {
+            date -= random.nextInt(4) == 0 ? 0 : random.nextInt(3_600_000); // Some calls share a timestamp
+            int contact = (int) (300 * Math.pow(random.nextDouble(), 2));
+            table.append(rows - i, "+4420" + (7_000_000 + contact), "Contact " + contact,
+                    CallLogTable.typeCode(1 + random.nextInt(6)), date, random.nextInt(1800));
+        }
+        return table;
+    }
+
+    private static int[] scan(CallLogTable table, CallLogFilter filter) {
+        int[] rows = new int[table.size()];
+        int count = 0;
+        for (int row = 0; row < table.size(); row++) {
+            if (filter.matches(table, row)) rows[count++] = row;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    private static CallLogFilter randomFilter(CallLogTable table, Random random) {
+        CallLogFilter filter = CallLogFilter.ALL;
+        if (random.nextBoolean()) {
+            long newest = table.getDate(0);
+            long oldest = table.getDate(table.size() - 1);
+            long from = oldest + (long) (random.nextDouble() * (newest - oldest));
+            // Reuse a real timestamp now and then so the range edges land on equal dates
+            if (random.nextBoolean()) from = table.getDate(random.nextInt(table.size()));
+            long to = random.nextBoolean() ? Long.MAX_VALUE : from + random.nextInt(30) * 86_400_000L;
+            filter = filter.withDateRange(random.nextBoolean() ? from : Long.MIN_VALUE, to);
+        }
+        if (random.nextBoolean()) filter = filter.withTypes(random.nextInt(CallLogFilter.ALL_TYPES + 1));
+        if (random.nextInt(3) == 0) {
+            filter = filter.withNumber(random.nextInt(10) == 0 ? "unknown" : table.getNumber(random.nextInt(table.size())));
+        }
+        return filter;
+    }
+
+    @Test
+    public void selectMatchesScan() {
+        Random random = new Random(21);
+        CallLogTable table = syntheticTable(30_000, random);
+        CallLogIndex index = new CallLogIndex(table);
+        for (int i = 0; i < 500; i++) {
+            CallLogFilter filter = randomFilter(table, random);
+            assertArrayEquals(scan(table, filter), index.select(filter));
+        }
+    }
+
+    @Test
+    public void rebuiltIndexSeesInsertsAndRemoves() {
+        Random random = new Random(4);
+        CallLogTable table = syntheticTable(5_000, random);
+        table.insert(99_999, "+15550001", "New", CallLogTable.TYPE_MISSED, NOW - 86_400_000L, 0);
+        table.removeAt(10);
+
+        CallLogIndex index = new CallLogIndex(table);
+        CallLogFilter missedFromNew = CallLogFilter.ALL
+                .withTypes(CallLogFilter.typeBit(CallLogTable.TYPE_MISSED))
+                .withNumber("+15550001");
+        int[] rows = index.select(missedFromNew);
+        assertEquals(1, rows.length);
+        assertEquals(99_999, table.getId(rows[0]));
+        for (int i = 0; i < 100; i++) {
+            CallLogFilter filter = randomFilter(table, random);
+            assertArrayEquals(scan(table, filter), index.select(filter));
+        }
+    }
+
+    @Test
+    public void filteredAggregateMatchesManualCounts() {
+        Random random = new Random(9);
+        CallLogTable table = syntheticTable(10_000, random);
+        CallLogFilter lastWeek = CallLogFilter.ALL.withDateRange(NOW - 7 * 86_400_000L, Long.MAX_VALUE);
+        CallLogSnapshot snapshot = new CallLogIndex(table).aggregate(lastWeek, 5).snapshot();
+
+        int expected = 0;
+        for (int row = 0; row < table.size(); row++) {
+            if (table.getDate(row) >= NOW - 7 * 86_400_000L) expected++;
+        }
+        assertEquals(expected, snapshot.getTotalCalls());
+    }
+}
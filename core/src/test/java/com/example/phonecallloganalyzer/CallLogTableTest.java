@@ -0,0 +1,191 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CallLogTableTest {
+
+    private static final int ROWS = 200_000;
+    private static final int CONTACTS = 2_000;
+
+    @Test
+    public void appendKeepsRowsAndDeduplicatesNumbers() {
+        CallLogTable table = new CallLogTable();
+        table.append(3, "+15550001", "Alice", CallLogTable.TYPE_INCOMING, 300, 61);
+        table.append(2, "+15550002", "Bob", CallLogTable.TYPE_MISSED, 200, 0);
+        table.append(1, "+15550001", "Alice", CallLogTable.TYPE_OUTGOING, 100, 5);
+
+        assertEquals(3, table.size());
+        assertEquals(2, table.contactCount());
+        assertEquals(table.getContactRef(0), table.getContactRef(2));
+        assertEquals("Bob", table.getName(1));
+        assertEquals(61, table.getDuration(0));
+        assertEquals(CallLogTable.TYPE_OUTGOING, table.getType(2));
+    }
+
+    @Test
+    public void insertKeepsNewestFirstAcrossChunks() {
+        CallLogTable table = new CallLogTable();
+        for (int i = 0; i < CallLogTable.CHUNK_SIZE * 2; i++) {
+            table.append(i, "n" + (i % 10), "name", CallLogTable.TYPE_INCOMING, 1_000_000 - i * 10L, i);
+        }
+        // Newer than everything, in the middle, and older than everything
+        table.insert(-1, "new", "New", CallLogTable.TYPE_MISSED, 2_000_000, 7);
+        table.insert(-2, "mid", "Mid", CallLogTable.TYPE_MISSED, 1_000_000 - 5005, 8);
+        table.insert(-3, "old", "Old", CallLogTable.TYPE_MISSED, 0, 9);
+
+        assertEquals(CallLogTable.CHUNK_SIZE * 2 + 3, table.size());
+        assertEquals(-1, table.getId(0));
+        assertEquals(-3, table.getId(table.size() - 1));
+        for (int i = 1; i < table.size(); i++) {
+            assertTrue(table.getDate(i - 1) >= table.getDate(i));
+        }
+        assertTrue(table.indexOfId(-2) > 0);
+        assertEquals(table.indexOfId(-2), table.indexOf(-2, 1_000_000 - 5005));
+        assertEquals(-1, table.indexOf(-2, 1_000_000 - 5000)); // Right id, wrong date
+    }
+
+    @Test
+    public void indexOfFindsTheIdAmongRowsWithTheSameDate() {
+        CallLogTable table = new CallLogTable();
+        for (int i = 0; i < 100; i++) {
+            table.append(100 - i, "n", "name", CallLogTable.TYPE_INCOMING, 1_000 - i / 10, i);
+        }
+        for (int i = 0; i < 100; i++) {
+            long id = 100 - i;
+            assertEquals(table.indexOfId(id), table.indexOf(id, 1_000 - i / 10));
+        }
+        assertEquals(-1, table.indexOf(101, 1_000));
+    }
+
+    @Test
+    public void removeAtClosesTheGap() {
+        CallLogTable table = new CallLogTable();
+        for (int i = 0; i < 10; i++) {
+            table.append(i, "n", "name", CallLogTable.TYPE_INCOMING, 100 - i, i);
+        }
+        table.removeAt(table.indexOfId(2));
+        table.removeAt(table.indexOfId(8));
+
+        assertEquals(8, table.size());
+        assertEquals(-1, table.indexOfId(2));
+        assertEquals(-1, table.indexOfId(8));
+        assertEquals(3, table.getId(2));
+        assertEquals(9, table.getId(7));
+    }
+
+    @Test
+    public void copyIsIndependentOfTheOriginal() {
+        CallLogTable original = new CallLogTable();
+        for (int i = 0; i < 10; i++) {
+            original.append(10 - i, "+1555000" + (i % 3), "Contact " + (i % 3), CallLogTable.TYPE_INCOMING, 1_000 - i, i);
+        }
+        CallLogTable copy = new CallLogTable(original);
+        copy.insert(11, "+15559999", "New", CallLogTable.TYPE_MISSED, 2_000, 0);
+        copy.removeAt(5);
+
+        assertEquals(10, original.size());
+        assertEquals(10, original.getId(0));
+        assertEquals(3, original.contactCount());
+        assertEquals(-1, original.findContactRef("+15559999"));
+        assertEquals(10, copy.size());
+        assertEquals(11, copy.getId(0));
+        assertEquals("New", copy.getName(0));
+        for (int row = 1; row < copy.size(); row++) {
+            assertEquals(original.getNumber(row < 5 ? row - 1 : row), copy.getNumber(row));
+        }
+    }
+
+    // Generations of copies edited on both sides, as syncs do, against a plain list of ids
+    @Test
+    public void copiesShareChunksWithoutSeeingEachOthersEdits() {
+        Random random = new Random(10);
+        CallLogTable table = new CallLogTable();
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < CallLogTable.CHUNK_SIZE * 3 + 100; i++) {
+            table.append(i, "n" + (i % 50), null, CallLogTable.TYPE_INCOMING, -i * 10L, i);
+            expected.add((long) i);
+        }
+        long nextId = expected.size();
+        for (int generation = 0; generation < 30; generation++) {
+            CallLogTable copy = new CallLogTable(table);
+            List<Long> copyExpected = new ArrayList<>(expected);
+            for (int edit = 0; edit < 20; edit++) {
+                if (random.nextInt(3) == 0) {
+                    int row = random.nextInt(copy.size());
+                    copy.removeAt(row);
+                    copyExpected.remove(row);
+                } else {
+                    // Mostly on top, now and then deep in the history
+                    long date = random.nextBoolean() ? copy.getDate(0) + 10 : copy.getDate(random.nextInt(copy.size())) - 5;
+                    copyExpected.add(copy.searchDate(date), nextId);
+                    copy.insert(nextId, "n" + (nextId % 50), null, CallLogTable.TYPE_MISSED, date, 0);
+                    nextId++;
+                }
+            }
+            // The original is edited too, where a display would still read it
+            if (generation % 5 == 0) {
+                table.removeAt(table.size() / 2);
+                expected.remove(expected.size() / 2);
+                assertRows(expected, table);
+            }
+            assertRows(copyExpected, copy);
+            table = copy;
+            expected = copyExpected;
+        }
+    }
+
+    private static void assertRows(List<Long> expected, CallLogTable table) {
+        assertEquals(expected.size(), table.size());
+        for (int row = 0; row < table.size(); row++) {
+            assertEquals((long) expected.get(row), table.getId(row));
+            if (row > 0) assertTrue(table.getDate(row - 1) >= table.getDate(row));
+        }
+    }
+
+    @Test
+    public void usesAFractionOfTheObjectListHeap() {
+        Random random = new Random(7);
+        String[] numbers = new String[CONTACTS];
+        for (int i = 0; i < CONTACTS; i++) {
+            numbers[i] = "+9198" + (10_000_000 + random.nextInt(89_999_999));
+        }
+
+        long baseline = usedHeap();
+        List<CallLogItem> list = new ArrayList<>();
+        HashMap<String, String> nameCache = new HashMap<>();
+        for (int i = 0; i < ROWS; i++) {
+            // Like the old loader: every cursor read is a fresh String, names come from the cache
+            String number = new String(numbers[i % CONTACTS]);
+            String name = nameCache.computeIfAbsent(number, k -> "Contact " + k);
+            list.add(new CallLogItem(i, name, number, "Incoming", 1_700_000_000_000L - i, String.valueOf(i % 3600)));
+        }
+        long listBytes = usedHeap() - baseline;
+
+        baseline = usedHeap();
+        CallLogTable table = new CallLogTable();
+        for (int i = 0; i < ROWS; i++) {
+            String number = numbers[i % CONTACTS];
+            table.append(i, number, "Contact " + number, CallLogTable.TYPE_INCOMING, 1_700_000_000_000L - i, i % 3600);
+        }
+        long tableBytes = usedHeap() - baseline;
+
+        assertEquals(ROWS, list.size());
+        assertEquals(ROWS, table.size());
+        assertTrue("list=" + listBytes + " table=" + tableBytes, tableBytes * 3 < listBytes);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
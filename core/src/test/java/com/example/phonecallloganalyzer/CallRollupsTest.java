@@ -0,0 +1,116 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class CallRollupsTest {
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("Europe/London");
+
+    @Test
+    public void bucketsMatchCalendarFields() {
+        Random random = new Random(11);
+        CallRollups rollups = new CallRollups(ZONE);
+        Calendar calendar = Calendar.getInstance(ZONE);
+        int[][] hourOfWeek = new int[7][24];
+        HashMap<Integer, Integer> perMonth = new HashMap<>();
+
+        // Dates spread over decades of DST changes, plus some before 1970
+        for (int i = 0; i < 20_000; i++) {
+            long date = (i % 50 == 0 ? -1 : 1) * (long) (random.nextDouble() * 1_700_000_000_000L);
+            rollups.add(date, 60);
+
+            calendar.setTimeInMillis(date);
+            int weekday = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7; // Monday = 0
+            hourOfWeek[weekday][calendar.get(Calendar.HOUR_OF_DAY)]++;
+            int month = calendar.get(Calendar.YEAR) * 12 + calendar.get(Calendar.MONTH);
+            perMonth.merge(month, 1, Integer::sum);
+            assertEquals(weekday, CallRollups.dayOfWeek(rollups.localDay(date)));
+            assertEquals(month, CallRollups.monthOf(rollups.localDay(date)));
+        }
+
+        for (int day = 0; day < 7; day++) {
+            for (int hour = 0; hour < 24; hour++) {
+                assertEquals(hourOfWeek[day][hour], rollups.getHourOfWeekCount(day, hour));
+                assertEquals(hourOfWeek[day][hour] * 60L, rollups.getHourOfWeekDuration(day, hour));
+            }
+        }
+        for (int month = rollups.getFirstMonth(); month <= rollups.getLastMonth(); month++) {
+            assertEquals((int) perMonth.getOrDefault(month, 0), rollups.getMonthCount(month));
+        }
+    }
+
+    @Test
+    public void rangeQueriesMatchScan() {
+        Random random = new Random(5);
+        CallRollups rollups = new CallRollups(ZONE);
+        long[] dates = new long[5_000];
+        int[] durations = new int[dates.length];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = 1_600_000_000_000L + (long) (random.nextDouble() * 400 * 86_400_000L);
+            durations[i] = random.nextInt(3600);
+            rollups.add(dates[i], durations[i]);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            int from = rollups.getFirstDay() - 5 + random.nextInt(420);
+            int to = from + random.nextInt(60);
+            int count = 0;
+            long duration = 0;
+            for (int i = 0; i < dates.length; i++) {
+                int day = rollups.localDay(dates[i]);
+                if (day >= from && day <= to) {
+                    count++;
+                    duration += durations[i];
+                }
+            }
+            assertEquals(count, rollups.countBetweenDays(from, to));
+            assertEquals(duration, rollups.durationBetweenDays(from, to));
+        }
+    }
+
+    @Test
+    public void mergeAndRemoveMatchSinglePass() {
+        Random random = new Random(8);
+        CallRollups whole = new CallRollups(ZONE);
+        CallRollups older = new CallRollups(ZONE);
+        CallRollups newer = new CallRollups(ZONE);
+        long start = 1_650_000_000_000L;
+        for (int i = 0; i < 3_000; i++) {
+            long date = start + (long) i * 3_600_000L;
+            int duration = random.nextInt(600);
+            whole.add(date, duration);
+            (i < 1_500 ? older : newer).add(date, duration);
+        }
+        newer.merge(older);
+        assertEquals(whole.getFirstDay(), newer.getFirstDay());
+        assertEquals(whole.getLastDay(), newer.getLastDay());
+        for (int day = whole.getFirstDay(); day <= whole.getLastDay(); day++) {
+            assertEquals(whole.getDayCount(day), newer.getDayCount(day));
+            assertEquals(whole.getDayDuration(day), newer.getDayDuration(day));
+        }
+
+        CallRollups copy = new CallRollups(whole);
+        copy.remove(start, 10);
+        assertEquals(whole.getDayCount(whole.localDay(start)) - 1, copy.getDayCount(copy.localDay(start)));
+    }
+
+    @Test
+    public void newestFirstHistoryGrowsBackwards() {
+        // The loader feeds rows newest first, so day buckets keep growing at the front
+        CallRollups rollups = new CallRollups(ZONE);
+        long newest = 1_700_000_000_000L;
+        for (int i = 0; i < 20 * 365; i++) {
+            rollups.add(newest - i * 86_400_000L, 1);
+        }
+        rollups.add(newest + 86_400_000L, 1); // And a sync adds a newer one
+        assertEquals(20 * 365 + 1, rollups.countBetweenDays(rollups.getFirstDay(), rollups.getLastDay()));
+        assertEquals(20 * 365 + 1, rollups.getLastDay() - rollups.getFirstDay() + 1);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CallbackTrackerTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void measuresTheWaitUntilTheNextCallWithTheSameNumber() {
+        CallLogTable table = new CallLogTable();
+        // Newest first
+        table.append(6, "+100", "A", CallLogTable.TYPE_MISSED, NOW, 0); // Not returned yet
+        table.append(5, "+100", "A", CallLogTable.TYPE_OUTGOING, NOW - 10 * MINUTE, 60);
+        table.append(4, "+200", "B", CallLogTable.TYPE_INCOMING, NOW - 20 * MINUTE, 30); // Different number
+        table.append(3, "+100", "A", CallLogTable.TYPE_MISSED, NOW - 30 * MINUTE, 0);
+        table.append(2, "+100", "A", CallLogTable.TYPE_MISSED, NOW - 90 * MINUTE, 0);
+        table.append(1, "+300", "C", CallLogTable.TYPE_MISSED, NOW - 100 * MINUTE, 0);
+
+        CallbackSnapshot snapshot = CallbackTracker.track(table);
+        CallbackStats a = snapshot.get("+100");
+        assertEquals(3, a.getMissed());
+        assertEquals(2, a.getReturned());
+        assertEquals(1, a.getUnreturned());
+        assertEquals(2, a.getLatencies().getCount());
+        assertEquals(80 * 60, a.getLatencies().getMax()); // The older miss waited 80 minutes
+        assertNull(snapshot.get("+200"));
+        assertEquals(1.0, snapshot.get("+300").getUnreturnedShare(), 0);
+
+        CallbackStats overall = snapshot.getOverall();
+        assertEquals(4, overall.getMissed());
+        assertEquals(2, overall.getReturned());
+        assertEquals(0.5, overall.getUnreturnedShare(), 0);
+    }
+
+    @Test
+    public void otherTypesNeitherReturnNorNeedReturning() {
+        CallbackTracker tracker = new CallbackTracker();
+        tracker.add("+100", CallLogTable.TYPE_OTHER, NOW); // Voicemail, rejected, ...
+        tracker.add("+100", CallLogTable.TYPE_MISSED, NOW - MINUTE);
+        tracker.add("+100", CallLogTable.TYPE_OUTGOING, NOW - 2 * MINUTE);
+        tracker.add("+100", CallLogTable.TYPE_MISSED, NOW - 2 * MINUTE); // Same instant: returned straight away
+        CallbackSnapshot snapshot = tracker.snapshot();
+        assertEquals(2, snapshot.getOverall().getMissed());
+        assertEquals(1, snapshot.getOverall().getReturned());
+        assertEquals(1, snapshot.getOverall().getLatencies().getMax());
+    }
+
+    // A sync's new calls on top of a full pass, against one pass over everything
+    @Test
+    public void newerCallsFoldInLikeAPassOverTheWholeTable() {
+        Random random = new Random(22);
+        CallLogTable table = new CallLogTable();
+        long date = NOW;
+        for (int i = 0; i < 3_000; i++) {
+            int roll = random.nextInt(10);
+            byte type = roll < 4 ? CallLogTable.TYPE_MISSED : roll < 9 ? (byte) (1 + random.nextInt(2)) : CallLogTable.TYPE_OTHER;
+            table.append(i, "+1555" + random.nextInt(40), null, type, date, 0);
+            date -= random.nextInt(3) * MINUTE; // Some rows share a date
+        }
+
+        for (int newer : new int[]{0, 1, 25, 700, 3_000}) {
+            CallbackTracker tracker = new CallbackTracker();
+            tracker.addRows(table, newer, table.size());
+            for (int row = newer - 1; row >= 0; row--) {
+                tracker.addNewer(table.getNumber(row), table.getType(row), table.getDate(row));
+            }
+            CallbackSnapshot expected = CallbackTracker.track(table);
+            CallbackSnapshot folded = tracker.snapshot();
+            assertSameStats(expected.getOverall(), folded.getOverall());
+            assertEquals(expected.getByNumber().keySet(), folded.getByNumber().keySet());
+            for (String number : expected.getByNumber().keySet()) {
+                assertSameStats(expected.get(number), folded.get(number));
+            }
+            assertEquals(NOW, tracker.getNewestDate());
+        }
+    }
+
+    private static void assertSameStats(CallbackStats expected, CallbackStats actual) {
+        assertEquals(expected.getMissed(), actual.getMissed());
+        assertEquals(expected.getReturned(), actual.getReturned());
+        assertEquals(expected.getLatencies().getCount(), actual.getLatencies().getCount());
+        assertEquals(expected.getLatencies().getMax(), actual.getLatencies().getMax());
+        assertEquals(expected.getLatencies().getMedian(), actual.getLatencies().getMedian());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNewerRowsOlderThanTheNewest() {
+        CallbackTracker tracker = new CallbackTracker();
+        tracker.add("+100", CallLogTable.TYPE_MISSED, NOW);
+        tracker.addNewer("+100", CallLogTable.TYPE_OUTGOING, NOW - MINUTE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRowsOutOfOrder() {
+        CallbackTracker tracker = new CallbackTracker();
+        tracker.add("+100", CallLogTable.TYPE_MISSED, NOW - MINUTE);
+        tracker.add("+100", CallLogTable.TYPE_OUTGOING, NOW);
+    }
+
+    @Test
+    public void matchesANestedScan() {
+        Random random = new Random(21);
+        CallLogTable table = new CallLogTable();
+        long date = NOW;
+        for (int i = 0; i < 3_000; i++) {
+            int roll = random.nextInt(10);
+            byte type = roll < 4 ? CallLogTable.TYPE_MISSED : roll < 9 ? (byte) (1 + random.nextInt(2)) : CallLogTable.TYPE_OTHER;
+            table.append(i, "+1555" + random.nextInt(40), null, type, date, 0);
+            date -= random.nextInt(3) * MINUTE; // Some rows share a date
+        }
+
+        CallbackSnapshot snapshot = CallbackTracker.track(table);
+        int missed = 0, returned = 0;
+        long latencySeconds = 0;
+        for (int row = 0; row < table.size(); row++) {
+            if (table.getType(row) != CallLogTable.TYPE_MISSED) continue;
+            missed++;
+            // The nearest newer row with the same number that is an answered call
+            for (int newer = row - 1; newer >= 0; newer--) {
+                byte type = table.getType(newer);
+                if (table.getNumber(newer).equals(table.getNumber(row))
+                        && (type == CallLogTable.TYPE_INCOMING || type == CallLogTable.TYPE_OUTGOING)) {
+                    returned++;
+                    latencySeconds = Math.max(latencySeconds, Math.max(1, (table.getDate(newer) - table.getDate(row)) / 1000));
+                    break;
+                }
+            }
+        }
+        assertEquals(missed, snapshot.getOverall().getMissed());
+        assertEquals(returned, snapshot.getOverall().getReturned());
+        assertEquals(latencySeconds, snapshot.getOverall().getLatencies().getMax());
+
+        int perNumber = 0;
+        for (CallbackStats stats : snapshot.getByNumber().values()) perNumber += stats.getMissed();
+        assertEquals(missed, perNumber);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ContactIndexTest {
+
+    // Stand-in for the old PhoneLookup query: scans every contact for each number
+    private static String lookupPerNumber(List<String[]> contacts, String number) {
+        String digits = ContactIndex.digitsOf(number);
+        if (digits.isEmpty()) return null;
+        int[] tiers = {Integer.MAX_VALUE, ContactIndex.NATIONAL_MATCH, ContactIndex.MIN_MATCH};
+        for (int tier : tiers) {
+            for (String[] contact : contacts) {
+                String other = ContactIndex.digitsOf(contact[0]);
+                if (other.isEmpty()) continue;
+                if (tier == Integer.MAX_VALUE) {
+                    if (other.equals(digits)) return contact[1];
+                } else if (digits.length() >= tier && other.length() >= tier
+                        && digits.endsWith(other.substring(other.length() - tier))) {
+                    return contact[1];
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String format(Random random, String countryCode, String national) {
+        switch (random.nextInt(5)) {
+            case 0: return "+" + countryCode + national;
+            case 1: return "+" + countryCode + " " + national.substring(0, 3) + "-" + national.substring(3);
+            case 2: return "0" + national;
+            case 3: return "(" + national.substring(0, 3) + ") " + national.substring(3);
+            default: return national;
+        }
+    }
+
+    @Test
+    public void matchesPerNumberLookupOnSyntheticContacts() {
+        Random random = new Random(42);
+        String[] countryCodes = {"1", "91", "44"};
+        List<String[]> contacts = new ArrayList<>();
+        List<String> nationals = new ArrayList<>();
+        List<String> codes = new ArrayList<>();
+        ContactIndex index = new ContactIndex();
+
+        for (int i = 0; i < 2000; i++) {
+            String code = countryCodes[random.nextInt(countryCodes.length)];
+            String national = String.valueOf(2_000_000_000L + (long) (random.nextDouble() * 7_000_000_000L));
+            String number = format(random, code, national);
+            String name = "Contact " + i;
+            contacts.add(new String[]{number, name});
+            nationals.add(national);
+            codes.add(code);
+            index.add(number, name);
+        }
+        // Short codes only match exactly
+        contacts.add(new String[]{"12345", "Voicemail"});
+        index.add("12345", "Voicemail");
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < nationals.size(); i++) {
+            queries.add(format(random, codes.get(i), nationals.get(i)));
+        }
+        for (int i = 0; i < 500; i++) {
+            queries.add("+1" + (2_000_000_000L + (long) (random.nextDouble() * 7_000_000_000L)));
+        }
+        queries.add("12345");
+        queries.add("012345");
+        queries.add("");
+
+        for (String query : queries) {
+            assertEquals(query, lookupPerNumber(contacts, query), index.lookup(query));
+        }
+    }
+
+    @Test
+    public void matchesNationalAndInternationalFormats() {
+        ContactIndex index = new ContactIndex();
+        index.add("+1 (555) 123-4567", "Alice");
+        index.add("098765 43210", "Bob");
+
+        assertEquals("Alice", index.lookup("5551234567"));
+        assertEquals("Alice", index.lookup("+15551234567"));
+        assertEquals("Bob", index.lookup("+91 98765 43210"));
+        assertEquals("Bob", index.lookup("9876543210"));
+        assertNull(index.lookup("5559999999"));
+        assertNull(index.lookup(null));
+    }
+}
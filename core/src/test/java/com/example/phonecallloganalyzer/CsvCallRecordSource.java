@@ -0,0 +1,35 @@
+package com.example.phonecallloganalyzer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// File-backed source for tests: one "id,number,name,type,date,duration" record per line
+class CsvCallRecordSource implements CallRecordSource {
+
+    private final BufferedReader reader;
+    private String[] fields;
+
+    CsvCallRecordSource(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean next() {
+        try {
+            String line = reader.readLine();
+            if (line == null) return false;
+            fields = line.split(",", -1);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override public long id() { return Long.parseLong(fields[0]); }
+    @Override public String number() { return fields[1]; }
+    @Override public String name() { return fields[2]; }
+    @Override public int type() { return Integer.parseInt(fields[3]); }
+    @Override public long date() { return Long.parseLong(fields[4]); }
+    @Override public int duration() { return Integer.parseInt(fields[5]); }
+}
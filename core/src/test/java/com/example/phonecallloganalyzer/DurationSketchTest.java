@@ -0,0 +1,126 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DurationSketchTest {
+
+    // Nearest-rank quantile of the exact durations, the sketch's definition too
+    private static int exactQuantile(int[] sorted, double q) {
+        int rank = Math.max(1, (int) Math.ceil(q * sorted.length));
+        return sorted[rank - 1];
+    }
+
+    private static int[] callDurations(Random random, int calls) {
+        int[] durations = new int[calls];
+        for (int i = 0; i < calls; i++) {
+            // Mostly short calls with a long tail, like a real call log
+            durations[i] = 1 + (int) Math.min(6 * 3600, Math.exp(random.nextGaussian() * 1.3 + 4.5));
+        }
+        return durations;
+    }
+
+    @Test
+    public void bucketsCoverEverySecondOnce() {
+        int previousEnd = 0;
+        for (int bucket = 1; bucket < DurationSketch.BUCKETS; bucket++) {
+            assertEquals(previousEnd + 1, DurationSketch.lowerBound(bucket));
+            assertEquals(bucket, DurationSketch.bucketOf(DurationSketch.lowerBound(bucket)));
+            assertEquals(bucket, DurationSketch.bucketOf(DurationSketch.upperBound(bucket)));
+            previousEnd = DurationSketch.upperBound(bucket);
+        }
+        assertEquals(Integer.MAX_VALUE, previousEnd);
+    }
+
+    @Test
+    public void quantilesStayWithinTheBucketError() {
+        Random random = new Random(5);
+        int[] durations = callDurations(random, 50_000);
+        DurationSketch sketch = new DurationSketch();
+        for (int duration : durations) sketch.add(duration);
+        int[] sorted = durations.clone();
+        Arrays.sort(sorted);
+
+        for (double q : new double[]{0.01, 0.25, 0.5, 0.75, 0.9, 0.99, 1.0}) {
+            int exact = exactQuantile(sorted, q);
+            int estimate = sketch.quantile(q);
+            assertTrue(q + ": exact=" + exact + " estimate=" + estimate,
+                    Math.abs(estimate - exact) <= Math.max(1, exact * 0.125));
+        }
+        assertEquals(sorted[sorted.length - 1], sketch.getMax());
+        assertEquals(durations.length, sketch.getCount());
+        assertTrue(sketch.bucketLimit() <= DurationSketch.BUCKETS);
+    }
+
+    @Test
+    public void zeroDurationsAreNotRecorded() {
+        DurationSketch sketch = new DurationSketch();
+        sketch.add(0);
+        assertTrue(sketch.isEmpty());
+        assertEquals(0, sketch.getMedian());
+        sketch.add(3);
+        sketch.add(0);
+        assertEquals(1, sketch.getCount());
+        assertEquals(3, sketch.getMedian());
+    }
+
+    @Test
+    public void mergedShardsEqualOneSketch() {
+        Random random = new Random(8);
+        int[] durations = callDurations(random, 10_000);
+        DurationSketch whole = new DurationSketch();
+        DurationSketch left = new DurationSketch();
+        DurationSketch right = new DurationSketch();
+        for (int i = 0; i < durations.length; i++) {
+            whole.add(durations[i]);
+            (i < 3_000 ? left : right).add(durations[i]);
+        }
+        left.merge(right);
+        assertEquals(whole.getCount(), left.getCount());
+        assertEquals(whole.getMax(), left.getMax());
+        assertEquals(whole.bucketLimit(), left.bucketLimit());
+        for (int bucket = 0; bucket < whole.bucketLimit(); bucket++) {
+            assertEquals(whole.countAt(bucket), left.countAt(bucket));
+        }
+    }
+
+    @Test
+    public void removingTheLongestCallLowersTheMax() {
+        DurationSketch sketch = new DurationSketch();
+        sketch.add(30);
+        sketch.add(600);
+        sketch.add(4000);
+        sketch.remove(4000);
+        assertEquals(2, sketch.getCount());
+        // Only the bucket of the next longest call is known now
+        assertTrue(sketch.getMax() >= 600 && sketch.getMax() <= DurationSketch.upperBound(DurationSketch.bucketOf(600)));
+        sketch.remove(600);
+        sketch.remove(30);
+        assertTrue(sketch.isEmpty());
+        assertEquals(0, sketch.getMax());
+    }
+
+    @Test
+    public void aggregatorSketchesFollowTheirContacts() {
+        CallLogAggregator aggregator = new CallLogAggregator(5);
+        aggregator.add("1", "A", CallLogTable.TYPE_INCOMING, 1_000, 60);
+        aggregator.add("1", "A", CallLogTable.TYPE_OUTGOING, 2_000, 120);
+        aggregator.add("1", "A", CallLogTable.TYPE_MISSED, 3_000, 0);
+        aggregator.add("2", "B", CallLogTable.TYPE_INCOMING, 4_000, 5);
+
+        CallLogSnapshot snapshot = aggregator.snapshot();
+        DurationSketch a = snapshot.getContactStats().get("1").getDurations();
+        assertEquals(2, a.getCount());
+        assertEquals(120, a.getMax());
+        assertEquals(3, snapshot.getDurations().getCount());
+        assertEquals(5, snapshot.getDurations().quantile(0));
+
+        aggregator.remove("1", CallLogTable.TYPE_OUTGOING, 2_000, 120);
+        assertEquals(1, aggregator.snapshot().getContactStats().get("1").getDurations().getCount());
+        assertEquals(2, a.getCount()); // The earlier snapshot kept its own copy
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LoadSchedulerTest {
+
+    // Runs tasks only when told to, so the test decides what is queued and what is running
+    private static final class ManualExecutor implements java.util.concurrent.Executor {
+        final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+
+        void runNext() {
+            queue.poll().run();
+        }
+
+        void runAll() {
+            while (!queue.isEmpty()) runNext();
+        }
+    }
+
+    private final ManualExecutor worker = new ManualExecutor();
+    private final ManualExecutor main = new ManualExecutor();
+    private final LoadScheduler<String> scheduler = new LoadScheduler<>(worker, main);
+    private final List<String> delivered = new ArrayList<>();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    private LoadScheduler.Task<String> task(String result) {
+        return token -> {
+            runs.incrementAndGet();
+            return result;
+        };
+    }
+
+    private LoadScheduler.Callback<String> record() {
+        return (version, result) -> delivered.add(version + ":" + result);
+    }
+
+    @Test
+    public void duplicateLoadsJoinTheQueuedOne() {
+        long first = scheduler.load(task("a"), record());
+        long second = scheduler.load(task("b"), record());
+        assertEquals(first, second);
+
+        worker.runAll();
+        main.runAll();
+        assertEquals(1, runs.get());
+        assertEquals(List.of(first + ":a"), delivered);
+        assertTrue(scheduler.isIdle());
+    }
+
+    @Test
+    public void reloadDropsTheResultOfTheRequestItReplaces() {
+        long stale = scheduler.load(task("old"), record());
+        worker.runNext(); // Finished, result waiting on the main thread
+        long fresh = scheduler.reload(task("new"), record());
+        assertTrue(fresh > stale);
+
+        worker.runAll();
+        main.runAll();
+        assertEquals(List.of(fresh + ":new"), delivered);
+    }
+
+    @Test
+    public void reloadSkipsAQueuedRequestEntirely() {
+        scheduler.load(task("old"), record());
+        long fresh = scheduler.reload(task("new"), record());
+        worker.runAll();
+        main.runAll();
+        assertEquals(1, runs.get());
+        assertEquals(List.of(fresh + ":new"), delivered);
+    }
+
+    @Test
+    public void refreshFoldsIntoTheQueuedRequest() {
+        long first = scheduler.refresh(task("a"), record());
+        long second = scheduler.refresh(task("b"), record());
+        assertEquals(first, second);
+        worker.runAll();
+        main.runAll();
+        assertEquals(List.of(first + ":b"), delivered);
+    }
+
+    @Test
+    public void refreshWhileRunningQueuesAnotherRun() throws Exception {
+        ExecutorService thread = Executors.newSingleThreadExecutor();
+        try {
+            LoadScheduler<String> threaded = new LoadScheduler<>(thread, main);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            long first = threaded.refresh(token -> {
+                started.countDown();
+                await(release);
+                return "a";
+            }, record());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            long second = threaded.refresh(token -> "b", record()); // Must still see the change
+            assertTrue(second > first);
+            release.countDown();
+            thread.shutdown();
+            assertTrue(thread.awaitTermination(5, TimeUnit.SECONDS));
+            main.runAll();
+            assertEquals(List.of(first + ":a", second + ":b"), delivered);
+        } finally {
+            thread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void runningTaskSeesItsTokenCancelled() throws Exception {
+        ExecutorService thread = Executors.newSingleThreadExecutor();
+        try {
+            LoadScheduler<String> threaded = new LoadScheduler<>(thread, main);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch cancelled = new CountDownLatch(1);
+            threaded.load(token -> {
+                started.countDown();
+                while (!token.isCancelled()) Thread.onSpinWait();
+                cancelled.countDown();
+                token.throwIfCancelled();
+                return "never";
+            }, record());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // A load() after the cancel must not join the cancelled request
+            threaded.cancel();
+            assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+            long next = threaded.load(token -> "next", record());
+            thread.shutdown();
+            assertTrue(thread.awaitTermination(5, TimeUnit.SECONDS));
+            main.runAll();
+            assertEquals(List.of(next + ":next"), delivered);
+        } finally {
+            thread.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+public class MappedCsvCallRecordSourceTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void readsTheFormatsExportsComeIn() throws IOException {
+        File file = write("\uFEFFCall ID,Direction,Phone Number,Contact Name,Start Time,Duration\r\n"
+                + "7,Incoming,+15551234567,\"Smith, Anna\",2024-03-05 14:07:09,65\r\n"
+                + "8,OUT,+15551234567,\"Anna \"\"Annie\"\" Smith\",2024-03-05T14:10:00Z,1:02:03\r\n"
+                + "\r\n"
+                + "9,3,+44 20 7946 0958,,1709647800,\r\n"
+                + "10,missed,,Withheld,2024-03-05T15:00:00+05:30,0\r\n"
+                + "11,incoming,+15550000000,Broken,yesterday,12\r\n"
+                + "12,2,+15559999999,Last,1709647800123,5");
+        try (MappedCsvCallRecordSource source = MappedCsvCallRecordSource.open(file, UTC, null)) {
+            assertTrue(source.next());
+            assertEquals(7, source.id());
+            assertEquals(CallLogTable.TYPE_INCOMING, source.type());
+            String first = source.number();
+            assertEquals("+15551234567", first);
+            assertEquals("Smith, Anna", source.name());
+            assertEquals(1_709_647_629_000L, source.date());
+            assertEquals(65, source.duration());
+
+            assertTrue(source.next());
+            assertSame(first, source.number()); // Repeated spellings share one String
+            assertEquals(CallLogTable.TYPE_OUTGOING, source.type());
+            assertEquals("Anna \"Annie\" Smith", source.name());
+            assertEquals(1_709_647_800_000L, source.date());
+            assertEquals(3723, source.duration());
+
+            assertTrue(source.next()); // The blank line is passed over
+            assertEquals(CallLogTable.TYPE_MISSED, source.type());
+            assertEquals("+44 20 7946 0958", source.number());
+            assertNull(source.name());
+            assertEquals(1_709_647_800_000L, source.date()); // Epoch seconds
+            assertEquals(0, source.duration());
+
+            assertTrue(source.next());
+            assertEquals("", source.number());
+            assertEquals(1_709_631_000_000L, source.date());
+
+            assertTrue(source.next()); // "yesterday" is skipped
+            assertEquals(12, source.id());
+            assertEquals(1_709_647_800_123L, source.date());
+            assertFalse(source.next());
+
+            assertEquals(5, source.getRowCount());
+            assertEquals(1, source.getSkippedRows());
+            assertEquals(file.length(), source.getPosition());
+        }
+    }
+
+    @Test
+    public void localTimesFollowTheZone() throws IOException {
+        File file = write("number,date\n"
+                + "100200300,2024-01-15 09:00\n"
+                + "100200300,2024-07-15 09:00\n");
+        try (MappedCsvCallRecordSource source =
+                     MappedCsvCallRecordSource.open(file, TimeZone.getTimeZone("Europe/London"), null)) {
+            assertTrue(source.next());
+            assertEquals(1_705_309_200_000L, source.date()); // GMT
+            assertTrue(source.next());
+            assertEquals(1_721_030_400_000L, source.date()); // BST, an hour earlier in UTC
+            assertEquals(CallLogTable.TYPE_OTHER, source.type());
+            assertEquals(2, source.id()); // Line order without an id column
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAHeaderWithoutNumberOrDate() throws IOException {
+        MappedCsvCallRecordSource.open(write("a,b,c\n1,2,3\n"), UTC, null);
+    }
+
+    @Test
+    public void normalizesEachSpellingOnce() throws IOException {
+        File file = write("number,date\n+91 98765 43210,1\n098765 43210,2\n9876543210,3\n+91 98765 43210,4\n");
+        NumberNormalizer normalizer = new NumberNormalizer("IN");
+        try (MappedCsvCallRecordSource source = MappedCsvCallRecordSource.open(file, UTC, normalizer)) {
+            List<String> numbers = new ArrayList<>();
+            while (source.next()) numbers.add(source.number());
+            assertEquals(4, numbers.size());
+            for (String number : numbers) assertSame(numbers.get(0), number);
+            assertEquals("+919876543210", numbers.get(0));
+            assertEquals(3, source.internedStrings());
+        }
+    }
+
+    // An export with a million distinct numbers, each spelt two ways, into the approximate aggregator
+    @Test
+    public void millionsOfDistinctNumbersKeepTheStateBounded() throws IOException {
+        int numbers = 1_000_000;
+        File file = folder.newFile();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("number,name,date,duration");
+            for (int i = 0; i < numbers; i++) {
+                long date = 1_700_000_000L + i * 60L;
+                writer.println("+1 555" + (1_000_000 + i) + ",Caller " + i + "," + date + ",30");
+                writer.println("555" + (1_000_000 + i) + ",Caller " + i + "," + (date + 1) + ",0");
+            }
+        }
+
+        long baseline = usedHeap();
+        NumberNormalizer normalizer = new NumberNormalizer("US");
+        ApproximateAggregator aggregator = new ApproximateAggregator(10, UTC);
+        long retained;
+        try (MappedCsvCallRecordSource source = MappedCsvCallRecordSource.open(file, UTC, normalizer)) {
+            aggregator.consume(source);
+            retained = usedHeap() - baseline; // With the source and the normalizer still reachable
+            assertEquals(2L * numbers, source.getRowCount());
+            assertTrue(source.internedStrings() <= 2 * MappedCsvCallRecordSource.INTERN_LIMIT);
+        }
+        assertTrue(normalizer.size() <= NumberNormalizer.CACHE_LIMIT);
+        ApproximateSnapshot snapshot = aggregator.snapshot();
+        assertEquals(2L * numbers, snapshot.getTotalCalls());
+        assertEquals(numbers, snapshot.getDistinctCallers(), snapshot.getDistinctError() * numbers);
+
+        // Sketches and caches, not hundreds of bytes per number
+        assertTrue("retained=" + retained, retained < 16L * 1024 * 1024);
+    }
+
+    @Test
+    public void rowsAcrossWindowBoundariesMatchTheLineReader() throws IOException {
+        File file = folder.newFile();
+        Random random = new Random(4);
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("id,number,name,type,date,duration");
+            for (int i = 0; i < 5_000; i++) {
+                int contact = random.nextInt(300);
+                String name = contact % 7 == 0 ? "\"Contact, " + contact + "\"" : "Contact " + contact;
+                writer.println((5_000 - i) + ",+1555" + (1_000_000 + contact) + "," + name + ","
+                        + (1 + random.nextInt(6)) + "," + (1_700_000_000_000L - i * 60_000L) + "," + random.nextInt(3600));
+            }
+        }
+
+        CallLogTable expected = new CallLogTable();
+        CallLogAggregator fromLines = new CallLogAggregator(5, UTC);
+        List<String> lines = Files.readAllLines(file.toPath());
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.replace("\"Contact, ", "\"Contact; ").split(",", -1);
+            String name = fields[2].startsWith("\"") ? fields[2].replace("\"", "").replace(';', ',') : fields[2];
+            expected.append(Long.parseLong(fields[0]), fields[1], name, CallLogTable.typeCode(Integer.parseInt(fields[3])),
+                    Long.parseLong(fields[4]), Integer.parseInt(fields[5]));
+            fromLines.add(fields[1], name, CallLogTable.typeCode(Integer.parseInt(fields[3])),
+                    Long.parseLong(fields[4]), Integer.parseInt(fields[5]));
+        }
+
+        CallLogTable actual = new CallLogTable();
+        CallLogAggregator fromMapped = new CallLogAggregator(5, UTC);
+        // A window of a few rows, so most rows are cut at least once
+        try (MappedCsvCallRecordSource source = new MappedCsvCallRecordSource(
+                new RandomAccessFile(file, "r").getChannel(), UTC, null, 1_000)) {
+            fromMapped.consume(source, actual);
+            assertEquals(0, source.getSkippedRows());
+        }
+
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getId(row), actual.getId(row));
+            assertEquals(expected.getNumber(row), actual.getNumber(row));
+            assertEquals(expected.getName(row), actual.getName(row));
+            assertEquals(expected.getType(row), actual.getType(row));
+            assertEquals(expected.getDate(row), actual.getDate(row));
+            assertEquals(expected.getDuration(row), actual.getDuration(row));
+        }
+        CallLogSnapshot expectedSnapshot = fromLines.snapshot();
+        CallLogSnapshot actualSnapshot = fromMapped.snapshot();
+        assertEquals(expectedSnapshot.getContactStats().size(), actualSnapshot.getContactStats().size());
+        assertEquals(expectedSnapshot.getMissedCalls(), actualSnapshot.getMissedCalls());
+        assertEquals(expectedSnapshot.getDurations().getCount(), actualSnapshot.getDurations().getCount());
+    }
+
+    @Test
+    public void reportsProgressAndStopsWhenTheListenerThrows() throws IOException {
+        StringBuilder content = new StringBuilder("number,date\n");
+        for (int i = 0; i < 1_000; i++) content.append("+1555").append(1_000_000 + i % 10).append(',').append(i).append('\n');
+        File file = write(content.toString());
+
+        List<Long> reported = new ArrayList<>();
+        CancellationToken token = new CancellationToken();
+        try (MappedCsvCallRecordSource source = MappedCsvCallRecordSource.open(file, UTC, null)) {
+            source.setProgressListener((rows, bytesRead, totalBytes) -> {
+                assertTrue(bytesRead <= totalBytes);
+                reported.add(rows);
+                if (rows == 300) token.cancel();
+                token.throwIfCancelled();
+            }, 100);
+            int read = 0;
+            try {
+                while (source.next()) read++;
+                fail("Expected the import to stop");
+            } catch (CancellationException expected) {
+                assertEquals(299, read);
+            }
+        }
+        assertEquals(List.of(100L, 200L, 300L), reported);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
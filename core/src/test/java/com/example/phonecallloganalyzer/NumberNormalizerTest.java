@@ -0,0 +1,123 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NumberNormalizerTest {
+
+    private static final int CONTACTS = 20_000;
+    private static final int ROWS = 100_000;
+
+    @Test
+    public void spellingsOfANationalNumberMeet() {
+        NumberNormalizer us = new NumberNormalizer("US");
+        for (String raw : new String[]{"+1 555-010-0199", "5550100199", "(555) 010-0199", "1-555-010-0199",
+                "011 1 555 010 0199", "+15550100199"}) {
+            assertEquals(raw, "+15550100199", us.normalize(raw));
+        }
+
+        NumberNormalizer india = new NumberNormalizer("in");
+        for (String raw : new String[]{"+91 98765 43210", "09876543210", "98765-43210", "919876543210",
+                "0091 98765 43210"}) {
+            assertEquals(raw, "+919876543210", india.normalize(raw));
+        }
+        assertEquals("+442079460000", india.normalize("0044 20 7946 0000"));
+    }
+
+    @Test
+    public void leavesWhatItCannotPlace() {
+        NumberNormalizer us = new NumberNormalizer("US");
+        assertNull(us.normalize(null));
+        assertEquals("", us.normalize(""));
+        assertEquals("-2", us.normalize("-2")); // Hidden caller marker on older releases
+        assertEquals("Private", us.normalize("Private"));
+        assertEquals("1-800-FLOWERS", us.normalize("1-800-FLOWERS"));
+        assertEquals("611", us.normalize("611"));
+        assertEquals("5550199", us.normalize("555-0199")); // No area code: kept, but as digits
+
+        // Unknown region: only numbers that carry their calling code are placed
+        NumberNormalizer unknown = new NumberNormalizer("ZZ");
+        assertEquals("+15550100199", unknown.normalize("+1 (555) 010-0199"));
+        assertEquals("+15550100199", unknown.normalize("00 1 555 010 0199"));
+        assertEquals("5550100199", unknown.normalize("555 010 0199"));
+        assertEquals("5550100199", new NumberNormalizer(null).normalize("(555) 010-0199"));
+    }
+
+    @Test
+    public void everySpellingSharesOneInstance() {
+        NumberNormalizer us = new NumberNormalizer("US");
+        String first = us.normalize("+1 555-010-0199");
+        assertSame(first, us.normalize(new String("(555) 010-0199")));
+        assertSame(first, us.normalize(new String("+1 555-010-0199")));
+        assertEquals(1, us.size());
+    }
+
+    private static String spell(Random random, long national) {
+        String digits = Long.toString(national);
+        switch (random.nextInt(3)) {
+            case 0: return "+1 " + digits.substring(0, 3) + "-" + digits.substring(3, 6) + "-" + digits.substring(6);
+            case 1: return "(" + digits.substring(0, 3) + ") " + digits.substring(3, 6) + "-" + digits.substring(6);
+            default: return digits;
+        }
+    }
+
+    @Test
+    public void mergedContactsTakeLessMemory() {
+        long[] nationals = new long[CONTACTS];
+        Random random = new Random(17);
+        for (int i = 0; i < CONTACTS; i++) {
+            nationals[i] = 2_000_000_000L + (long) (random.nextDouble() * 7_000_000_000L);
+        }
+        // Like a cursor: a fresh String per row, each contact dialled in several ways
+        String[] raw = new String[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            raw[i] = spell(random, nationals[i % CONTACTS]);
+        }
+
+        long baseline = usedHeap();
+        CallLogTable rawTable = new CallLogTable();
+        CallLogAggregator rawAggregator = new CallLogAggregator(10);
+        for (int i = 0; i < ROWS; i++) {
+            String number = new String(raw[i]);
+            rawTable.append(i, number, number, CallLogTable.TYPE_INCOMING, 1_700_000_000_000L - i, i % 600);
+            rawAggregator.add(number, number, CallLogTable.TYPE_INCOMING, 1_700_000_000_000L - i, i % 600);
+        }
+        long rawBytes = usedHeap() - baseline;
+
+        baseline = usedHeap();
+        NumberNormalizer normalizer = new NumberNormalizer("US");
+        CallLogTable table = new CallLogTable();
+        CallLogAggregator aggregator = new CallLogAggregator(10);
+        for (int i = 0; i < ROWS; i++) {
+            String number = normalizer.normalize(new String(raw[i]));
+            table.append(i, number, number, CallLogTable.TYPE_INCOMING, 1_700_000_000_000L - i, i % 600);
+            aggregator.add(number, number, CallLogTable.TYPE_INCOMING, 1_700_000_000_000L - i, i % 600);
+        }
+        normalizer = null; // Only the table and the aggregator outlive a load
+        long normalizedBytes = usedHeap() - baseline;
+
+        int distinct = (int) Arrays.stream(nationals).distinct().count();
+        assertTrue(rawTable.contactCount() > 2 * distinct);
+        assertEquals(distinct, table.contactCount());
+        assertEquals(distinct, aggregator.snapshot().getContactStats().size());
+        int calls = 0;
+        for (ContactStats stats : aggregator.snapshot().getContactStats().values()) calls += stats.getCount();
+        assertEquals(ROWS, calls);
+
+        // The per-row columns are the same size either way; the dictionary and the stats shrink
+        assertTrue("raw=" + rawBytes + " normalized=" + normalizedBytes, normalizedBytes * 2 < rawBytes);
+        assertNotNull(rawAggregator); // Keeps the raw side reachable until it's measured
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ParallelCallLogAggregatorTest {
+
+    private static CallLogTable syntheticTable(int rows) {
+        Random random = new Random(3);
+        CallLogTable table = new CallLogTable();
+        for (int i = 0; i < rows; i++) {
+            int contact = (int) (5_000 * Math.pow(random.nextDouble(), 3));
+            int type = 1 + random.nextInt(6);
+            table.append(rows - i, "+4420" + (7_000_000 + contact), "Contact " + contact,
+                    CallLogTable.typeCode(type), 1_700_000_000_000L - i * 1000L, random.nextInt(7200));
+        }
+        return table;
+    }
+
+    @Test
+    public void matchesSequentialAggregationExactly() {
+        CallLogTable table = syntheticTable(ParallelCallLogAggregator.PARALLEL_THRESHOLD + 12_345);
+        CallLogAggregator sequential = new CallLogAggregator(10);
+        sequential.addRows(table, 0, table.size());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        CallLogAggregator parallel;
+        try {
+            parallel = ParallelCallLogAggregator.aggregate(table, 10, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        CallLogSnapshot expected = sequential.snapshot();
+        CallLogSnapshot actual = parallel.snapshot();
+        assertEquals(expected.getIncomingCalls(), actual.getIncomingCalls());
+        assertEquals(expected.getOutgoingCalls(), actual.getOutgoingCalls());
+        assertEquals(expected.getMissedCalls(), actual.getMissedCalls());
+        assertEquals(expected.getOtherCalls(), actual.getOtherCalls());
+        assertEquals(expected.getContactStats().size(), actual.getContactStats().size());
+        for (ContactStats stats : expected.getContactStats().values()) {
+            ContactStats other = actual.getContactStats().get(stats.getNumber());
+            assertEquals(stats.getName(), other.getName());
+            assertEquals(stats.getCount(), other.getCount());
+            assertEquals(stats.getTotalDuration(), other.getTotalDuration());
+        }
+        for (int i = 0; i < expected.getTopContacts().size(); i++) {
+            assertEquals(expected.getTopContacts().get(i).getNumber(), actual.getTopContacts().get(i).getNumber());
+        }
+        CallRollups expectedRollups = expected.getRollups();
+        CallRollups actualRollups = actual.getRollups();
+        assertEquals(expectedRollups.getFirstDay(), actualRollups.getFirstDay());
+        assertEquals(expectedRollups.getLastDay(), actualRollups.getLastDay());
+        for (int day = expectedRollups.getFirstDay(); day <= expectedRollups.getLastDay(); day++) {
+            assertEquals(expectedRollups.getDayCount(day), actualRollups.getDayCount(day));
+            assertEquals(expectedRollups.getDayDuration(day), actualRollups.getDayDuration(day));
+        }
+    }
+
+    @Test
+    public void totalDurationDoesNotOverflowInt() {
+        ContactStats stats = new ContactStats("Call centre", "100");
+        for (int i = 0; i < 1_000; i++) {
+            stats.addCall(Integer.MAX_VALUE / 100);
+        }
+        assertTrue(stats.getTotalDuration() > Integer.MAX_VALUE);
+    }
+}
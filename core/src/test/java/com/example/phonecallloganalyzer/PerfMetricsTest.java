@@ -0,0 +1,153 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class PerfMetricsTest {
+
+    @Test
+    public void recordsOnlyWhileEnabled() {
+        PerfMetrics metrics = new PerfMetrics(16);
+        long start = metrics.begin();
+        assertEquals(PerfMetrics.NOT_TIMING, start);
+        metrics.end(PerfMetrics.Stage.AGGREGATION, start, 10);
+        metrics.count(PerfMetrics.Counter.ROWS_READ, 10);
+        metrics.countSince(PerfMetrics.Counter.CONTACT_LOOKUP_NANOS, start);
+        assertTrue(metrics.spans().isEmpty());
+        assertEquals(0, metrics.get(PerfMetrics.Counter.ROWS_READ));
+
+        metrics.setEnabled(true);
+        start = metrics.begin();
+        assertNotEquals(PerfMetrics.NOT_TIMING, start);
+        metrics.end(PerfMetrics.Stage.AGGREGATION, start, 10);
+        metrics.count(PerfMetrics.Counter.ROWS_READ, 10);
+        metrics.count(PerfMetrics.Counter.ROWS_READ, 5);
+        List<PerfMetrics.Span> spans = metrics.spans();
+        assertEquals(1, spans.size());
+        assertEquals(PerfMetrics.Stage.AGGREGATION, spans.get(0).getStage());
+        assertEquals(start, spans.get(0).getStartNanos());
+        assertTrue(spans.get(0).getDurationNanos() >= 0);
+        assertEquals(10, spans.get(0).getItems());
+        assertEquals(15, metrics.get(PerfMetrics.Counter.ROWS_READ));
+    }
+
+    @Test
+    public void keepsTheLatestSpansWhenTheRingWraps() {
+        PerfMetrics metrics = new PerfMetrics(8);
+        metrics.setEnabled(true);
+        for (int i = 0; i < 20; i++) metrics.record(PerfMetrics.Stage.ROW_ITERATION, i, 1, i);
+        List<PerfMetrics.Span> spans = metrics.spans();
+        assertEquals(8, spans.size());
+        for (int i = 0; i < 8; i++) assertEquals(12 + i, spans.get(i).getItems());
+        assertEquals(12, metrics.overwritten());
+
+        metrics.count(PerfMetrics.Counter.ADAPTER_BINDS, 3);
+        metrics.reset();
+        assertTrue(metrics.spans().isEmpty());
+        assertEquals(0, metrics.overwritten());
+        assertEquals(0, metrics.get(PerfMetrics.Counter.ADAPTER_BINDS));
+        metrics.record(PerfMetrics.Stage.UI_PUBLISH, 1, 2, 3);
+        assertEquals(1, metrics.spans().size());
+    }
+
+    @Test
+    public void exportsJson() {
+        PerfMetrics metrics = new PerfMetrics(8);
+        metrics.setEnabled(true);
+        metrics.record(PerfMetrics.Stage.CURSOR_QUERY, 100, 2_000, 0);
+        metrics.record(PerfMetrics.Stage.ADAPTER_BIND, 5_000, 300, 12);
+        metrics.count(PerfMetrics.Counter.CONTACT_LOOKUPS, 7);
+        assertEquals("{\"enabled\":true,\"overwritten\":0,\"counters\":{\"rows_read\":0,\"contact_lookups\":7,"
+                        + "\"contact_cache_hits\":0,\"contact_lookup_nanos\":0,\"adapter_binds\":0,\"adapter_bind_nanos\":0},"
+                        + "\"spans\":[{\"stage\":\"cursor_query\",\"start_ns\":100,\"duration_ns\":2000,\"items\":0},"
+                        + "{\"stage\":\"adapter_bind\",\"start_ns\":5000,\"duration_ns\":300,\"items\":12}]}",
+                metrics.toJson());
+    }
+
+    // Each writer records spans whose fields all hold the same value, so a torn read would show
+    @Test
+    public void concurrentWritersNeverTearASpan() throws InterruptedException {
+        PerfMetrics metrics = new PerfMetrics(64);
+        metrics.setEnabled(true);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            int writer = w;
+            writers.add(new Thread(() -> {
+                for (long i = 0; i < 200_000; i++) {
+                    long value = writer * 1_000_000_000L + i;
+                    metrics.record(PerfMetrics.Stage.values()[writer], value, value, value);
+                    metrics.count(PerfMetrics.Counter.ROWS_READ, 1);
+                }
+            }));
+        }
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                for (PerfMetrics.Span span : metrics.spans()) {
+                    long value = span.getStartNanos();
+                    if (span.getDurationNanos() != value || span.getItems() != value
+                            || span.getStage().ordinal() != value / 1_000_000_000L) {
+                        failure.compareAndSet(null, "torn span at " + value);
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (Thread thread : writers) thread.start();
+        for (Thread thread : writers) thread.join();
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(800_000, metrics.get(PerfMetrics.Counter.ROWS_READ));
+        int kept = metrics.spans().size();
+        assertTrue(kept > 0 && kept <= 64);
+    }
+
+    // The calls stay in the load path for good, so while disabled they must cost next to nothing
+    @Test
+    public void disabledCallsDoNotAllocateAndCostNanoseconds() {
+        PerfMetrics metrics = new PerfMetrics(PerfMetrics.CAPACITY);
+        int calls = 10_000_000;
+        long sink = 0;
+        for (int round = 0; round < 3; round++) sink += disabledCalls(metrics, calls); // Warm up the JIT
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long started = System.nanoTime();
+        sink += disabledCalls(metrics, calls);
+        long elapsed = System.nanoTime() - started;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertEquals(0, sink);
+        assertTrue("allocated " + allocated + " bytes", allocated < 1_024);
+        // A begin/end/count/countSince round is a handful of volatile reads; the bound leaves room for a busy machine
+        double perRound = (double) elapsed / calls;
+        assertTrue("took " + perRound + " ns per round", perRound < 25);
+        assertTrue(metrics.spans().isEmpty());
+        assertEquals(0, metrics.get(PerfMetrics.Counter.CONTACT_LOOKUPS));
+    }
+
+    private static long disabledCalls(PerfMetrics metrics, int calls) {
+        long sink = 0;
+        for (int i = 0; i < calls; i++) {
+            long start = metrics.begin();
+            metrics.count(PerfMetrics.Counter.CONTACT_LOOKUPS, 1);
+            metrics.countSince(PerfMetrics.Counter.CONTACT_LOOKUP_NANOS, start);
+            metrics.end(PerfMetrics.Stage.ROW_ITERATION, start, i);
+            if (start != PerfMetrics.NOT_TIMING) sink++;
+        }
+        return sink;
+    }
+}
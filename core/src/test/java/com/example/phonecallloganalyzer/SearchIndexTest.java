@@ -0,0 +1,102 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final String[] FIRST = {"Anna", "Jos\u00e9", "John", "Mary", "Zo\u00eb", "Li", "Jo-Ann", "\u00d3lafur"};
+    private static final String[] LAST = {"Smith", "Jones", "\u00c1lvarez", "O'Brien", "Nguyen", "Johansson"};
+
+    private static CallLogTable table(String... numbersAndNames) {
+        CallLogTable table = new CallLogTable();
+        for (int i = 0; i < numbersAndNames.length; i += 2) {
+            table.append(i, numbersAndNames[i], numbersAndNames[i + 1], CallLogTable.TYPE_INCOMING, NOW - i * 60_000L, 30);
+        }
+        return table;
+    }
+
+    private static List<String> found(SearchIndex index, CallLogTable table, String query) {
+        boolean[] contacts = index.findContacts(query);
+        List<String> numbers = new ArrayList<>();
+        for (int ref = 0; ref < table.contactCount(); ref++) {
+            if (contacts == null || contacts[ref]) numbers.add(table.numberOf(ref));
+        }
+        return numbers;
+    }
+
+    @Test
+    public void findsNameWordPrefixesAndDigitRuns() {
+        CallLogTable table = table(
+                "+14155550101", "Jos\u00e9 \u00c1lvarez",
+                "+14155550199", "Mary Jones",
+                "(020) 7946 0018", "John Smith",
+                "+442079460018", null,
+                "+14155550101", "Jos\u00e9 \u00c1lvarez");
+        SearchIndex index = new SearchIndex();
+        index.update(table);
+        assertEquals(4, index.contactCount());
+
+        assertEquals(List.of("+14155550101", "+14155550199", "(020) 7946 0018"), found(index, table, "Jo"));
+        assertEquals(List.of("+14155550101"), found(index, table, "jose alv"));
+        assertEquals(List.of("(020) 7946 0018"), found(index, table, " smith, j"));
+        assertEquals(List.of(), found(index, table, "smithers"));
+        assertEquals(List.of("(020) 7946 0018", "+442079460018"), found(index, table, "7946-0018"));
+        assertEquals(List.of("+14155550101", "+14155550199"), found(index, table, "555 01"));
+        assertEquals(List.of("(020) 7946 0018", "+442079460018"), found(index, table, "01 8"));
+        assertNull(index.findContacts(" + "));
+
+        assertArrayEquals(new int[]{0, 4}, SearchIndex.select(table, null, index.findContacts("\u00e1lvarez")));
+        assertArrayEquals(new int[]{3, 2}, SearchIndex.select(table, new int[]{4, 3, 2}, index.findContacts("00 18")));
+        int[] rows = {1, 2};
+        assertSame(rows, SearchIndex.select(table, rows, index.findContacts("")));
+    }
+
+    // Grown a few contacts at a time through copies, as syncs do, with the tail merged in now and then
+    @Test
+    public void incrementalIndexMatchesTheUnindexedCheck() {
+        Random random = new Random(8);
+        CallLogTable table = new CallLogTable();
+        SearchIndex index = new SearchIndex();
+        List<String> queries = new ArrayList<>();
+        for (int round = 0; round < 40; round++) {
+            table = new CallLogTable(table);
+            int calls = 1 + random.nextInt(round < 5 ? 400 : 40);
+            for (int i = 0; i < calls; i++) {
+                String number = "+1 (" + (200 + random.nextInt(20)) + ") 555-" + (1000 + random.nextInt(9000));
+                String name = random.nextInt(4) == 0 ? null
+                        : FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)];
+                table.insert(round * 1000L + i, number, name, CallLogTable.TYPE_MISSED, NOW + random.nextInt(1_000_000), 0);
+                if (i % 7 == 0) queries.add(number.substring(random.nextInt(number.length() - 3)));
+                if (name != null && i % 5 == 0) queries.add(name.substring(0, 1 + random.nextInt(name.length() - 1)));
+            }
+            index.update(table);
+            queries.add(Integer.toString(random.nextInt(100)));
+            queries.add(LAST[random.nextInt(LAST.length)].substring(0, 2).toUpperCase());
+
+            for (String query : queries.subList(Math.max(0, queries.size() - 12), queries.size())) {
+                boolean[] contacts = index.findContacts(query);
+                for (int ref = 0; ref < table.contactCount(); ref++) {
+                    assertEquals(query + " on " + table.numberOf(ref) + " " + table.nameOf(ref),
+                            SearchIndex.matches(query, table.numberOf(ref), table.nameOf(ref)),
+                            contacts == null || contacts[ref]);
+                }
+                int[] rows = SearchIndex.select(table, null, contacts);
+                int expected = 0;
+                for (int row = 0; row < table.size(); row++) {
+                    if (SearchIndex.matches(query, table.getNumber(row), table.getName(row))) {
+                        assertEquals(row, (rows != null ? rows[expected] : row));
+                        expected++;
+                    }
+                }
+                assertEquals(expected, rows != null ? rows.length : table.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class SnapshotCodecTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private static CallLogSnapshot syntheticSnapshot(int rows) {
+        Random random = new Random(11);
+        CallLogAggregator aggregator = new CallLogAggregator(10, TimeZone.getTimeZone("Asia/Kolkata"));
+        for (int i = 0; i < rows; i++) {
+            int contact = (int) (2_000 * Math.pow(random.nextDouble(), 3));
+            // Every tenth contact is unnamed, a few have non-Latin names
+            String name = contact % 10 == 0 ? null : contact % 7 == 0 ? "\u041a\u043e\u043d\u0442\u0430\u043a\u0442 " + contact : "Contact " + contact;
+            aggregator.add("+4420" + (7_000_000 + contact), name, CallLogTable.typeCode(1 + random.nextInt(6)),
+                    NOW - i * 60_000L, random.nextInt(7200));
+        }
+        return aggregator.snapshot();
+    }
+
+    private static byte[] encode(CallLogSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotCodec.write(snapshot, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static void assertSameSketch(DurationSketch expected, DurationSketch actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertEquals(expected.bucketLimit(), actual.bucketLimit());
+        for (int bucket = 0; bucket < expected.bucketLimit(); bucket++) {
+            assertEquals(expected.countAt(bucket), actual.countAt(bucket));
+        }
+    }
+
+    private static void assertSameSnapshot(CallLogSnapshot expected, CallLogSnapshot actual) {
+        assertEquals(expected.getIncomingCalls(), actual.getIncomingCalls());
+        assertEquals(expected.getOutgoingCalls(), actual.getOutgoingCalls());
+        assertEquals(expected.getMissedCalls(), actual.getMissedCalls());
+        assertEquals(expected.getOtherCalls(), actual.getOtherCalls());
+        assertEquals(expected.getContactStats().size(), actual.getContactStats().size());
+        for (ContactStats stats : expected.getContactStats().values()) {
+            ContactStats other = actual.getContactStats().get(stats.getNumber());
+            assertEquals(stats.getName(), other.getName());
+            assertEquals(stats.getCount(), other.getCount());
+            assertEquals(stats.getMissedCount(), other.getMissedCount());
+            assertEquals(stats.getTotalDuration(), other.getTotalDuration());
+            assertSameSketch(stats.getDurations(), other.getDurations());
+        }
+        assertSameSketch(expected.getDurations(), actual.getDurations());
+        for (ContactRanking ranking : ContactRanking.values()) {
+            assertEquals(expected.getTopContacts(ranking).size(), actual.getTopContacts(ranking).size());
+            for (int i = 0; i < expected.getTopContacts(ranking).size(); i++) {
+                // Ties may come out in another order, but never with a different score
+                assertEquals(0, ranking.order().compare(
+                        expected.getTopContacts(ranking).get(i), actual.getTopContacts(ranking).get(i)));
+            }
+        }
+
+        CallRollups expectedRollups = expected.getRollups();
+        CallRollups actualRollups = actual.getRollups();
+        assertEquals(expectedRollups.getZone().getID(), actualRollups.getZone().getID());
+        assertEquals(expectedRollups.getFirstDay(), actualRollups.getFirstDay());
+        assertEquals(expectedRollups.getLastDay(), actualRollups.getLastDay());
+        for (int day = expectedRollups.getFirstDay(); day <= expectedRollups.getLastDay(); day++) {
+            assertEquals(expectedRollups.getDayCount(day), actualRollups.getDayCount(day));
+            assertEquals(expectedRollups.getDayDuration(day), actualRollups.getDayDuration(day));
+        }
+        for (int month = expectedRollups.getFirstMonth(); month <= expectedRollups.getLastMonth(); month++) {
+            assertEquals(expectedRollups.getMonthCount(month), actualRollups.getMonthCount(month));
+        }
+        for (int dayOfWeek = 0; dayOfWeek < CallRollups.DAYS_PER_WEEK; dayOfWeek++) {
+            for (int hour = 0; hour < CallRollups.HOURS_PER_DAY; hour++) {
+                assertEquals(expectedRollups.getHourOfWeekCount(dayOfWeek, hour),
+                        actualRollups.getHourOfWeekCount(dayOfWeek, hour));
+                assertEquals(expectedRollups.getHourOfWeekDuration(dayOfWeek, hour),
+                        actualRollups.getHourOfWeekDuration(dayOfWeek, hour));
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsThroughAByteArray() throws IOException {
+        CallLogSnapshot snapshot = syntheticSnapshot(50_000);
+        ByteBuffer buffer = ByteBuffer.wrap(encode(snapshot));
+        assertSameSnapshot(snapshot, SnapshotCodec.read(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void roundTripsThroughAMappedFile() throws IOException {
+        CallLogSnapshot snapshot = syntheticSnapshot(20_000);
+        Path file = Files.createTempFile("snapshot", ".bin");
+        try {
+            Files.write(file, encode(snapshot));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                assertSameSnapshot(snapshot, SnapshotCodec.read(mapped));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void emptySnapshotRoundTrips() throws IOException {
+        CallLogSnapshot snapshot = new CallLogAggregator(10).snapshot();
+        CallLogSnapshot read = SnapshotCodec.read(ByteBuffer.wrap(encode(snapshot)));
+        assertEquals(0, read.getTotalCalls());
+        assertTrue(read.getContactStats().isEmpty());
+        assertTrue(read.getRollups().isEmpty());
+    }
+
+    @Test
+    public void restoredRollupsKeepGrowing() throws IOException {
+        CallLogSnapshot snapshot = syntheticSnapshot(1_000);
+        CallRollups rollups = SnapshotCodec.read(ByteBuffer.wrap(encode(snapshot))).getRollups();
+        long later = NOW + 400 * 86_400_000L;
+        long earlier = NOW - 4_000 * 86_400_000L;
+
+        rollups.add(later, 30);
+        rollups.add(earlier, 30);
+        assertEquals(rollups.localDay(later), rollups.getLastDay());
+        assertEquals(rollups.localDay(earlier), rollups.getFirstDay());
+        assertEquals(1, rollups.getDayCount(rollups.localDay(earlier)));
+        assertEquals(snapshot.getTotalCalls() + 2, rollups.countBetweenDays(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void rejectsTruncatedAndForeignData() throws IOException {
+        byte[] bytes = encode(syntheticSnapshot(1_000));
+        for (int length : new int[]{0, 3, 8, 40, bytes.length / 2, bytes.length - 1}) {
+            try {
+                SnapshotCodec.read(ByteBuffer.wrap(bytes, 0, length));
+                fail("read " + length + " of " + bytes.length + " bytes");
+            } catch (IOException expected) {
+                // Corrupt data must never come back as a snapshot
+            }
+        }
+        bytes[0] ^= 1;
+        try {
+            SnapshotCodec.read(ByteBuffer.wrap(bytes));
+            fail("read a file with the wrong magic");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("Not a call log snapshot"));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SnapshotStoreTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CallLogTable syntheticTable(int rows) {
+        Random random = new Random(5);
+        CallLogTable table = new CallLogTable();
+        for (int i = 0; i < rows; i++) {
+            int contact = random.nextInt(300);
+            table.append(rows - i, "+4420" + (7_000_000 + contact), contact % 4 == 0 ? null : "Contact " + contact,
+                    CallLogTable.typeCode(1 + random.nextInt(6)), NOW - i * 90_000L, random.nextInt(3600));
+        }
+        return table;
+    }
+
+    private static CallLogSnapshot aggregate(CallLogTable table) {
+        CallLogAggregator aggregator = new CallLogAggregator(10);
+        aggregator.addRows(table, 0, table.size());
+        return aggregator.snapshot();
+    }
+
+    @Test
+    public void readsBackTheSnapshotAndTheNewestRows() throws IOException {
+        CallLogTable table = syntheticTable(5_000);
+        CallLogSnapshot snapshot = aggregate(table);
+        SnapshotStore store = new SnapshotStore(new File(folder.getRoot(), "snapshot.bin"));
+        store.write(snapshot, table, 200, NOW);
+
+        SnapshotStore.Saved saved = store.read();
+        assertEquals(NOW, saved.getSavedAt());
+        assertEquals(snapshot.getTotalCalls(), saved.getSnapshot().getTotalCalls());
+        assertEquals(snapshot.getContactStats().size(), saved.getSnapshot().getContactStats().size());
+
+        CallLogTable rows = saved.getRecentRows();
+        assertEquals(200, rows.size());
+        for (int row = 0; row < rows.size(); row++) {
+            assertEquals(table.getId(row), rows.getId(row));
+            assertEquals(table.getNumber(row), rows.getNumber(row));
+            assertEquals(table.getName(row), rows.getName(row));
+            assertEquals(table.getType(row), rows.getType(row));
+            assertEquals(table.getDate(row), rows.getDate(row));
+            assertEquals(table.getDuration(row), rows.getDuration(row));
+        }
+    }
+
+    @Test
+    public void keepsTheWatermarkAndReadsOlderFilesWithoutOne() throws IOException {
+        CallLogTable table = syntheticTable(300);
+        CallLogSnapshot snapshot = aggregate(table);
+        SnapshotStore store = new SnapshotStore(new File(folder.getRoot(), "snapshot.bin"));
+        CallLogWatermark watermark = new CallLogWatermark(300, 300, NOW + 5);
+        store.write(snapshot, table, 10, NOW, watermark);
+        assertEquals(watermark, store.read().getWatermark());
+        store.write(snapshot, table, 10, NOW);
+        assertFalse(store.read().getWatermark().isKnown());
+
+        // What version 1 wrote: no watermark between the save time and the snapshot
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x434C5353);
+        out.writeInt(1);
+        out.writeLong(NOW);
+        SnapshotCodec.write(snapshot, out);
+        out.writeInt(0);
+        out.flush();
+        SnapshotStore.Saved saved = SnapshotStore.read(ByteBuffer.wrap(bytes.toByteArray()));
+        assertSame(CallLogWatermark.UNKNOWN, saved.getWatermark());
+        assertEquals(snapshot.getTotalCalls(), saved.getSnapshot().getTotalCalls());
+        assertEquals(0, saved.getRecentRows().size());
+    }
+
+    @Test
+    public void dropsAWriteBehindTheSavedSnapshot() throws IOException {
+        CallLogTable table = syntheticTable(300);
+        CallLogSnapshot snapshot = aggregate(table);
+        SnapshotStore store = new SnapshotStore(new File(folder.getRoot(), "snapshot.bin"));
+        assertTrue(store.write(snapshot, table, 10, NOW, new CallLogWatermark(300, 300, NOW + 5)));
+        // Taken before the last call came in, saved after
+        assertFalse(store.write(snapshot, table, 10, NOW + 1, new CallLogWatermark(299, 299, NOW)));
+        assertEquals(NOW, store.read().getSavedAt());
+        // A deletion since moves neither the id nor the modification time
+        assertTrue(store.write(snapshot, table, 10, NOW + 2, new CallLogWatermark(299, 300, NOW + 5)));
+        assertTrue(store.write(snapshot, table, 10, NOW + 3, new CallLogWatermark(300, 300, NOW + 9))); // An edit
+        assertTrue(store.write(snapshot, table, 10, NOW + 4)); // Unknown: nothing to compare
+        assertEquals(NOW + 4, store.read().getSavedAt());
+    }
+
+    @Test
+    public void concurrentWritersLeaveTheNewestSnapshot() throws Exception {
+        CallLogTable table = syntheticTable(2_000);
+        CallLogSnapshot snapshot = aggregate(table);
+        SnapshotStore first = new SnapshotStore(new File(folder.getRoot(), "snapshot.bin"));
+        SnapshotStore second = new SnapshotStore(new File(folder.getRoot(), "snapshot.bin"));
+        Thread[] writers = new Thread[4];
+        IOException[] failure = new IOException[1];
+        for (int t = 0; t < writers.length; t++) {
+            int offset = t;
+            SnapshotStore store = t % 2 == 0 ? first : second;
+            writers[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 20; i++) {
+                        long mark = i * writers.length + offset;
+                        store.write(snapshot, table, 500, NOW + mark, new CallLogWatermark(mark, mark, mark));
+                    }
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) writer.join();
+
+        assertNull(failure[0]);
+        SnapshotStore.Saved saved = first.read();
+        assertEquals(new CallLogWatermark(79, 79, 79), saved.getWatermark());
+        assertEquals(500, saved.getRecentRows().size());
+        assertArrayEquals(new String[]{"snapshot.bin"}, folder.getRoot().list());
+    }
+
+    @Test
+    public void missingFileReadsAsNothingSaved() throws IOException {
+        assertNull(new SnapshotStore(new File(folder.getRoot(), "absent.bin")).read());
+    }
+
+    @Test
+    public void rewriteReplacesTheFileWithoutLeftovers() throws IOException {
+        SnapshotStore store = new SnapshotStore(new File(folder.getRoot(), "snapshot.bin"));
+        CallLogTable table = syntheticTable(1_000);
+        store.write(aggregate(table), table, 50, NOW);
+        store.write(new CallLogAggregator(10).snapshot(), null, 50, NOW + 1);
+
+        SnapshotStore.Saved saved = store.read();
+        assertEquals(NOW + 1, saved.getSavedAt());
+        assertEquals(0, saved.getSnapshot().getTotalCalls());
+        assertEquals(0, saved.getRecentRows().size());
+        assertArrayEquals(new String[]{"snapshot.bin"}, folder.getRoot().list());
+    }
+
+    @Test
+    public void truncatedFileIsAnError() throws IOException {
+        File file = new File(folder.getRoot(), "snapshot.bin");
+        SnapshotStore store = new SnapshotStore(file);
+        CallLogTable table = syntheticTable(1_000);
+        store.write(aggregate(table), table, 100, NOW);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        try {
+            store.read();
+            fail("read a truncated file");
+        } catch (IOException expected) {
+            // The caller falls back to a full load
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.phonecallloganalyzer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TopKTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private static List<ContactStats> randomContacts(Random random, int count) {
+        List<ContactStats> contacts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ContactStats stats = new ContactStats("Contact " + i, String.valueOf(1000 + i));
+            int calls = random.nextInt(20);
+            for (int c = 0; c < calls; c++) {
+                byte type = random.nextInt(4) == 0 ? CallLogTable.TYPE_MISSED : CallLogTable.TYPE_INCOMING;
+                stats.addCall(random.nextInt(600), type);
+            }
+            contacts.add(stats);
+        }
+        return contacts;
+    }
+
+    private static List<ContactStats> sortedTop(List<ContactStats> contacts, int k, ContactRanking ranking) {
+        List<ContactStats> sorted = new ArrayList<>(contacts);
+        sorted.sort(ranking.order());
+        return sorted.subList(0, Math.min(k, sorted.size()));
+    }
+
+    @Test
+    public void selectMatchesFullSortForEveryRanking() {
+        List<ContactStats> contacts = randomContacts(new Random(5), 3_000);
+        for (ContactRanking ranking : ContactRanking.values()) {
+            for (int k : new int[]{1, 5, 10, 25}) {
+                assertEquals(sortedTop(contacts, k, ranking), TopK.select(contacts, k, ranking.order()));
+            }
+        }
+        assertEquals(3, TopK.select(contacts.subList(0, 3), 25, ContactRanking.CALL_COUNT.order()).size());
+    }
+
+    @Test
+    public void updateTracksIncrementalCalls() {
+        Random random = new Random(9);
+        List<ContactStats> contacts = randomContacts(random, 500);
+        TopK<ContactStats> top = new TopK<>(10, ContactRanking.TOTAL_DURATION.order());
+        for (ContactStats stats : contacts) top.offer(stats);
+
+        for (int i = 0; i < 5_000; i++) {
+            ContactStats stats = contacts.get(random.nextInt(contacts.size()));
+            stats.addCall(random.nextInt(900), CallLogTable.TYPE_OUTGOING);
+            top.update(stats);
+            if (i % 500 == 0) {
+                assertEquals(sortedTop(contacts, 10, ContactRanking.TOTAL_DURATION), top.toList());
+            }
+        }
+        assertEquals(sortedTop(contacts, 10, ContactRanking.TOTAL_DURATION), top.toList());
+    }
+
+    @Test
+    public void aggregatorKeepsLeadersAcrossAddsAndRemoves() {
+        CallLogAggregator aggregator = new CallLogAggregator(2);
+        aggregator.add("1", "A", CallLogTable.TYPE_INCOMING, NOW, 100);
+        aggregator.add("2", "B", CallLogTable.TYPE_MISSED, NOW, 0);
+        aggregator.add("3", "C", CallLogTable.TYPE_OUTGOING, NOW, 50);
+        assertEquals("1", aggregator.snapshot().getTopContacts().get(0).getNumber());
+
+        aggregator.add("3", "C", CallLogTable.TYPE_OUTGOING, NOW, 500);
+        aggregator.add("2", "B", CallLogTable.TYPE_MISSED, NOW, 0);
+        CallLogSnapshot snapshot = aggregator.snapshot();
+        assertEquals("3", snapshot.getTopContacts().get(0).getNumber());
+        assertEquals("2", snapshot.getTopContacts(ContactRanking.MISSED_COUNT).get(0).getNumber());
+        assertEquals(2, snapshot.getTopContacts(ContactRanking.MISSED_COUNT).get(0).getMissedCount());
+
+        aggregator.remove("3", CallLogTable.TYPE_OUTGOING, NOW, 500);
+        assertEquals("1", aggregator.snapshot().getTopContacts().get(0).getNumber());
+    }
+}
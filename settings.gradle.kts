@@ -22,4 +22,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "Phone Call Log Analyzer"
 include(":app")
+include(":core")
+include(":benchmarks")
  
\ No newline at end of file